@@ -1,11 +1,14 @@
 package ch.algotrader.ema;
 
+import java.io.IOException;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import ch.algotrader.ema.pipeline.StrategyPipeline;
 import ch.algotrader.ema.services.MarketDataService;
 
 @SpringBootApplication
@@ -13,10 +16,12 @@ import ch.algotrader.ema.services.MarketDataService;
 public class Application implements CommandLineRunner {
 
     private final MarketDataService marketDataService;
+    private final StrategyPipeline strategyPipeline;
 
     @Autowired
-    public Application(MarketDataService marketDataService) {
+    public Application(MarketDataService marketDataService, StrategyPipeline strategyPipeline) {
         this.marketDataService = marketDataService;
+        this.strategyPipeline = strategyPipeline;
     }
 
     public static void main(String[] args) {
@@ -24,7 +29,18 @@ public class Application implements CommandLineRunner {
     }
 
     @Override
-    public void run(String... args) {
-        marketDataService.subscribeTrades("BTCUSD");
+    public void run(String... args) throws IOException {
+        if (marketDataService.isReplay()) {
+            marketDataService.replay();
+            return;
+        }
+        if (marketDataService.isFanoutSubscriber()) {
+            marketDataService.startFanoutSubscriber();
+            return;
+        }
+        for (String symbol : strategyPipeline.getSymbols()) {
+            marketDataService.subscribeTrades(symbol);
+            marketDataService.subscribeBook(symbol);
+        }
     }
 }
@@ -0,0 +1,290 @@
+package ch.algotrader.ema.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ch.algotrader.ema.strategy.StrategyListener;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Binary audit trail of closed bars, signals, orders and order responses in fixed
+ * size records, decoded by {@link AuditLogReader}.
+ * <p>
+ * Strategy and order threads copy the primitive fields of a record into the active one
+ * of two preallocated buffers, without formatting or allocating. Every
+ * {@code audit.flush-interval-ms} the flusher thread swaps the buffers and writes the
+ * full one to {@code audit.dir/audit-<start millis>.bin}. Records that do not fit in
+ * the active buffer are dropped and counted rather than blocking the caller.
+ * <p>
+ * File layout, little endian: a {@value #HEADER_SIZE} byte header (magic, version,
+ * record size) followed by {@value #RECORD_SIZE} byte records:
+ * <pre>
+ *  0 type        u8     BAR, SIGNAL, ORDER, RESPONSE or FAILURE
+ *  1 side        u8     0, 1 buy, 2 sell
+ *  4 symbol      12 ASCII bytes, zero padded
+ * 16 time        i64    epoch millis: bar end time, signal bar end time or wall clock
+ * 24 aux         i64    BAR begin time, RESPONSE order id
+ * 32 count       i32    BAR trades
+ * 40 values      8 x f64, see the record types
+ * </pre>
+ */
+@Service
+public class AuditLog implements StrategyListener, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    public static final int MAGIC = 0x454d4141;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 104;
+
+    /** open, high, low, close, volume, emaShort, emaLong, emaDifference */
+    public static final byte BAR = 1;
+    /** close, emaDifference, emaPreviousDifference */
+    public static final byte SIGNAL = 2;
+    /** quantity, position after the order */
+    public static final byte ORDER = 3;
+    /** average execution price, executed amount */
+    public static final byte RESPONSE = 4;
+    /** no values */
+    public static final byte FAILURE = 5;
+
+    static final int TYPE = 0;
+    static final int SIDE = 1;
+    static final int SYMBOL = 4;
+    static final int SYMBOL_LENGTH = 12;
+    static final int TIME = 16;
+    static final int AUX = 24;
+    static final int COUNT = 32;
+    static final int VALUES = 40;
+    static final int VALUE_COUNT = 8;
+
+    @Value("${audit.enabled:true}") private boolean enabled = true;
+    @Value("${audit.dir:audit}") private String dir = "audit";
+    @Value("${audit.buffer-kb:256}") private int bufferKb = 256;
+    @Value("${audit.flush-interval-ms:200}") private long flushIntervalMillis = 200;
+
+    // guarded by this
+    private ByteBuffer active;
+    private ByteBuffer standby;
+    private long dropped;
+
+    private FileChannel channel;
+    private Path file;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile long written;
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!this.enabled) {
+            return;
+        }
+        final int capacity = Math.max(1, (this.bufferKb << 10) / RECORD_SIZE) * RECORD_SIZE;
+        this.active = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        this.standby = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+
+        Files.createDirectories(Paths.get(this.dir));
+        this.file = Paths.get(this.dir, "audit-" + System.currentTimeMillis() + ".bin");
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        writeFully(header);
+
+        this.running = true;
+        this.flusher = new Thread(this::flushLoop, "audit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        logger.info("audit log {}", this.file);
+    }
+
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        if (this.flusher == null) {
+            return;
+        }
+        // no interrupt, it would close the channel under the flusher
+        this.running = false;
+        LockSupport.unpark(this.flusher);
+        this.flusher.join(TimeUnit.SECONDS.toMillis(5));
+        this.channel.close();
+        logger.info("audit log {}: {} records, {} dropped", this.file, this.written, getDropped());
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    public long getWritten() {
+        return this.written;
+    }
+
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    @Override
+    public void onBarClosed(StrategyLogic strategy, int i) {
+
+        final BarStore bars = strategy.getBars();
+        if (!this.running || Double.isNaN(bars.getClose(i))) {
+            return;
+        }
+        synchronized (this) {
+            final int at = reserve(BAR, null, strategy.getSymbol(), bars.getEndTime(i));
+            if (at < 0) {
+                return;
+            }
+            this.active.putLong(at + AUX, bars.getBeginTime(i));
+            this.active.putInt(at + COUNT, bars.getTrades(i));
+            putValue(at, 0, bars.getOpen(i));
+            putValue(at, 1, bars.getHigh(i));
+            putValue(at, 2, bars.getLow(i));
+            putValue(at, 3, bars.getClose(i));
+            putValue(at, 4, bars.getVolume(i));
+            putValue(at, 5, strategy.getEmaShort());
+            putValue(at, 6, strategy.getEmaLong());
+            putValue(at, 7, strategy.getEmaDifference());
+        }
+    }
+
+    @Override
+    public void onSignal(StrategyLogic strategy, int i, String side) {
+
+        if (!this.running) {
+            return;
+        }
+        final BarStore bars = strategy.getBars();
+        synchronized (this) {
+            final int signal = reserve(SIGNAL, side, strategy.getSymbol(), bars.getEndTime(i));
+            if (signal >= 0) {
+                putValue(signal, 0, bars.getClose(i));
+                putValue(signal, 1, strategy.getEmaDifference());
+                putValue(signal, 2, strategy.getEmaPreviousDifference());
+            }
+            final int order = reserve(ORDER, side, strategy.getSymbol(), System.currentTimeMillis());
+            if (order >= 0) {
+                putValue(order, 0, strategy.getConfig().getQuantity().doubleValue());
+                putValue(order, 1, strategy.getPosition());
+            }
+        }
+    }
+
+    @Override
+    public void onOrderResponse(String symbol, String side, OrderResponse response) {
+
+        if (!this.running) {
+            return;
+        }
+        synchronized (this) {
+            final int at = reserve(RESPONSE, side, symbol, System.currentTimeMillis());
+            if (at >= 0) {
+                this.active.putLong(at + AUX, response.getOrderId());
+                putValue(at, 0, response.getAvgExecutionPrice());
+                putValue(at, 1, response.getExecutedAmount());
+            }
+        }
+    }
+
+    @Override
+    public void onOrderFailed(String symbol, String side, Throwable cause) {
+
+        if (!this.running) {
+            return;
+        }
+        synchronized (this) {
+            reserve(FAILURE, side, symbol, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Claims and clears the next record of the active buffer. Holding the lock.
+     *
+     * @return offset of the record, or -1 if the buffer is full
+     */
+    private int reserve(byte type, String side, String symbol, long time) {
+
+        final ByteBuffer buffer = this.active;
+        final int at = buffer.position();
+        if (buffer.limit() - at < RECORD_SIZE) {
+            this.dropped++;
+            return -1;
+        }
+        for (int offset = 0; offset < RECORD_SIZE; offset += Long.BYTES) {
+            buffer.putLong(at + offset, 0);
+        }
+        buffer.put(at + TYPE, type);
+        buffer.put(at + SIDE, (byte) ("buy".equals(side) ? 1 : "sell".equals(side) ? 2 : 0));
+        final int length = Math.min(symbol.length(), SYMBOL_LENGTH);
+        for (int c = 0; c < length; c++) {
+            buffer.put(at + SYMBOL + c, (byte) symbol.charAt(c));
+        }
+        buffer.putLong(at + TIME, time);
+        for (int v = 0; v < VALUE_COUNT; v++) {
+            putValue(at, v, Double.NaN);
+        }
+        buffer.position(at + RECORD_SIZE);
+        return at;
+    }
+
+    private void putValue(int at, int index, double value) {
+        this.active.putDouble(at + VALUES + index * Double.BYTES, value);
+    }
+
+    private void flushLoop() {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(this.flushIntervalMillis);
+        boolean last = false;
+        while (!last) {
+            LockSupport.parkNanos(intervalNanos);
+            last = !this.running;
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.error("cannot write audit log {}", this.file, e);
+            }
+        }
+    }
+
+    /**
+     * Flusher thread: swaps buffers and writes the one that was active.
+     */
+    private void flush() throws IOException {
+        final ByteBuffer full;
+        synchronized (this) {
+            if (this.active.position() == 0) {
+                return;
+            }
+            full = this.active;
+            this.active = this.standby;
+            this.standby = full;
+        }
+        full.flip();
+        final int records = full.remaining() / RECORD_SIZE;
+        writeFully(full);
+        full.clear();
+        this.written += records;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+}
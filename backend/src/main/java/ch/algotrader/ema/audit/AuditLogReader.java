@@ -0,0 +1,141 @@
+package ch.algotrader.ema.audit;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Prints an {@link AuditLog} file as text or CSV, for example
+ * <pre>
+ * java -cp demo-be-exec.jar -Dloader.main=ch.algotrader.ema.audit.AuditLogReader \
+ *     org.springframework.boot.loader.PropertiesLauncher audit/audit-1527669914000.bin csv
+ * </pre>
+ */
+public class AuditLogReader {
+
+    private static final String[] TYPES = {"?", "BAR", "SIGNAL", "ORDER", "RESPONSE", "FAILURE"};
+    private static final String[] SIDES = {"", "buy", "sell"};
+    private static final String[][] VALUE_NAMES = {
+            {},
+            {"open", "high", "low", "close", "volume", "emaShort", "emaLong", "emaDifference"},
+            {"price", "emaDifference", "emaPreviousDifference"},
+            {"quantity", "position"},
+            {"price", "amount"},
+            {}
+    };
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1 || args.length > 2 || args.length == 2 && !args[1].matches("text|csv")) {
+            System.err.println("usage: <audit file> [text|csv]");
+            System.exit(1);
+        }
+        print(Paths.get(args[0]), args.length == 2 && "csv".equals(args[1]), System.out);
+    }
+
+    /**
+     * @return number of records printed
+     */
+    public static long print(Path file, boolean csv, PrintStream out) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < AuditLog.HEADER_SIZE || buffer.getInt(0) != AuditLog.MAGIC) {
+                throw new IOException(file + " is not an audit log");
+            }
+            if (buffer.getInt(4) != AuditLog.VERSION) {
+                throw new IOException(file + " has unsupported version " + buffer.getInt(4));
+            }
+            final int recordSize = buffer.getInt(8);
+
+            if (csv) {
+                out.println("type,time,symbol,side,aux,count,value1,value2,value3,value4,value5,value6,value7,value8");
+            }
+            long records = 0;
+            final StringBuilder line = new StringBuilder();
+            // a record cut short by a crash is ignored
+            for (int at = AuditLog.HEADER_SIZE; at + recordSize <= buffer.limit(); at += recordSize) {
+                line.setLength(0);
+                if (csv) {
+                    appendCsv(buffer, at, line);
+                } else {
+                    appendText(buffer, at, line);
+                }
+                out.println(line);
+                records++;
+            }
+            return records;
+        }
+    }
+
+    private static void appendCsv(ByteBuffer buffer, int at, StringBuilder line) {
+        line.append(type(buffer, at)).append(',')
+                .append(buffer.getLong(at + AuditLog.TIME)).append(',')
+                .append(symbol(buffer, at)).append(',')
+                .append(side(buffer, at)).append(',')
+                .append(buffer.getLong(at + AuditLog.AUX)).append(',')
+                .append(buffer.getInt(at + AuditLog.COUNT));
+        for (int v = 0; v < AuditLog.VALUE_COUNT; v++) {
+            final double value = value(buffer, at, v);
+            line.append(',');
+            if (!Double.isNaN(value)) {
+                line.append(value);
+            }
+        }
+    }
+
+    private static void appendText(ByteBuffer buffer, int at, StringBuilder line) {
+        final int type = buffer.get(at + AuditLog.TYPE);
+        line.append(Instant.ofEpochMilli(buffer.getLong(at + AuditLog.TIME))).append(' ')
+                .append(type(buffer, at)).append(' ')
+                .append(symbol(buffer, at));
+        final String side = side(buffer, at);
+        if (!side.isEmpty()) {
+            line.append(' ').append(side);
+        }
+        if (type == AuditLog.BAR) {
+            line.append(" begin ").append(Instant.ofEpochMilli(buffer.getLong(at + AuditLog.AUX)))
+                    .append(" trades ").append(buffer.getInt(at + AuditLog.COUNT));
+        } else if (type == AuditLog.RESPONSE) {
+            line.append(" orderId ").append(buffer.getLong(at + AuditLog.AUX));
+        }
+        final String[] names = type > 0 && type < VALUE_NAMES.length ? VALUE_NAMES[type] : VALUE_NAMES[0];
+        for (int v = 0; v < names.length; v++) {
+            line.append(' ').append(names[v]).append(' ').append(value(buffer, at, v));
+        }
+    }
+
+    private static String type(ByteBuffer buffer, int at) {
+        final int type = buffer.get(at + AuditLog.TYPE);
+        return type > 0 && type < TYPES.length ? TYPES[type] : TYPES[0];
+    }
+
+    private static String side(ByteBuffer buffer, int at) {
+        final int side = buffer.get(at + AuditLog.SIDE);
+        return side > 0 && side < SIDES.length ? SIDES[side] : SIDES[0];
+    }
+
+    private static String symbol(ByteBuffer buffer, int at) {
+        int length = 0;
+        while (length < AuditLog.SYMBOL_LENGTH && buffer.get(at + AuditLog.SYMBOL + length) != 0) {
+            length++;
+        }
+        final byte[] bytes = new byte[length];
+        for (int c = 0; c < length; c++) {
+            bytes[c] = buffer.get(at + AuditLog.SYMBOL + c);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static double value(ByteBuffer buffer, int at, int index) {
+        return buffer.getDouble(at + AuditLog.VALUES + index * Double.BYTES);
+    }
+}
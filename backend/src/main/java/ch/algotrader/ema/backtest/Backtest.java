@@ -0,0 +1,101 @@
+package ch.algotrader.ema.backtest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line parameter sweep, for example
+ * <pre>
+ * java -cp demo-be-exec.jar -Dloader.main=ch.algotrader.ema.backtest.Backtest \
+ *     org.springframework.boot.loader.PropertiesLauncher \
+ *     ticks=btcusd.csv short=3:20 long=10:60:5 bar-ms=10000,60000,300000 fee=0.002
+ * </pre>
+ * Ranges are {@code from:to[:step]}, inclusive. Prints one CSV line per combination,
+ * best net P&L first.
+ */
+public class Backtest {
+
+    public static void main(String[] args) throws IOException {
+
+        if (System.getProperty("logback.configurationFile") == null) {
+            // bar and signal logging would dominate the run time
+            System.setProperty("logback.configurationFile", "logback-backtest.xml");
+        }
+
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        if (!options.containsKey("ticks")) {
+            System.err.println("usage: ticks=<file.csv|file.ticks> [short=3:20] [long=10:60:5] [bar-ms=10000,60000]"
+                    + " [fee=0.002] [quantity=0.002] [symbol=BTCUSD] [engine=incremental] [timer-ms=1000]"
+                    + " [lateness-ms=1000] [parallelism=<cores>]");
+            System.exit(1);
+        }
+
+        final long start = System.nanoTime();
+        final TickFile ticks = TickFile.open(Paths.get(options.get("ticks")));
+        final Backtester backtester = new Backtester(ticks,
+                Double.parseDouble(options.getOrDefault("fee", "0.002")),
+                Long.parseLong(options.getOrDefault("timer-ms", "1000")));
+        final ParameterSweep sweep = new ParameterSweep(backtester,
+                options.getOrDefault("symbol", "BTCUSD"),
+                new BigDecimal(options.getOrDefault("quantity", "0.002")),
+                options.getOrDefault("engine", "incremental"),
+                Long.parseLong(options.getOrDefault("lateness-ms", "1000")));
+
+        final List<BacktestResult> results = sweep.run(
+                parseRange(options.getOrDefault("short", "3:20")),
+                parseRange(options.getOrDefault("long", "10:60:5")),
+                parseList(options.getOrDefault("bar-ms", "10000,60000")),
+                Integer.parseInt(options.getOrDefault("parallelism", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+
+        System.out.println("emaPeriodShort,emaPeriodLong,barMillis,bars,fills,fees,netPnl,maxDrawdown");
+        for (BacktestResult result : results) {
+            System.out.println(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%.8f,%.8f,%.8f",
+                    result.getEmaPeriodShort(),
+                    result.getEmaPeriodLong(),
+                    result.getBarMillis(),
+                    result.getBars(),
+                    result.getFills(),
+                    result.getFees(),
+                    result.getNetPnl(),
+                    result.getMaxDrawdown()));
+        }
+        System.err.println(String.format(Locale.ROOT, "%d runs over %d trades in %.1f s",
+                results.size(), ticks.size(), (System.nanoTime() - start) / 1e9));
+    }
+
+    static int[] parseRange(String range) {
+        final String[] parts = range.split(":");
+        final int from = Integer.parseInt(parts[0].trim());
+        final int to = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : from;
+        final int step = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : 1;
+        if (step <= 0 || to < from) {
+            throw new IllegalArgumentException("invalid range: " + range);
+        }
+        final int[] values = new int[(to - from) / step + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i * step;
+        }
+        return values;
+    }
+
+    static long[] parseList(String list) {
+        final String[] parts = list.split(",");
+        final long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,77 @@
+package ch.algotrader.ema.backtest;
+
+/**
+ * Outcome of one backtest run, in quote currency.
+ */
+public class BacktestResult {
+
+    private final int emaPeriodShort;
+    private final int emaPeriodLong;
+    private final long barMillis;
+    private final int bars;
+    private final int fills;
+    private final double fees;
+    private final double netPnl;
+    private final double maxDrawdown;
+
+    public BacktestResult(int emaPeriodShort, int emaPeriodLong, long barMillis, int bars, int fills, double fees,
+            double netPnl, double maxDrawdown) {
+        this.emaPeriodShort = emaPeriodShort;
+        this.emaPeriodLong = emaPeriodLong;
+        this.barMillis = barMillis;
+        this.bars = bars;
+        this.fills = fills;
+        this.fees = fees;
+        this.netPnl = netPnl;
+        this.maxDrawdown = maxDrawdown;
+    }
+
+    public int getEmaPeriodShort() {
+        return emaPeriodShort;
+    }
+
+    public int getEmaPeriodLong() {
+        return emaPeriodLong;
+    }
+
+    public long getBarMillis() {
+        return barMillis;
+    }
+
+    public int getBars() {
+        return bars;
+    }
+
+    public int getFills() {
+        return fills;
+    }
+
+    public double getFees() {
+        return fees;
+    }
+
+    /**
+     * @return P&L after fees, open position marked at the last trade
+     */
+    public double getNetPnl() {
+        return netPnl;
+    }
+
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestResult{" +
+                "emaPeriodShort=" + emaPeriodShort +
+                ", emaPeriodLong=" + emaPeriodLong +
+                ", barMillis=" + barMillis +
+                ", bars=" + bars +
+                ", fills=" + fills +
+                ", fees=" + fees +
+                ", netPnl=" + netPnl +
+                ", maxDrawdown=" + maxDrawdown +
+                '}';
+    }
+}
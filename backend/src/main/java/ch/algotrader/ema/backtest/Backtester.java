@@ -0,0 +1,76 @@
+package ch.algotrader.ema.backtest;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.strategy.StrategyConfig;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Drives one {@link StrategyLogic} through a {@link TickFile} on the calling thread.
+ * The simulated clock follows the trade timestamps and fires {@link StrategyLogic#onTime}
+ * at the same fixed rate as the live timer, so time bars close exactly as they would live.
+ */
+public class Backtester {
+
+    // Bitfinex v1 trade timestamps are in seconds
+    private static final long EXCHANGE_TIMESTAMP_MILLIS = 1000;
+
+    private final TickFile ticks;
+    private final double feeRate;
+    private final long timerIntervalMillis;
+    private final LatencyMetrics latencyMetrics = LatencyMetrics.disabled();
+
+    /**
+     * @param feeRate fee as a fraction of the notional
+     * @param timerIntervalMillis like {@code bars.timer-interval-ms}
+     */
+    public Backtester(TickFile ticks, double feeRate, long timerIntervalMillis) {
+        if (timerIntervalMillis <= 0) {
+            throw new IllegalArgumentException("timer interval must be positive");
+        }
+        this.ticks = ticks;
+        this.feeRate = feeRate;
+        this.timerIntervalMillis = timerIntervalMillis;
+    }
+
+    public BacktestResult run(StrategyConfig config) {
+
+        final SimulatedClock clock = new SimulatedClock();
+        final SimulatedTradingService tradingService = new SimulatedTradingService(this.feeRate);
+        final StrategyLogic strategy = new StrategyLogic(config, tradingService, clock, this.latencyMetrics);
+        tradingService.setBars(strategy.getBars());
+
+        final MutableTradeEvent event = new MutableTradeEvent();
+        final int size = this.ticks.size();
+        long nextTimer = Long.MIN_VALUE;
+        double lastPrice = Double.NaN;
+
+        for (int i = 0; i < size; i++) {
+
+            final long timestamp = this.ticks.getTimestamp(i);
+            final long millis = timestamp * EXCHANGE_TIMESTAMP_MILLIS;
+            if (nextTimer == Long.MIN_VALUE) {
+                nextTimer = millis + this.timerIntervalMillis;
+            }
+            while (nextTimer <= millis) {
+                clock.setMillis(nextTimer);
+                strategy.onTime();
+                nextTimer += this.timerIntervalMillis;
+            }
+            clock.setMillis(millis);
+
+            lastPrice = this.ticks.getPrice(i);
+            event.setTimestamp(timestamp);
+            event.setPrice(lastPrice);
+            event.setAmount(this.ticks.getAmount(i));
+            strategy.handleTradeEvent(event);
+        }
+
+        final BarStore bars = strategy.getBars();
+        final double netPnl = size == 0 ? 0 : tradingService.getEquity(lastPrice);
+        return new BacktestResult(config.getEmaPeriodShort(), config.getEmaPeriodLong(), (long) config.getBarSize(),
+                bars.getRemovedBarsCount() + bars.getBarCount(), tradingService.getFills(), tradingService.getFees(),
+                netPnl, tradingService.getMaxDrawdown());
+    }
+}
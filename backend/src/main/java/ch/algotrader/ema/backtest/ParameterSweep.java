@@ -0,0 +1,80 @@
+package ch.algotrader.ema.backtest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import ch.algotrader.ema.strategy.StrategyConfig;
+
+/**
+ * Runs the EMA crossover over every combination of short period, long period and time
+ * bar length on a fork-join pool. All runs share one memory mapped {@link TickFile};
+ * each run owns its strategy, clock and simulated fills, so runs never contend.
+ */
+public class ParameterSweep {
+
+    private static final int MIN_BAR_RETENTION = 100;
+
+    private final Backtester backtester;
+    private final String symbol;
+    private final BigDecimal quantity;
+    private final String indicatorEngine;
+    private final long barAllowedLateness;
+
+    public ParameterSweep(Backtester backtester, String symbol, BigDecimal quantity, String indicatorEngine, long barAllowedLateness) {
+        this.backtester = backtester;
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.indicatorEngine = indicatorEngine;
+        this.barAllowedLateness = barAllowedLateness;
+    }
+
+    /**
+     * Pairs with {@code short >= long} are skipped.
+     *
+     * @return results sorted by net P&L, best first
+     */
+    public List<BacktestResult> run(int[] emaPeriodsShort, int[] emaPeriodsLong, long[] barMillis, int parallelism) {
+
+        final List<StrategyConfig> configs = new ArrayList<>();
+        for (long bar : barMillis) {
+            for (int emaPeriodShort : emaPeriodsShort) {
+                for (int emaPeriodLong : emaPeriodsLong) {
+                    if (emaPeriodShort < emaPeriodLong) {
+                        configs.add(createConfig(emaPeriodShort, emaPeriodLong, bar));
+                    }
+                }
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> configs.parallelStream()
+                    .map(this.backtester::run)
+                    .sorted(Comparator.comparingDouble(BacktestResult::getNetPnl).reversed())
+                    .collect(Collectors.toList()))
+                    .join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private StrategyConfig createConfig(int emaPeriodShort, int emaPeriodLong, long barMillis) {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol(this.symbol);
+        config.setQuantity(this.quantity);
+        config.setEmaPeriodShort(emaPeriodShort);
+        config.setEmaPeriodLong(emaPeriodLong);
+        config.setIndicatorEngine(this.indicatorEngine);
+        config.setBarRetention(Math.max(MIN_BAR_RETENTION, 2 * emaPeriodLong));
+        config.setBarsOffHeap(false);
+        config.setBarType("time");
+        config.setBarSize(barMillis);
+        config.setBarAllowedLateness(this.barAllowedLateness);
+        config.setLateTrades("current-bar");
+        return config;
+    }
+}
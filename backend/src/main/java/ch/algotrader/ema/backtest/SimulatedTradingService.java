@@ -0,0 +1,102 @@
+package ch.algotrader.ema.backtest;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Fills every market order immediately at the close of the bar that triggered it,
+ * charging a proportional fee, and keeps the resulting position and cash.
+ */
+public class SimulatedTradingService implements OrderSender {
+
+    private final double feeRate;
+
+    private BarStore bars;
+    private long orderId;
+
+    private double position;
+    private double cash;
+    private double fees;
+    private int fills;
+    private double peakEquity;
+    private double maxDrawdown;
+
+    /**
+     * @param feeRate fee as a fraction of the notional, e.g. 0.002 for 20 bp
+     */
+    public SimulatedTradingService(double feeRate) {
+        this.feeRate = feeRate;
+    }
+
+    /**
+     * Bars of the strategy whose orders are filled, see {@link ch.algotrader.ema.strategy.StrategyLogic#getBars()}.
+     */
+    public void setBars(BarStore bars) {
+        this.bars = bars;
+    }
+
+    @Override
+    public CompletableFuture<OrderResponse> sendOrder(String side, BigDecimal quantity, String symbol, long tickNanos) {
+
+        final double price = this.bars.getClose(this.bars.getEndIndex());
+        final double amount = quantity.doubleValue();
+        final double notional = price * amount;
+        final double fee = notional * this.feeRate;
+
+        if ("buy".equals(side)) {
+            this.position += amount;
+            this.cash -= notional;
+        } else {
+            this.position -= amount;
+            this.cash += notional;
+        }
+        this.cash -= fee;
+        this.fees += fee;
+        this.fills++;
+
+        final double equity = getEquity(price);
+        this.peakEquity = Math.max(this.peakEquity, equity);
+        this.maxDrawdown = Math.max(this.maxDrawdown, this.peakEquity - equity);
+
+        final OrderResponse response = new OrderResponse();
+        response.setId(++this.orderId);
+        response.setOrderId(this.orderId);
+        response.setSymbol(symbol);
+        response.setSide(side);
+        response.setType("exchange market");
+        response.setAvgExecutionPrice(price);
+        response.setOriginalAmount(amount);
+        response.setExecutedAmount(amount);
+        return CompletableFuture.completedFuture(response);
+    }
+
+    /**
+     * @return cash plus the position valued at {@code price}
+     */
+    public double getEquity(double price) {
+        return this.cash + this.position * price;
+    }
+
+    public double getPosition() {
+        return this.position;
+    }
+
+    public double getFees() {
+        return this.fees;
+    }
+
+    public int getFills() {
+        return this.fills;
+    }
+
+    /**
+     * @return largest drop in equity from a previous high, measured at fills
+     */
+    public double getMaxDrawdown() {
+        return this.maxDrawdown;
+    }
+}
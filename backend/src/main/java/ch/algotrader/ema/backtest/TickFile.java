@@ -0,0 +1,130 @@
+package ch.algotrader.ema.backtest;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Recorded trades in a compact binary file, memory mapped read-only so any number of
+ * backtests can share one copy.
+ * <p>
+ * Layout, little endian: magic, version, trade count, then 24 byte records of
+ * exchange timestamp (seconds, like Bitfinex v1), price and signed amount.
+ * {@link #convertCsv} builds the file from {@code timestamp,price,amount} lines.
+ */
+public class TickFile {
+
+    private static final int MAGIC = 0x4b434954; // "TICK"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int RECORD_LENGTH = 24;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private TickFile(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a tick file");
+        }
+        this.size = (int) this.buffer.getLong(8);
+    }
+
+    /**
+     * Opens a binary tick file, or converts a {@code .csv} file next to it first.
+     */
+    public static TickFile open(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".csv")) {
+            final Path converted = path.resolveSibling(path.getFileName().toString().replaceAll("\\.csv$", ".ticks"));
+            if (!Files.exists(converted) || Files.getLastModifiedTime(converted).compareTo(Files.getLastModifiedTime(path)) < 0) {
+                convertCsv(path, converted);
+            }
+            return open(converted);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TickFile(buffer);
+        }
+    }
+
+    /**
+     * Converts {@code timestamp,price,amount} lines (timestamp in seconds, or in
+     * milliseconds if larger than 10^11) into a tick file. Blank lines, comments and a
+     * header line are skipped.
+     *
+     * @return number of trades written
+     */
+    public static long convertCsv(Path csv, Path ticks) throws IOException {
+
+        final Path tmp = ticks.resolveSibling(ticks.getFileName() + ".tmp");
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(csv);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+
+            writeHeader(out, 0);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || !Character.isDigit(line.charAt(0))) {
+                    continue;
+                }
+                final String[] fields = line.split(",");
+                if (fields.length < 3) {
+                    throw new IOException("expected timestamp,price,amount: " + line);
+                }
+                long timestamp = Long.parseLong(fields[0].trim());
+                if (timestamp > 100_000_000_000L) {
+                    timestamp /= 1000;
+                }
+                out.writeLong(Long.reverseBytes(timestamp));
+                out.writeLong(Long.reverseBytes(Double.doubleToLongBits(Double.parseDouble(fields[1].trim()))));
+                out.writeLong(Long.reverseBytes(Double.doubleToLongBits(Double.parseDouble(fields[2].trim()))));
+                count++;
+            }
+        }
+
+        if ((count * RECORD_LENGTH + HEADER_LENGTH) > Integer.MAX_VALUE) {
+            Files.delete(tmp);
+            throw new IOException("too many trades for one tick file: " + count);
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+            channel.write(header, 0);
+        }
+        Files.move(tmp, ticks, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    private static void writeHeader(OutputStream out, long count) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(count);
+        out.write(header.array());
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getTimestamp(int i) {
+        return this.buffer.getLong(HEADER_LENGTH + i * RECORD_LENGTH);
+    }
+
+    public double getPrice(int i) {
+        return this.buffer.getDouble(HEADER_LENGTH + i * RECORD_LENGTH + 8);
+    }
+
+    public double getAmount(int i) {
+        return this.buffer.getDouble(HEADER_LENGTH + i * RECORD_LENGTH + 16);
+    }
+}
@@ -0,0 +1,135 @@
+package ch.algotrader.ema.fanout;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of the memory-mapped trade ring shared by one {@link TradeRingWriter} and any
+ * number of {@link TradeRingReader}s in other processes on the same host.
+ * <p>
+ * Little endian: a {@value #HEADER_LENGTH} byte header (magic, version, record size,
+ * capacity, created wall clock in ms, and on its own cache line the next sequence to
+ * claim), then {@code capacity} records of {@value #RECORD_SIZE} bytes; sequence
+ * {@code n} lives in record {@code n % capacity}:
+ * <pre>
+ *  0 long   n + 1, written last; 0 while the record is being written
+ *  8 int    channel id of the publisher, -1 for a record readers skip
+ * 16 long   trade id
+ * 24 long   exchange timestamp
+ * 32 double price
+ * 40 double amount
+ * 48 12 ASCII bytes symbol, zero padded
+ * </pre>
+ */
+final class TradeRing {
+
+    static final int MAGIC = 0x474e5254; // "TRNG"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 128;
+    static final int RECORD_SIZE = 64;
+
+    static final int CAPACITY_OFFSET = 12;
+    static final int CLAIMED_OFFSET = 64;
+
+    static final int SEQUENCE = 0;
+    static final int CHANNEL = 8;
+    static final int ID = 16;
+    static final int TIMESTAMP = 24;
+    static final int PRICE = 32;
+    static final int AMOUNT = 40;
+    static final int SYMBOL = 48;
+    static final int SYMBOL_LENGTH = 12;
+
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private TradeRing() {
+    }
+
+    /**
+     * Maps the ring, creating it if there is none with the same capacity. An existing
+     * ring keeps its sequence, so readers carry on across a publisher restart; records
+     * a dead publisher claimed but never published are turned into skipped records, or
+     * readers would wait at them until the sequence gets a full capacity ahead.
+     *
+     * @param capacity records, rounded up to a power of two
+     */
+    static MappedByteBuffer create(Path path, int capacity) throws IOException {
+
+        final int records = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        final long size = HEADER_LENGTH + (long) records * RECORD_SIZE;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final boolean reuse = channel.size() == size;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (reuse && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                    && buffer.getInt(8) == RECORD_SIZE && buffer.getInt(CAPACITY_OFFSET) == records) {
+                repair(buffer, records - 1);
+                return buffer;
+            }
+        }
+        for (int i = 0; i < size; i += Long.BYTES) {
+            buffer.putLong(i, 0);
+        }
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(CAPACITY_OFFSET, records);
+        buffer.putLong(16, System.currentTimeMillis());
+        // readers check the magic, so it goes last
+        buffer.putInt(0, MAGIC);
+        return buffer;
+    }
+
+    /**
+     * Publishes every unpublished record of the last capacity claimed sequences as a
+     * record to skip.
+     */
+    private static void repair(MappedByteBuffer buffer, int mask) {
+
+        final long claimed = (long) LONG.getVolatile(buffer, CLAIMED_OFFSET);
+        for (long sequence = Math.max(0, claimed - mask - 1); sequence < claimed; sequence++) {
+            final int at = offset(sequence, mask);
+            if ((long) LONG.getVolatile(buffer, at + SEQUENCE) != sequence + 1) {
+                buffer.putInt(at + CHANNEL, -1);
+                LONG.setRelease(buffer, at + SEQUENCE, sequence + 1);
+            }
+        }
+    }
+
+    static MappedByteBuffer open(Path path) throws IOException {
+
+        if (!Files.exists(path)) {
+            throw new IOException("no trade ring at " + path + ", start the publisher first");
+        }
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a trade ring: " + path);
+        }
+        if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+            throw new IOException("unsupported trade ring version " + buffer.getInt(4) + ": " + path);
+        }
+        if (buffer.capacity() != HEADER_LENGTH + (long) buffer.getInt(CAPACITY_OFFSET) * RECORD_SIZE) {
+            throw new IOException("truncated trade ring: " + path);
+        }
+        return buffer;
+    }
+
+    static int offset(long sequence, int mask) {
+        return HEADER_LENGTH + (int) (sequence & mask) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,183 @@
+package ch.algotrader.ema.fanout;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * One subscriber's cursor into a {@link TradeRing} written by another process.
+ * <p>
+ * Each reader starts at the newest trade and keeps its own position, so subscribers
+ * never slow each other or the publisher down. A record is copied and then its
+ * sequence is checked again; if the publisher got more than the capacity ahead, or
+ * overwrote the record during the copy, the reader was lapped: it counts the trades
+ * it lost and resumes half a ring behind the publisher.
+ * <p>
+ * Not thread safe: one thread polls.
+ */
+public class TradeRingReader {
+
+    public interface Handler {
+
+        /**
+         * A channel id seen for the first time, or carrying another symbol after the
+         * publisher was restarted.
+         */
+        void onChannel(int channelId, String symbol);
+
+        void onTrade(MutableTradeEvent event);
+    }
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+
+    private long cursor;
+    private long received;
+    private long lapped;
+    private long skipped;
+
+    // symbol of each channel as the two words stored in the records
+    private long[] symbolHeads = new long[0];
+    private int[] symbolTails = new int[0];
+
+    public TradeRingReader(Path path) throws IOException {
+        this.path = path;
+        this.buffer = TradeRing.open(path);
+        this.mask = this.buffer.getInt(TradeRing.CAPACITY_OFFSET) - 1;
+        this.cursor = claimed();
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return sequence of the next trade to read
+     */
+    public long getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * @return trades published but not read yet
+     */
+    public long getLag() {
+        return Math.max(0, claimed() - this.cursor);
+    }
+
+    public long getReceived() {
+        return this.received;
+    }
+
+    /**
+     * @return number of times the publisher overtook this reader
+     */
+    public long getLapped() {
+        return this.lapped;
+    }
+
+    /**
+     * @return trades lost to being lapped
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * Hands up to {@code limit} published trades to the handler, through the one event.
+     *
+     * @return number of trades handed over, 0 if there was none
+     */
+    public int poll(MutableTradeEvent event, Handler handler, int limit) {
+
+        final MappedByteBuffer buffer = this.buffer;
+        int count = 0;
+        while (count < limit) {
+            final long expected = this.cursor + 1;
+            final int at = TradeRing.offset(this.cursor, this.mask);
+            final long before = (long) TradeRing.LONG.getAcquire(buffer, at + TradeRing.SEQUENCE);
+            if (before != expected) {
+                if (before > expected || claimed() - this.cursor > this.mask + 1) {
+                    lapped();
+                    continue;
+                }
+                // not published yet
+                break;
+            }
+
+            final int channelId = buffer.getInt(at + TradeRing.CHANNEL);
+            final long id = buffer.getLong(at + TradeRing.ID);
+            final long timestamp = buffer.getLong(at + TradeRing.TIMESTAMP);
+            final double price = buffer.getDouble(at + TradeRing.PRICE);
+            final double amount = buffer.getDouble(at + TradeRing.AMOUNT);
+            final long symbolHead = buffer.getLong(at + TradeRing.SYMBOL);
+            final int symbolTail = buffer.getInt(at + TradeRing.SYMBOL + Long.BYTES);
+            VarHandle.loadLoadFence();
+            if ((long) TradeRing.LONG.getVolatile(buffer, at + TradeRing.SEQUENCE) != expected) {
+                lapped();
+                continue;
+            }
+            this.cursor = expected;
+
+            if (channelId < 0) {
+                continue;
+            }
+            if (channelId >= this.symbolHeads.length || this.symbolHeads[channelId] != symbolHead
+                    || this.symbolTails[channelId] != symbolTail) {
+                newChannel(channelId, symbolHead, symbolTail, handler);
+            }
+            event.clear();
+            event.setChannelId(channelId);
+            event.setId(id);
+            event.setTimestamp(timestamp);
+            event.setPrice(price);
+            event.setAmount(amount);
+            handler.onTrade(event);
+            this.received++;
+            count++;
+        }
+        return count;
+    }
+
+    private void lapped() {
+        final long resume = claimed() - ((this.mask + 1) >> 1);
+        if (resume > this.cursor) {
+            this.skipped += resume - this.cursor;
+            this.cursor = resume;
+        }
+        this.lapped++;
+    }
+
+    private void newChannel(int channelId, long symbolHead, int symbolTail, Handler handler) {
+
+        if (channelId >= this.symbolHeads.length) {
+            this.symbolHeads = Arrays.copyOf(this.symbolHeads, channelId + 1);
+            this.symbolTails = Arrays.copyOf(this.symbolTails, channelId + 1);
+        }
+        this.symbolHeads[channelId] = symbolHead;
+        this.symbolTails[channelId] = symbolTail;
+
+        // the record may be overwritten by now, so the symbol comes from the copied words
+        final byte[] bytes = new byte[TradeRing.SYMBOL_LENGTH];
+        int length = 0;
+        while (length < bytes.length) {
+            final long word = length < Long.BYTES ? symbolHead : symbolTail;
+            final byte c = (byte) (word >>> (length % Long.BYTES * Byte.SIZE));
+            if (c == 0) {
+                break;
+            }
+            bytes[length++] = c;
+        }
+        handler.onChannel(channelId, new String(bytes, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    private long claimed() {
+        return (long) TradeRing.LONG.getAcquire(this.buffer, TradeRing.CLAIMED_OFFSET);
+    }
+}
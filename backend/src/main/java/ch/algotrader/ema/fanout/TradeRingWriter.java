@@ -0,0 +1,76 @@
+package ch.algotrader.ema.fanout;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Publishes decoded trades into a {@link TradeRing} file for strategy processes on the
+ * same host, so one process keeps the exchange connection and parses the frames for all.
+ * <p>
+ * Feed threads claim a sequence with a single atomic add on the mapping and copy the
+ * trade into its record, so {@link #publish} never locks, blocks or allocates. The
+ * writer never waits for readers either: a reader that falls more than the capacity
+ * behind is lapped and notices it.
+ */
+public class TradeRingWriter implements AutoCloseable {
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+
+    public TradeRingWriter(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.buffer = TradeRing.create(path, capacity);
+        this.mask = this.buffer.getInt(TradeRing.CAPACITY_OFFSET) - 1;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @return sequences published since the ring was created
+     */
+    public long getPublished() {
+        return (long) TradeRing.LONG.getVolatile(this.buffer, TradeRing.CLAIMED_OFFSET);
+    }
+
+    /**
+     * Copies the trade into the next record. Safe to call from several feed threads.
+     */
+    public void publish(String symbol, MutableTradeEvent event) {
+
+        final MappedByteBuffer buffer = this.buffer;
+        final long sequence = (long) TradeRing.LONG.getAndAdd(buffer, TradeRing.CLAIMED_OFFSET, 1L);
+        final int at = TradeRing.offset(sequence, this.mask);
+
+        // readers that see the old sequence before and after their copy got the old record
+        TradeRing.LONG.setOpaque(buffer, at + TradeRing.SEQUENCE, 0L);
+        VarHandle.storeStoreFence();
+
+        buffer.putInt(at + TradeRing.CHANNEL, event.getChannelId());
+        buffer.putLong(at + TradeRing.ID, event.getId());
+        buffer.putLong(at + TradeRing.TIMESTAMP, event.getTimestamp());
+        buffer.putDouble(at + TradeRing.PRICE, event.getPrice());
+        buffer.putDouble(at + TradeRing.AMOUNT, event.getAmount());
+        final int length = Math.min(symbol.length(), TradeRing.SYMBOL_LENGTH);
+        for (int c = 0; c < TradeRing.SYMBOL_LENGTH; c++) {
+            buffer.put(at + TradeRing.SYMBOL + c, c < length ? (byte) symbol.charAt(c) : 0);
+        }
+
+        TradeRing.LONG.setRelease(buffer, at + TradeRing.SEQUENCE, sequence + 1);
+    }
+
+    @Override
+    public void close() {
+        this.buffer.force();
+    }
+}
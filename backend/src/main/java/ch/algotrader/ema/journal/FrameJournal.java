@@ -0,0 +1,236 @@
+package ch.algotrader.ema.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of raw websocket frames in memory-mapped segment files.
+ * <p>
+ * Feed threads claim space in the current segment with a single atomic add and copy
+ * the frame straight into the mapping, so {@link #append} never waits on I/O or locks.
+ * A background thread maps the next segment ahead of time, rolls segments by size or
+ * age and flushes the full ones. If the next segment is not ready when one fills up,
+ * frames are dropped and counted rather than waited for.
+ */
+public class FrameJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameJournal.class);
+
+    private static final long ROLLER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long segmentNanos;
+
+    private final AtomicReference<JournalSegment> current = new AtomicReference<>();
+    private volatile JournalSegment next;
+    private long nextIndex;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Thread roller;
+    private volatile boolean running;
+
+    /**
+     * @param segmentSize bytes per segment file
+     * @param segmentMillis maximum age of a segment before it is rolled, 0 for size only
+     */
+    public FrameJournal(Path dir, int segmentSize, long segmentMillis) {
+        if (segmentSize < JournalSegment.HEADER_LENGTH + JournalSegment.RECORD_HEADER_LENGTH + 4) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.segmentNanos = segmentMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(segmentMillis) : Long.MAX_VALUE;
+    }
+
+    public void start() throws IOException {
+
+        Files.createDirectories(this.dir);
+        try (Stream<Path> files = Files.list(this.dir)) {
+            this.nextIndex = files.mapToLong(FrameJournal::segmentIndex).max().orElse(-1) + 1;
+        }
+        this.current.set(JournalSegment.create(this.dir, this.nextIndex++, this.segmentSize));
+        this.next = JournalSegment.create(this.dir, this.nextIndex++, this.segmentSize);
+
+        this.running = true;
+        this.roller = new Thread(this::roll, "journal-roller");
+        this.roller.setDaemon(true);
+        this.roller.start();
+        logger.info("journaling frames to {}", this.current.get().getPath());
+    }
+
+    /**
+     * Records a frame as received. Safe to call from several feed threads.
+     *
+     * @return false if the frame was dropped
+     */
+    public boolean append(CharSequence frame, long receiveNanos, long receiveMillis) {
+
+        final int payloadLength = utf8Length(frame);
+        final int recordLength = JournalSegment.recordLength(payloadLength);
+        if (recordLength + JournalSegment.HEADER_LENGTH + 4 > this.segmentSize) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        JournalSegment segment = this.current.get();
+        int offset = segment.claim(recordLength);
+        while (offset < 0) {
+            segment = advance(segment);
+            if (segment == null) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+            offset = segment.claim(recordLength);
+        }
+
+        final MappedByteBuffer buffer = segment.getBuffer();
+        buffer.putLong(offset + 8, receiveNanos);
+        buffer.putLong(offset + 16, receiveMillis);
+        writeUtf8(frame, buffer, offset + JournalSegment.RECORD_HEADER_LENGTH);
+        segment.commit(offset, payloadLength);
+
+        this.appended.incrementAndGet();
+        return true;
+    }
+
+    public long getAppended() {
+        return this.appended.get();
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.running = false;
+        if (this.roller != null) {
+            LockSupport.unpark(this.roller);
+            this.roller.join(TimeUnit.SECONDS.toMillis(1));
+        }
+        final JournalSegment segment = this.current.get();
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Moves writers from a full (or expired) segment to the prepared next one.
+     *
+     * @return the segment to write to, or null if none is ready
+     */
+    private JournalSegment advance(JournalSegment full) {
+
+        final JournalSegment candidate = this.next;
+        if (candidate != null && this.current.compareAndSet(full, candidate)) {
+            this.next = null;
+            LockSupport.unpark(this.roller);
+            return candidate;
+        }
+        final JournalSegment latest = this.current.get();
+        if (latest != full) {
+            return latest;
+        }
+        LockSupport.unpark(this.roller);
+        return null;
+    }
+
+    private void roll() {
+
+        JournalSegment flushed = this.current.get();
+        while (this.running) {
+            try {
+                final JournalSegment segment = this.current.get();
+                if (segment != flushed) {
+                    flushed.force();
+                    logger.debug("closed journal segment {}", flushed.getPath());
+                    flushed = segment;
+                }
+                if (this.next == null) {
+                    this.next = JournalSegment.create(this.dir, this.nextIndex++, this.segmentSize);
+                } else if (System.nanoTime() - segment.getCreatedNanos() >= this.segmentNanos) {
+                    advance(segment);
+                    continue;
+                }
+            } catch (IOException e) {
+                logger.error("cannot create journal segment", e);
+            } catch (UncheckedIOException e) {
+                logger.error("cannot flush journal segment", e);
+            }
+            LockSupport.parkNanos(this, ROLLER_PARK_NANOS);
+        }
+    }
+
+    static long segmentIndex(Path path) {
+        final String name = path.getFileName().toString();
+        if (!name.startsWith(JournalSegment.PREFIX) || !name.endsWith(JournalSegment.SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(JournalSegment.PREFIX.length(), name.length() - JournalSegment.SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int utf8Length(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeUtf8(CharSequence s, MappedByteBuffer buffer, int offset) {
+        int p = offset;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put(p++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(p++, (byte) (0xc0 | c >> 6));
+                buffer.put(p++, (byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put(p++, (byte) (0xf0 | cp >> 18));
+                buffer.put(p++, (byte) (0x80 | cp >> 12 & 0x3f));
+                buffer.put(p++, (byte) (0x80 | cp >> 6 & 0x3f));
+                buffer.put(p++, (byte) (0x80 | cp & 0x3f));
+            } else {
+                // lone surrogates are written as '?' like String.getBytes does
+                final int v = Character.isSurrogate(c) ? '?' : c;
+                if (v < 0x80) {
+                    buffer.put(p++, (byte) v);
+                } else {
+                    buffer.put(p++, (byte) (0xe0 | v >> 12));
+                    buffer.put(p++, (byte) (0x80 | v >> 6 & 0x3f));
+                    buffer.put(p++, (byte) (0x80 | v & 0x3f));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.algotrader.ema.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segments written by {@link FrameJournal} in order and hands the frames to a
+ * {@link Listener}, either as fast as possible or paced like they were received.
+ */
+public class FrameJournalReader {
+
+    public enum Speed {
+        ORIGINAL, MAX;
+
+        public static Speed forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public interface Listener {
+
+        void onFrame(String frame, long receiveNanos, long receiveMillis);
+    }
+
+    // gaps larger than this between nanotime and wall clock mean a restart in between
+    private static final long MAX_CLOCK_SKEW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path dir;
+
+    public FrameJournalReader(Path dir) {
+        this.dir = dir;
+    }
+
+    public List<Path> getSegments() throws IOException {
+        try (Stream<Path> files = Files.list(this.dir)) {
+            return files.filter(path -> FrameJournal.segmentIndex(path) >= 0)
+                    .sorted(Comparator.comparingLong(FrameJournal::segmentIndex))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return number of frames replayed
+     */
+    public long replay(Speed speed, Listener listener) throws IOException {
+
+        long count = 0;
+        long previousNanos = 0;
+        long previousMillis = 0;
+        long dueNanos = 0;
+        byte[] scratch = new byte[4096];
+
+        for (Path path : getSegments()) {
+            final MappedByteBuffer buffer = map(path);
+            if (buffer.getInt(0) != JournalSegment.MAGIC) {
+                throw new IOException("not a frame journal: " + path);
+            }
+            if (buffer.getInt(4) != JournalSegment.VERSION) {
+                throw new IOException("unsupported journal version " + buffer.getInt(4) + ": " + path);
+            }
+
+            int offset = JournalSegment.HEADER_LENGTH;
+            while (offset + JournalSegment.RECORD_HEADER_LENGTH <= buffer.capacity()) {
+                final int length = buffer.getInt(offset);
+                if (length <= 0) {
+                    break;
+                }
+                final long receiveNanos = buffer.getLong(offset + 8);
+                final long receiveMillis = buffer.getLong(offset + 16);
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                final ByteBuffer payload = buffer.duplicate();
+                payload.position(offset + JournalSegment.RECORD_HEADER_LENGTH);
+                payload.get(scratch, 0, length);
+
+                if (speed == Speed.ORIGINAL) {
+                    if (count == 0) {
+                        dueNanos = System.nanoTime();
+                    } else {
+                        dueNanos += delay(previousNanos, previousMillis, receiveNanos, receiveMillis);
+                    }
+                    final long wait = dueNanos - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                previousNanos = receiveNanos;
+                previousMillis = receiveMillis;
+
+                listener.onFrame(new String(scratch, 0, length, StandardCharsets.UTF_8), receiveNanos, receiveMillis);
+                count++;
+                offset += JournalSegment.recordLength(length);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Time between two frames by nanotime, or by wall clock if the two disagree (the
+     * recording process was restarted in between).
+     */
+    private static long delay(long previousNanos, long previousMillis, long nanos, long millis) {
+        final long byNanos = nanos - previousNanos;
+        final long byMillis = TimeUnit.MILLISECONDS.toNanos(millis - previousMillis);
+        final long delay = Math.abs(byNanos - byMillis) > MAX_CLOCK_SKEW_NANOS ? byMillis : byNanos;
+        return Math.max(0, delay);
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+}
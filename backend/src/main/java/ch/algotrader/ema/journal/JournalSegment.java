@@ -0,0 +1,127 @@
+package ch.algotrader.ema.journal;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One pre-sized, memory-mapped journal file.
+ * <p>
+ * Layout, little endian: a {@value #HEADER_LENGTH} byte header (magic, version, segment
+ * index, created wall clock in ms, created nanotime), then records aligned to 8 bytes:
+ * <pre>
+ * int  length        payload bytes, written last; 0 marks the end of the segment
+ * int  reserved
+ * long receiveNanos  System.nanoTime() when the frame arrived
+ * long receiveMillis wall clock when the frame arrived
+ * byte[length]       the frame, UTF-8
+ * </pre>
+ */
+class JournalSegment {
+
+    static final int MAGIC = 0x4c4e4a46; // "FJNL"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 32;
+    static final int RECORD_HEADER_LENGTH = 24;
+
+    static final String PREFIX = "frames-";
+    static final String SUFFIX = ".journal";
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final long index;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long createdNanos;
+    private final AtomicInteger position = new AtomicInteger(HEADER_LENGTH);
+
+    private JournalSegment(Path path, long index, MappedByteBuffer buffer, long createdNanos) {
+        this.path = path;
+        this.index = index;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+        this.createdNanos = createdNanos;
+    }
+
+    static JournalSegment create(Path dir, long index, int size) throws IOException {
+
+        final Path path = dir.resolve(fileName(index));
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        final long createdNanos = System.nanoTime();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, index);
+        buffer.putLong(16, System.currentTimeMillis());
+        buffer.putLong(24, createdNanos);
+
+        // touch every page now rather than on the feed thread
+        for (int i = HEADER_LENGTH; i < size; i += 4096) {
+            buffer.put(i, (byte) 0);
+        }
+        return new JournalSegment(path, index, buffer, createdNanos);
+    }
+
+    static String fileName(long index) {
+        return String.format("%s%012d%s", PREFIX, index, SUFFIX);
+    }
+
+    static int recordLength(int payloadLength) {
+        return (RECORD_HEADER_LENGTH + payloadLength + 7) & ~7;
+    }
+
+    /**
+     * @return offset of the claimed record, or -1 if it does not fit
+     */
+    int claim(int recordLength) {
+        if (this.position.get() > this.capacity) {
+            return -1;
+        }
+        final int offset = this.position.getAndAdd(recordLength);
+        // leave room for the terminating zero length
+        return offset >= 0 && offset + recordLength + 4 <= this.capacity ? offset : -1;
+    }
+
+    MappedByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Makes a record visible by writing its length after the rest of it.
+     */
+    void commit(int offset, int payloadLength) {
+        INT.setRelease(this.buffer, offset, payloadLength);
+    }
+
+    boolean isFull() {
+        return this.position.get() + RECORD_HEADER_LENGTH + 4 > this.capacity;
+    }
+
+    Path getPath() {
+        return this.path;
+    }
+
+    long getIndex() {
+        return this.index;
+    }
+
+    long getCreatedNanos() {
+        return this.createdNanos;
+    }
+
+    void force() {
+        this.buffer.force();
+    }
+}
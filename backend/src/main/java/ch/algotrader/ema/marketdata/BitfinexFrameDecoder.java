@@ -0,0 +1,386 @@
+package ch.algotrader.ema.marketdata;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Single pass, tree-free decoder for Bitfinex v1 websocket frames.
+ * <p>
+ * Frames are classified by their first element (channel id) and message type; trade
+ * frames are written straight into a caller supplied {@link MutableTradeEvent}, book
+ * updates into fields of the decoder and book snapshots into an {@link OrderBook}.
+ * Heartbeats, snapshots and event objects are classified without reading the rest
+ * of the frame. Numbers may be sent bare or quoted.
+ * <p>
+ * Not thread safe: use one instance per feed thread.
+ */
+public class BitfinexFrameDecoder {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // mantissas up to 2^53 are exact doubles, so one multiply/divide by an exact power of ten is correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private CharSequence frame;
+    private int pos;
+    private int end;
+    private int channelId;
+    private double bookPrice;
+    private int bookCount;
+    private double bookAmount;
+
+    /**
+     * Classifies {@code frame} and, for "te"/"tu" frames, fills {@code event}. Book
+     * snapshots are classified as {@link FrameType#SNAPSHOT}, see {@link #decodeBookSnapshot}.
+     *
+     * @throws IllegalArgumentException if the frame is not well formed
+     */
+    public FrameType decode(CharSequence frame, MutableTradeEvent event) {
+
+        this.frame = frame;
+        this.pos = 0;
+        this.end = frame.length();
+        this.channelId = -1;
+
+        try {
+            skipWhitespace();
+            if (this.pos >= this.end) {
+                return FrameType.UNKNOWN;
+            }
+
+            char c = frame.charAt(this.pos);
+            if (c == '{') {
+                return FrameType.EVENT;
+            } else if (c != '[') {
+                return FrameType.UNKNOWN;
+            }
+            this.pos++;
+
+            this.channelId = (int) readLong();
+            expect(',');
+            skipWhitespace();
+
+            c = frame.charAt(this.pos);
+            if (c == '[') {
+                return FrameType.SNAPSHOT;
+            } else if (c == '-' || c >= '0' && c <= '9') {
+                readBookLevel();
+                return FrameType.BOOK_UPDATE;
+            } else if (c != '"') {
+                return FrameType.UNKNOWN;
+            }
+
+            final int typeStart = this.pos + 1;
+            final int typeEnd = indexOf('"', typeStart);
+            this.pos = typeEnd + 1;
+            if (typeEnd - typeStart != 2) {
+                return FrameType.UNKNOWN;
+            }
+
+            final char t0 = frame.charAt(typeStart);
+            final char t1 = frame.charAt(typeStart + 1);
+            if (t0 == 'h' && t1 == 'b') {
+                return FrameType.HEARTBEAT;
+            } else if (t0 == 't' && t1 == 'e') {
+                readTrade(event, false);
+                return FrameType.TRADE_EXECUTED;
+            } else if (t0 == 't' && t1 == 'u') {
+                readTrade(event, true);
+                return FrameType.TRADE_UPDATE;
+            }
+            return FrameType.UNKNOWN;
+
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw malformed();
+        } finally {
+            this.frame = null;
+        }
+    }
+
+    /**
+     * @return the channel id of the last decoded array frame, or -1
+     */
+    public int getChannelId() {
+        return this.channelId;
+    }
+
+    public double getBookPrice() {
+        return this.bookPrice;
+    }
+
+    /**
+     * @return orders at {@link #getBookPrice()}, 0 if the level was removed
+     */
+    public int getBookCount() {
+        return this.bookCount;
+    }
+
+    /**
+     * @return positive for a bid, negative for an ask
+     */
+    public double getBookAmount() {
+        return this.bookAmount;
+    }
+
+    /**
+     * Replaces the levels of {@code book} with a book channel snapshot,
+     * {@code [CHANNEL_ID, [[PRICE, COUNT, AMOUNT], ...]]}, as one update.
+     *
+     * @return number of levels in the snapshot
+     * @throws IllegalArgumentException if the frame is not well formed
+     */
+    public int decodeBookSnapshot(CharSequence frame, OrderBook book) {
+
+        this.frame = frame;
+        this.pos = 0;
+        this.end = frame.length();
+
+        book.beginWrite();
+        try {
+            book.clearLevels();
+            expect('[');
+            this.channelId = (int) readLong();
+            expect(',');
+            expect('[');
+            int levels = 0;
+            skipWhitespace();
+            if (frame.charAt(this.pos) == ']') {
+                return levels;
+            }
+            do {
+                expect('[');
+                readBookLevel();
+                expect(']');
+                book.setLevel(this.bookPrice, this.bookCount, this.bookAmount);
+                levels++;
+                skipWhitespace();
+            } while (frame.charAt(this.pos++) == ',');
+            return levels;
+
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw malformed();
+        } finally {
+            book.endWrite();
+            this.frame = null;
+        }
+    }
+
+    /*
+     PRICE, COUNT, AMOUNT
+     */
+    private void readBookLevel() {
+        this.bookPrice = readDouble();
+        expect(',');
+        this.bookCount = (int) readLong();
+        expect(',');
+        this.bookAmount = readDouble();
+    }
+
+    /*
+     te: [CHANNEL_ID, "te", SEQ, TIMESTAMP, PRICE, AMOUNT]
+     tu: [CHANNEL_ID, "tu", SEQ, ID, TIMESTAMP, PRICE, AMOUNT]
+     */
+    private void readTrade(MutableTradeEvent event, boolean withId) {
+
+        event.clear();
+        event.setChannelId(this.channelId);
+
+        expect(',');
+        readSeq(event);
+        if (withId) {
+            expect(',');
+            event.setId(readLong());
+        }
+        expect(',');
+        event.setTimestamp(readLong());
+        expect(',');
+        event.setPrice(readDouble());
+        expect(',');
+        event.setAmount(readDouble());
+    }
+
+    private void readSeq(MutableTradeEvent event) {
+
+        skipWhitespace();
+        if (this.frame.charAt(this.pos) == '"') {
+            final int start = this.pos + 1;
+            final int close = indexOf('"', start);
+            event.setSeq(this.frame, start, close);
+            this.pos = close + 1;
+        } else {
+            final int start = this.pos;
+            while (this.pos < this.end && isTokenChar(this.frame.charAt(this.pos))) {
+                this.pos++;
+            }
+            event.setSeq(this.frame, start, this.pos);
+        }
+    }
+
+    private long readLong() {
+
+        skipWhitespace();
+        final boolean quoted = this.frame.charAt(this.pos) == '"';
+        if (quoted) {
+            this.pos++;
+        }
+
+        final boolean negative = this.frame.charAt(this.pos) == '-';
+        if (negative) {
+            this.pos++;
+        }
+
+        final int start = this.pos;
+        long value = 0;
+        char c;
+        while (this.pos < this.end && (c = this.frame.charAt(this.pos)) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            this.pos++;
+        }
+        if (this.pos == start) {
+            throw malformed();
+        }
+
+        // tolerate fractional timestamps, the fraction is dropped
+        if (this.pos < this.end && this.frame.charAt(this.pos) == '.') {
+            this.pos++;
+            while (this.pos < this.end && (c = this.frame.charAt(this.pos)) >= '0' && c <= '9') {
+                this.pos++;
+            }
+        }
+
+        if (quoted) {
+            expectImmediate('"');
+        }
+        return negative ? -value : value;
+    }
+
+    private double readDouble() {
+
+        skipWhitespace();
+        final boolean quoted = this.frame.charAt(this.pos) == '"';
+        if (quoted) {
+            this.pos++;
+        }
+
+        final int start = this.pos;
+        final boolean negative = this.frame.charAt(this.pos) == '-';
+        if (negative) {
+            this.pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean seenDigit = false;
+        char c;
+
+        while (this.pos < this.end && (c = this.frame.charAt(this.pos)) >= '0' && c <= '9') {
+            seenDigit = true;
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exact = false;
+            }
+            this.pos++;
+        }
+
+        if (this.pos < this.end && this.frame.charAt(this.pos) == '.') {
+            this.pos++;
+            while (this.pos < this.end && (c = this.frame.charAt(this.pos)) >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exact = false;
+                }
+                this.pos++;
+            }
+        }
+
+        if (!seenDigit) {
+            throw malformed();
+        }
+
+        if (this.pos < this.end && ((c = this.frame.charAt(this.pos)) == 'e' || c == 'E')) {
+            this.pos++;
+            boolean negativeExp = false;
+            c = this.frame.charAt(this.pos);
+            if (c == '-' || c == '+') {
+                negativeExp = c == '-';
+                this.pos++;
+            }
+            int exp = 0;
+            final int expStart = this.pos;
+            while (this.pos < this.end && (c = this.frame.charAt(this.pos)) >= '0' && c <= '9') {
+                exp = Math.min(exp * 10 + (c - '0'), 10_000);
+                this.pos++;
+            }
+            if (this.pos == expStart) {
+                throw malformed();
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        final int numberEnd = this.pos;
+        if (quoted) {
+            expectImmediate('"');
+        }
+
+        if (exact && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            final double value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        // rare: more significant digits than fit the fast path
+        return Double.parseDouble(this.frame.subSequence(start, numberEnd).toString());
+    }
+
+    private void expect(char expected) {
+        skipWhitespace();
+        expectImmediate(expected);
+    }
+
+    private void expectImmediate(char expected) {
+        if (this.frame.charAt(this.pos) != expected) {
+            throw malformed();
+        }
+        this.pos++;
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < this.end; i++) {
+            if (this.frame.charAt(i) == c) {
+                return i;
+            }
+        }
+        throw malformed();
+    }
+
+    private void skipWhitespace() {
+        char c;
+        while (this.pos < this.end && ((c = this.frame.charAt(this.pos)) == ' ' || c == '\n' || c == '\r' || c == '\t')) {
+            this.pos++;
+        }
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c != ',' && c != ']' && c != ' ';
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("malformed frame at " + this.pos + ": " + this.frame);
+    }
+}
@@ -0,0 +1,18 @@
+package ch.algotrader.ema.marketdata;
+
+public enum FrameType {
+
+    /** JSON object frames: info, subscribed, error */
+    EVENT,
+    /** [CHANNEL_ID, "hb"] */
+    HEARTBEAT,
+    /** [CHANNEL_ID, [[...], [...]]] */
+    SNAPSHOT,
+    /** [CHANNEL_ID, "te", SEQ, TIMESTAMP, PRICE, AMOUNT] */
+    TRADE_EXECUTED,
+    /** [CHANNEL_ID, "tu", SEQ, ID, TIMESTAMP, PRICE, AMOUNT] */
+    TRADE_UPDATE,
+    /** [CHANNEL_ID, PRICE, COUNT, AMOUNT] */
+    BOOK_UPDATE,
+    UNKNOWN
+}
@@ -0,0 +1,344 @@
+package ch.algotrader.ema.marketdata;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Price aggregated level 2 book of one symbol, kept in price sorted primitive arrays.
+ * <p>
+ * Each side stores its levels worst to best, so the best price is the last element
+ * and the levels that change most often, near the top, move the fewest elements when
+ * a level is added or removed. Levels are found by binary search; updates never
+ * allocate. A side keeps at most {@code capacity} levels, dropping the worst one.
+ * <p>
+ * One feed thread writes. Any thread may read: every read retries until it saw no
+ * concurrent write (a sequence lock), so the values returned by one call belong to
+ * the same version of the book.
+ */
+public class OrderBook {
+
+    private final String symbol;
+    private final Side bids;
+    private final Side asks;
+
+    /** odd while the feed thread writes */
+    private volatile long version;
+    /** written by the feed thread only */
+    private volatile long updates;
+
+    public OrderBook(String symbol, int capacity) {
+        this.symbol = symbol;
+        this.bids = new Side(capacity, 1);
+        this.asks = new Side(capacity, -1);
+    }
+
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * Feed thread: applies one Bitfinex book entry.
+     *
+     * @param count orders at the price, 0 removes the level
+     * @param amount positive for bids, negative for asks
+     */
+    public void apply(double price, int count, double amount) {
+        beginWrite();
+        try {
+            setLevel(price, count, amount);
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Feed thread: removes all levels, e.g. before a new snapshot.
+     */
+    public void clear() {
+        beginWrite();
+        try {
+            clearLevels();
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * @return updates applied since start, snapshot levels included
+     */
+    public long getUpdates() {
+        return this.updates;
+    }
+
+    /**
+     * @return highest bid or NaN if there is none
+     */
+    public double getBestBid() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.bids.bestPrice();
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return lowest ask or NaN if there is none
+     */
+    public double getBestAsk() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.asks.bestPrice();
+        } while (!readValid(v));
+        return value;
+    }
+
+    public double getBestBidAmount() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.bids.depth(1);
+        } while (!readValid(v));
+        return value;
+    }
+
+    public double getBestAskAmount() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.asks.depth(1);
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return best ask - best bid, NaN while a side is empty
+     */
+    public double getSpread() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.asks.bestPrice() - this.bids.bestPrice();
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return spread in basis points of the mid price, NaN while a side is empty
+     */
+    public double getSpreadBps() {
+        long v;
+        double bid;
+        double ask;
+        do {
+            v = readBegin();
+            bid = this.bids.bestPrice();
+            ask = this.asks.bestPrice();
+        } while (!readValid(v));
+        return (ask - bid) / ((ask + bid) / 2) * 10_000;
+    }
+
+    /**
+     * @return mid price, NaN while a side is empty
+     */
+    public double getMid() {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = (this.asks.bestPrice() + this.bids.bestPrice()) / 2;
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return amount on the best {@code levels} bid levels
+     */
+    public double getBidDepth(int levels) {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.bids.depth(levels);
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return amount on the best {@code levels} ask levels
+     */
+    public double getAskDepth(int levels) {
+        long v;
+        double value;
+        do {
+            v = readBegin();
+            value = this.asks.depth(levels);
+        } while (!readValid(v));
+        return value;
+    }
+
+    /**
+     * @return (bid depth - ask depth) / (bid depth + ask depth) over the best
+     * {@code levels} levels, in [-1, 1], NaN for an empty book
+     */
+    public double getImbalance(int levels) {
+        long v;
+        double bid;
+        double ask;
+        do {
+            v = readBegin();
+            bid = this.bids.depth(levels);
+            ask = this.asks.depth(levels);
+        } while (!readValid(v));
+        return (bid - ask) / (bid + ask);
+    }
+
+    public int getBidLevels() {
+        return this.bids.levels;
+    }
+
+    public int getAskLevels() {
+        return this.asks.levels;
+    }
+
+    void beginWrite() {
+        this.version++;
+        VarHandle.storeStoreFence();
+    }
+
+    void endWrite() {
+        this.version++;
+    }
+
+    /**
+     * Between {@link #beginWrite} and {@link #endWrite} only.
+     */
+    void setLevel(double price, int count, double amount) {
+        if (amount > 0) {
+            this.bids.set(price, count, amount);
+        } else if (amount < 0) {
+            this.asks.set(price, count, -amount);
+        }
+        this.updates++;
+    }
+
+    /**
+     * Between {@link #beginWrite} and {@link #endWrite} only.
+     */
+    void clearLevels() {
+        this.bids.levels = 0;
+        this.asks.levels = 0;
+    }
+
+    private long readBegin() {
+        long v;
+        while (((v = this.version) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return v;
+    }
+
+    private boolean readValid(long v) {
+        VarHandle.loadLoadFence();
+        return this.version == v;
+    }
+
+    /**
+     * One side, ascending by {@code sign * price}: worst level first, best last.
+     */
+    private static final class Side {
+
+        private final double sign;
+        private final double[] prices;
+        private final double[] amounts;
+        private final int[] counts;
+        private int levels;
+
+        private Side(int capacity, double sign) {
+            this.sign = sign;
+            this.prices = new double[capacity];
+            this.amounts = new double[capacity];
+            this.counts = new int[capacity];
+        }
+
+        double bestPrice() {
+            final int n = this.levels;
+            return n > 0 ? this.prices[n - 1] : Double.NaN;
+        }
+
+        double depth(int levels) {
+            final int n = this.levels;
+            final int from = Math.max(0, n - levels);
+            double sum = 0;
+            for (int i = n - 1; i >= from; i--) {
+                sum += this.amounts[i];
+            }
+            return sum;
+        }
+
+        void set(double price, int count, double amount) {
+            final int found = find(price);
+            if (found >= 0) {
+                if (count == 0) {
+                    System.arraycopy(this.prices, found + 1, this.prices, found, this.levels - found - 1);
+                    System.arraycopy(this.amounts, found + 1, this.amounts, found, this.levels - found - 1);
+                    System.arraycopy(this.counts, found + 1, this.counts, found, this.levels - found - 1);
+                    this.levels--;
+                } else {
+                    this.amounts[found] = amount;
+                    this.counts[found] = count;
+                }
+                return;
+            }
+            if (count == 0) {
+                return;
+            }
+            int insert = -found - 1;
+            if (this.levels == this.prices.length) {
+                if (insert == 0) {
+                    // worse than every level kept
+                    return;
+                }
+                // drop the worst level
+                insert--;
+                System.arraycopy(this.prices, 1, this.prices, 0, insert);
+                System.arraycopy(this.amounts, 1, this.amounts, 0, insert);
+                System.arraycopy(this.counts, 1, this.counts, 0, insert);
+            } else {
+                System.arraycopy(this.prices, insert, this.prices, insert + 1, this.levels - insert);
+                System.arraycopy(this.amounts, insert, this.amounts, insert + 1, this.levels - insert);
+                System.arraycopy(this.counts, insert, this.counts, insert + 1, this.levels - insert);
+                this.levels++;
+            }
+            this.prices[insert] = price;
+            this.amounts[insert] = amount;
+            this.counts[insert] = count;
+        }
+
+        /**
+         * @return index of the price or {@code -(insertion point) - 1}
+         */
+        private int find(double price) {
+            final double key = this.sign * price;
+            int low = 0;
+            int high = this.levels - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final double midKey = this.sign * this.prices[mid];
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
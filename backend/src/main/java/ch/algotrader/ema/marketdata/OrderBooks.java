@@ -0,0 +1,51 @@
+package ch.algotrader.ema.marketdata;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link OrderBook} of every symbol and the book channels that feed them.
+ */
+@Component
+public class OrderBooks {
+
+    @Value("${book.enabled:false}") private boolean enabled;
+    /** levels per side, 25 or 100 on Bitfinex */
+    @Value("${book.levels:25}") private int levels = 25;
+
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+    private volatile OrderBook[] booksByChannel = new OrderBook[0];
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public int getLevels() {
+        return this.levels;
+    }
+
+    /**
+     * @return the book of the symbol, empty until its channel delivers a snapshot
+     */
+    public OrderBook get(String symbol) {
+        return this.books.computeIfAbsent(symbol, s -> new OrderBook(s, this.levels));
+    }
+
+    public synchronized void registerChannel(int channelId, String symbol) {
+        final OrderBook[] books = Arrays.copyOf(this.booksByChannel, Math.max(this.booksByChannel.length, channelId + 1));
+        books[channelId] = get(symbol);
+        this.booksByChannel = books;
+    }
+
+    /**
+     * @return the book fed by the channel, or null if it is not a book channel
+     */
+    public OrderBook forChannel(int channelId) {
+        final OrderBook[] books = this.booksByChannel;
+        return channelId >= 0 && channelId < books.length ? books[channelId] : null;
+    }
+}
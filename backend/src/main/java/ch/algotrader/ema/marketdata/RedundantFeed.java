@@ -0,0 +1,414 @@
+package ch.algotrader.ema.marketdata;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.ContainerProvider;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.algotrader.ema.journal.FrameJournal;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.Subscription;
+
+/**
+ * Several websocket connections ("legs") to the same trades feed. Each trade is
+ * published from whichever leg delivers it first; later copies are dropped by the
+ * symbol's {@link SequenceArbiter}. A leg that closes, fails or goes quiet for longer
+ * than the stale timeout is reconnected and resubscribed in the background with
+ * exponential backoff, while the other legs keep the strategies fed.
+ * <p>
+ * Channel ids are per connection, so trades are re-keyed to one channel id per symbol
+ * before they reach the {@link StrategyPipeline}.
+ * <p>
+ * With executed trades, trades are taken from "te" frames and arbitrated by sequence
+ * number, and the "tu" frames of the same trades are matched by a per symbol
+ * {@link TradeReconciler} instead of being published again.
+ */
+public class RedundantFeed implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedundantFeed.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final long INITIAL_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 5_000;
+    private static final long STATS_LOG_INTERVAL_MS = 60_000;
+
+    // Bitfinex v1 trade timestamps are in seconds
+    private static final long EXCHANGE_TIMESTAMP_MILLIS = 1000;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final URI uri;
+    private final long staleNanos;
+    private final StrategyPipeline strategyPipeline;
+    private final LatencyMetrics latencyMetrics;
+    private final boolean executedTrades;
+    private final int reconcileCapacity;
+    private final Leg[] legs;
+
+    private final List<String> symbols = new CopyOnWriteArrayList<>();
+    private final Map<String, Route> routesBySymbol = new ConcurrentHashMap<>();
+    private final WebSocketContainer container;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "feed-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean running;
+
+    /**
+     * @param journals started journal per leg, null entries for legs that are not journaled
+     * @param executedTrades publish trades from "te" frames, see {@link TradeReconciler}
+     */
+    public RedundantFeed(URI uri, int legCount, long staleMillis, StrategyPipeline strategyPipeline,
+            LatencyMetrics latencyMetrics, FrameJournal[] journals, boolean executedTrades, int reconcileCapacity) {
+        this(uri, legCount, staleMillis, strategyPipeline, latencyMetrics, journals, executedTrades,
+                reconcileCapacity, ContainerProvider.getWebSocketContainer());
+    }
+
+    RedundantFeed(URI uri, int legCount, long staleMillis, StrategyPipeline strategyPipeline,
+            LatencyMetrics latencyMetrics, FrameJournal[] journals, boolean executedTrades, int reconcileCapacity,
+            WebSocketContainer container) {
+        this.uri = uri;
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMillis);
+        this.strategyPipeline = strategyPipeline;
+        this.latencyMetrics = latencyMetrics;
+        this.executedTrades = executedTrades;
+        this.reconcileCapacity = reconcileCapacity;
+        this.container = container;
+        this.legs = new Leg[legCount];
+        for (int i = 0; i < legCount; i++) {
+            this.legs[i] = new Leg(i, journals[i]);
+        }
+    }
+
+    public void start() {
+        this.running = true;
+        for (Leg leg : this.legs) {
+            leg.connect();
+        }
+        this.scheduler.scheduleWithFixedDelay(this::checkLegs, 1, 1, TimeUnit.SECONDS);
+        this.scheduler.scheduleAtFixedRate(this::logStats, STATS_LOG_INTERVAL_MS, STATS_LOG_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("redundant feed with {} legs to {}", this.legs.length, this.uri);
+    }
+
+    /**
+     * Subscribes all legs, now and after every reconnect.
+     */
+    public synchronized void subscribe(String symbol) {
+        if (this.routesBySymbol.containsKey(symbol)) {
+            return;
+        }
+        final Route route = new Route(this.symbols.size() + 1, this.reconcileCapacity);
+        this.routesBySymbol.put(symbol, route);
+        this.symbols.add(symbol);
+        this.strategyPipeline.registerChannel(route.channelId, symbol);
+        for (Leg leg : this.legs) {
+            leg.subscribe(symbol);
+        }
+    }
+
+    public long getFramesReceived() {
+        long frames = 0;
+        for (Leg leg : this.legs) {
+            frames += leg.framesReceived;
+        }
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        this.running = false;
+        this.scheduler.shutdownNow();
+        for (Leg leg : this.legs) {
+            leg.close();
+        }
+    }
+
+    private void checkLegs() {
+        final long now = System.nanoTime();
+        for (Leg leg : this.legs) {
+            final Session session = leg.session;
+            if (leg.reconnectPending.get()) {
+                continue;
+            }
+            if (session == null || !session.isOpen()) {
+                leg.scheduleReconnect();
+            } else if (now - leg.lastFrameNanos > this.staleNanos) {
+                logger.warn("feed leg {} silent for {} ms, reconnecting", leg.index, TimeUnit.NANOSECONDS.toMillis(now - leg.lastFrameNanos));
+                leg.closeQuietly(session);
+                leg.scheduleReconnect();
+            }
+        }
+    }
+
+    private void logStats() {
+        final StringBuilder stats = new StringBuilder("feed");
+        for (Leg leg : this.legs) {
+            stats.append(" | leg ").append(leg.index)
+                    .append(" frames ").append(leg.framesReceived)
+                    .append(" first ").append(leg.firstCopies)
+                    .append(" reconnects ").append(leg.reconnects);
+        }
+        for (Map.Entry<String, Route> entry : this.routesBySymbol.entrySet()) {
+            final Route route = entry.getValue();
+            synchronized (route) {
+                stats.append(" | ").append(entry.getKey())
+                        .append(" duplicates ").append(route.arbiter.getDuplicates() + route.idArbiter.getDuplicates())
+                        .append(" gaps ").append(route.arbiter.getGaps())
+                        .append(" recovered ").append(route.arbiter.getRecovered());
+                if (this.executedTrades) {
+                    stats.append(" reconciled ").append(route.reconciler.getReconciled())
+                            .append(" unmatched ").append(route.reconciler.getUnmatched())
+                            .append(" evicted ").append(route.reconciler.getEvicted())
+                            .append(" mismatched ").append(route.reconciler.getMismatched());
+                }
+            }
+        }
+        logger.info(stats.toString());
+    }
+
+    private static final class Route {
+
+        private final int channelId;
+        private final SequenceArbiter arbiter = new SequenceArbiter();
+        /**
+         * with executed trades, "tu" frames without numeric sequence by trade id; an
+         * arbiter compares keys, so ids and sequence numbers never share one
+         */
+        private final SequenceArbiter idArbiter = new SequenceArbiter();
+        private final TradeReconciler reconciler;
+
+        private Route(int channelId, int reconcileCapacity) {
+            this.channelId = channelId;
+            this.reconciler = new TradeReconciler(reconcileCapacity);
+        }
+    }
+
+    private final class Leg extends Endpoint implements MessageHandler.Whole<String> {
+
+        private final int index;
+        private final FrameJournal journal;
+        private final BitfinexFrameDecoder decoder = new BitfinexFrameDecoder();
+        /** decoded into on the leg's websocket thread; the pipeline copies trades */
+        private final MutableTradeEvent tradeEvent = new MutableTradeEvent();
+        private final AtomicBoolean reconnectPending = new AtomicBoolean();
+
+        private volatile Session session;
+        /** this leg's channel ids to symbol routes, replaced on every (re)subscribe */
+        private volatile Route[] routesByChannel = new Route[0];
+        private volatile long lastFrameNanos;
+        /** written by the leg's websocket thread only */
+        private volatile long framesReceived;
+        private volatile long firstCopies;
+        private volatile long reconnects;
+        /** doubled by whichever thread schedules a reconnect, reset by the monitor thread */
+        private final AtomicLong backoffMillis = new AtomicLong(INITIAL_BACKOFF_MS);
+
+        private Leg(int index, FrameJournal journal) {
+            this.index = index;
+            this.journal = journal;
+        }
+
+        private void connect() {
+            this.reconnectPending.set(false);
+            if (!RedundantFeed.this.running) {
+                return;
+            }
+            try {
+                this.routesByChannel = new Route[0];
+                this.lastFrameNanos = System.nanoTime();
+                this.session = RedundantFeed.this.container.connectToServer(this, ClientEndpointConfig.Builder.create().build(),
+                        RedundantFeed.this.uri);
+                for (String symbol : RedundantFeed.this.symbols) {
+                    subscribe(symbol);
+                }
+                this.backoffMillis.set(INITIAL_BACKOFF_MS);
+                logger.info("feed leg {} connected", this.index);
+            } catch (DeploymentException | IOException e) {
+                logger.warn("feed leg {} cannot connect: {}", this.index, e.toString());
+                scheduleReconnect();
+            }
+        }
+
+        private void scheduleReconnect() {
+            if (!RedundantFeed.this.running || !this.reconnectPending.compareAndSet(false, true)) {
+                return;
+            }
+            this.reconnects++;
+            final long delay = this.backoffMillis.getAndUpdate(backoff -> Math.min(2 * backoff, MAX_BACKOFF_MS));
+            RedundantFeed.this.scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void subscribe(String symbol) {
+            final Session session = this.session;
+            if (session == null || !session.isOpen()) {
+                return;
+            }
+            try {
+                session.getBasicRemote().sendText(objectMapper.writeValueAsString(Subscription.trades(symbol)));
+            } catch (IOException e) {
+                logger.warn("feed leg {} cannot subscribe {}: {}", this.index, symbol, e.toString());
+            }
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(this);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            if (session == this.session && RedundantFeed.this.running) {
+                logger.warn("feed leg {} closed: {}", this.index, closeReason);
+                scheduleReconnect();
+            }
+        }
+
+        @Override
+        public void onError(Session session, Throwable throwable) {
+            logger.warn("feed leg {} failed: {}", this.index, throwable.toString());
+        }
+
+        @Override
+        public void onMessage(String msg) {
+
+            final long receiveNanos = System.nanoTime();
+            final long receiveMillis = System.currentTimeMillis();
+            this.lastFrameNanos = receiveNanos;
+            this.framesReceived++;
+            if (this.journal != null) {
+                this.journal.append(msg, receiveNanos, receiveMillis);
+            }
+
+            final MutableTradeEvent tradeEvent = this.tradeEvent;
+            try {
+                final FrameType frameType = this.decoder.decode(msg, tradeEvent);
+                if (frameType == FrameType.TRADE_UPDATE || frameType == FrameType.TRADE_EXECUTED) {
+                    onTrade(tradeEvent, frameType == FrameType.TRADE_EXECUTED, receiveNanos, receiveMillis);
+                } else if (frameType == FrameType.EVENT) {
+                    onEvent(msg);
+                }
+            } catch (IllegalArgumentException e) {
+                logger.error("cannot decode frame on feed leg {}", this.index, e);
+            }
+        }
+
+        private void onTrade(MutableTradeEvent tradeEvent, boolean executed, long receiveNanos, long receiveMillis) {
+
+            final Route[] routes = this.routesByChannel;
+            final int channelId = tradeEvent.getChannelId();
+            final Route route = channelId >= 0 && channelId < routes.length ? routes[channelId] : null;
+            if (route == null) {
+                return;
+            }
+
+            // publishing under the route's lock keeps each symbol single-producer
+            synchronized (route) {
+                tradeEvent.setChannelId(route.channelId);
+                if (!accept(route, tradeEvent, executed)) {
+                    return;
+                }
+                this.firstCopies++;
+
+                final LatencyMetrics latencyMetrics = RedundantFeed.this.latencyMetrics;
+                if (latencyMetrics.isEnabled()) {
+                    final long parsedNanos = System.nanoTime();
+                    tradeEvent.setReceiveNanos(receiveNanos);
+                    tradeEvent.setParsedNanos(parsedNanos);
+                    latencyMetrics.record(LatencyMetrics.Stage.PARSE, parsedNanos - receiveNanos);
+                    latencyMetrics.record(LatencyMetrics.Stage.EXCHANGE_LAG,
+                            (receiveMillis - tradeEvent.getTimestamp() * EXCHANGE_TIMESTAMP_MILLIS) * NANOS_PER_MILLI);
+                }
+                RedundantFeed.this.strategyPipeline.publishTrade(tradeEvent);
+            }
+        }
+
+        /**
+         * @return true for the first copy of a trade that is to be published
+         */
+        private boolean accept(Route route, MutableTradeEvent tradeEvent, boolean executed) {
+
+            if (!RedundantFeed.this.executedTrades) {
+                return !executed && route.arbiter.accept(tradeEvent.getId(), tradeEvent.getSeq());
+            }
+            // "te" frames have no trade id, so all frames are arbitrated by sequence number
+            final long seq = SequenceArbiter.parseSequence(tradeEvent.getSeq());
+            if (executed) {
+                return seq >= 0 && route.arbiter.accept(seq, tradeEvent.getSeq()) && route.reconciler.onExecuted(tradeEvent);
+            }
+            if (!route.reconciler.onUpdate(tradeEvent)) {
+                return false;
+            }
+            return seq >= 0
+                    ? route.arbiter.accept(seq, tradeEvent.getSeq())
+                    : route.idArbiter.accept(tradeEvent.getId(), tradeEvent.getSeq());
+        }
+
+        /*
+         {"event":"subscribed","channel":"trades","chanId":5,"pair":"BTCUSD"}
+         */
+        private void onEvent(String msg) {
+            try {
+                final JsonNode json = objectMapper.readTree(msg);
+                if ("subscribed".equals(json.path("event").asText()) && "trades".equals(json.path("channel").asText())) {
+                    final Route route = RedundantFeed.this.routesBySymbol.get(json.path("pair").asText());
+                    final int channelId = json.path("chanId").asInt();
+                    if (route != null && channelId >= 0) {
+                        final Route[] routes = Arrays.copyOf(this.routesByChannel, Math.max(this.routesByChannel.length, channelId + 1));
+                        routes[channelId] = route;
+                        this.routesByChannel = routes;
+                    }
+                }
+                logger.info("feed leg {} event {}", this.index, msg);
+            } catch (IOException e) {
+                logger.error("cannot read event " + msg, e);
+            }
+        }
+
+        private void close() throws IOException, InterruptedException {
+            final Session session = this.session;
+            if (session != null && session.isOpen()) {
+                session.close();
+            }
+            if (this.journal != null) {
+                this.journal.close();
+                logger.info("feed leg {} journaled {} frames, dropped {}", this.index, this.journal.getAppended(), this.journal.getDropped());
+            }
+        }
+
+        private void closeQuietly(Session session) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                // reconnecting anyway
+            }
+        }
+    }
+}
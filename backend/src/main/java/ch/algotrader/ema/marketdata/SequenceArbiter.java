@@ -0,0 +1,138 @@
+package ch.algotrader.ema.marketdata;
+
+import java.util.Arrays;
+
+/**
+ * First-copy-wins arbitration of one symbol's trades arriving over several feed
+ * connections.
+ * <p>
+ * Duplicates are detected by trade id in a rolling bit window of the last
+ * {@link #WINDOW} ids below the highest id seen, 8 KB per symbol. Trades older than the
+ * window are dropped as duplicates. Gaps are detected on the numeric prefix of the
+ * trade sequence ("1234-BTCUSD"), which counts up by one per trade of the pair; a
+ * missing sequence that later arrives on a slower connection counts as recovered.
+ * <p>
+ * Not thread safe: callers serialize access per symbol.
+ */
+public class SequenceArbiter {
+
+    static final int WINDOW = 1 << 16;
+    private static final int WINDOW_MASK = WINDOW - 1;
+
+    private final long[] seen = new long[WINDOW / Long.SIZE];
+    private long highestId = -1;
+    private long highestSeq = -1;
+
+    private long accepted;
+    private long duplicates;
+    private long gaps;
+    private long recovered;
+
+    /**
+     * @param seq sequence as sent, its numeric prefix is used for gap detection
+     * @return true for the first copy of trade {@code id}
+     */
+    public boolean accept(long id, CharSequence seq) {
+
+        if (this.highestId < 0 || id > this.highestId) {
+            advanceTo(id);
+        } else if (id <= this.highestId - WINDOW || isSeen(id)) {
+            this.duplicates++;
+            return false;
+        } else {
+            markSeen(id);
+        }
+        this.accepted++;
+        trackSequence(parseSequence(seq));
+        return true;
+    }
+
+    public long getAccepted() {
+        return this.accepted;
+    }
+
+    public long getDuplicates() {
+        return this.duplicates;
+    }
+
+    /**
+     * @return sequence numbers that were skipped when a later one arrived
+     */
+    public long getGaps() {
+        return this.gaps;
+    }
+
+    /**
+     * @return skipped sequence numbers that arrived afterwards
+     */
+    public long getRecovered() {
+        return this.recovered;
+    }
+
+    private void advanceTo(long id) {
+        if (this.highestId < 0 || id - this.highestId >= WINDOW) {
+            Arrays.fill(this.seen, 0);
+        } else {
+            clearSeen(this.highestId + 1, id);
+        }
+        this.highestId = id;
+        markSeen(id);
+    }
+
+    private void trackSequence(long seq) {
+        if (seq < 0) {
+            return;
+        }
+        if (this.highestSeq < 0) {
+            this.highestSeq = seq;
+        } else if (seq > this.highestSeq) {
+            this.gaps += seq - this.highestSeq - 1;
+            this.highestSeq = seq;
+        } else if (this.recovered < this.gaps) {
+            this.recovered++;
+        }
+    }
+
+    private boolean isSeen(long id) {
+        final int bit = (int) id & WINDOW_MASK;
+        return (this.seen[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void markSeen(long id) {
+        final int bit = (int) id & WINDOW_MASK;
+        this.seen[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Clears the ids from {@code from} up to but excluding {@code to}, fewer than
+     * {@link #WINDOW}, a word at a time: trade ids are global across pairs, so one
+     * symbol's ids jump by thousands.
+     */
+    private void clearSeen(long from, long to) {
+        long id = from;
+        while (id < to) {
+            final int bit = (int) id & WINDOW_MASK;
+            final int offset = bit & (Long.SIZE - 1);
+            final long count = Math.min(to - id, Long.SIZE - offset);
+            final long mask = count == Long.SIZE ? -1L : ((1L << count) - 1) << offset;
+            this.seen[bit >>> 6] &= ~mask;
+            id += count;
+        }
+    }
+
+    /**
+     * @return the leading digits of {@code seq}, or -1 if there are none
+     */
+    static long parseSequence(CharSequence seq) {
+        long value = 0;
+        int i = 0;
+        for (; i < seq.length() && i < 18; i++) {
+            final char c = seq.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return i == 0 ? -1 : value;
+    }
+}
@@ -0,0 +1,160 @@
+package ch.algotrader.ema.marketdata;
+
+import java.util.Arrays;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Publishes each trade from its "te" frame and matches the "tu" frame that Bitfinex
+ * sends for the same trade once the trade id is known, so the bars see the trade
+ * without waiting for the id and never count it twice.
+ * <p>
+ * "te" frames are remembered by channel and the numeric prefix of their sequence in a
+ * fixed size, direct mapped table, a slot per sequence modulo the capacity. A "tu"
+ * that finds its "te" completes the slot in place and is dropped. One that does not
+ * is dropped as well if its sequence is not above the highest "te" sequence of its
+ * channel, as its "te" was published and then evicted from the table by a later one;
+ * only a "tu" ahead of every "te" seen is published as before. A "tu" whose price or
+ * amount differ from its "te" is counted as a mismatch; the bars keep the "te" values.
+ * <p>
+ * Not thread safe: callers serialize access per channel.
+ */
+public class TradeReconciler {
+
+    private final int mask;
+    private final int[] channels;
+    private final long[] seqs;
+    private final double[] prices;
+    private final double[] amounts;
+    /** trade id from the "tu", 0 until reconciled */
+    private final long[] ids;
+    /** highest "te" sequence by channel id, -1 for none */
+    private long[] highestExecuted = new long[0];
+
+    private long executed;
+    private long reconciled;
+    private long unmatched;
+    private long mismatched;
+    private long overwritten;
+    private long evicted;
+
+    /**
+     * @param capacity trades between a "te" and its "tu", rounded up to a power of two
+     */
+    public TradeReconciler(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.channels = new int[size];
+        this.seqs = new long[size];
+        this.prices = new double[size];
+        this.amounts = new double[size];
+        this.ids = new long[size];
+        Arrays.fill(this.seqs, -1);
+    }
+
+    /**
+     * @return true if the "te" is to be published, false for a repeated one or one
+     * without numeric sequence, which waits for its "tu"
+     */
+    public boolean onExecuted(MutableTradeEvent event) {
+
+        final long seq = SequenceArbiter.parseSequence(event.getSeq());
+        if (seq < 0) {
+            return false;
+        }
+        final int channelId = event.getChannelId();
+        final int slot = slot(channelId, seq);
+        if (this.seqs[slot] == seq && this.channels[slot] == channelId) {
+            return false;
+        }
+        if (this.seqs[slot] >= 0 && this.ids[slot] == 0) {
+            this.overwritten++;
+        }
+        this.channels[slot] = channelId;
+        this.seqs[slot] = seq;
+        this.prices[slot] = event.getPrice();
+        this.amounts[slot] = event.getAmount();
+        this.ids[slot] = 0;
+        if (channelId >= this.highestExecuted.length) {
+            final int length = this.highestExecuted.length;
+            this.highestExecuted = Arrays.copyOf(this.highestExecuted, Math.max(channelId + 1, length * 2));
+            Arrays.fill(this.highestExecuted, length, this.highestExecuted.length, -1);
+        }
+        this.highestExecuted[channelId] = Math.max(this.highestExecuted[channelId], seq);
+        this.executed++;
+        return true;
+    }
+
+    /**
+     * @return true if the "tu" is to be published because no "te" of it was seen
+     */
+    public boolean onUpdate(MutableTradeEvent event) {
+
+        final long seq = SequenceArbiter.parseSequence(event.getSeq());
+        if (seq < 0) {
+            this.unmatched++;
+            return true;
+        }
+        final int channelId = event.getChannelId();
+        final int slot = slot(channelId, seq);
+        if (this.seqs[slot] != seq || this.channels[slot] != channelId) {
+            if (channelId >= 0 && channelId < this.highestExecuted.length && seq <= this.highestExecuted[channelId]) {
+                // counted from its "te" already
+                this.evicted++;
+                return false;
+            }
+            this.unmatched++;
+            return true;
+        }
+        if (this.ids[slot] != 0) {
+            // reconciled already
+            return false;
+        }
+        this.ids[slot] = event.getId();
+        this.reconciled++;
+        if (this.prices[slot] != event.getPrice() || this.amounts[slot] != event.getAmount()) {
+            this.mismatched++;
+        }
+        return false;
+    }
+
+    public long getExecuted() {
+        return this.executed;
+    }
+
+    public long getReconciled() {
+        return this.reconciled;
+    }
+
+    /**
+     * @return "tu" frames published because their "te" was not seen
+     */
+    public long getUnmatched() {
+        return this.unmatched;
+    }
+
+    /**
+     * @return "tu" frames with another price or amount than their "te"
+     */
+    public long getMismatched() {
+        return this.mismatched;
+    }
+
+    /**
+     * @return "te" slots reused before their "tu" arrived
+     */
+    public long getOverwritten() {
+        return this.overwritten;
+    }
+
+    /**
+     * @return "tu" frames dropped because their "te" was published and then evicted
+     */
+    public long getEvicted() {
+        return this.evicted;
+    }
+
+    private int slot(int channelId, long seq) {
+        return (int) (seq + channelId * 0x9E3779B1L) & this.mask;
+    }
+}
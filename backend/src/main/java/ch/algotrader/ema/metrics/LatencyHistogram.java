@@ -0,0 +1,128 @@
+package ch.algotrader.ema.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size log-linear histogram of nanosecond values, in the style of HdrHistogram:
+ * 64 linear sub-buckets per power of two, so any recorded value is reported within
+ * 1.6%. Recording is lock-free and allocation free and may happen on any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    /** larger values, about 18 minutes, are recorded as this */
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int SIZE = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value nanoseconds, negative values count as 0
+     */
+    public void record(long value) {
+        final long v = value < 0 ? 0 : Math.min(value, MAX_VALUE);
+        this.counts.incrementAndGet(indexOf(v));
+        this.sum.addAndGet(v);
+        if (v > this.max.get()) {
+            this.max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    /**
+     * @return a copy of the counts recorded so far; concurrent records may or may not be in it
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[SIZE];
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] = this.counts.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, this.sum.get(), this.max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < (1 << SUB_BUCKET_BITS)) {
+            return (int) value;
+        }
+        final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the largest value that maps to bucket {@code index}
+     */
+    static long highestValueAt(int index) {
+        if (index < (1 << SUB_BUCKET_BITS)) {
+            return index;
+        }
+        final int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        final long subBucket = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return what was recorded between {@code earlier} and this snapshot
+         */
+        public Snapshot since(Snapshot earlier) {
+            final long[] counts = new long[SIZE];
+            int highest = -1;
+            for (int i = 0; i < SIZE; i++) {
+                counts[i] = this.counts[i] - earlier.counts[i];
+                if (counts[i] > 0) {
+                    highest = i;
+                }
+            }
+            final long max = highest < 0 ? 0 : Math.min(highestValueAt(highest), this.max);
+            return new Snapshot(counts, this.count - earlier.count, this.sum - earlier.sum, max);
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long seen = 0;
+            for (int i = 0; i < SIZE; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+}
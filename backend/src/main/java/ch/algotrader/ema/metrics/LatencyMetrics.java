@@ -0,0 +1,135 @@
+package ch.algotrader.ema.metrics;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Histograms of the tick-to-trade path, one per stage plus end to end. Stages are
+ * measured with {@link System#nanoTime()} stamps carried on the trade event and the
+ * order:
+ * <ul>
+ * <li>parse: frame received to decoded, on the feed thread</li>
+ * <li>bar: decoded to applied to the bar, including the hand-off to the strategy thread</li>
+ * <li>signal: bar closed to crossover decided</li>
+ * <li>sign: decided to order serialized and signed, including the order queue</li>
+ * <li>response: signed to HTTP response received</li>
+ * <li>tick-to-trade: frame received to HTTP response received, for frames that led to an order</li>
+ * <li>exchange-lag: exchange trade timestamp to frame received; Bitfinex v1 stamps
+ * trades in whole seconds, so this is only good to a second</li>
+ * </ul>
+ */
+@Component
+public class LatencyMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyMetrics.class);
+
+    public enum Stage {
+        PARSE("parse", 1_000, "us"),
+        BAR("bar", 1_000, "us"),
+        SIGNAL("signal", 1_000, "us"),
+        SIGN("sign", 1_000, "us"),
+        RESPONSE("response", 1_000, "us"),
+        TICK_TO_TRADE("tick-to-trade", 1_000, "us"),
+        EXCHANGE_LAG("exchange-lag", 1_000_000, "ms");
+
+        private final String label;
+        private final long unitNanos;
+        private final String unit;
+
+        Stage(String label, long unitNanos, String unit) {
+            this.label = label;
+            this.unitNanos = unitNanos;
+            this.unit = unit;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * @return {@code nanos} in this stage's reporting unit
+         */
+        public double toUnit(long nanos) {
+            return (double) nanos / this.unitNanos;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    @Value("${metrics.latency.enabled:true}") private boolean enabled = true;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final LatencyHistogram.Snapshot[] lastLogged = new LatencyHistogram.Snapshot[STAGES.length];
+
+    public LatencyMetrics() {
+        for (int i = 0; i < STAGES.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+            this.lastLogged[i] = this.histograms[i].snapshot();
+        }
+    }
+
+    /**
+     * For components used outside the application, e.g. backtests.
+     */
+    public static LatencyMetrics disabled() {
+        final LatencyMetrics metrics = new LatencyMetrics();
+        metrics.enabled = false;
+        return metrics;
+    }
+
+    /**
+     * Callers skip taking timestamps when this is false.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void record(Stage stage, long nanos) {
+        if (this.enabled) {
+            this.histograms[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * @return everything recorded for {@code stage} since start
+     */
+    public LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return this.histograms[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * Logs p50/p99/max of every stage that saw data since the last summary.
+     */
+    @Scheduled(fixedRateString = "${metrics.log-interval-ms:60000}")
+    public synchronized void logSummary() {
+
+        if (!this.enabled) {
+            return;
+        }
+        final StringBuilder summary = new StringBuilder("latency p50/p99/max");
+        for (Stage stage : STAGES) {
+            final LatencyHistogram.Snapshot current = this.histograms[stage.ordinal()].snapshot();
+            final LatencyHistogram.Snapshot interval = current.since(this.lastLogged[stage.ordinal()]);
+            this.lastLogged[stage.ordinal()] = current;
+            if (interval.getCount() > 0) {
+                summary.append(String.format(Locale.ROOT, " | %s %.1f/%.1f/%.1f %s n=%d",
+                        stage.getLabel(),
+                        stage.toUnit(interval.getValueAtPercentile(50)),
+                        stage.toUnit(interval.getValueAtPercentile(99)),
+                        stage.toUnit(interval.getMax()),
+                        stage.getUnit(),
+                        interval.getCount()));
+            }
+        }
+        logger.info(summary.toString());
+    }
+}
@@ -0,0 +1,357 @@
+package ch.algotrader.ema.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ch.algotrader.ema.strategy.StrategyListener;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Write-behind store of closed bars with their EMA values, signals and order fills.
+ * Strategy threads only offer small records to a bounded queue; a writer thread
+ * drains it and inserts with JDBC batches once {@code persistence.batch-size} records
+ * are pending or the oldest pending record is {@code persistence.flush-interval-ms}
+ * old. Records that do not fit in the queue, or whose batch fails, are dropped and
+ * counted rather than slowing the strategies down.
+ */
+@Service
+public class PersistenceService implements StrategyListener, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceService.class);
+
+    private static final String[] SCHEMA = {
+            "create table if not exists strategy_bar (symbol varchar(16) not null, begin_time bigint not null,"
+                    + " end_time bigint not null, open double, high double, low double, close double, volume double,"
+                    + " trades int, ema_short double, ema_long double)",
+            "create table if not exists strategy_signal (symbol varchar(16) not null, time bigint not null,"
+                    + " side varchar(4) not null, price double, ema_difference double)",
+            "create table if not exists order_fill (symbol varchar(16) not null, time bigint not null,"
+                    + " side varchar(4) not null, order_id bigint, price double, amount double, exchange_timestamp varchar(32))"
+    };
+    private static final String INSERT_BAR = "insert into strategy_bar (symbol, begin_time, end_time, open, high, low,"
+            + " close, volume, trades, ema_short, ema_long) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SIGNAL = "insert into strategy_signal (symbol, time, side, price, ema_difference)"
+            + " values (?, ?, ?, ?, ?)";
+    private static final String INSERT_FILL = "insert into order_fill (symbol, time, side, order_id, price, amount,"
+            + " exchange_timestamp) values (?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${persistence.enabled:true}") private boolean enabled;
+    @Value("${persistence.queue-size:8192}") private int queueSize;
+    @Value("${persistence.batch-size:256}") private int batchSize;
+    @Value("${persistence.flush-interval-ms:1000}") private long flushIntervalMillis;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+    private volatile long failedBatches;
+    /** age of the oldest record of the last batch when it was written */
+    private volatile long lagMillis;
+    private volatile long maxLagMillis;
+
+    private BlockingQueue<Record> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    @Autowired
+    public PersistenceService(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!this.enabled) {
+            return;
+        }
+        for (String ddl : SCHEMA) {
+            this.jdbcTemplate.execute(ddl);
+        }
+        this.queue = new ArrayBlockingQueue<>(this.queueSize);
+        this.running = true;
+        this.writer = new Thread(this::write, "persistence-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (this.writer != null) {
+            // no interrupt, it would close the H2 file channel under the writer
+            this.running = false;
+            this.writer.join(TimeUnit.SECONDS.toMillis(5) + this.flushIntervalMillis);
+            logStats();
+        }
+    }
+
+    @Override
+    public void onBarClosed(StrategyLogic strategy, int i) {
+        final BarStore bars = strategy.getBars();
+        if (Double.isNaN(bars.getClose(i))) {
+            return;
+        }
+        offer(new BarRecord(strategy.getSymbol(), bars.getBeginTime(i), bars.getEndTime(i), bars.getOpen(i),
+                bars.getHigh(i), bars.getLow(i), bars.getClose(i), bars.getVolume(i), bars.getTrades(i),
+                strategy.getEmaShort(), strategy.getEmaLong()));
+    }
+
+    @Override
+    public void onSignal(StrategyLogic strategy, int i, String side) {
+        final BarStore bars = strategy.getBars();
+        offer(new SignalRecord(strategy.getSymbol(), bars.getEndTime(i), side, bars.getClose(i), strategy.getEmaDifference()));
+    }
+
+    @Override
+    public void onOrderResponse(String symbol, String side, OrderResponse response) {
+        offer(new FillRecord(symbol, System.currentTimeMillis(), side, response.getOrderId(),
+                response.getAvgExecutionPrice(), response.getExecutedAmount(), response.getTimestamp()));
+    }
+
+    public long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * @return records dropped because the queue was full or their batch failed
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public long getFailedBatches() {
+        return this.failedBatches;
+    }
+
+    public int getQueued() {
+        return this.queue == null ? 0 : this.queue.size();
+    }
+
+    public long getLagMillis() {
+        return this.lagMillis;
+    }
+
+    public long getMaxLagMillis() {
+        return this.maxLagMillis;
+    }
+
+    @Scheduled(fixedRateString = "${metrics.log-interval-ms:60000}")
+    public void logStats() {
+        if (this.enabled) {
+            logger.info("persistence written {} queued {} dropped {} failed batches {} lag {} ms max {} ms",
+                    this.written, getQueued(), getDropped(), this.failedBatches, this.lagMillis, this.maxLagMillis);
+        }
+    }
+
+    private void offer(Record record) {
+        if (this.running && !this.queue.offer(record)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    private void write() {
+
+        final List<Record> batch = new ArrayList<>(this.batchSize);
+        final long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(this.flushIntervalMillis);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                final Record first = this.running ? this.queue.poll(this.flushIntervalMillis, TimeUnit.MILLISECONDS) : this.queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = first.enqueuedNanos + flushIntervalNanos;
+                while (batch.size() < this.batchSize) {
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= this.batchSize || remaining <= 0 || !this.running) {
+                        break;
+                    }
+                    final Record next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Record> batch) {
+
+        final long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.get(0).enqueuedNanos);
+        final Map<String, List<Record>> bySql = new LinkedHashMap<>();
+        for (Record record : batch) {
+            bySql.computeIfAbsent(record.sql(), sql -> new ArrayList<>()).add(record);
+        }
+        for (Map.Entry<String, List<Record>> entry : bySql.entrySet()) {
+            final List<Record> records = entry.getValue();
+            try {
+                this.jdbcTemplate.batchUpdate(entry.getKey(), records, records.size(), (ps, record) -> record.bind(ps));
+                this.written += records.size();
+            } catch (DataAccessException e) {
+                this.failedBatches++;
+                this.dropped.addAndGet(records.size());
+                logger.error("cannot write {} records", records.size(), e);
+            }
+        }
+        this.lagMillis = lag;
+        this.maxLagMillis = Math.max(this.maxLagMillis, lag);
+    }
+
+    private abstract static class Record {
+
+        final long enqueuedNanos = System.nanoTime();
+
+        abstract String sql();
+
+        abstract void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private static final class BarRecord extends Record {
+
+        private final String symbol;
+        private final long beginTime;
+        private final long endTime;
+        private final double open;
+        private final double high;
+        private final double low;
+        private final double close;
+        private final double volume;
+        private final int trades;
+        private final double emaShort;
+        private final double emaLong;
+
+        private BarRecord(String symbol, long beginTime, long endTime, double open, double high, double low,
+                double close, double volume, int trades, double emaShort, double emaLong) {
+            this.symbol = symbol;
+            this.beginTime = beginTime;
+            this.endTime = endTime;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+            this.trades = trades;
+            this.emaShort = emaShort;
+            this.emaLong = emaLong;
+        }
+
+        @Override
+        String sql() {
+            return INSERT_BAR;
+        }
+
+        @Override
+        void bind(PreparedStatement ps) throws SQLException {
+            ps.setString(1, this.symbol);
+            ps.setLong(2, this.beginTime);
+            ps.setLong(3, this.endTime);
+            ps.setDouble(4, this.open);
+            ps.setDouble(5, this.high);
+            ps.setDouble(6, this.low);
+            ps.setDouble(7, this.close);
+            ps.setDouble(8, this.volume);
+            ps.setInt(9, this.trades);
+            ps.setDouble(10, this.emaShort);
+            ps.setDouble(11, this.emaLong);
+        }
+    }
+
+    private static final class SignalRecord extends Record {
+
+        private final String symbol;
+        private final long time;
+        private final String side;
+        private final double price;
+        private final double emaDifference;
+
+        private SignalRecord(String symbol, long time, String side, double price, double emaDifference) {
+            this.symbol = symbol;
+            this.time = time;
+            this.side = side;
+            this.price = price;
+            this.emaDifference = emaDifference;
+        }
+
+        @Override
+        String sql() {
+            return INSERT_SIGNAL;
+        }
+
+        @Override
+        void bind(PreparedStatement ps) throws SQLException {
+            ps.setString(1, this.symbol);
+            ps.setLong(2, this.time);
+            ps.setString(3, this.side);
+            ps.setDouble(4, this.price);
+            ps.setDouble(5, this.emaDifference);
+        }
+    }
+
+    private static final class FillRecord extends Record {
+
+        private final String symbol;
+        private final long time;
+        private final String side;
+        private final long orderId;
+        private final double price;
+        private final double amount;
+        private final String exchangeTimestamp;
+
+        private FillRecord(String symbol, long time, String side, long orderId, double price, double amount,
+                String exchangeTimestamp) {
+            this.symbol = symbol;
+            this.time = time;
+            this.side = side;
+            this.orderId = orderId;
+            this.price = price;
+            this.amount = amount;
+            this.exchangeTimestamp = exchangeTimestamp;
+        }
+
+        @Override
+        String sql() {
+            return INSERT_FILL;
+        }
+
+        @Override
+        void bind(PreparedStatement ps) throws SQLException {
+            ps.setString(1, this.symbol);
+            ps.setLong(2, this.time);
+            ps.setString(3, this.side);
+            ps.setLong(4, this.orderId);
+            ps.setDouble(5, this.price);
+            ps.setDouble(6, this.amount);
+            ps.setString(7, this.exchangeTimestamp);
+        }
+    }
+}
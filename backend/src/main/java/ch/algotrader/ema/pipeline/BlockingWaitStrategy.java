@@ -0,0 +1,42 @@
+package ch.algotrader.ema.pipeline;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Parks the consumer until a producer signals. Producers only pay for an unpark
+ * when the consumer is actually parked.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private volatile Thread waiter;
+
+    @Override
+    public void idle(int idleCount, BooleanSupplier hasWork) {
+
+        // publish the waiter before the re-check, producers check waiter after publishing
+        this.waiter = Thread.currentThread();
+        try {
+            if (!hasWork.getAsBoolean()) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+        } finally {
+            this.waiter = null;
+        }
+    }
+
+    @Override
+    public void signal() {
+        // the ring publishes with a release store, which a later load may pass; without
+        // this fence the producer can miss the waiter while the waiter misses the event
+        VarHandle.fullFence();
+        final Thread thread = this.waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
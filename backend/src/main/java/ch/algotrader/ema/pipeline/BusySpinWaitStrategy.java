@@ -0,0 +1,18 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lowest latency, burns a full core. Only use with a dedicated, isolated CPU.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void idle(int idleCount, BooleanSupplier hasWork) {
+        Thread.onSpinWait();
+    }
+
+    @Override
+    public void signal() {
+    }
+}
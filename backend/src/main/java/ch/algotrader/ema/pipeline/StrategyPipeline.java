@@ -0,0 +1,216 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ch.algotrader.ema.fanout.TradeRingWriter;
+import ch.algotrader.ema.strategy.StrategyFactory;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Routes trades from the feed threads to per-symbol strategies by Bitfinex channel id.
+ * Symbols are partitioned round robin across a fixed set of {@link StrategyShard}s,
+ * each with its own ring buffer and thread, so symbols never share a lock.
+ * <p>
+ * With a {@link TradeRingWriter} set, every routed trade is also published to the
+ * strategy processes subscribed to the shared trade ring.
+ */
+@Component
+public class StrategyPipeline implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StrategyPipeline.class);
+
+    @Value("${pipeline.ring-size:4096}") private int ringSize;
+    @Value("${pipeline.wait-strategy:blocking}") private String waitStrategyName;
+    @Value("${pipeline.conflation:true}") private boolean conflation;
+    /** number of strategy threads, 0 for one per symbol up to the number of cores */
+    @Value("${pipeline.workers:0}") private int workers;
+
+    private final StrategyFactory strategyFactory;
+
+    private final List<String> symbols = new ArrayList<>();
+    private final List<Route> routesBySymbol = new ArrayList<>();
+    private volatile Route[] routesByChannel = new Route[0];
+    private final AtomicLong unrouted = new AtomicLong();
+
+    private StrategyShard[] shards;
+    private volatile TradeRingWriter fanout;
+    private volatile boolean wallClockTimer = true;
+
+    @Autowired
+    public StrategyPipeline(StrategyFactory strategyFactory) {
+        this.strategyFactory = strategyFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+
+        this.symbols.addAll(this.strategyFactory.getSymbols());
+        final int shardCount = this.workers > 0
+                ? this.workers
+                : Math.min(this.symbols.size(), Runtime.getRuntime().availableProcessors());
+
+        final List<List<StrategyLogic>> strategiesByShard = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            strategiesByShard.add(new ArrayList<>());
+        }
+        final int[] slots = new int[this.symbols.size()];
+        for (int i = 0; i < this.symbols.size(); i++) {
+            final List<StrategyLogic> shardStrategies = strategiesByShard.get(i % shardCount);
+            slots[i] = shardStrategies.size();
+            shardStrategies.add(this.strategyFactory.create(this.symbols.get(i)));
+        }
+
+        this.shards = new StrategyShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new StrategyShard(i, strategiesByShard.get(i), this.ringSize,
+                    WaitStrategy.forName(this.waitStrategyName), this.conflation);
+        }
+        for (int i = 0; i < this.symbols.size(); i++) {
+            this.routesBySymbol.add(new Route(this.symbols.get(i), this.shards[i % shardCount], slots[i]));
+        }
+
+        for (StrategyShard shard : this.shards) {
+            shard.start();
+        }
+        logger.info("{} symbols on {} strategy threads", this.symbols.size(), shardCount);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (StrategyShard shard : this.shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * @param wallClockTimer false while something else, e.g. a replay, calls {@link #onTime(long)}
+     */
+    public void setWallClockTimer(boolean wallClockTimer) {
+        this.wallClockTimer = wallClockTimer;
+    }
+
+    /**
+     * @param fanout publishes the routed trades to other processes as well, null for none
+     */
+    public void setFanout(TradeRingWriter fanout) {
+        this.fanout = fanout;
+    }
+
+    public List<String> getSymbols() {
+        return Collections.unmodifiableList(this.symbols);
+    }
+
+    /**
+     * Maps a channel id from a subscribe acknowledgement to its symbol's strategy.
+     */
+    public synchronized void registerChannel(int channelId, String symbol) {
+
+        final int index = this.symbols.indexOf(symbol);
+        if (index < 0) {
+            logger.warn("channel {} for unknown symbol {}", channelId, symbol);
+            return;
+        }
+        final Route[] routes = Arrays.copyOf(this.routesByChannel, Math.max(this.routesByChannel.length, channelId + 1));
+        routes[channelId] = this.routesBySymbol.get(index);
+        this.routesByChannel = routes;
+    }
+
+    /**
+     * Feed thread: hands the trade to the shard that owns its channel.
+     */
+    public void publishTrade(MutableTradeEvent event) {
+
+        final Route[] routes = this.routesByChannel;
+        final int channelId = event.getChannelId();
+        final Route route = channelId >= 0 && channelId < routes.length ? routes[channelId] : null;
+        if (route == null) {
+            this.unrouted.incrementAndGet();
+            return;
+        }
+        final TradeRingWriter fanout = this.fanout;
+        if (fanout != null) {
+            fanout.publish(route.symbol, event);
+        }
+        route.shard.publishTrade(route.slot, event);
+    }
+
+    /**
+     * Wall clock tick, lets the strategies close time bars while no trades arrive.
+     * Does nothing while the wall clock timer is off.
+     */
+    @Scheduled(fixedRateString = "${bars.timer-interval-ms:1000}")
+    public void onTime() {
+        if (this.wallClockTimer) {
+            onTime(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Timer tick at {@code now}, epoch millis, on every strategy.
+     */
+    public void onTime(long now) {
+        for (StrategyShard shard : this.shards) {
+            shard.publishTimer(now);
+        }
+    }
+
+    /**
+     * Logs ring depth, max depth since the last summary, published and conflated counts of every shard.
+     */
+    @Scheduled(fixedRateString = "${metrics.log-interval-ms:60000}")
+    public void logSummary() {
+        for (StrategyShard shard : this.shards) {
+            final TradeRingBuffer ringBuffer = shard.getRingBuffer();
+            logger.info("shard {} ring depth {} max {} published {} conflated {} unrouted {}",
+                    shard.getId(),
+                    ringBuffer.getDepth(),
+                    ringBuffer.getAndResetMaxDepth(),
+                    ringBuffer.getPublished(),
+                    shard.getConflatedTotal(),
+                    this.unrouted.get());
+        }
+    }
+
+    public StrategyShard[] getShards() {
+        return this.shards.clone();
+    }
+
+    public long getUnrouted() {
+        return this.unrouted.get();
+    }
+
+    public long getDepth() {
+        long depth = 0;
+        for (StrategyShard shard : this.shards) {
+            depth += shard.getRingBuffer().getDepth();
+        }
+        return depth;
+    }
+
+    private static final class Route {
+
+        private final String symbol;
+        private final StrategyShard shard;
+        private final int slot;
+
+        private Route(String symbol, StrategyShard shard, int slot) {
+            this.symbol = symbol;
+            this.shard = shard;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * One strategy thread with its own ring buffer, owning a fixed set of symbol
+ * strategies. Nothing is shared with other shards.
+ * <p>
+ * With conflation enabled, trades that arrive while the ring is full are folded into
+ * a per-symbol aggregate that the strategy applies to its current bar, so a lagging
+ * shard never blocks the feed thread.
+ */
+public class StrategyShard implements TradeRingBuffer.Handler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StrategyShard.class);
+
+    private final int id;
+    private final StrategyLogic[] strategies;
+    private final TradeConflator[] conflators;
+    private final TradeRingBuffer ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final boolean conflation;
+
+    private Thread consumer;
+    private volatile boolean running;
+
+    public StrategyShard(int id, List<StrategyLogic> strategies, int ringSize, WaitStrategy waitStrategy, boolean conflation) {
+        this.id = id;
+        this.strategies = strategies.toArray(new StrategyLogic[0]);
+        this.conflators = new TradeConflator[this.strategies.length];
+        for (int i = 0; i < this.conflators.length; i++) {
+            this.conflators[i] = new TradeConflator();
+        }
+        this.ringBuffer = new TradeRingBuffer(ringSize);
+        this.waitStrategy = waitStrategy;
+        this.conflation = conflation;
+    }
+
+    public void start() {
+        this.running = true;
+        this.consumer = new Thread(this::consume, "strategy-" + this.id);
+        this.consumer.start();
+    }
+
+    public void stop() throws InterruptedException {
+        this.running = false;
+        LockSupport.unpark(this.consumer);
+        this.consumer.join();
+    }
+
+    /**
+     * Feed thread: copies the trade into the ring, or folds it into the pending
+     * aggregate of its symbol when the ring is full and conflation is enabled.
+     *
+     * @param slot index of the strategy within this shard
+     */
+    public void publishTrade(int slot, MutableTradeEvent event) {
+
+        if (this.conflation) {
+            final TradeConflator conflator = this.conflators[slot];
+            if (conflator.isPending() && conflator.foldIfPending(event)) {
+                return;
+            }
+            final long sequence = this.ringBuffer.tryClaim();
+            if (sequence < 0) {
+                conflator.fold(event);
+                this.waitStrategy.signal();
+                return;
+            }
+            publish(sequence, TradeRingBuffer.TRADE, slot, event);
+        } else {
+            publish(this.ringBuffer.claim(), TradeRingBuffer.TRADE, slot, event);
+        }
+    }
+
+    /**
+     * @param now epoch millis the strategies close their time bars at
+     */
+    public void publishTimer(long now) {
+        final long sequence = this.ringBuffer.claim();
+        this.ringBuffer.get(sequence).setTimestamp(now);
+        publish(sequence, TradeRingBuffer.TIMER, 0, null);
+    }
+
+    @Override
+    public void onEvent(int kind, int slot, MutableTradeEvent event) {
+        if (kind == TradeRingBuffer.TRADE) {
+            try {
+                this.strategies[slot].handleTradeEvent(event);
+            } catch (Exception e) {
+                logger.error("strategy failed on event", e);
+            }
+        } else {
+            for (int i = 0; i < this.strategies.length; i++) {
+                try {
+                    this.conflators[i].drainTo(this.strategies[i]);
+                    this.strategies[i].onTime(event.getTimestamp());
+                } catch (Exception e) {
+                    logger.error("strategy failed on timer", e);
+                }
+            }
+        }
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public TradeRingBuffer getRingBuffer() {
+        return this.ringBuffer;
+    }
+
+    public long getConflatedTotal() {
+        long total = 0;
+        for (TradeConflator conflator : this.conflators) {
+            total += conflator.getTotal();
+        }
+        return total;
+    }
+
+    private void publish(long sequence, int kind, int slot, MutableTradeEvent event) {
+        if (event != null) {
+            this.ringBuffer.get(sequence).copyFrom(event);
+        }
+        this.ringBuffer.publish(sequence, kind, slot);
+        this.waitStrategy.signal();
+    }
+
+    private void consume() {
+
+        final BooleanSupplier hasWork = () -> this.ringBuffer.hasAvailable() || anyConflated() || !this.running;
+        int idleCount = 0;
+        while (this.running) {
+            if (this.ringBuffer.drain(this) > 0) {
+                idleCount = 0;
+            } else if (flushConflated()) {
+                idleCount = 0;
+            } else {
+                this.waitStrategy.idle(idleCount++, hasWork);
+            }
+        }
+    }
+
+    private boolean anyConflated() {
+        for (TradeConflator conflator : this.conflators) {
+            if (conflator.isPending()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean flushConflated() {
+        boolean flushed = false;
+        for (int i = 0; i < this.strategies.length; i++) {
+            try {
+                flushed |= this.conflators[i].drainTo(this.strategies[i]);
+            } catch (Exception e) {
+                logger.error("strategy failed on conflated trades", e);
+            }
+        }
+        return flushed;
+    }
+}
@@ -0,0 +1,100 @@
+package ch.algotrader.ema.pipeline;
+
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Aggregate (volume, high, low, last, count, latest timestamp) of one symbol's trades
+ * that could not be queued because the ring was full. Folded by feed threads, taken
+ * by the strategy thread.
+ */
+class TradeConflator {
+
+    private final Object lock = new Object();
+    private volatile boolean pending;
+    private long timestamp;
+    private double volume;
+    private double high;
+    private double low;
+    private double last;
+    private int count;
+    private long total;
+
+    boolean isPending() {
+        return this.pending;
+    }
+
+    /**
+     * Folds the event only if an aggregate is already pending, so trades stay in
+     * order behind the ones folded before them.
+     */
+    boolean foldIfPending(MutableTradeEvent event) {
+        synchronized (this.lock) {
+            if (this.count == 0) {
+                return false;
+            }
+            fold(event);
+            return true;
+        }
+    }
+
+    void fold(MutableTradeEvent event) {
+        synchronized (this.lock) {
+            final double price = event.getPrice();
+            if (this.count == 0) {
+                this.timestamp = event.getTimestamp();
+                this.volume = 0;
+                this.high = price;
+                this.low = price;
+            }
+            this.timestamp = Math.max(this.timestamp, event.getTimestamp());
+            this.volume += Math.abs(event.getAmount());
+            this.high = Math.max(this.high, price);
+            this.low = Math.min(this.low, price);
+            this.last = price;
+            this.count++;
+            this.total++;
+            this.pending = true;
+        }
+    }
+
+    /**
+     * Hands the pending aggregate to {@code strategy} and resets it.
+     *
+     * @return false if nothing was pending
+     */
+    boolean drainTo(StrategyLogic strategy) {
+
+        if (!this.pending) {
+            return false;
+        }
+
+        final long timestamp;
+        final double volume;
+        final double high;
+        final double low;
+        final double last;
+        final int count;
+        synchronized (this.lock) {
+            timestamp = this.timestamp;
+            volume = this.volume;
+            high = this.high;
+            low = this.low;
+            last = this.last;
+            count = this.count;
+            this.count = 0;
+            this.pending = false;
+        }
+
+        if (count > 0) {
+            strategy.handleConflatedTrades(timestamp, volume, high, low, last, count);
+        }
+        return count > 0;
+    }
+
+    long getTotal() {
+        synchronized (this.lock) {
+            return this.total;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Preallocated multi-producer, single-consumer ring of trade and timer events.
+ * <p>
+ * Producers claim a sequence with a CAS on the claim cursor, copy into the slot and
+ * mark it available. The consumer reads slots in sequence order and only advances
+ * once a slot is marked available, so slow producers never expose partial writes.
+ */
+public class TradeRingBuffer {
+
+    public static final int TRADE = 0;
+    public static final int TIMER = 1;
+
+    /**
+     * Called on the consumer thread for each event, in publish order.
+     */
+    public interface Handler {
+
+        /**
+         * @param target consumer defined routing key, e.g. a strategy slot
+         */
+        void onEvent(int kind, int target, MutableTradeEvent event);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int shift;
+    private final MutableTradeEvent[] events;
+    private final int[] kinds;
+    private final int[] targets;
+    private final AtomicIntegerArray available;
+
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private volatile long maxDepth;
+
+    public TradeRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.events = new MutableTradeEvent[capacity];
+        this.kinds = new int[capacity];
+        this.targets = new int[capacity];
+        this.available = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.events[i] = new MutableTradeEvent();
+            this.available.set(i, -1);
+        }
+    }
+
+    /**
+     * @return the claimed sequence, or -1 if the ring is full
+     */
+    public long tryClaim() {
+        long current;
+        long next;
+        do {
+            current = this.claimed.get();
+            next = current + 1;
+            if (next - this.consumed.get() > this.capacity) {
+                return -1;
+            }
+        } while (!this.claimed.compareAndSet(current, next));
+
+        final long depth = next - this.consumed.get();
+        if (depth > this.maxDepth) {
+            this.maxDepth = depth;
+        }
+        return next;
+    }
+
+    /**
+     * Spins until a slot is free.
+     */
+    public long claim() {
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            Thread.yield();
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the slot for a claimed sequence, to be filled before {@link #publish}
+     */
+    public MutableTradeEvent get(long sequence) {
+        return this.events[(int) sequence & this.mask];
+    }
+
+    public void publish(long sequence, int kind) {
+        publish(sequence, kind, 0);
+    }
+
+    public void publish(long sequence, int kind, int target) {
+        final int index = (int) sequence & this.mask;
+        this.kinds[index] = kind;
+        this.targets[index] = target;
+        this.available.lazySet(index, (int) (sequence >>> this.shift));
+    }
+
+    /**
+     * Consumer side: hands every available event to {@code handler} and frees the slots.
+     *
+     * @return number of events handled
+     */
+    public int drain(Handler handler) {
+
+        final long start = this.consumed.get() + 1;
+        long next = start;
+        try {
+            while (next - start < this.capacity) {
+                final int index = (int) next & this.mask;
+                if (this.available.get(index) != (int) (next >>> this.shift)) {
+                    break;
+                }
+                handler.onEvent(this.kinds[index], this.targets[index], this.events[index]);
+                next++;
+            }
+        } finally {
+            if (next != start) {
+                this.consumed.lazySet(next - 1);
+            }
+        }
+        return (int) (next - start);
+    }
+
+    public boolean hasAvailable() {
+        final long next = this.consumed.get() + 1;
+        return this.available.get((int) next & this.mask) == (int) (next >>> this.shift);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return claimed but not yet consumed events
+     */
+    public long getDepth() {
+        return Math.max(0, this.claimed.get() - this.consumed.get());
+    }
+
+    /**
+     * @return the highest depth seen since the last call
+     */
+    public long getAndResetMaxDepth() {
+        final long depth = this.maxDepth;
+        this.maxDepth = getDepth();
+        return depth;
+    }
+
+    public long getPublished() {
+        return this.claimed.get() + 1;
+    }
+}
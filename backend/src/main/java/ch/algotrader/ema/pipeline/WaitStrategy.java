@@ -0,0 +1,35 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * How the strategy thread idles while the ring buffer is empty.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Consumer side: called when a poll found nothing.
+     *
+     * @param idleCount number of consecutive empty polls so far
+     * @param hasWork   re-checked before the consumer goes to sleep
+     */
+    void idle(int idleCount, BooleanSupplier hasWork);
+
+    /**
+     * Producer side: called after every publish.
+     */
+    void signal();
+
+    static WaitStrategy forName(String name) {
+        switch (name) {
+            case "blocking":
+                return new BlockingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busy-spin":
+                return new BusySpinWaitStrategy();
+            default:
+                throw new IllegalArgumentException("unknown wait strategy " + name);
+        }
+    }
+}
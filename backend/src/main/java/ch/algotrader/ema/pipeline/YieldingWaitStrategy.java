@@ -0,0 +1,24 @@
+package ch.algotrader.ema.pipeline;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins for a while, then yields the CPU between polls.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void idle(int idleCount, BooleanSupplier hasWork) {
+        if (idleCount < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public void signal() {
+    }
+}
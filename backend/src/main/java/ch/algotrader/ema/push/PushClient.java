@@ -0,0 +1,114 @@
+package ch.algotrader.ema.push;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * One UI websocket connection with a conflating send buffer: at most one pending
+ * message per topic, a newer message replacing the older one. The buffer is drained by
+ * one task at a time, so a slow client holds at most one message per topic and never
+ * blocks the publisher.
+ */
+class PushClient {
+
+    private final WebSocketSession session;
+    private final AtomicLong sent;
+    private final AtomicLong conflated;
+
+    /** exact topics, {@code kind.*} or {@code *} */
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // guarded by this
+    private final Map<String, TextMessage> pending = new LinkedHashMap<>();
+    private boolean draining;
+
+    /**
+     * @param sent counts messages written, shared by all clients
+     * @param conflated counts messages replaced before they were written, shared by all clients
+     */
+    PushClient(WebSocketSession session, AtomicLong sent, AtomicLong conflated) {
+        this.session = session;
+        this.sent = sent;
+        this.conflated = conflated;
+    }
+
+    void subscribe(String pattern) {
+        this.subscriptions.add(pattern);
+    }
+
+    void unsubscribe(String pattern) {
+        this.subscriptions.remove(pattern);
+    }
+
+    /**
+     * @param topic {@code kind.SYMBOL}
+     */
+    boolean isSubscribed(String topic) {
+        if (this.subscriptions.isEmpty()) {
+            return false;
+        }
+        final int dot = topic.indexOf('.');
+        return this.subscriptions.contains(topic)
+                || this.subscriptions.contains("*")
+                || dot > 0 && this.subscriptions.contains(topic.substring(0, dot) + ".*");
+    }
+
+    /**
+     * @return true if the caller has to run {@link #drain} for this message to be sent
+     */
+    synchronized boolean offer(String topic, TextMessage message) {
+        if (this.pending.put(topic, message) != null) {
+            this.conflated.incrementAndGet();
+        }
+        if (this.draining) {
+            return false;
+        }
+        this.draining = true;
+        return true;
+    }
+
+    /**
+     * Sends pending messages until there are none left.
+     */
+    void drain() {
+        final List<TextMessage> messages = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                if (this.pending.isEmpty() || !this.session.isOpen()) {
+                    this.pending.clear();
+                    this.draining = false;
+                    return;
+                }
+                messages.addAll(this.pending.values());
+                this.pending.clear();
+            }
+            try {
+                for (TextMessage message : messages) {
+                    this.session.sendMessage(message);
+                    this.sent.incrementAndGet();
+                }
+            } catch (IOException | IllegalStateException e) {
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+            messages.clear();
+        }
+    }
+
+    void close(CloseStatus status) {
+        try {
+            this.session.close(status);
+        } catch (IOException e) {
+            // gone already
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ch.algotrader.ema.push;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class PushConfig implements WebSocketConfigurer {
+
+    @Value("${push.allowed-origins:*}") private String[] allowedOrigins;
+
+    private final UiPushService uiPushService;
+
+    @Autowired
+    public PushConfig(UiPushService uiPushService) {
+        this.uiPushService = uiPushService;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(this.uiPushService, "/stream").setAllowedOrigins(this.allowedOrigins);
+    }
+}
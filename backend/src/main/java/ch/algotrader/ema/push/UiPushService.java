@@ -0,0 +1,360 @@
+package ch.algotrader.ema.push;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.algotrader.ema.strategy.StrategyListener;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.strategy.bars.BarStore;
+
+/**
+ * Streams ticks, closed bars, EMA values and signals to UI clients over the websocket
+ * at {@code /stream}.
+ * <p>
+ * Strategy threads only replace the latest value of a topic ({@code tick.SYMBOL},
+ * {@code bar.SYMBOL}, {@code ema.SYMBOL}, {@code signal.SYMBOL}), and skip even that
+ * while no client is connected. Every {@code push.interval-ms} the push thread
+ * serializes each changed topic once and offers the message to the conflating buffer
+ * of each subscribed {@link PushClient}. The topics of a symbol are looked up once per
+ * event, and a trade only writes its primitives into the reusable holder of its tick
+ * topic, so the strategy threads allocate nothing per trade.
+ * <p>
+ * Clients send {@code {"subscribe":["bar.BTCUSD","tick.*"]}} or {@code {"unsubscribe":[...]}},
+ * {@code *} for everything, and receive {@code {"topic":"bar.BTCUSD","data":{...}}},
+ * starting with the latest message of every topic they subscribe to.
+ */
+@Component
+public class UiPushService extends TextWebSocketHandler implements StrategyListener, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UiPushService.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${push.interval-ms:100}") private long intervalMillis = 100;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Map<String, SymbolTopics> topicsBySymbol = new ConcurrentHashMap<>();
+    private final Map<String, PushClient> clients = new ConcurrentHashMap<>();
+    private volatile int clientCount;
+
+    private final AtomicLong serialized = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+
+    private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "ui-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "ui-push-send");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterPropertiesSet() {
+        this.publisher.scheduleAtFixedRate(this::publish, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.publisher.shutdownNow();
+        this.senders.shutdownNow();
+        for (PushClient client : this.clients.values()) {
+            client.close(CloseStatus.GOING_AWAY);
+        }
+    }
+
+    public int getClientCount() {
+        return this.clientCount;
+    }
+
+    public long getSerialized() {
+        return this.serialized.get();
+    }
+
+    public long getSent() {
+        return this.sent.get();
+    }
+
+    /**
+     * @return messages replaced by a newer one of the same topic before a client got them
+     */
+    public long getConflated() {
+        return this.conflated.get();
+    }
+
+    @Override
+    public void onCreated(StrategyLogic strategy) {
+        final SymbolTopics symbolTopics = new SymbolTopics(strategy.getSymbol());
+        for (Topic topic : new Topic[] {symbolTopics.tick, symbolTopics.bar, symbolTopics.ema, symbolTopics.signal}) {
+            this.topics.put(topic.name, topic);
+        }
+        this.topicsBySymbol.put(strategy.getSymbol(), symbolTopics);
+    }
+
+    @Override
+    public void onTrade(StrategyLogic strategy, long timestamp, double price, double amount) {
+        if (this.clientCount > 0) {
+            this.topicsBySymbol.get(strategy.getSymbol()).tick.set(timestamp, price, amount);
+        }
+    }
+
+    @Override
+    public void onBarClosed(StrategyLogic strategy, int i) {
+
+        if (this.clientCount == 0) {
+            return;
+        }
+        final SymbolTopics symbolTopics = this.topicsBySymbol.get(strategy.getSymbol());
+        final BarStore bars = strategy.getBars();
+        final Map<String, Object> bar = new LinkedHashMap<>();
+        bar.put("beginTime", bars.getBeginTime(i));
+        bar.put("endTime", bars.getEndTime(i));
+        bar.put("open", bars.getOpen(i));
+        bar.put("high", bars.getHigh(i));
+        bar.put("low", bars.getLow(i));
+        bar.put("close", bars.getClose(i));
+        bar.put("volume", bars.getVolume(i));
+        bar.put("trades", bars.getTrades(i));
+        symbolTopics.bar.set(bar);
+
+        final Map<String, Object> ema = new LinkedHashMap<>();
+        ema.put("time", bars.getEndTime(i));
+        ema.put("emaShort", strategy.getEmaShort());
+        ema.put("emaLong", strategy.getEmaLong());
+        ema.put("emaDifference", strategy.getEmaDifference());
+        for (String indicator : strategy.getIndicatorNames()) {
+            ema.put(indicator, strategy.getIndicator(indicator));
+        }
+        symbolTopics.ema.set(ema);
+    }
+
+    @Override
+    public void onSignal(StrategyLogic strategy, int i, String side) {
+
+        if (this.clientCount == 0) {
+            return;
+        }
+        final Map<String, Object> signal = new LinkedHashMap<>();
+        signal.put("time", strategy.getBars().getEndTime(i));
+        signal.put("side", side);
+        signal.put("price", strategy.getBars().getClose(i));
+        signal.put("position", strategy.getPosition());
+        this.topicsBySymbol.get(strategy.getSymbol()).signal.set(signal);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        this.clients.put(session.getId(), new PushClient(session, this.sent, this.conflated));
+        this.clientCount = this.clients.size();
+        logger.info("ui client {} connected, {} clients", session.getRemoteAddress(), this.clientCount);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        this.clients.remove(session.getId());
+        this.clientCount = this.clients.size();
+        logger.info("ui client {} closed {}, {} clients", session.getRemoteAddress(), status, this.clientCount);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+
+        final PushClient client = this.clients.get(session.getId());
+        final JsonNode json = objectMapper.readTree(message.getPayload());
+        for (JsonNode pattern : json.path("subscribe")) {
+            client.subscribe(pattern.asText());
+        }
+        for (JsonNode pattern : json.path("unsubscribe")) {
+            client.unsubscribe(pattern.asText());
+        }
+        // catch up with the latest value of every newly subscribed topic
+        for (Topic topic : this.topics.values()) {
+            final TextMessage last = topic.lastMessage;
+            if (last != null && client.isSubscribed(topic.name) && client.offer(topic.name, last)) {
+                this.senders.execute(client::drain);
+            }
+        }
+    }
+
+    /**
+     * Push thread: serializes changed topics once and hands them to their subscribers.
+     */
+    private void publish() {
+        try {
+            for (Topic topic : this.topics.values()) {
+                final TextMessage message = topic.serialize();
+                if (message == null) {
+                    continue;
+                }
+                for (PushClient client : this.clients.values()) {
+                    if (client.isSubscribed(topic.name) && client.offer(topic.name, message)) {
+                        this.senders.execute(client::drain);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("ui push failed", e);
+        }
+    }
+
+    private final class SymbolTopics {
+
+        private final TickTopic tick;
+        private final Topic bar;
+        private final Topic ema;
+        private final Topic signal;
+
+        private SymbolTopics(String symbol) {
+            this.tick = new TickTopic("tick." + symbol);
+            this.bar = new Topic("bar." + symbol);
+            this.ema = new Topic("ema." + symbol);
+            this.signal = new Topic("signal." + symbol);
+        }
+    }
+
+    private class Topic {
+
+        private final String name;
+        private volatile Object value;
+        /** set after the value is written, cleared by the push thread */
+        volatile boolean changed;
+        /** push thread writes, websocket threads read */
+        private volatile TextMessage lastMessage;
+
+        private Topic(String name) {
+            this.name = name;
+        }
+
+        void set(Object value) {
+            this.value = value;
+            this.changed = true;
+        }
+
+        /**
+         * @return the value to serialize, on the push thread
+         */
+        Object data() {
+            return this.value;
+        }
+
+        /**
+         * @return the message for a value set since the last call, or null
+         */
+        TextMessage serialize() {
+            if (!this.changed) {
+                return null;
+            }
+            this.changed = false;
+            final Map<String, Object> envelope = new LinkedHashMap<>();
+            envelope.put("topic", this.name);
+            envelope.put("data", data());
+            try {
+                final TextMessage message = new TextMessage(objectMapper.writeValueAsString(envelope));
+                UiPushService.this.serialized.incrementAndGet();
+                this.lastMessage = message;
+                return message;
+            } catch (JsonProcessingException e) {
+                logger.error("cannot serialize {}", this.name, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Holds the latest trade of a symbol as primitives. The one strategy thread of the
+     * symbol writes them under a sequence lock, and the push thread copies them into a
+     * {@link Tick} to serialize, retrying while a write is in progress.
+     */
+    private final class TickTopic extends Topic {
+
+        /** odd while the strategy thread writes the fields */
+        private volatile long version;
+        private long timestamp;
+        private double price;
+        private double amount;
+
+        private TickTopic(String name) {
+            super(name);
+        }
+
+        void set(long timestamp, double price, double amount) {
+            final long version = this.version;
+            this.version = version + 1;
+            VarHandle.storeStoreFence();
+            this.timestamp = timestamp;
+            this.price = price;
+            this.amount = amount;
+            this.version = version + 2;
+            this.changed = true;
+        }
+
+        @Override
+        Object data() {
+            while (true) {
+                final long version = this.version;
+                if ((version & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                final long timestamp = this.timestamp;
+                final double price = this.price;
+                final double amount = this.amount;
+                VarHandle.loadLoadFence();
+                if (this.version == version) {
+                    return new Tick(timestamp, price, amount);
+                }
+            }
+        }
+    }
+
+    public static final class Tick {
+
+        private final long timestamp;
+        private final double price;
+        private final double amount;
+
+        Tick(long timestamp, double price, double amount) {
+            this.timestamp = timestamp;
+            this.price = price;
+            this.amount = amount;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+    }
+}
@@ -1,5 +1,58 @@
 package ch.algotrader.ema.rest;
 
+import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import ch.algotrader.ema.strategy.StrategySnapshotPublisher;
+import ch.algotrader.ema.vo.StrategySnapshot;
+
+/**
+ * Bars, EMA values, signals and order status per symbol, served from the snapshots of
+ * {@link StrategySnapshotPublisher} without touching the strategy threads.
+ */
+@RestController
+@RequestMapping("/ema")
 public class EmaRest {
+
+    private final StrategySnapshotPublisher snapshotPublisher;
+
+    @Autowired
+    public EmaRest(StrategySnapshotPublisher snapshotPublisher) {
+        this.snapshotPublisher = snapshotPublisher;
+    }
+
+    @GetMapping
+    public List<StrategySnapshot> snapshots() {
+        return this.snapshotPublisher.getSnapshots();
+    }
+
+    @GetMapping("/{symbol}")
+    public StrategySnapshot snapshot(@PathVariable String symbol) {
+        return getSnapshot(symbol);
+    }
+
+    /**
+     * @param limit most recent bars to return, oldest first
+     */
+    @GetMapping("/{symbol}/bars")
+    public List<StrategySnapshot.Bar> bars(@PathVariable String symbol, @RequestParam(defaultValue = "100") int limit) {
+        final List<StrategySnapshot.Bar> bars = getSnapshot(symbol).getBars();
+        return bars.subList(Math.max(0, bars.size() - Math.max(0, limit)), bars.size());
+    }
+
+    private StrategySnapshot getSnapshot(String symbol) {
+        final StrategySnapshot snapshot = this.snapshotPublisher.getSnapshot(symbol);
+        if (snapshot == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "unknown symbol " + symbol);
+        }
+        return snapshot;
+    }
 }
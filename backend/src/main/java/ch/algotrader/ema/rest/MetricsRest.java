@@ -0,0 +1,123 @@
+package ch.algotrader.ema.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.algotrader.ema.audit.AuditLog;
+import ch.algotrader.ema.metrics.LatencyHistogram;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.persistence.PersistenceService;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.pipeline.StrategyShard;
+import ch.algotrader.ema.push.UiPushService;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsRest {
+
+    private final LatencyMetrics latencyMetrics;
+    private final PersistenceService persistenceService;
+    private final UiPushService uiPushService;
+    private final AuditLog auditLog;
+    private final StrategyPipeline strategyPipeline;
+
+    @Autowired
+    public MetricsRest(LatencyMetrics latencyMetrics, PersistenceService persistenceService, UiPushService uiPushService,
+            AuditLog auditLog, StrategyPipeline strategyPipeline) {
+        this.latencyMetrics = latencyMetrics;
+        this.persistenceService = persistenceService;
+        this.uiPushService = uiPushService;
+        this.auditLog = auditLog;
+        this.strategyPipeline = strategyPipeline;
+    }
+
+    /**
+     * Latency percentiles per stage since start, in each stage's unit.
+     */
+    @GetMapping("/latency")
+    public Map<String, Map<String, Object>> latency() {
+
+        final Map<String, Map<String, Object>> stages = new LinkedHashMap<>();
+        for (LatencyMetrics.Stage stage : LatencyMetrics.Stage.values()) {
+            final LatencyHistogram.Snapshot snapshot = this.latencyMetrics.snapshot(stage);
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("unit", stage.getUnit());
+            values.put("count", snapshot.getCount());
+            values.put("mean", stage.toUnit((long) snapshot.getMean()));
+            values.put("p50", stage.toUnit(snapshot.getValueAtPercentile(50)));
+            values.put("p90", stage.toUnit(snapshot.getValueAtPercentile(90)));
+            values.put("p99", stage.toUnit(snapshot.getValueAtPercentile(99)));
+            values.put("p999", stage.toUnit(snapshot.getValueAtPercentile(99.9)));
+            values.put("max", stage.toUnit(snapshot.getMax()));
+            stages.put(stage.getLabel(), values);
+        }
+        return stages;
+    }
+
+    /**
+     * Ring depth, published events and trades folded while the ring was full, per shard.
+     */
+    @GetMapping("/pipeline")
+    public Map<String, Object> pipeline() {
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (StrategyShard shard : this.strategyPipeline.getShards()) {
+            final Map<String, Object> shardValues = new LinkedHashMap<>();
+            shardValues.put("depth", shard.getRingBuffer().getDepth());
+            shardValues.put("capacity", shard.getRingBuffer().getCapacity());
+            shardValues.put("published", shard.getRingBuffer().getPublished());
+            shardValues.put("conflated", shard.getConflatedTotal());
+            values.put("shard-" + shard.getId(), shardValues);
+        }
+        values.put("unrouted", this.strategyPipeline.getUnrouted());
+        return values;
+    }
+
+    /**
+     * Write-behind counters; lag is the age of the oldest record of the last batch.
+     */
+    @GetMapping("/persistence")
+    public Map<String, Object> persistence() {
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("written", this.persistenceService.getWritten());
+        values.put("queued", this.persistenceService.getQueued());
+        values.put("dropped", this.persistenceService.getDropped());
+        values.put("failedBatches", this.persistenceService.getFailedBatches());
+        values.put("lagMs", this.persistenceService.getLagMillis());
+        values.put("maxLagMs", this.persistenceService.getMaxLagMillis());
+        return values;
+    }
+
+    /**
+     * UI websocket clients; conflated counts messages replaced before a slow client got them.
+     */
+    @GetMapping("/push")
+    public Map<String, Object> push() {
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("clients", this.uiPushService.getClientCount());
+        values.put("serialized", this.uiPushService.getSerialized());
+        values.put("sent", this.uiPushService.getSent());
+        values.put("conflated", this.uiPushService.getConflated());
+        return values;
+    }
+
+    /**
+     * Audit records written to disk and dropped because the buffer was full.
+     */
+    @GetMapping("/audit")
+    public Map<String, Object> audit() {
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("file", String.valueOf(this.auditLog.getFile()));
+        values.put("written", this.auditLog.getWritten());
+        values.put("dropped", this.auditLog.getDropped());
+        return values;
+    }
+}
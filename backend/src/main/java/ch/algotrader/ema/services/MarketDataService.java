@@ -1,8 +1,19 @@
 package ch.algotrader.ema.services;
 
-import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.fanout.TradeRingReader;
+import ch.algotrader.ema.fanout.TradeRingWriter;
+import ch.algotrader.ema.journal.FrameJournal;
+import ch.algotrader.ema.journal.FrameJournalReader;
+import ch.algotrader.ema.marketdata.BitfinexFrameDecoder;
+import ch.algotrader.ema.marketdata.FrameType;
+import ch.algotrader.ema.marketdata.OrderBook;
+import ch.algotrader.ema.marketdata.OrderBooks;
+import ch.algotrader.ema.marketdata.RedundantFeed;
+import ch.algotrader.ema.marketdata.TradeReconciler;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.vo.MutableTradeEvent;
 import ch.algotrader.ema.vo.Subscription;
-import ch.algotrader.ema.vo.TradeEvent;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.LogManager;
@@ -16,6 +27,10 @@ import org.springframework.stereotype.Service;
 import javax.websocket.*;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 @ClientEndpoint
@@ -23,28 +38,105 @@ public class MarketDataService implements DisposableBean, InitializingBean {
 
     private static final Logger LOGGER = LogManager.getLogger(MarketDataService.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Bitfinex v1 trade timestamps are in seconds
+    private static final long EXCHANGE_TIMESTAMP_MILLIS = 1000;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+    private static final int FANOUT_BATCH = 256;
+    private static final int FANOUT_SPINS = 1_000;
 
-    private final StrategyLogic strategyLogic;
+    private final StrategyPipeline strategyPipeline;
+    private final LatencyMetrics latencyMetrics;
+    private final OrderBooks orderBooks;
+    private final BitfinexFrameDecoder decoder = new BitfinexFrameDecoder();
+    /** decoded into for every frame; the pipeline copies trades, so nothing holds on to it */
+    private final MutableTradeEvent tradeEvent = new MutableTradeEvent();
 
     @Value("${ws-uri}")
     private String wsUrl;
 
+    /** connections to the feed, more than one arbitrates the same trades across connections */
+    @Value("${feed.legs:1}") private int feedLegs;
+    @Value("${feed.stale-ms:15000}") private long feedStaleMillis;
+    /** trades from "te" frames, the later "tu" frames only reconcile them */
+    @Value("${feed.executed-trades:true}") private boolean executedTrades;
+    @Value("${feed.reconcile-capacity:4096}") private int reconcileCapacity;
+
+    @Value("${journal.enabled:false}") private boolean journalEnabled;
+    @Value("${journal.dir:journal}") private String journalDir;
+    @Value("${journal.segment-size-mb:64}") private int journalSegmentSizeMb;
+    @Value("${journal.segment-duration-ms:3600000}") private long journalSegmentMillis;
+
+    /** journal directory to replay instead of connecting to the exchange */
+    @Value("${replay.dir:}") private String replayDir;
+    /** original or max */
+    @Value("${replay.speed:original}") private String replaySpeed;
+    @Value("${bars.timer-interval-ms:1000}") private long timerIntervalMillis = 1000;
+
+    /** off, publish (to the shared trade ring) or subscribe (to it instead of the exchange) */
+    @Value("${fanout.mode:off}") private String fanoutMode = "off";
+    @Value("${fanout.file:fanout/trades.ring}") private String fanoutFile;
+    @Value("${fanout.capacity:65536}") private int fanoutCapacity;
+    @Value("${fanout.idle-park-us:50}") private long fanoutIdleParkMicros;
+
     private Session session;
+    private FrameJournal journal;
+    private RedundantFeed redundantFeed;
+    /** null if trades are taken from "tu" frames only */
+    private TradeReconciler reconciler;
+    /** written by the websocket thread only */
+    private volatile long framesReceived;
+    private TradeRingWriter fanoutWriter;
+    private TradeRingReader fanoutReader;
+    private Thread fanoutThread;
+    private volatile boolean fanoutRunning;
 
     @Autowired
-    public MarketDataService(StrategyLogic strategyLogic) {
-        this.strategyLogic = strategyLogic;
+    public MarketDataService(StrategyPipeline strategyPipeline, LatencyMetrics latencyMetrics, OrderBooks orderBooks) {
+        this.strategyPipeline = strategyPipeline;
+        this.latencyMetrics = latencyMetrics;
+        this.orderBooks = orderBooks;
     }
 
     public void subscribeTrades(String topic) {
 
+        if (this.redundantFeed != null) {
+            LOGGER.info("subscribing {} on {} legs", topic, this.feedLegs);
+            this.redundantFeed.subscribe(topic);
+            return;
+        }
+        try {
+            if (this.session == null || ! this.session.isOpen()) {
+                this.session = initSession();
+            }
+
+            final String ser = objectMapper.writeValueAsString(Subscription.trades(topic));
+            LOGGER.info("sending {}", ser);
+            this.session.getBasicRemote().sendText(ser);
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
+    }
+
+    /**
+     * Subscribes the book channel of the symbol if {@code book.enabled}.
+     */
+    public void subscribeBook(String symbol) {
+
+        if (!this.orderBooks.isEnabled()) {
+            return;
+        }
+        if (this.redundantFeed != null) {
+            // book updates carry no sequence number to arbitrate legs by
+            LOGGER.warn("order book of {} is not supported with {} feed legs", symbol, this.feedLegs);
+            return;
+        }
         try {
             if (this.session == null || ! this.session.isOpen()) {
                 this.session = initSession();
             }
 
-            final String ser = new ObjectMapper().writeValueAsString(Subscription.trades(topic));
-            LOGGER.info("sending " + ser);
+            final String ser = objectMapper.writeValueAsString(Subscription.book(symbol, this.orderBooks.getLevels()));
+            LOGGER.info("sending {}", ser);
             this.session.getBasicRemote().sendText(ser);
         } catch (IOException e) {
             LOGGER.error(e);
@@ -53,7 +145,7 @@ public class MarketDataService implements DisposableBean, InitializingBean {
 
     @OnOpen
     public void onOpen(Session session) {
-        LOGGER.info("Connected: " + session.getNegotiatedSubprotocol());
+        LOGGER.info("Connected: {}", session.getNegotiatedSubprotocol());
     }
 
     @OnClose
@@ -61,41 +153,263 @@ public class MarketDataService implements DisposableBean, InitializingBean {
         LOGGER.info("Closed, reason: {}", closeReason);
     }
 
+    public boolean isReplay() {
+        return !this.replayDir.isEmpty();
+    }
+
+    /**
+     * Pushes the frames recorded in {@code replay.dir} through {@link #onMessage}. The bar
+     * timer follows the recorded receive times instead of the wall clock, firing at
+     * the {@code bars.timer-interval-ms} rate as it did live.
+     */
+    public void replay() throws IOException {
+        final Path dir = Paths.get(this.replayDir);
+        LOGGER.info("replaying {} at {} speed", dir, this.replaySpeed);
+        final long[] nextTimer = {Long.MIN_VALUE};
+        final long count = new FrameJournalReader(dir).replay(FrameJournalReader.Speed.forName(this.replaySpeed),
+                (frame, receiveNanos, receiveMillis) -> {
+                    if (nextTimer[0] == Long.MIN_VALUE) {
+                        nextTimer[0] = receiveMillis + this.timerIntervalMillis;
+                    } else if (nextTimer[0] <= receiveMillis) {
+                        // one tick at the last one due closes all due bars, also across recording gaps
+                        final long due = nextTimer[0]
+                                + (receiveMillis - nextTimer[0]) / this.timerIntervalMillis * this.timerIntervalMillis;
+                        this.strategyPipeline.onTime(due);
+                        nextTimer[0] = due + this.timerIntervalMillis;
+                    }
+                    onMessage(null, frame);
+                });
+        LOGGER.info("replayed {} frames", count);
+    }
+
+    public boolean isFanoutSubscriber() {
+        return "subscribe".equals(this.fanoutMode);
+    }
+
+    /**
+     * Starts feeding the strategies from the shared trade ring of a publishing process.
+     */
+    public void startFanoutSubscriber() {
+        LOGGER.info("reading trades from {} at sequence {}", this.fanoutReader.getPath(), this.fanoutReader.getCursor());
+        this.fanoutRunning = true;
+        this.fanoutThread = new Thread(this::readFanout, "fanout-reader");
+        this.fanoutThread.setDaemon(true);
+        this.fanoutThread.start();
+    }
+
+    public long getFramesReceived() {
+        if (this.redundantFeed != null) {
+            return this.redundantFeed.getFramesReceived();
+        }
+        return this.framesReceived;
+    }
+
     @OnMessage
     public void onMessage(Session session, String msg) {
 
+        final long receiveNanos = System.nanoTime();
+        final long receiveMillis = System.currentTimeMillis();
+        this.framesReceived++;
+        final FrameJournal journal = this.journal;
+        if (journal != null) {
+            journal.append(msg, receiveNanos, receiveMillis);
+        }
+
+        final MutableTradeEvent tradeEvent = this.tradeEvent;
         try {
-            final JsonNode json = objectMapper.readTree(msg);
-            if (json.isArray()) {
-                final JsonNode typeNode = json.get(1);
-                if ("tu".equals(typeNode.asText())) {
-                    final TradeEvent tradeEvent = TradeEvent.fromJson(json);
-                    strategyLogic.handleTradeEvent(tradeEvent);
+            final FrameType frameType = decoder.decode(msg, tradeEvent);
+            if (isPublished(frameType, tradeEvent)) {
+                if (this.latencyMetrics.isEnabled()) {
+                    final long parsedNanos = System.nanoTime();
+                    tradeEvent.setReceiveNanos(receiveNanos);
+                    tradeEvent.setParsedNanos(parsedNanos);
+                    this.latencyMetrics.record(LatencyMetrics.Stage.PARSE, parsedNanos - receiveNanos);
+                    if (session != null) {
+                        // replayed frames were received long after the trade
+                        this.latencyMetrics.record(LatencyMetrics.Stage.EXCHANGE_LAG,
+                                (receiveMillis - tradeEvent.getTimestamp() * EXCHANGE_TIMESTAMP_MILLIS) * NANOS_PER_MILLI);
+                    }
+                }
+                strategyPipeline.publishTrade(tradeEvent);
+            } else if (frameType == FrameType.BOOK_UPDATE) {
+                final OrderBook book = this.orderBooks.forChannel(decoder.getChannelId());
+                if (book != null) {
+                    book.apply(decoder.getBookPrice(), decoder.getBookCount(), decoder.getBookAmount());
+                }
+            } else if (frameType == FrameType.SNAPSHOT) {
+                final OrderBook book = this.orderBooks.forChannel(decoder.getChannelId());
+                if (book != null) {
+                    LOGGER.info("{} book snapshot with {} levels", book.getSymbol(), decoder.decodeBookSnapshot(msg, book));
+                }
+            } else if (frameType == FrameType.EVENT) {
+                onEvent(msg);
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("cannot decode frame", e);
+        }
+    }
+
+    /**
+     * @return true if the trade of a "te" or "tu" frame is to be published
+     */
+    private boolean isPublished(FrameType frameType, MutableTradeEvent tradeEvent) {
+        final TradeReconciler reconciler = this.reconciler;
+        if (frameType == FrameType.TRADE_EXECUTED) {
+            return reconciler != null && reconciler.onExecuted(tradeEvent);
+        } else if (frameType == FrameType.TRADE_UPDATE) {
+            return reconciler == null || reconciler.onUpdate(tradeEvent);
+        }
+        return false;
+    }
+
+    private void readFanout() {
+
+        final TradeRingReader reader = this.fanoutReader;
+        final MutableTradeEvent tradeEvent = new MutableTradeEvent();
+        final TradeRingReader.Handler handler = new TradeRingReader.Handler() {
+
+            @Override
+            public void onChannel(int channelId, String symbol) {
+                LOGGER.info("fanout channel {} carries {}", channelId, symbol);
+                strategyPipeline.registerChannel(channelId, symbol);
+            }
+
+            @Override
+            public void onTrade(MutableTradeEvent event) {
+                if (latencyMetrics.isEnabled()) {
+                    final long receiveNanos = System.nanoTime();
+                    event.setReceiveNanos(receiveNanos);
+                    event.setParsedNanos(receiveNanos);
                 }
+                strategyPipeline.publishTrade(event);
+            }
+        };
+        final long idleParkNanos = TimeUnit.MICROSECONDS.toNanos(this.fanoutIdleParkMicros);
+        long lapped = 0;
+        int idle = 0;
+        while (this.fanoutRunning) {
+            if (reader.poll(tradeEvent, handler, FANOUT_BATCH) > 0) {
+                idle = 0;
+                if (reader.getLapped() != lapped) {
+                    lapped = reader.getLapped();
+                    LOGGER.warn("lapped by the fanout publisher, {} trades skipped so far", reader.getSkipped());
+                }
+            } else if (++idle < FANOUT_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+    }
+
+    /*
+     {"event":"subscribed","channel":"trades","chanId":5,"pair":"BTCUSD"}
+     {"event":"subscribed","channel":"book","chanId":6,"prec":"P0","freq":"F0","len":"25","pair":"BTCUSD"}
+     */
+    private void onEvent(String msg) {
+
+        try {
+            final JsonNode json = objectMapper.readTree(msg);
+            if ("subscribed".equals(json.path("event").asText()) && "trades".equals(json.path("channel").asText())) {
+                strategyPipeline.registerChannel(json.path("chanId").asInt(), json.path("pair").asText());
+            } else if ("subscribed".equals(json.path("event").asText()) && "book".equals(json.path("channel").asText())) {
+                this.orderBooks.registerChannel(json.path("chanId").asInt(), json.path("pair").asText());
             }
+            LOGGER.info("event {}", msg);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            LOGGER.error("cannot read event " + msg, e);
         }
     }
 
     @Override
     public void destroy() throws Exception {
-        LOGGER.info("Shutting down web socket session");
-        this.session.close();
+        if (this.fanoutThread != null) {
+            this.fanoutRunning = false;
+            LockSupport.unpark(this.fanoutThread);
+            this.fanoutThread.join(TimeUnit.SECONDS.toMillis(5));
+            LOGGER.info("read {} trades from the fanout, lapped {} times, {} trades skipped",
+                    this.fanoutReader.getReceived(), this.fanoutReader.getLapped(), this.fanoutReader.getSkipped());
+        }
+        if (this.fanoutWriter != null) {
+            this.strategyPipeline.setFanout(null);
+            this.fanoutWriter.close();
+            LOGGER.info("published {} trades to the fanout", this.fanoutWriter.getPublished());
+        }
+        if (this.redundantFeed != null) {
+            LOGGER.info("Shutting down redundant feed");
+            this.redundantFeed.close();
+        }
+        if (this.session != null) {
+            LOGGER.info("Shutting down web socket session");
+            this.session.close();
+        }
+        if (this.reconciler != null) {
+            LOGGER.info("reconciled {} of {} executed trades, {} updates unmatched, {} evicted, {} mismatched",
+                    this.reconciler.getReconciled(), this.reconciler.getExecuted(), this.reconciler.getUnmatched(),
+                    this.reconciler.getEvicted(), this.reconciler.getMismatched());
+        }
+        if (this.journal != null) {
+            this.journal.close();
+            LOGGER.info("journaled {} frames, dropped {}", this.journal.getAppended(), this.journal.getDropped());
+        }
     }
 
     @Override
-    public void afterPropertiesSet() {
+    public void afterPropertiesSet() throws IOException {
+        if (this.executedTrades) {
+            this.reconciler = new TradeReconciler(this.reconcileCapacity);
+        }
+        if ("publish".equals(this.fanoutMode)) {
+            this.fanoutWriter = new TradeRingWriter(Paths.get(this.fanoutFile), this.fanoutCapacity);
+            this.strategyPipeline.setFanout(this.fanoutWriter);
+            LOGGER.info("publishing trades to {} ({} records)", this.fanoutWriter.getPath(), this.fanoutWriter.getCapacity());
+        } else if (!"off".equals(this.fanoutMode) && !isFanoutSubscriber()) {
+            throw new IllegalArgumentException("unknown fanout mode " + this.fanoutMode);
+        }
+        if (isReplay()) {
+            // the replay drives the bar timer
+            this.strategyPipeline.setWallClockTimer(false);
+            return;
+        }
+        if (isFanoutSubscriber()) {
+            this.fanoutReader = new TradeRingReader(Paths.get(this.fanoutFile));
+            return;
+        }
+        if (this.feedLegs > 1) {
+            startRedundantFeed();
+            return;
+        }
+        if (this.journalEnabled) {
+            final FrameJournal frameJournal = new FrameJournal(Paths.get(this.journalDir),
+                    this.journalSegmentSizeMb << 20, this.journalSegmentMillis);
+            frameJournal.start();
+            this.journal = frameJournal;
+        }
         this.session = initSession();
     }
 
+    private void startRedundantFeed() throws IOException {
+        final FrameJournal[] journals = new FrameJournal[this.feedLegs];
+        if (this.journalEnabled) {
+            for (int i = 0; i < journals.length; i++) {
+                journals[i] = new FrameJournal(Paths.get(this.journalDir, "leg-" + i),
+                        this.journalSegmentSizeMb << 20, this.journalSegmentMillis);
+                journals[i].start();
+            }
+        }
+        this.redundantFeed = new RedundantFeed(URI.create(this.wsUrl), this.feedLegs, this.feedStaleMillis,
+                this.strategyPipeline, this.latencyMetrics, journals,
+                this.executedTrades, this.reconcileCapacity);
+        this.redundantFeed.start();
+    }
+
     private Session initSession() {
         Session ssn = null;
         WebSocketContainer container = ContainerProvider.getWebSocketContainer();
         try {
             ssn = container.connectToServer(this, URI.create(wsUrl));
 
-            LOGGER.info("session open: " + ssn.isOpen());
+            LOGGER.info("session open: {}", ssn.isOpen());
 
         } catch (DeploymentException | IOException e) {
             LOGGER.error(e);
@@ -0,0 +1,302 @@
+package ch.algotrader.ema.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import ch.algotrader.ema.vo.NewOrderRequest;
+
+/**
+ * Writes a {@link NewOrderRequest} as Bitfinex v1 JSON payload into a reusable buffer and
+ * signs it, producing the same payload, X-BFX-PAYLOAD and X-BFX-SIGNATURE values as
+ * the Jackson/commons-codec path with a fixed, small number of allocations per order.
+ * <p>
+ * Not thread safe: keep one instance per thread.
+ */
+public class OrderEncoder {
+
+    private static final String ALGORITHM = "HmacSHA384";
+    private static final int DECIMALS = 5;
+
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Mac mac;
+    private final byte[] digest;
+    private final char[] signature;
+    private final byte[] digits = new byte[40];
+
+    private byte[] payload = new byte[512];
+    private int payloadLength;
+    private byte[] payloadBase64 = new byte[base64Length(512)];
+    private int payloadBase64Length;
+
+    public OrderEncoder(String apiSecret) {
+        try {
+            this.mac = Mac.getInstance(ALGORITHM);
+            this.mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("cannot create " + ALGORITHM, e);
+        }
+        this.digest = new byte[this.mac.getMacLength()];
+        this.signature = new char[this.digest.length * 2];
+    }
+
+    /**
+     * Encodes and signs one order, replacing the previous one.
+     *
+     * @param request the request path as signed, e.g. {@code /v1/order/new}
+     */
+    public void encode(String request, long nonce, NewOrderRequest order) {
+
+        this.payloadLength = 0;
+        writeAscii("{\"request\":");
+        writeString(request);
+        writeAscii(",\"nonce\":\"");
+        writeLong(nonce);
+        writeByte('"');
+        if (order.getId() != 0) {
+            writeAscii(",\"id\":");
+            writeLong(order.getId());
+        }
+        writeAscii(",\"symbol\":");
+        writeString(order.getSymbol());
+        writeAscii(",\"amount\":");
+        writeDecimal(order.getAmount());
+        writeAscii(",\"price\":");
+        writeDecimal(order.getPrice());
+        writeAscii(",\"exchange\":");
+        writeString(order.getExchange());
+        writeAscii(",\"side\":");
+        writeString(order.getSide());
+        writeAscii(",\"type\":");
+        writeString(order.getType());
+        if (order.getOrderId() != null && order.getOrderId() != 0) {
+            writeAscii(",\"order_id\":");
+            writeLong(order.getOrderId());
+        }
+        writeByte('}');
+
+        sign();
+    }
+
+    public int getPayloadLength() {
+        return this.payloadLength;
+    }
+
+    /**
+     * @return a copy of the JSON payload, safe to hand to an asynchronous writer
+     */
+    public byte[] copyPayload() {
+        return Arrays.copyOf(this.payload, this.payloadLength);
+    }
+
+    public String getPayloadBase64() {
+        return new String(this.payloadBase64, 0, this.payloadBase64Length, StandardCharsets.ISO_8859_1);
+    }
+
+    public String getSignature() {
+        return new String(this.signature);
+    }
+
+    private void sign() {
+
+        if (this.payloadBase64.length < base64Length(this.payloadLength)) {
+            this.payloadBase64 = new byte[base64Length(this.payload.length)];
+        }
+        this.payloadBase64Length = encodeBase64(this.payload, this.payloadLength, this.payloadBase64);
+
+        try {
+            this.mac.update(this.payloadBase64, 0, this.payloadBase64Length);
+            this.mac.doFinal(this.digest, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int i = 0; i < this.digest.length; i++) {
+            this.signature[2 * i] = HEX[(this.digest[i] >> 4) & 0xf];
+            this.signature[2 * i + 1] = HEX[this.digest[i] & 0xf];
+        }
+    }
+
+    private static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    private static int encodeBase64(byte[] src, int length, byte[] dst) {
+
+        int d = 0;
+        int s = 0;
+        for (; s + 2 < length; s += 3) {
+            final int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | (src[s + 2] & 0xff);
+            dst[d++] = BASE64[bits >>> 18];
+            dst[d++] = BASE64[(bits >>> 12) & 0x3f];
+            dst[d++] = BASE64[(bits >>> 6) & 0x3f];
+            dst[d++] = BASE64[bits & 0x3f];
+        }
+        final int remaining = length - s;
+        if (remaining > 0) {
+            final int bits = (src[s] & 0xff) << 16 | (remaining == 2 ? (src[s + 1] & 0xff) << 8 : 0);
+            dst[d++] = BASE64[bits >>> 18];
+            dst[d++] = BASE64[(bits >>> 12) & 0x3f];
+            dst[d++] = remaining == 2 ? BASE64[(bits >>> 6) & 0x3f] : (byte) '=';
+            dst[d++] = '=';
+        }
+        return d;
+    }
+
+    private void writeByte(int b) {
+        if (this.payloadLength == this.payload.length) {
+            this.payload = Arrays.copyOf(this.payload, this.payload.length * 2);
+        }
+        this.payload[this.payloadLength++] = (byte) b;
+    }
+
+    private void writeAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    private void writeLong(long value) {
+
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int n = 0;
+        do {
+            this.digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) {
+            writeByte(this.digits[--n]);
+        }
+    }
+
+    private void writeString(String s) {
+
+        if (s == null) {
+            writeAscii("null");
+            return;
+        }
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xf]);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else {
+                final int end = Character.isHighSurrogate(c) && i + 1 < s.length() ? i + 2 : i + 1;
+                for (byte b : s.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    writeByte(b);
+                }
+                i = end - 1;
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * Writes a decimal string rounded half-even to {@value #DECIMALS} places, as a JSON
+     * string. Plain decimals are rounded digit by digit as written, which matches the
+     * former double round trip for anything {@link Double#toString} or a {@link BigDecimal}
+     * quantity produces; exponents and other forms go through {@link BigDecimal}.
+     */
+    private void writeDecimal(String value) {
+
+        if (value == null) {
+            writeAscii("null");
+            return;
+        }
+
+        final int length = value.length();
+        final boolean negative = length > 0 && value.charAt(0) == '-';
+        int i = negative ? 1 : 0;
+        int point = -1;
+        for (int j = i; j < length; j++) {
+            final char c = value.charAt(j);
+            if (c == '.' && point < 0) {
+                point = j;
+            } else if (c < '0' || c > '9') {
+                writeBigDecimal(value);
+                return;
+            }
+        }
+        final int intEnd = point < 0 ? length : point;
+        if (intEnd == i || intEnd - i + DECIMALS + 1 > this.digits.length) {
+            writeBigDecimal(value);
+            return;
+        }
+
+        // integer digits without leading zeros, then exactly DECIMALS fraction digits
+        while (i < intEnd - 1 && value.charAt(i) == '0') {
+            i++;
+        }
+        int n = 1;
+        this.digits[0] = 0;
+        for (int j = i; j < intEnd; j++) {
+            this.digits[n++] = (byte) (value.charAt(j) - '0');
+        }
+        final int fractionStart = intEnd + 1;
+        for (int k = 0; k < DECIMALS; k++) {
+            final int j = fractionStart + k;
+            this.digits[n++] = (byte) (point >= 0 && j < length ? value.charAt(j) - '0' : 0);
+        }
+
+        if (point >= 0 && fractionStart + DECIMALS < length) {
+            final int first = value.charAt(fractionStart + DECIMALS) - '0';
+            boolean tail = false;
+            for (int j = fractionStart + DECIMALS + 1; j < length && !tail; j++) {
+                tail = value.charAt(j) != '0';
+            }
+            if (first > 5 || first == 5 && (tail || (this.digits[n - 1] & 1) == 1)) {
+                int k = n - 1;
+                while (this.digits[k] == 9) {
+                    this.digits[k--] = 0;
+                }
+                this.digits[k]++;
+            }
+        }
+
+        boolean zero = true;
+        for (int k = 0; k < n && zero; k++) {
+            zero = this.digits[k] == 0;
+        }
+
+        writeByte('"');
+        if (negative && !zero) {
+            writeByte('-');
+        }
+        final int pointAt = n - DECIMALS;
+        for (int k = this.digits[0] == 0 ? 1 : 0; k < n; k++) {
+            if (k == pointAt) {
+                writeByte('.');
+            }
+            writeByte('0' + this.digits[k]);
+        }
+        writeByte('"');
+    }
+
+    private void writeBigDecimal(String value) {
+        writeString(BigDecimal.valueOf(Double.parseDouble(value))
+                .setScale(DECIMALS, RoundingMode.HALF_EVEN)
+                .toPlainString());
+    }
+}
@@ -0,0 +1,153 @@
+package ch.algotrader.ema.services;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Non-blocking HTTP transport for orders.
+ * <p>
+ * Callers enqueue a request factory and get a future back immediately. A single
+ * dispatcher thread builds each request in queue order and sends it over a shared,
+ * keep-alive {@link HttpClient}. Bitfinex rejects a nonce that is not higher than the
+ * last one it received for the API key, and requests in flight together may arrive in
+ * any order, so the next request is built, and gets its nonce, only once the previous
+ * one has completed. Every order has a deadline counted from the moment it was
+ * queued; orders that expire in the queue are never sent. Time spent queued and the
+ * network round trip are logged separately.
+ */
+@Component
+public class OrderGateway implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderGateway.class);
+
+    /** one request per API key at a time, see above */
+    private static final int MAX_IN_FLIGHT = 1;
+
+    @Value("${order.queue-size:64}") private int queueSize;
+    @Value("${order.timeout-ms:2000}") private long timeoutMillis;
+    @Value("${order.connect-timeout-ms:2000}") private long connectTimeoutMillis;
+
+    private BlockingQueue<PendingOrder> queue;
+    private Semaphore inFlight;
+    private HttpClient httpClient;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    @Override
+    public void afterPropertiesSet() {
+        this.queue = new ArrayBlockingQueue<>(this.queueSize);
+        this.inFlight = new Semaphore(MAX_IN_FLIGHT);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(this.connectTimeoutMillis))
+                .build();
+        this.running = true;
+        this.dispatcher = new Thread(this::dispatch, "order-gateway");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        this.running = false;
+        this.dispatcher.interrupt();
+        this.dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * Queues an order without blocking.
+     *
+     * @param requestFactory builds the signed request on the dispatcher thread; gets the
+     *                       remaining time until the deadline, to use as request timeout
+     * @return completes with the response, or exceptionally when the queue is full, the
+     * deadline passes or the request fails
+     */
+    public CompletableFuture<HttpResponse<String>> submit(Function<Duration, HttpRequest> requestFactory) {
+
+        final PendingOrder order = new PendingOrder(requestFactory, System.nanoTime());
+        if (!this.queue.offer(order)) {
+            order.future.completeExceptionally(new RejectedExecutionException("order queue full"));
+        }
+        return order.future;
+    }
+
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public int getInFlight() {
+        return MAX_IN_FLIGHT - this.inFlight.availablePermits();
+    }
+
+    private void dispatch() {
+
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+        while (this.running) {
+            final PendingOrder order;
+            try {
+                order = this.queue.take();
+                this.inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            final long remaining = order.queuedAt + timeoutNanos - System.nanoTime();
+            if (remaining <= 0) {
+                this.inFlight.release();
+                order.future.completeExceptionally(new TimeoutException("order expired in queue"));
+                continue;
+            }
+
+            try {
+                final HttpRequest request = order.requestFactory.apply(Duration.ofNanos(remaining));
+                final long sentAt = System.nanoTime();
+                this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, e) -> {
+                            this.inFlight.release();
+                            final long ackedAt = System.nanoTime();
+                            logger.debug("order queued {} us, round trip {} us",
+                                    TimeUnit.NANOSECONDS.toMicros(sentAt - order.queuedAt),
+                                    TimeUnit.NANOSECONDS.toMicros(ackedAt - sentAt));
+                            if (e != null) {
+                                order.future.completeExceptionally(e);
+                            } else {
+                                order.future.complete(response);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                this.inFlight.release();
+                logger.error("cannot send order", e);
+                order.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class PendingOrder {
+
+        private final Function<Duration, HttpRequest> requestFactory;
+        private final long queuedAt;
+        private final CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+
+        private PendingOrder(Function<Duration, HttpRequest> requestFactory, long queuedAt) {
+            this.requestFactory = requestFactory;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ch.algotrader.ema.services;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Where strategies send their market orders: the exchange via {@link TradingService},
+ * or a simulation.
+ */
+public interface OrderSender {
+
+    /**
+     * Sends a market order without blocking the caller.
+     *
+     * @param side buy or sell
+     * @param tickNanos {@link System#nanoTime()} when the frame that led to the order
+     * was received, for tick-to-trade latency
+     */
+    CompletableFuture<OrderResponse> sendOrder(String side, BigDecimal quantity, String symbol, long tickNanos);
+
+    default CompletableFuture<OrderResponse> sendOrder(String side, BigDecimal quantity, String symbol) {
+        return sendOrder(side, quantity, symbol, System.nanoTime());
+    }
+}
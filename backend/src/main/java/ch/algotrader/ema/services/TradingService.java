@@ -1,65 +1,101 @@
 package ch.algotrader.ema.services;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicLong;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.RequestEntity;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestClientResponseException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
+import ch.algotrader.ema.metrics.LatencyMetrics;
 import ch.algotrader.ema.vo.NewOrderRequest;
 import ch.algotrader.ema.vo.OrderResponse;
-import ch.algotrader.ema.vo.Request;
 
 @Service
-public class TradingService {
+public class TradingService implements OrderSender, InitializingBean {
 
     private static final Logger logger = LoggerFactory.getLogger(TradingService.class);
 
+    private static final String NEW_ORDER_PATH = "order/new";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectReader orderResponseReader = objectMapper.readerFor(OrderResponse.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     @Value("${rest-uri}") private String baseUrl;
     @Value("${api-key}") private String apiKey;
     @Value("${api-secret}") private String apiSecret;
 
-    private final RestTemplate restTemplate;
+    private final OrderGateway orderGateway;
+    private final LatencyMetrics latencyMetrics;
     private final AtomicLong nonce = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ThreadLocal<OrderEncoder> encoders = ThreadLocal.withInitial(() -> new OrderEncoder(this.apiSecret));
+
+    private URI orderUri;
+    private String orderPath;
+
+    @Autowired
+    public TradingService(OrderGateway orderGateway, LatencyMetrics latencyMetrics) {
+        this.orderGateway = orderGateway;
+        this.latencyMetrics = latencyMetrics;
+    }
 
-    public TradingService() {
-        this.restTemplate = new RestTemplate();
+    @Override
+    public void afterPropertiesSet() {
+        final UriComponents base = UriComponentsBuilder.fromHttpUrl(this.baseUrl).build();
+        final UriComponents pathUri = UriComponentsBuilder.fromUriString(NEW_ORDER_PATH).build();
+        this.orderUri = UriComponentsBuilder.fromHttpUrl(this.baseUrl).uriComponents(pathUri).build().toUri();
+        this.orderPath = base.getPath() + NEW_ORDER_PATH;
     }
 
-    public void sendOrder(String side, BigDecimal quantity, String symbol) {
+    /**
+     * Queues a market order and returns immediately; the order is signed and sent on
+     * the {@link OrderGateway} thread.
+     */
+    @Override
+    public CompletableFuture<OrderResponse> sendOrder(String side, BigDecimal quantity, String symbol, long tickNanos) {
+        final OrderTiming timing = new OrderTiming(tickNanos, System.nanoTime());
+        final NewOrderRequest bfxRequest = createNewBFXOrder(side, quantity, symbol);
+        return this.orderGateway.submit(timeout -> createPost(timeout, bfxRequest, timing))
+                .thenApply(response -> {
+                    final OrderResponse orderResponse = toOrderResponse(response);
+                    // rejected orders are no trades, they stay out of the latency stages
+                    recordResponse(timing);
+                    return orderResponse;
+                })
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        logger.error("{} order for {} failed", side, symbol, e);
+                    } else {
+                        logger.info("executed market order {}", response);
+                    }
+                });
+    }
+
+    private OrderResponse toOrderResponse(HttpResponse<String> response) {
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("order rejected with status " + response.statusCode() + ": " + response.body());
+        }
         try {
-            final NewOrderRequest bfxRequest = createNewBFXOrder(side, quantity, symbol);
-            final RequestEntity<String> post = createPost("order/new", bfxRequest);
-            ResponseEntity<OrderResponse> response = restTemplate.exchange(post, OrderResponse.class);
-            logger.info("executed market order ", response.getBody().toString());
-        } catch (RestClientResponseException e) {
-            String msg = e.getResponseBodyAsString();
-            logger.error(msg, e);
-        } catch (RestClientException e) {
-            logger.error("rest exception", e);
+            return orderResponseReader.readValue(response.body());
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
     }
 
@@ -75,62 +111,41 @@ public class TradingService {
         return orderRequest;
     }
 
-    private RequestEntity<String> createPost(String path, Request pld) {
-        String payloadStr = transformPayload(path, pld);
-        return getRequestEntity(path, payloadStr, HttpMethod.POST);
-    }
-
-    private RequestEntity<String> getRequestEntity(String path, String payloadStr, HttpMethod method) {
-        final Map<String, String> payloadHdr = createAuthHttpHeaders(payloadStr);
-
-        final UriComponents pathUri = UriComponentsBuilder.fromUriString(path).build();
-        final URI uri = UriComponentsBuilder.fromHttpUrl(baseUrl).uriComponents(pathUri).build().toUri();
-        RequestEntity.BodyBuilder bodyBuilder = RequestEntity.method(method, uri).accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON);
-
-        for (Map.Entry<String, String> entry : payloadHdr.entrySet()) {
-            bodyBuilder = bodyBuilder.header(entry.getKey(), entry.getValue());
-        }
-
-        return bodyBuilder.body(payloadStr);
-    }
-
-    private String transformPayload(String path, Request payload) {
-        String relativePath = UriComponentsBuilder.fromHttpUrl(baseUrl).build().getPath() + path;
-        payload.setRequest(relativePath);
-        payload.setNonce(String.valueOf(nonce.incrementAndGet()));
-
-        String payloadStr;
-        try {
-            payloadStr = new ObjectMapper().writeValueAsString(payload);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
-        return payloadStr;
+    private void recordResponse(OrderTiming timing) {
+        final long responseNanos = System.nanoTime();
+        this.latencyMetrics.record(LatencyMetrics.Stage.RESPONSE, responseNanos - timing.signedNanos);
+        this.latencyMetrics.record(LatencyMetrics.Stage.TICK_TO_TRADE, responseNanos - timing.tickNanos);
     }
 
-    private Map<String, String> createAuthHttpHeaders(String payload) {
-        final String payloadBase64 = Base64.getEncoder().encodeToString(payload.getBytes());
-
-        String payloadHmacSHA384 = createHmacSignature(this.apiSecret, payloadBase64, "HmacSHA384");
-
-        Map<String, String> hdrs = new HashMap<>();
-        hdrs.put("X-BFX-APIKEY", this.apiKey);
-        hdrs.put("X-BFX-PAYLOAD", payloadBase64);
-        hdrs.put("X-BFX-SIGNATURE", payloadHmacSHA384);
-        return hdrs;
+    private HttpRequest createPost(Duration timeout, NewOrderRequest order, OrderTiming timing) {
+        final OrderEncoder encoder = this.encoders.get();
+        encoder.encode(this.orderPath, this.nonce.incrementAndGet(), order);
+        timing.signedNanos = System.nanoTime();
+        this.latencyMetrics.record(LatencyMetrics.Stage.SIGN, timing.signedNanos - timing.signalNanos);
+
+        return HttpRequest.newBuilder(this.orderUri)
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .header("X-BFX-APIKEY", this.apiKey)
+                .header("X-BFX-PAYLOAD", encoder.getPayloadBase64())
+                .header("X-BFX-SIGNATURE", encoder.getSignature())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(encoder.copyPayload()))
+                .build();
     }
 
-    private String createHmacSignature(String secret, String inputText, String algoName) {
-        try {
-            Mac mac = Mac.getInstance(algoName);
-            SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algoName);
-            mac.init(key);
+    /**
+     * {@link System#nanoTime()} stamps of one order, see {@link LatencyMetrics}.
+     */
+    private static final class OrderTiming {
 
-            return new String(Hex.encodeHex(mac.doFinal(inputText.getBytes(StandardCharsets.UTF_8))));
+        private final long tickNanos;
+        private final long signalNanos;
+        private long signedNanos;
 
-        } catch (Exception e) {
-            throw new RuntimeException("cannot create " + algoName, e);
+        private OrderTiming(long tickNanos, long signalNanos) {
+            this.tickNanos = tickNanos;
+            this.signalNanos = signalNanos;
         }
     }
-
 }
@@ -0,0 +1,137 @@
+package ch.algotrader.ema.strategy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+/**
+ * Restores each strategy from {@code checkpoint.dir/<SYMBOL>.ckpt} when it is created
+ * and writes a new {@link StrategyCheckpoint} at the first bar close after every
+ * {@code checkpoint.interval-ms}. The checkpoint is serialized on the strategy thread,
+ * then written to a temporary file and atomically renamed on a background thread.
+ * Checkpoints taken with another symbol, EMA periods or bar settings are ignored.
+ * <p>
+ * A journal replay ({@code replay.dir}) neither restores nor writes checkpoints: it
+ * rebuilds its bars from the recorded trades, and its simulated state must not replace
+ * the one the next live start restores.
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CheckpointService implements StrategyListener, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+    private static final String SUFFIX = ".ckpt";
+
+    @Value("${checkpoint.enabled:true}") private boolean enabled;
+    @Value("${checkpoint.dir:checkpoint}") private String dir;
+    @Value("${checkpoint.interval-ms:10000}") private long intervalMillis;
+    @Value("${replay.dir:}") private String replayDir;
+
+    private final Map<String, Long> lastCheckpointMillis = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterPropertiesSet() {
+        if (this.enabled && !this.replayDir.isEmpty()) {
+            logger.info("checkpoints are off while replaying {}", this.replayDir);
+            this.enabled = false;
+        }
+    }
+
+    @Override
+    public void onCreated(StrategyLogic strategy) {
+
+        if (!this.enabled) {
+            return;
+        }
+        final Path file = path(strategy.getSymbol());
+        if (!Files.exists(file)) {
+            logger.info("no checkpoint for {} in {}", strategy.getSymbol(), file.getParent());
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final StrategyCheckpoint checkpoint = StrategyCheckpoint.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (!checkpoint.matches(strategy.getConfig())) {
+                logger.warn("ignoring checkpoint {}, taken with other settings: {}", file, checkpoint);
+                return;
+            }
+            checkpoint.restore(strategy);
+            logger.info("restored {} taken at {} in {} us", checkpoint, checkpoint.getCreatedMillis(),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("ignoring checkpoint {}: {}", file, e.toString());
+        }
+    }
+
+    @Override
+    public void onBarClosed(StrategyLogic strategy, int i) {
+
+        if (!this.enabled) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final Long last = this.lastCheckpointMillis.get(strategy.getSymbol());
+        if (last != null && now - last < this.intervalMillis) {
+            return;
+        }
+        this.lastCheckpointMillis.put(strategy.getSymbol(), now);
+        final ByteBuffer checkpoint = StrategyCheckpoint.write(strategy, now);
+        if (checkpoint != null) {
+            this.writer.execute(() -> write(strategy.getSymbol(), checkpoint));
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        this.writer.shutdown();
+        this.writer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void write(String symbol, ByteBuffer checkpoint) {
+
+        final Path file = path(symbol);
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (checkpoint.hasRemaining()) {
+                    channel.write(checkpoint);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("cannot write checkpoint {}", file, e);
+        }
+    }
+
+    private Path path(String symbol) {
+        return Paths.get(this.dir).toAbsolutePath().resolve(symbol + SUFFIX);
+    }
+}
@@ -0,0 +1,243 @@
+package ch.algotrader.ema.strategy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import ch.algotrader.ema.strategy.bars.BarStore;
+
+/**
+ * Binary snapshot of a {@link StrategyLogic} as of its last closed bar: the retained
+ * closed bars, the EMA values, the last signal and the position. The bar still open
+ * is not part of it and restarts empty.
+ * <p>
+ * Layout, big endian, followed by a CRC32 of everything before it:
+ * <pre>
+ * int magic, int version, long createdMillis
+ * short length + UTF-8 symbol, int emaPeriodShort, int emaPeriodLong,
+ * short length + UTF-8 barType, double barSize
+ * int lastClosedBar, 4 * double emaShort, emaLong, difference, previousDifference
+ * byte lastSignal (0 none, 1 buy, 2 sell), long lastSignalTime, double position
+ * int barCount, barCount * (long beginTime, long endTime, 6 * double open, high, low,
+ *     close, volume, amount, int trades)
+ * </pre>
+ */
+public class StrategyCheckpoint {
+
+    static final int MAGIC = 0x454d4143;
+    static final int VERSION = 1;
+
+    private static final int BAR_BYTES = 2 * Long.BYTES + 6 * Double.BYTES + Integer.BYTES;
+    private static final int MAX_HEADER_BYTES = 512;
+
+    private final ByteBuffer buffer;
+    private final long createdMillis;
+    private final String symbol;
+    private final int emaPeriodShort;
+    private final int emaPeriodLong;
+    private final String barType;
+    private final double barSize;
+    private final int lastClosedBar;
+    private final double emaShort;
+    private final double emaLong;
+    private final double difference;
+    private final double previousDifference;
+    private final String lastSignal;
+    private final long lastSignalTime;
+    private final double position;
+    private final int barCount;
+    private final int barsOffset;
+
+    private StrategyCheckpoint(ByteBuffer buffer) {
+
+        final int crcOffset = buffer.limit() - Integer.BYTES;
+        if (crcOffset < 2 * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a strategy checkpoint");
+        }
+        final int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported checkpoint version " + version);
+        }
+        if (crc(buffer, crcOffset) != buffer.getInt(crcOffset)) {
+            throw new IllegalArgumentException("checkpoint checksum mismatch");
+        }
+        this.buffer = buffer;
+        buffer.position(2 * Integer.BYTES);
+        this.createdMillis = buffer.getLong();
+        this.symbol = getString(buffer);
+        this.emaPeriodShort = buffer.getInt();
+        this.emaPeriodLong = buffer.getInt();
+        this.barType = getString(buffer);
+        this.barSize = buffer.getDouble();
+        this.lastClosedBar = buffer.getInt();
+        this.emaShort = buffer.getDouble();
+        this.emaLong = buffer.getDouble();
+        this.difference = buffer.getDouble();
+        this.previousDifference = buffer.getDouble();
+        this.lastSignal = signal(buffer.get());
+        this.lastSignalTime = buffer.getLong();
+        this.position = buffer.getDouble();
+        this.barCount = buffer.getInt();
+        this.barsOffset = buffer.position();
+        if (this.barsOffset + (long) this.barCount * BAR_BYTES != crcOffset) {
+            throw new IllegalArgumentException("checkpoint of " + this.barCount + " bars has " + crcOffset + " bytes");
+        }
+    }
+
+    /**
+     * Validates magic, version and checksum of a checkpoint, usually a mapped file.
+     *
+     * @throws IllegalArgumentException if {@code buffer} is not a valid checkpoint
+     */
+    public static StrategyCheckpoint read(ByteBuffer buffer) {
+        return new StrategyCheckpoint(buffer.duplicate());
+    }
+
+    /**
+     * Serializes {@code strategy} on its strategy thread.
+     *
+     * @return the checkpoint between position and limit, or null before the first closed bar
+     */
+    public static ByteBuffer write(StrategyLogic strategy, long createdMillis) {
+
+        final int last = strategy.getLastClosedBar();
+        if (last < 0) {
+            return null;
+        }
+        final BarStore bars = strategy.getBars();
+        final int first = bars.getBeginIndex();
+        final int barCount = last - first + 1;
+        final StrategyConfig config = strategy.getConfig();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_BYTES + barCount * BAR_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(createdMillis);
+        putString(buffer, config.getSymbol());
+        buffer.putInt(config.getEmaPeriodShort());
+        buffer.putInt(config.getEmaPeriodLong());
+        putString(buffer, config.getBarType());
+        buffer.putDouble(config.getBarSize());
+
+        buffer.putInt(last);
+        buffer.putDouble(strategy.getEmaShort());
+        buffer.putDouble(strategy.getEmaLong());
+        buffer.putDouble(strategy.getEmaDifference());
+        buffer.putDouble(strategy.getEmaPreviousDifference());
+        buffer.put(signalCode(strategy.getLastSignal()));
+        buffer.putLong(strategy.getLastSignalTime());
+        buffer.putDouble(strategy.getPosition());
+
+        buffer.putInt(barCount);
+        for (int i = first; i <= last; i++) {
+            buffer.putLong(bars.getBeginTime(i));
+            buffer.putLong(bars.getEndTime(i));
+            buffer.putDouble(bars.getOpen(i));
+            buffer.putDouble(bars.getHigh(i));
+            buffer.putDouble(bars.getLow(i));
+            buffer.putDouble(bars.getClose(i));
+            buffer.putDouble(bars.getVolume(i));
+            buffer.putDouble(bars.getAmount(i));
+            buffer.putInt(bars.getTrades(i));
+        }
+        buffer.putInt(crc(buffer, buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return whether the checkpoint was taken with the same symbol, EMA periods and bars
+     */
+    public boolean matches(StrategyConfig config) {
+        return this.symbol.equals(config.getSymbol())
+                && this.emaPeriodShort == config.getEmaPeriodShort()
+                && this.emaPeriodLong == config.getEmaPeriodLong()
+                && this.barType.equalsIgnoreCase(config.getBarType())
+                && this.barSize == config.getBarSize();
+    }
+
+    /**
+     * Loads bars and state into a strategy that has not seen any trade yet. Bars beyond
+     * the strategy's retention are skipped, oldest first.
+     */
+    public void restore(StrategyLogic strategy) {
+
+        final BarStore bars = strategy.getBars();
+        if (!bars.isEmpty()) {
+            throw new IllegalStateException("strategy " + strategy.getSymbol() + " already has bars");
+        }
+        final ByteBuffer buffer = this.buffer;
+        final int skipped = Math.max(0, this.barCount - bars.getCapacity());
+        buffer.position(this.barsOffset + skipped * BAR_BYTES);
+        for (int i = skipped; i < this.barCount; i++) {
+            bars.addBar(buffer.getLong(), buffer.getLong(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getInt());
+        }
+        // bar indices restart at 0 with the oldest restored bar
+        strategy.restore(bars.getEndIndex(), this.emaShort, this.emaLong, this.difference, this.previousDifference,
+                this.lastSignal, this.lastSignalTime, this.position);
+    }
+
+    public long getCreatedMillis() {
+        return this.createdMillis;
+    }
+
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * @return index of the last closed bar when the checkpoint was taken
+     */
+    public int getLastClosedBar() {
+        return this.lastClosedBar;
+    }
+
+    public int getBarCount() {
+        return this.barCount;
+    }
+
+    @Override
+    public String toString() {
+        return this.symbol + " ema " + this.emaPeriodShort + "/" + this.emaPeriodLong + " " + this.barType + " "
+                + this.barSize + ", " + getBarCount() + " bars";
+    }
+
+    private static int crc(ByteBuffer buffer, int length) {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer data = buffer.duplicate();
+        data.position(0).limit(length);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte signalCode(String signal) {
+        if (signal == null) {
+            return 0;
+        }
+        return "buy".equals(signal) ? (byte) 1 : (byte) 2;
+    }
+
+    private static String signal(byte code) {
+        switch (code) {
+            case 1:
+                return "buy";
+            case 2:
+                return "sell";
+            default:
+                return null;
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
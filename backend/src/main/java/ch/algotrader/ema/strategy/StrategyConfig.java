@@ -0,0 +1,186 @@
+package ch.algotrader.ema.strategy;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of one symbol's {@link StrategyLogic}.
+ */
+public class StrategyConfig {
+
+    private String symbol;
+    private BigDecimal quantity;
+    private int emaPeriodShort;
+    private int emaPeriodLong;
+    /** ta4j, incremental or graph */
+    private String indicatorEngine;
+    /** indicator references, see {@link ch.algotrader.ema.strategy.indicator.IndicatorGraph} */
+    private List<String> indicators = Collections.emptyList();
+    /** conditions all true for a buy signal, like {@code rsi(14) < 70} */
+    private List<String> buyFilters = Collections.emptyList();
+    /** conditions all true for a sell signal */
+    private List<String> sellFilters = Collections.emptyList();
+    /** bar: signal on closed bars, tick: on the provisional difference of every trade */
+    private String signalMode = "bar";
+    /** provisional difference beyond which a tick signal fires, in basis points of the price */
+    private double hysteresisBps;
+    /** no signal while the book spread is wider, in basis points of mid; 0 for no limit */
+    private double maxSpreadBps;
+    private int barRetention;
+    private boolean barsOffHeap;
+    /** time, tick, volume or dollar */
+    private String barType;
+    /** milliseconds, trades, base volume or notional, depending on the bar type */
+    private double barSize;
+    /** milliseconds */
+    private long barAllowedLateness;
+    /** drop or current-bar */
+    private String lateTrades;
+    /** text log line per closed bar */
+    private boolean logBars;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+
+    public int getEmaPeriodShort() {
+        return emaPeriodShort;
+    }
+
+    public void setEmaPeriodShort(int emaPeriodShort) {
+        this.emaPeriodShort = emaPeriodShort;
+    }
+
+    public int getEmaPeriodLong() {
+        return emaPeriodLong;
+    }
+
+    public void setEmaPeriodLong(int emaPeriodLong) {
+        this.emaPeriodLong = emaPeriodLong;
+    }
+
+    public String getIndicatorEngine() {
+        return indicatorEngine;
+    }
+
+    public void setIndicatorEngine(String indicatorEngine) {
+        this.indicatorEngine = indicatorEngine;
+    }
+
+    public int getBarRetention() {
+        return barRetention;
+    }
+
+    public void setBarRetention(int barRetention) {
+        this.barRetention = barRetention;
+    }
+
+    public boolean isBarsOffHeap() {
+        return barsOffHeap;
+    }
+
+    public void setBarsOffHeap(boolean barsOffHeap) {
+        this.barsOffHeap = barsOffHeap;
+    }
+
+    public String getBarType() {
+        return barType;
+    }
+
+    public void setBarType(String barType) {
+        this.barType = barType;
+    }
+
+    public double getBarSize() {
+        return barSize;
+    }
+
+    public void setBarSize(double barSize) {
+        this.barSize = barSize;
+    }
+
+    public long getBarAllowedLateness() {
+        return barAllowedLateness;
+    }
+
+    public void setBarAllowedLateness(long barAllowedLateness) {
+        this.barAllowedLateness = barAllowedLateness;
+    }
+
+    public String getLateTrades() {
+        return lateTrades;
+    }
+
+    public void setLateTrades(String lateTrades) {
+        this.lateTrades = lateTrades;
+    }
+
+    public List<String> getIndicators() {
+        return indicators;
+    }
+
+    public void setIndicators(List<String> indicators) {
+        this.indicators = indicators;
+    }
+
+    public List<String> getBuyFilters() {
+        return buyFilters;
+    }
+
+    public void setBuyFilters(List<String> buyFilters) {
+        this.buyFilters = buyFilters;
+    }
+
+    public List<String> getSellFilters() {
+        return sellFilters;
+    }
+
+    public void setSellFilters(List<String> sellFilters) {
+        this.sellFilters = sellFilters;
+    }
+
+    public double getMaxSpreadBps() {
+        return maxSpreadBps;
+    }
+
+    public void setMaxSpreadBps(double maxSpreadBps) {
+        this.maxSpreadBps = maxSpreadBps;
+    }
+
+    public String getSignalMode() {
+        return signalMode;
+    }
+
+    public void setSignalMode(String signalMode) {
+        this.signalMode = signalMode;
+    }
+
+    public double getHysteresisBps() {
+        return hysteresisBps;
+    }
+
+    public void setHysteresisBps(double hysteresisBps) {
+        this.hysteresisBps = hysteresisBps;
+    }
+
+    public boolean isLogBars() {
+        return logBars;
+    }
+
+    public void setLogBars(boolean logBars) {
+        this.logBars = logBars;
+    }
+}
@@ -0,0 +1,132 @@
+package ch.algotrader.ema.strategy;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import ch.algotrader.ema.backtest.SimulatedTradingService;
+import ch.algotrader.ema.marketdata.OrderBooks;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.services.TradingService;
+
+/**
+ * Creates one {@link StrategyLogic} per configured symbol. All symbols share the
+ * strategy settings; {@code quantity.<SYMBOL>} overrides the order quantity.
+ * <p>
+ * While replaying a journal, strategies fill their orders in a
+ * {@link SimulatedTradingService} instead of sending them to the exchange.
+ */
+@Component
+public class StrategyFactory {
+
+    @Value("${symbols:${symbol}}") private String[] symbols;
+    @Value("${quantity}") private BigDecimal quantity;
+
+    @Value("${emaPeriodShort}") private int emaPeriodShort;
+    @Value("${emaPeriodLong}") private int emaPeriodLong;
+
+    /** ta4j, incremental or graph */
+    @Value("${indicator-engine:incremental}") private String indicatorEngine;
+    /** semicolon separated, as indicator arguments contain commas */
+    @Value("${indicators:}") private String indicators;
+    @Value("${signal.buy-filters:}") private String buyFilters;
+    @Value("${signal.sell-filters:}") private String sellFilters;
+    @Value("${signal.max-spread-bps:0}") private double maxSpreadBps;
+    /** bar or tick */
+    @Value("${signal.mode:bar}") private String signalMode;
+    @Value("${signal.hysteresis-bps:1}") private double hysteresisBps;
+
+    @Value("${bars.retention:1000}") private int barRetention;
+    @Value("${bars.off-heap:false}") private boolean barsOffHeap;
+
+    /** time, tick, volume or dollar */
+    @Value("${bars.type:time}") private String barType;
+    /** milliseconds, trades, base volume or notional, depending on bars.type */
+    @Value("${bars.size:10000}") private double barSize;
+    @Value("${bars.allowed-lateness-ms:1000}") private long barAllowedLateness;
+    /** drop or current-bar */
+    @Value("${bars.late-trades:current-bar}") private String lateTrades;
+    @Value("${bars.log:false}") private boolean logBars;
+
+    @Value("${replay.dir:}") private String replayDir;
+    /** fee of the simulated fills in a replay, as a fraction of the notional */
+    @Value("${replay.fee:0.002}") private double replayFee;
+
+    private final TradingService tradingService;
+    private final LatencyMetrics latencyMetrics;
+    private final Environment environment;
+    private final ObjectProvider<StrategyListener> listeners;
+    private final OrderBooks orderBooks;
+
+    @Autowired
+    public StrategyFactory(TradingService tradingService, LatencyMetrics latencyMetrics, Environment environment,
+            ObjectProvider<StrategyListener> listeners, OrderBooks orderBooks) {
+        this.tradingService = tradingService;
+        this.latencyMetrics = latencyMetrics;
+        this.environment = environment;
+        this.listeners = listeners;
+        this.orderBooks = orderBooks;
+    }
+
+    public List<String> getSymbols() {
+        return Arrays.asList(this.symbols);
+    }
+
+    public StrategyConfig createConfig(String symbol) {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol(symbol);
+        config.setQuantity(this.environment.getProperty("quantity." + symbol, BigDecimal.class, this.quantity));
+        config.setEmaPeriodShort(this.emaPeriodShort);
+        config.setEmaPeriodLong(this.emaPeriodLong);
+        config.setIndicatorEngine(this.indicatorEngine);
+        config.setIndicators(split(this.indicators));
+        config.setBuyFilters(split(this.buyFilters));
+        config.setSellFilters(split(this.sellFilters));
+        config.setMaxSpreadBps(this.maxSpreadBps);
+        config.setSignalMode(this.signalMode);
+        config.setHysteresisBps(this.hysteresisBps);
+        config.setBarRetention(this.barRetention);
+        config.setBarsOffHeap(this.barsOffHeap);
+        config.setBarType(this.barType);
+        config.setBarSize(this.barSize);
+        config.setBarAllowedLateness(this.barAllowedLateness);
+        config.setLateTrades(this.lateTrades);
+        config.setLogBars(this.logBars);
+        return config;
+    }
+
+    /**
+     * @return a strategy observed by every {@link StrategyListener} bean, reading the
+     * symbol's order book if {@code book.enabled}
+     */
+    public StrategyLogic create(String symbol) {
+        final SimulatedTradingService simulated = this.replayDir.isEmpty() ? null : new SimulatedTradingService(this.replayFee);
+        final OrderSender orderSender = simulated != null ? simulated : this.tradingService;
+        final StrategyLogic strategy = new StrategyLogic(createConfig(symbol), orderSender, this.latencyMetrics);
+        if (simulated != null) {
+            simulated.setBars(strategy.getBars());
+        }
+        if (this.orderBooks.isEnabled()) {
+            strategy.setOrderBook(this.orderBooks.get(symbol));
+        }
+        final List<StrategyListener> strategyListeners = this.listeners.orderedStream().collect(Collectors.toList());
+        strategyListeners.forEach(strategy::addListener);
+        strategyListeners.forEach(listener -> listener.onCreated(strategy));
+        return strategy;
+    }
+
+    private static List<String> split(String list) {
+        return Arrays.stream(list.split(";"))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,52 @@
+package ch.algotrader.ema.strategy;
+
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Observes a {@link StrategyLogic}. Bar and signal callbacks run on the strategy thread
+ * after the order, if any, has been sent, and must return quickly; hand anything slow
+ * to another thread.
+ */
+public interface StrategyListener {
+
+    /**
+     * Called once by {@link StrategyFactory}, before the strategy receives any trade.
+     */
+    default void onCreated(StrategyLogic strategy) {
+    }
+
+    /**
+     * Called for every trade, or folded trades, after it was applied to the bars. This
+     * is the hot path: return immediately unless someone needs the tick.
+     *
+     * @param timestamp exchange timestamp in milliseconds
+     */
+    default void onTrade(StrategyLogic strategy, long timestamp, double price, double amount) {
+    }
+
+    /**
+     * @param i index of the closed bar in {@link StrategyLogic#getBars()}; the EMA
+     * values of the strategy are those as of this bar
+     */
+    default void onBarClosed(StrategyLogic strategy, int i) {
+    }
+
+    /**
+     * @param i the closed bar, or the open bar for a {@code signal.mode=tick} signal
+     * @param side buy or sell
+     */
+    default void onSignal(StrategyLogic strategy, int i, String side) {
+    }
+
+    /**
+     * Called on the thread that completed the order.
+     */
+    default void onOrderResponse(String symbol, String side, OrderResponse response) {
+    }
+
+    /**
+     * Called on the thread that completed the order.
+     */
+    default void onOrderFailed(String symbol, String side, Throwable cause) {
+    }
+}
@@ -1,147 +1,484 @@
 package ch.algotrader.ema.strategy;
 
 import java.math.BigDecimal;
-import java.time.Duration;
-import java.time.ZonedDateTime;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.InitializingBean;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.stereotype.Component;
-import org.ta4j.core.Bar;
-import org.ta4j.core.BaseBar;
-import org.ta4j.core.BaseTimeSeries;
-import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
-import org.ta4j.core.indicators.helpers.DifferenceIndicator;
-import org.ta4j.core.num.Num;
-
-import ch.algotrader.ema.services.TradingService;
-import ch.algotrader.ema.vo.TradeEvent;
-
-@Component
-public class StrategyLogic implements InitializingBean {
+
+import ch.algotrader.ema.marketdata.OrderBook;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyShard;
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.strategy.bars.BarBuilder;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.strategy.bars.BarStoreTimeSeries;
+import ch.algotrader.ema.strategy.indicator.EmaCrossoverEngine;
+import ch.algotrader.ema.strategy.indicator.IndicatorGraph;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * EMA crossover strategy for one symbol. Not thread safe: every method is called on
+ * the strategy thread of the shard that owns the symbol.
+ */
+public class StrategyLogic {
     
     private static final Logger logger = LoggerFactory.getLogger(StrategyLogic.class);
 
-    @Value("${symbol}") private String symbol;
-    @Value("${quantity}") private BigDecimal quantity;
+    // Bitfinex v1 trade timestamps are in seconds
+    private static final long EXCHANGE_TIMESTAMP_MILLIS = 1000;
+
+    private final StrategyConfig config;
+    private final String symbol;
+    private final BigDecimal quantity;
+    private final int emaPeriodLong;
+
+    private final OrderSender orderSender;
+    private final Clock clock;
+
+    private final BarStore bars;
+    private final BarBuilder barBuilder;
+
+    private final IndicatorGraph indicatorGraph;
+    private final EmaCrossoverEngine emaEngine;
+    private final Map<String, IndicatorGraph.Node> indicators = new LinkedHashMap<>();
+    private final IndicatorGraph.Condition[] buyFilters;
+    private final IndicatorGraph.Condition[] sellFilters;
+
+    private StrategyListener[] listeners = new StrategyListener[0];
+    /** written by the feed thread, null without book subscription */
+    private OrderBook orderBook;
+
+    private final boolean tickSignals;
+    private final double hysteresisBps;
+    /** side of the provisional difference beyond the hysteresis band: 1, -1, or 0 before the first */
+    private int tickState;
+    /** open bar of the last tick signal */
+    private int tickSignalBar = -1;
+
+    private int lastClosedBar = -1;
+    /** buy, sell or null */
+    private String lastSignal;
+    private long lastSignalTime;
+    private CompletableFuture<OrderResponse> sentOrder;
+    /** net quantity of the orders sent */
+    private double position;
+
+    private final LatencyMetrics latencyMetrics;
+    /** stamps of the event being handled, see {@link LatencyMetrics} */
+    private long eventReceiveNanos;
+    private long eventParsedNanos;
+    private boolean barRecorded;
+
+    public StrategyLogic(StrategyConfig config, OrderSender orderSender, LatencyMetrics latencyMetrics) {
+        this(config, orderSender, Clock.systemUTC(), latencyMetrics);
+    }
+
+    /**
+     * @param clock drives {@link #onTime}; a simulated clock in backtests
+     */
+    public StrategyLogic(StrategyConfig config, OrderSender orderSender, Clock clock, LatencyMetrics latencyMetrics) {
+        if (config.getBarRetention() <= config.getEmaPeriodLong()) {
+            throw new IllegalArgumentException("bars.retention must be larger than emaPeriodLong");
+        }
+        this.config = config;
+        this.symbol = config.getSymbol();
+        this.quantity = config.getQuantity();
+        this.emaPeriodLong = config.getEmaPeriodLong();
+        this.orderSender = orderSender;
+        this.clock = clock;
+        this.latencyMetrics = latencyMetrics;
+
+        this.bars = new BarStore(config.getBarRetention(), config.isBarsOffHeap());
+        this.barBuilder = new BarBuilder(this.bars, BarBuilder.Type.forName(config.getBarType()), config.getBarSize(),
+                config.getBarAllowedLateness(), BarBuilder.LatePolicy.forName(config.getLateTrades()), this::onBarClosed);
+        BarStoreTimeSeries series = new BarStoreTimeSeries(this.symbol, this.bars);
+        this.indicatorGraph = new IndicatorGraph(this.bars);
+        this.emaEngine = EmaCrossoverEngine.forName(config.getIndicatorEngine(), series, this.indicatorGraph,
+                config.getEmaPeriodShort(), this.emaPeriodLong);
+        for (String indicator : config.getIndicators()) {
+            this.indicators.put(indicator, this.indicatorGraph.node(indicator));
+        }
+        this.tickSignals = "tick".equals(config.getSignalMode());
+        this.hysteresisBps = config.getHysteresisBps();
+        if (this.tickSignals && "ta4j".equals(config.getIndicatorEngine())) {
+            throw new IllegalArgumentException("signal.mode tick needs the incremental or graph indicator engine");
+        }
+        this.buyFilters = config.getBuyFilters().stream().map(this.indicatorGraph::condition).toArray(IndicatorGraph.Condition[]::new);
+        this.sellFilters = config.getSellFilters().stream().map(this.indicatorGraph::condition).toArray(IndicatorGraph.Condition[]::new);
+    }
 
-    @Value("${emaPeriodShort}") private int emaPeriodShort;
-    @Value("${emaPeriodLong}") private int emaPeriodLong;
+    public String getSymbol() {
+        return symbol;
+    }
 
-    private final TradingService tradingService;
-    private final TimeSeries series;
+    public StrategyConfig getConfig() {
+        return config;
+    }
 
-    private DifferenceIndicator emaDifference;
+    /**
+     * Adds a listener before the strategy starts receiving trades.
+     */
+    public void addListener(StrategyListener listener) {
+        this.listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        this.listeners[this.listeners.length - 1] = listener;
+    }
 
-    @Autowired
-    public StrategyLogic(TradingService tradingService) {
-        this.tradingService = tradingService;
-        this.series = new BaseTimeSeries();
+    /**
+     * Sets the book read when a signal fires, before the strategy starts receiving trades.
+     */
+    public void setOrderBook(OrderBook orderBook) {
+        this.orderBook = orderBook;
     }
 
-    @Override
-    public void afterPropertiesSet() {
-        ClosePriceIndicator closePriceIndicator = new ClosePriceIndicator(this.series);
-        EMAIndicator emaShort = new EMAIndicator(closePriceIndicator, this.emaPeriodShort);
-        EMAIndicator emaLong = new EMAIndicator(closePriceIndicator, this.emaPeriodLong);
-        this.emaDifference = new DifferenceIndicator(emaShort, emaLong);
+    /**
+     * @return the symbol's book, or null if the book is not subscribed
+     */
+    public OrderBook getOrderBook() {
+        return orderBook;
     }
 
-    public void handleTradeEvent(TradeEvent event) {
+    /**
+     * Bars of this strategy, to be read on the strategy thread only.
+     */
+    public BarStore getBars() {
+        return bars;
+    }
 
-        if (this.series.getEndIndex() >= 0) {
-            synchronized (series) {
-                series.addTrade(Math.abs(event.getAmount()), event.getPrice());
-            }
+    public double getEmaShort() {
+        return this.emaEngine.getEmaShort();
+    }
+
+    public double getEmaLong() {
+        return this.emaEngine.getEmaLong();
+    }
+
+    public double getEmaDifference() {
+        return this.emaEngine.getDifference();
+    }
+
+    public double getEmaPreviousDifference() {
+        return this.emaEngine.getPreviousDifference();
+    }
+
+    /**
+     * @return value of a configured indicator as of the last closed bar, NaN while it warms up
+     */
+    public double getIndicator(String indicator) {
+        final IndicatorGraph.Node node = this.indicators.get(indicator);
+        if (node == null) {
+            throw new IllegalArgumentException("indicator " + indicator + " is not configured for " + this.symbol);
+        }
+        return node.getValue();
+    }
+
+    /**
+     * @return configured indicators in declaration order
+     */
+    public Iterable<String> getIndicatorNames() {
+        return this.indicators.keySet();
+    }
+
+    /**
+     * @return index of the last closed bar, -1 before the first
+     */
+    public int getLastClosedBar() {
+        return this.lastClosedBar;
+    }
+
+    /**
+     * @return buy, sell or null
+     */
+    public String getLastSignal() {
+        return this.lastSignal;
+    }
+
+    /**
+     * @return end time of the bar of the last signal
+     */
+    public long getLastSignalTime() {
+        return this.lastSignalTime;
+    }
+
+    public double getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Resumes from a checkpoint after its bars were added to {@link #getBars()}, before
+     * the first trade. See {@link StrategyCheckpoint}.
+     */
+    void restore(int lastClosedBar, double emaShort, double emaLong, double difference, double previousDifference,
+            String lastSignal, long lastSignalTime, double position) {
+        this.lastClosedBar = lastClosedBar;
+        if (lastClosedBar >= 0) {
+            this.barBuilder.resumeAfter(this.bars.getEndTime(lastClosedBar));
+        }
+        this.emaEngine.restore(emaShort, emaLong, difference, previousDifference);
+        this.lastSignal = lastSignal;
+        this.lastSignalTime = lastSignalTime;
+        this.position = position;
+    }
+
+    /**
+     * Called on the strategy thread only, see {@link StrategyShard}.
+     */
+    public void handleTradeEvent(MutableTradeEvent event) {
+
+        this.eventReceiveNanos = event.getReceiveNanos();
+        this.eventParsedNanos = event.getParsedNanos();
+        this.barRecorded = this.eventParsedNanos == 0 || !this.latencyMetrics.isEnabled();
+        this.barBuilder.onTrade(event.getTimestamp() * EXCHANGE_TIMESTAMP_MILLIS, Math.abs(event.getAmount()), event.getPrice());
+        recordBar();
+        if (this.tickSignals) {
+            evaluateTick(this.eventParsedNanos);
         }
+        notifyTrade(event.getTimestamp() * EXCHANGE_TIMESTAMP_MILLIS, event.getPrice(), event.getAmount());
     }
 
-    @Scheduled(cron = "*/10 * * * * *")
+    /**
+     * Applies trades that were folded together while the strategy thread lagged.
+     */
+    public void handleConflatedTrades(long timestamp, double volume, double high, double low, double last, int count) {
+
+        this.eventReceiveNanos = System.nanoTime();
+        this.barRecorded = true;
+        this.barBuilder.onTrades(timestamp * EXCHANGE_TIMESTAMP_MILLIS, volume, high, low, last, count);
+        if (this.tickSignals) {
+            evaluateTick(0);
+        }
+        notifyTrade(timestamp * EXCHANGE_TIMESTAMP_MILLIS, last, volume);
+    }
+
+    /**
+     * Closes time bars that are due by the strategy's clock. Called on the strategy thread only.
+     */
     public void onTime() {
-        synchronized (series) {
-            try {
-                logBar();
-                evaluateLogic();
-                createNewBar();
-            } catch (Exception e) {
-                e.printStackTrace();
+        onTime(this.clock.millis());
+    }
+
+    /**
+     * Closes time bars that are due at {@code now}, epoch millis of the timer that fired,
+     * wall clock live and the recorded receive time in a replay. Strategy thread only.
+     */
+    public void onTime(long now) {
+        this.eventReceiveNanos = System.nanoTime();
+        this.barRecorded = true;
+        this.barBuilder.onTime(now);
+    }
+
+    private void notifyTrade(long timestamp, double price, double amount) {
+        for (StrategyListener listener : this.listeners) {
+            listener.onTrade(this, timestamp, price, amount);
+        }
+    }
+
+    private void recordBar() {
+        if (!this.barRecorded) {
+            this.barRecorded = true;
+            this.latencyMetrics.record(LatencyMetrics.Stage.BAR, System.nanoTime() - this.eventParsedNanos);
+        }
+    }
+
+    private void onBarClosed(int i) {
+        try {
+            final long closedNanos = this.latencyMetrics.isEnabled() ? System.nanoTime() : 0;
+            recordBar();
+            closeBar(i);
+            logBar(i);
+            final String side = this.tickSignals ? null : evaluateLogic(i, closedNanos);
+            this.lastClosedBar = i;
+            if (side != null) {
+                recordPosition(i, side);
+            }
+            for (StrategyListener listener : this.listeners) {
+                listener.onBarClosed(this, i);
+                if (side != null) {
+                    listener.onSignal(this, i, side);
+                }
             }
+            if (side != null) {
+                notifyOrder(side);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tick mode: fires when the difference the open bar would close with leaves the
+     * hysteresis band on the other side than the last time, once per bar.
+     */
+    private void evaluateTick(long parsedNanos) {
+
+        if (!this.barBuilder.isOpen() || this.lastClosedBar < this.emaPeriodLong) {
+            return;
+        }
+        final int i = this.bars.getEndIndex();
+        final double close = this.bars.getClose(i);
+        final double provisional = this.emaEngine.provisionalDifference(close);
+        final double band = close * this.hysteresisBps / 10_000;
+        final int state = provisional > band ? 1 : provisional < -band ? -1 : 0;
+        if (state == 0 || state == this.tickState) {
+            return;
+        }
+        if (this.tickState == 0) {
+            // first reading after start: no crossing seen yet
+            this.tickState = state;
+            return;
+        }
+        if (i == this.tickSignalBar) {
+            return;
+        }
+        final String side = state > 0 ? "buy" : "sell";
+        if (!passes(state > 0 ? this.buyFilters : this.sellFilters, side)) {
+            // evaluated again in the next bar, not on every trade of this one
+            this.tickSignalBar = i;
+            return;
+        }
+        this.tickState = state;
+        this.tickSignalBar = i;
+
+        recordSignal(parsedNanos);
+        logger.info("!!!!!!!! {} (tick) !!!!!!!!! provisional emaDiff {}", state > 0 ? "BUY" : "SELL", provisional);
+        sendOrder(side);
+        recordPosition(i, side);
+        for (StrategyListener listener : this.listeners) {
+            listener.onSignal(this, i, side);
+        }
+        notifyOrder(side);
+    }
+
+    private void recordPosition(int i, String side) {
+        this.lastSignal = side;
+        this.lastSignalTime = this.bars.getEndTime(i);
+        this.position += "buy".equals(side) ? this.quantity.doubleValue() : -this.quantity.doubleValue();
+    }
+
+    private void closeBar(int i) {
+
+        double close = this.bars.getClose(i);
+        if (!Double.isNaN(close)) {
+            this.indicatorGraph.update(i);
+            this.emaEngine.onBarClose(i, close);
         }
     }
 
-    private void logBar() {
-        
-        int i = this.series.getEndIndex();
+    private void logBar(int i) {
+
+        if (!this.config.isLogBars()) {
+            return;
+        }
         if (i > 0 && i < emaPeriodLong) {
-            Bar bar = this.series.getBar(i);
             logger.info("open {} high {} low {} close {} vol {} trades {}",
-                    bar.getOpenPrice(),
-                    bar.getMaxPrice(),
-                    bar.getMinPrice(),
-                    bar.getClosePrice(),
-                    bar.getVolume(),
-                    bar.getTrades());
+                    bars.getOpen(i),
+                    bars.getHigh(i),
+                    bars.getLow(i),
+                    bars.getClose(i),
+                    bars.getVolume(i),
+                    bars.getTrades(i));
             
         } else if (i >= emaPeriodLong) {
 
-            Bar bar = this.series.getBar(i);
-            Num emaDiff = this.emaDifference.getValue(i);
-            Num emaDiffPrev = this.emaDifference.getValue(i - 1);
+            double emaDiff = this.emaEngine.getDifference();
+            double emaDiffPrev = this.emaEngine.getPreviousDifference();
 
             logger.info("open {} high {} low {} close {} vol {} trades {} emaDiffPrev {} emaDiff {}",
-                    bar.getOpenPrice(),
-                    bar.getMaxPrice(),
-                    bar.getMinPrice(),
-                    bar.getClosePrice(),
-                    bar.getVolume(),
-                    bar.getTrades(),
+                    bars.getOpen(i),
+                    bars.getHigh(i),
+                    bars.getLow(i),
+                    bars.getClose(i),
+                    bars.getVolume(i),
+                    bars.getTrades(i),
                     emaDiffPrev,
                     emaDiff);
         }
     }
 
-    private void evaluateLogic() {
+    /**
+     * @return the side of the order sent, or null
+     */
+    private String evaluateLogic(int i, long closedNanos) {
 
-        int i = this.series.getEndIndex();
         if (i >= emaPeriodLong) {
 
-            Num emaDiff = this.emaDifference.getValue(i);
-            Num emaDiffPrev = this.emaDifference.getValue(i - 1);
+            double emaDiff = this.emaEngine.getDifference();
+            double emaDiffPrev = this.emaEngine.getPreviousDifference();
 
-            if (emaDiff.doubleValue() > 0 && emaDiffPrev.doubleValue() <= 0) {
+            if (emaDiff > 0 && emaDiffPrev <= 0) {
 
+                if (!passes(this.buyFilters, "buy")) {
+                    return null;
+                }
+                recordSignal(closedNanos);
                 logger.info("!!!!!!!! BUY !!!!!!!!!)");
-                tradingService.sendOrder("buy", quantity, symbol);
+                sendOrder("buy");
+                return "buy";
 
-            } else if (emaDiff.doubleValue() < 0 && emaDiffPrev.doubleValue() >= 0) {
+            } else if (emaDiff < 0 && emaDiffPrev >= 0) {
 
+                if (!passes(this.sellFilters, "sell")) {
+                    return null;
+                }
+                recordSignal(closedNanos);
                 logger.info("!!!!!!!! SELL !!!!!!!!!");
-                tradingService.sendOrder("sell", quantity, symbol);
+                sendOrder("sell");
+                return "sell";
             }
         }
+        return null;
     }
 
-    private void createNewBar() {
-    
-        // create new bar
-        ZonedDateTime now = ZonedDateTime.now();
-        Duration duration = Duration.ofSeconds(10);
-        Bar newBar = new BaseBar(duration, now, this.series.function());
-    
-        // set price to closing price of previous bar
-        int i = this.series.getEndIndex();
-        if (i >= 0) {
-            Bar previousBar = series.getBar(i);
-            newBar.addPrice(previousBar.getClosePrice());
+    private boolean passes(IndicatorGraph.Condition[] filters, String side) {
+        if (this.orderBook != null && this.config.getMaxSpreadBps() > 0) {
+            final double spreadBps = this.orderBook.getSpreadBps();
+            if (!(spreadBps <= this.config.getMaxSpreadBps())) {
+                logger.info("{} crossover skipped, spread {} bps", side, spreadBps);
+                return false;
+            }
         }
-    
-        series.addBar(newBar);
+        for (IndicatorGraph.Condition filter : filters) {
+            if (!filter.test()) {
+                logger.info("{} crossover filtered by {}", side, filter);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendOrder(String side) {
+        this.sentOrder = orderSender.sendOrder(side, quantity, symbol, this.eventReceiveNanos);
     }
 
+    /**
+     * Reports the outcome of the order sent on this bar, after its signal was reported.
+     */
+    private void notifyOrder(String side) {
+        final CompletableFuture<OrderResponse> order = this.sentOrder;
+        this.sentOrder = null;
+        final StrategyListener[] listeners = this.listeners;
+        if (order == null || listeners.length == 0) {
+            return;
+        }
+        order.whenComplete((response, e) -> {
+            for (StrategyListener listener : listeners) {
+                if (e != null) {
+                    listener.onOrderFailed(this.symbol, side, e);
+                } else {
+                    listener.onOrderResponse(this.symbol, side, response);
+                }
+            }
+        });
+    }
+
+    private void recordSignal(long closedNanos) {
+        if (closedNanos != 0) {
+            this.latencyMetrics.record(LatencyMetrics.Stage.SIGNAL, System.nanoTime() - closedNanos);
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package ch.algotrader.ema.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.OrderResponse;
+import ch.algotrader.ema.vo.StrategySnapshot;
+import ch.algotrader.ema.vo.StrategySnapshot.OrderStatus;
+
+/**
+ * Publishes an immutable {@link StrategySnapshot} per symbol after every bar close and
+ * order update, so readers never touch the strategy's state or thread. Each symbol has
+ * one atomic reference; the strategy thread and the order threads replace it, readers
+ * only load it.
+ */
+@Component
+public class StrategySnapshotPublisher implements StrategyListener {
+
+    @Value("${snapshot.recent-bars:100}") private int recentBars = 100;
+
+    private final Map<String, AtomicReference<StrategySnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @return latest snapshot of {@code symbol}, or null for an unknown symbol
+     */
+    public StrategySnapshot getSnapshot(String symbol) {
+        final AtomicReference<StrategySnapshot> snapshot = this.snapshots.get(symbol);
+        return snapshot == null ? null : snapshot.get();
+    }
+
+    public List<StrategySnapshot> getSnapshots() {
+        final Collection<AtomicReference<StrategySnapshot>> references = this.snapshots.values();
+        return references.stream().map(AtomicReference::get).collect(Collectors.toList());
+    }
+
+    @Override
+    public void onCreated(StrategyLogic strategy) {
+        this.snapshots.put(strategy.getSymbol(), new AtomicReference<>(snapshot(strategy, null)));
+    }
+
+    @Override
+    public void onBarClosed(StrategyLogic strategy, int i) {
+        this.snapshots.get(strategy.getSymbol()).updateAndGet(previous -> snapshot(strategy, previous.getOrder()));
+    }
+
+    @Override
+    public void onSignal(StrategyLogic strategy, int i, String side) {
+        updateOrder(strategy.getSymbol(), new OrderStatus(side, OrderStatus.State.PENDING, System.currentTimeMillis(),
+                0, Double.NaN, strategy.getConfig().getQuantity().doubleValue(), null));
+    }
+
+    @Override
+    public void onOrderResponse(String symbol, String side, OrderResponse response) {
+        updateOrder(symbol, new OrderStatus(side, OrderStatus.State.FILLED, System.currentTimeMillis(),
+                response.getOrderId(), response.getAvgExecutionPrice(), response.getExecutedAmount(), response.getMessage()));
+    }
+
+    @Override
+    public void onOrderFailed(String symbol, String side, Throwable cause) {
+        updateOrder(symbol, new OrderStatus(side, OrderStatus.State.FAILED, System.currentTimeMillis(),
+                0, Double.NaN, 0, cause.getMessage()));
+    }
+
+    private void updateOrder(String symbol, OrderStatus order) {
+        this.snapshots.get(symbol).updateAndGet(previous -> previous.withOrder(order));
+    }
+
+    /**
+     * Strategy thread: copies the recent closed bars and the indicator values.
+     */
+    private StrategySnapshot snapshot(StrategyLogic strategy, OrderStatus order) {
+
+        final BarStore bars = strategy.getBars();
+        final int last = strategy.getLastClosedBar();
+        final List<StrategySnapshot.Bar> recent;
+        if (last < 0) {
+            recent = Collections.emptyList();
+        } else {
+            final int first = Math.max(bars.getBeginIndex(), last - this.recentBars + 1);
+            recent = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) {
+                recent.add(new StrategySnapshot.Bar(bars.getBeginTime(i), bars.getEndTime(i), bars.getOpen(i),
+                        bars.getHigh(i), bars.getLow(i), bars.getClose(i), bars.getVolume(i), bars.getTrades(i)));
+            }
+        }
+        return new StrategySnapshot(strategy.getSymbol(), System.currentTimeMillis(), recent, strategy.getEmaShort(),
+                strategy.getEmaLong(), strategy.getEmaDifference(), strategy.getLastSignal(), strategy.getLastSignalTime(),
+                strategy.getPosition(), order);
+    }
+}
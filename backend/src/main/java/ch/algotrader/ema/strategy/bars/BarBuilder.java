@@ -0,0 +1,280 @@
+package ch.algotrader.ema.strategy.bars;
+
+import java.util.Locale;
+
+/**
+ * Cuts trades into bars by exchange timestamp instead of arrival time and writes them
+ * into a {@link BarStore}, reporting each bar to the {@link Listener} once it is final.
+ * <p>
+ * Bar types:
+ * <ul>
+ * <li>TIME: buckets of {@code size} milliseconds aligned to the epoch</li>
+ * <li>TICK: {@code size} trades</li>
+ * <li>VOLUME: at least {@code size} traded base currency</li>
+ * <li>DOLLAR: at least {@code size} traded notional (price * volume)</li>
+ * </ul>
+ * Time bars close once the watermark (latest exchange timestamp, or wall clock via
+ * {@link #onTime}, minus the allowed lateness) passes their end. Trades that belong to a
+ * later bar are held back until then; trades older than the open bar are late and are
+ * either dropped or added to the open bar. Empty time bars carry the previous close.
+ * <p>
+ * Not thread safe: call from the strategy thread only.
+ */
+public class BarBuilder {
+
+    public enum Type {
+        TIME, TICK, VOLUME, DOLLAR;
+
+        public static Type forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public enum LatePolicy {
+        DROP, CURRENT_BAR;
+
+        public static LatePolicy forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * @param index index of the bar in the store that just closed
+         */
+        void onBarClosed(int index);
+    }
+
+    private static final int PENDING_CAPACITY = 1024;
+
+    private final BarStore store;
+    private final Type type;
+    private final double size;
+    private final long barMillis;
+    private final long allowedLateness;
+    private final LatePolicy latePolicy;
+    private final Listener listener;
+
+    private boolean open;
+    private long barBegin;
+    private long barEnd;
+    private double barProgress;
+    private long maxTimestamp = Long.MIN_VALUE;
+    /** time bars open no earlier, see {@link #resumeAfter} */
+    private long resumeTime = Long.MIN_VALUE;
+    private long lateTrades;
+
+    // trades ahead of the open time bar, in arrival order
+    private final long[] pendingTimestamp = new long[PENDING_CAPACITY];
+    private final double[] pendingVolume = new double[PENDING_CAPACITY];
+    private final double[] pendingHigh = new double[PENDING_CAPACITY];
+    private final double[] pendingLow = new double[PENDING_CAPACITY];
+    private final double[] pendingLast = new double[PENDING_CAPACITY];
+    private final int[] pendingCount = new int[PENDING_CAPACITY];
+    private int pendingSize;
+
+    public BarBuilder(BarStore store, Type type, double size, long allowedLateness, LatePolicy latePolicy, Listener listener) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("bar size must be positive: " + size);
+        }
+        this.store = store;
+        this.type = type;
+        this.size = size;
+        this.barMillis = (long) size;
+        this.allowedLateness = allowedLateness;
+        this.latePolicy = latePolicy;
+        this.listener = listener;
+    }
+
+    /**
+     * @param timestamp exchange timestamp in milliseconds
+     */
+    public void onTrade(long timestamp, double volume, double price) {
+        onTrades(timestamp, volume, price, price, price, 1);
+    }
+
+    /**
+     * Adds {@code count} trades folded into one aggregate, {@code timestamp} being the latest of them.
+     */
+    public void onTrades(long timestamp, double volume, double high, double low, double last, int count) {
+
+        if (this.type != Type.TIME) {
+            if (!this.open) {
+                openBar(timestamp, timestamp);
+            }
+            add(timestamp, volume, high, low, last, count);
+            if (this.barProgress >= this.size) {
+                closeBar();
+            }
+            return;
+        }
+
+        if (!this.open) {
+            final long begin = Math.max(Math.floorDiv(timestamp, this.barMillis) * this.barMillis, this.resumeTime);
+            openBar(begin, begin + this.barMillis);
+        }
+
+        if (timestamp < this.barBegin) {
+            this.lateTrades++;
+            if (this.latePolicy == LatePolicy.CURRENT_BAR) {
+                add(timestamp, volume, high, low, last, count);
+            }
+            return;
+        } else if (timestamp < this.barEnd) {
+            add(timestamp, volume, high, low, last, count);
+        } else {
+            if (this.pendingSize == PENDING_CAPACITY) {
+                // close bars up to the oldest held trade or this one, whichever is older,
+                // which either frees a slot or lets this trade into the open bar
+                advance(Math.min(oldestPending(), timestamp));
+            }
+            if (timestamp < this.barEnd) {
+                add(timestamp, volume, high, low, last, count);
+            } else {
+                hold(timestamp, volume, high, low, last, count);
+            }
+        }
+
+        this.maxTimestamp = Math.max(this.maxTimestamp, timestamp);
+        advance(this.maxTimestamp - this.allowedLateness);
+    }
+
+    /**
+     * Closes time bars that are due by wall clock even if no trades arrive.
+     *
+     * @param now wall clock in milliseconds
+     */
+    public void onTime(long now) {
+        if (this.type == Type.TIME && this.open) {
+            advance(now - this.allowedLateness);
+        }
+    }
+
+    /**
+     * Continues after bars restored into the store: the first time bar opens at
+     * {@code endTime} at the earliest, and older trades are late.
+     *
+     * @param endTime end of the last restored bar in milliseconds
+     */
+    public void resumeAfter(long endTime) {
+        this.resumeTime = endTime;
+    }
+
+    public long getLateTrades() {
+        return this.lateTrades;
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    private void advance(long watermark) {
+
+        // never fill more empty bars than the store can hold
+        final long maxGap = (long) this.store.getCapacity() * this.barMillis;
+
+        while (this.open && watermark >= this.barEnd) {
+            long nextBegin = this.barEnd;
+            closeBar();
+            if (watermark - nextBegin > maxGap && this.pendingSize == 0) {
+                nextBegin = Math.floorDiv(watermark - maxGap, this.barMillis) * this.barMillis;
+            }
+            openBar(nextBegin, nextBegin + this.barMillis);
+            releasePending();
+        }
+    }
+
+    private void openBar(long begin, long end) {
+
+        final int previous = this.store.getEndIndex();
+        final double previousClose = previous >= 0 ? this.store.getClose(previous) : Double.NaN;
+
+        this.store.addBar(begin, end);
+        if (!Double.isNaN(previousClose)) {
+            this.store.addPrice(previousClose);
+        }
+
+        this.open = true;
+        this.barBegin = begin;
+        this.barEnd = end;
+        this.barProgress = 0;
+    }
+
+    private void closeBar() {
+        this.open = false;
+        this.listener.onBarClosed(this.store.getEndIndex());
+    }
+
+    private void add(long timestamp, double volume, double high, double low, double last, int count) {
+
+        if (high != last) {
+            this.store.addPrice(high);
+        }
+        if (low != last) {
+            this.store.addPrice(low);
+        }
+        this.store.addTrades(volume, last, count);
+
+        switch (this.type) {
+            case TICK:
+                this.barProgress += count;
+                break;
+            case VOLUME:
+                this.barProgress += volume;
+                break;
+            case DOLLAR:
+                this.barProgress += volume * last;
+                break;
+            default:
+                break;
+        }
+        if (this.type != Type.TIME) {
+            this.store.setLastBarEndTime(timestamp);
+        }
+    }
+
+    private void hold(long timestamp, double volume, double high, double low, double last, int count) {
+        final int i = this.pendingSize;
+        this.pendingTimestamp[i] = timestamp;
+        this.pendingVolume[i] = volume;
+        this.pendingHigh[i] = high;
+        this.pendingLow[i] = low;
+        this.pendingLast[i] = last;
+        this.pendingCount[i] = count;
+        this.pendingSize = i + 1;
+    }
+
+    private long oldestPending() {
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < this.pendingSize; i++) {
+            oldest = Math.min(oldest, this.pendingTimestamp[i]);
+        }
+        return oldest;
+    }
+
+    private void releasePending() {
+
+        int kept = 0;
+        for (int i = 0; i < this.pendingSize; i++) {
+            final long timestamp = this.pendingTimestamp[i];
+            if (timestamp < this.barBegin) {
+                this.lateTrades++;
+                if (this.latePolicy == LatePolicy.CURRENT_BAR) {
+                    add(timestamp, this.pendingVolume[i], this.pendingHigh[i], this.pendingLow[i], this.pendingLast[i], this.pendingCount[i]);
+                }
+            } else if (timestamp < this.barEnd) {
+                add(timestamp, this.pendingVolume[i], this.pendingHigh[i], this.pendingLow[i], this.pendingLast[i], this.pendingCount[i]);
+            } else {
+                this.pendingTimestamp[kept] = timestamp;
+                this.pendingVolume[kept] = this.pendingVolume[i];
+                this.pendingHigh[kept] = this.pendingHigh[i];
+                this.pendingLow[kept] = this.pendingLow[i];
+                this.pendingLast[kept] = this.pendingLast[i];
+                this.pendingCount[kept] = this.pendingCount[i];
+                kept++;
+            }
+        }
+        this.pendingSize = kept;
+    }
+}
@@ -0,0 +1,234 @@
+package ch.algotrader.ema.strategy.bars;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed capacity ring of bars stored as primitive columns (open, high, low, close,
+ * volume, amount, trades, begin and end time) in one preallocated buffer, optionally
+ * off-heap. Bars keep their absolute index; once more than {@code capacity} bars have
+ * been added the oldest are overwritten and counted as removed.
+ * <p>
+ * Prices of a bar without trades are {@code NaN}. Not thread safe.
+ */
+public class BarStore {
+
+    private static final int OPEN = 0;
+    private static final int HIGH = 1;
+    private static final int LOW = 2;
+    private static final int CLOSE = 3;
+    private static final int VOLUME = 4;
+    private static final int AMOUNT = 5;
+    private static final int TRADES = 6;
+    private static final int BEGIN_TIME = 7;
+    private static final int END_TIME = 8;
+    private static final int COLUMNS = 9;
+
+    private final int capacity;
+    private final ByteBuffer buffer;
+    private long barCount;
+
+    public BarStore(int capacity, boolean offHeap) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        final int size = Math.multiplyExact(COLUMNS * Long.BYTES, capacity);
+        this.buffer = offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Opens a new, empty bar which becomes the last bar.
+     */
+    public void addBar(long beginTime, long endTime) {
+        final int slot = (int) (this.barCount % this.capacity);
+        putDouble(OPEN, slot, Double.NaN);
+        putDouble(HIGH, slot, Double.NaN);
+        putDouble(LOW, slot, Double.NaN);
+        putDouble(CLOSE, slot, Double.NaN);
+        putDouble(VOLUME, slot, 0);
+        putDouble(AMOUNT, slot, 0);
+        putLong(TRADES, slot, 0);
+        putLong(BEGIN_TIME, slot, beginTime);
+        putLong(END_TIME, slot, endTime);
+        this.barCount++;
+    }
+
+    /**
+     * Appends a complete bar.
+     */
+    public void addBar(long beginTime, long endTime, double open, double high, double low, double close,
+                       double volume, double amount, int trades) {
+        addBar(beginTime, endTime);
+        setLastBar(open, high, low, close, volume, amount, trades);
+    }
+
+    /**
+     * Overwrites prices, volume and trades of the last bar.
+     */
+    public void setLastBar(double open, double high, double low, double close, double volume, double amount, int trades) {
+        final int slot = lastSlot();
+        putDouble(OPEN, slot, open);
+        putDouble(HIGH, slot, high);
+        putDouble(LOW, slot, low);
+        putDouble(CLOSE, slot, close);
+        putDouble(VOLUME, slot, volume);
+        putDouble(AMOUNT, slot, amount);
+        putLong(TRADES, slot, trades);
+    }
+
+    public void setLastBarEndTime(long endTime) {
+        putLong(END_TIME, lastSlot(), endTime);
+    }
+
+    /**
+     * Adds a trade to the last bar.
+     */
+    public void addTrade(double volume, double price) {
+        addTrades(volume, price, 1);
+    }
+
+    /**
+     * Adds {@code count} trades totalling {@code volume} that ended at {@code lastPrice} to the last bar.
+     */
+    public void addTrades(double volume, double lastPrice, int count) {
+        addTrades(lastSlot(), volume, lastPrice, count);
+    }
+
+    /**
+     * Updates open (if unset), high, low and close of the last bar.
+     */
+    public void addPrice(double price) {
+        addPrice(lastSlot(), price);
+    }
+
+    public boolean isEmpty() {
+        return this.barCount == 0;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getBeginIndex() {
+        return (int) Math.max(0, this.barCount - this.capacity);
+    }
+
+    /**
+     * @return index of the last bar, -1 if empty
+     */
+    public int getEndIndex() {
+        return (int) (this.barCount - 1);
+    }
+
+    /**
+     * @return number of bars currently retained
+     */
+    public int getBarCount() {
+        return (int) Math.min(this.barCount, this.capacity);
+    }
+
+    public int getRemovedBarsCount() {
+        return getBeginIndex();
+    }
+
+    public double getOpen(int index) {
+        return getDouble(OPEN, slot(index));
+    }
+
+    public double getHigh(int index) {
+        return getDouble(HIGH, slot(index));
+    }
+
+    public double getLow(int index) {
+        return getDouble(LOW, slot(index));
+    }
+
+    public double getClose(int index) {
+        return getDouble(CLOSE, slot(index));
+    }
+
+    public double getVolume(int index) {
+        return getDouble(VOLUME, slot(index));
+    }
+
+    public double getAmount(int index) {
+        return getDouble(AMOUNT, slot(index));
+    }
+
+    public int getTrades(int index) {
+        return (int) getLong(TRADES, slot(index));
+    }
+
+    public long getBeginTime(int index) {
+        return getLong(BEGIN_TIME, slot(index));
+    }
+
+    public long getEndTime(int index) {
+        return getLong(END_TIME, slot(index));
+    }
+
+    void addTradeAt(int index, double volume, double price) {
+        addTrades(slot(index), volume, price, 1);
+    }
+
+    void addPriceAt(int index, double price) {
+        addPrice(slot(index), price);
+    }
+
+    private void addTrades(int slot, double volume, double lastPrice, int count) {
+        putDouble(VOLUME, slot, getDouble(VOLUME, slot) + volume);
+        putDouble(AMOUNT, slot, getDouble(AMOUNT, slot) + volume * lastPrice);
+        putLong(TRADES, slot, getLong(TRADES, slot) + count);
+        addPrice(slot, lastPrice);
+    }
+
+    private void addPrice(int slot, double price) {
+        if (Double.isNaN(getDouble(OPEN, slot))) {
+            putDouble(OPEN, slot, price);
+            putDouble(HIGH, slot, price);
+            putDouble(LOW, slot, price);
+        } else {
+            if (price > getDouble(HIGH, slot)) {
+                putDouble(HIGH, slot, price);
+            }
+            if (price < getDouble(LOW, slot)) {
+                putDouble(LOW, slot, price);
+            }
+        }
+        putDouble(CLOSE, slot, price);
+    }
+
+    private int lastSlot() {
+        if (this.barCount == 0) {
+            throw new IllegalStateException("no bar");
+        }
+        return (int) ((this.barCount - 1) % this.capacity);
+    }
+
+    private int slot(int index) {
+        if (index < getBeginIndex() || index >= this.barCount) {
+            throw new IndexOutOfBoundsException("bar " + index + " not in [" + getBeginIndex() + ", " + getEndIndex() + "]");
+        }
+        return index % this.capacity;
+    }
+
+    private double getDouble(int column, int slot) {
+        return this.buffer.getDouble(offset(column, slot));
+    }
+
+    private void putDouble(int column, int slot, double value) {
+        this.buffer.putDouble(offset(column, slot), value);
+    }
+
+    private long getLong(int column, int slot) {
+        return this.buffer.getLong(offset(column, slot));
+    }
+
+    private void putLong(int column, int slot, long value) {
+        this.buffer.putLong(offset(column, slot), value);
+    }
+
+    private int offset(int column, int slot) {
+        return (column * this.capacity + slot) * Long.BYTES;
+    }
+}
@@ -0,0 +1,262 @@
+package ch.algotrader.ema.strategy.bars;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+/**
+ * ta4j {@link TimeSeries} over a {@link BarStore}, so existing indicators keep working.
+ * Bars are views created on demand; the retention window of the store is reported as
+ * the maximum bar count, which lets ta4j's indicator caches trim themselves as well.
+ */
+public class BarStoreTimeSeries implements TimeSeries {
+
+    private static final Function<Number, Num> NUM_FUNCTION = DoubleNum::valueOf;
+
+    private final String name;
+    private final BarStore store;
+    private final ZoneId zone;
+
+    public BarStoreTimeSeries(String name, BarStore store) {
+        this(name, store, ZoneId.systemDefault());
+    }
+
+    public BarStoreTimeSeries(String name, BarStore store, ZoneId zone) {
+        this.name = name;
+        this.store = store;
+        this.zone = zone;
+    }
+
+    public BarStore getStore() {
+        return this.store;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public Bar getBar(int i) {
+        if (i < this.store.getBeginIndex() || i > this.store.getEndIndex()) {
+            throw new IndexOutOfBoundsException("bar " + i + " not in [" + this.store.getBeginIndex() + ", " + this.store.getEndIndex() + "]");
+        }
+        return new StoredBar(i);
+    }
+
+    @Override
+    public int getBarCount() {
+        return this.store.getBarCount();
+    }
+
+    @Override
+    public List<Bar> getBarData() {
+        final List<Bar> bars = new ArrayList<>(getBarCount());
+        for (int i = this.store.getBeginIndex(); i <= this.store.getEndIndex(); i++) {
+            bars.add(new StoredBar(i));
+        }
+        return bars;
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return this.store.isEmpty() ? -1 : this.store.getBeginIndex();
+    }
+
+    @Override
+    public int getEndIndex() {
+        return this.store.getEndIndex();
+    }
+
+    @Override
+    public void setMaximumBarCount(int maximumBarCount) {
+        throw new UnsupportedOperationException("retention is fixed by the bar store");
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return this.store.getCapacity();
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return this.store.getRemovedBarsCount();
+    }
+
+    @Override
+    public void addBar(Bar bar, boolean replace) {
+        final double open = toDouble(bar.getOpenPrice());
+        final double high = toDouble(bar.getMaxPrice());
+        final double low = toDouble(bar.getMinPrice());
+        final double close = toDouble(bar.getClosePrice());
+        final double volume = bar.getVolume() == null ? 0 : bar.getVolume().doubleValue();
+        final double amount = bar.getAmount() == null ? 0 : bar.getAmount().doubleValue();
+        if (replace && !this.store.isEmpty()) {
+            this.store.setLastBar(open, high, low, close, volume, amount, bar.getTrades());
+        } else {
+            this.store.addBar(toMillis(bar.getBeginTime()), toMillis(bar.getEndTime()),
+                    open, high, low, close, volume, amount, bar.getTrades());
+        }
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime) {
+        this.store.addBar(toMillis(endTime) - timePeriod.toMillis(), toMillis(endTime));
+    }
+
+    @Override
+    public void addBar(ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        addBar(Duration.ofDays(1), endTime, openPrice, highPrice, lowPrice, closePrice, volume, amount);
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume) {
+        addBar(timePeriod, endTime, openPrice, highPrice, lowPrice, closePrice, volume, numOf(0));
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        this.store.addBar(toMillis(endTime) - timePeriod.toMillis(), toMillis(endTime),
+                openPrice.doubleValue(), highPrice.doubleValue(), lowPrice.doubleValue(), closePrice.doubleValue(),
+                volume.doubleValue(), amount.doubleValue(), 0);
+    }
+
+    @Override
+    public void addTrade(Num tradeVolume, Num tradePrice) {
+        this.store.addTrade(tradeVolume.doubleValue(), tradePrice.doubleValue());
+    }
+
+    @Override
+    public void addPrice(Num price) {
+        this.store.addPrice(price.doubleValue());
+    }
+
+    @Override
+    public TimeSeries getSubSeries(int startIndex, int endIndex) {
+        final List<Bar> bars = new ArrayList<>();
+        final int start = Math.max(startIndex, this.store.getBeginIndex());
+        final int end = Math.min(endIndex, this.store.getEndIndex() + 1);
+        for (int i = start; i < end; i++) {
+            final Bar bar = getBar(i);
+            bars.add(new BaseBar(bar.getTimePeriod(), bar.getEndTime(), bar.getOpenPrice(), bar.getMaxPrice(), bar.getMinPrice(),
+                    bar.getClosePrice(), bar.getVolume(), bar.getAmount()));
+        }
+        return new BaseTimeSeries(this.name, bars, NUM_FUNCTION);
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return NUM_FUNCTION.apply(number);
+    }
+
+    @Override
+    public Function<Number, Num> function() {
+        return NUM_FUNCTION;
+    }
+
+    private ZonedDateTime toZonedDateTime(long millis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), this.zone);
+    }
+
+    private static long toMillis(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    private static double toDouble(Num num) {
+        return num == null ? Double.NaN : num.doubleValue();
+    }
+
+    private Num toNum(double value) {
+        return Double.isNaN(value) ? null : numOf(value);
+    }
+
+    /**
+     * View of one bar in the store; reads and writes go straight to the columns.
+     */
+    private final class StoredBar implements Bar {
+
+        private final int index;
+
+        StoredBar(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Num getOpenPrice() {
+            return toNum(store.getOpen(this.index));
+        }
+
+        @Override
+        public Num getMinPrice() {
+            return toNum(store.getLow(this.index));
+        }
+
+        @Override
+        public Num getMaxPrice() {
+            return toNum(store.getHigh(this.index));
+        }
+
+        @Override
+        public Num getClosePrice() {
+            return toNum(store.getClose(this.index));
+        }
+
+        @Override
+        public Num getVolume() {
+            return numOf(store.getVolume(this.index));
+        }
+
+        @Override
+        public int getTrades() {
+            return store.getTrades(this.index);
+        }
+
+        @Override
+        public Num getAmount() {
+            return numOf(store.getAmount(this.index));
+        }
+
+        @Override
+        public Duration getTimePeriod() {
+            return Duration.ofMillis(store.getEndTime(this.index) - store.getBeginTime(this.index));
+        }
+
+        @Override
+        public ZonedDateTime getBeginTime() {
+            return toZonedDateTime(store.getBeginTime(this.index));
+        }
+
+        @Override
+        public ZonedDateTime getEndTime() {
+            return toZonedDateTime(store.getEndTime(this.index));
+        }
+
+        @Override
+        public void addTrade(Num tradeVolume, Num tradePrice) {
+            store.addTradeAt(this.index, tradeVolume.doubleValue(), tradePrice.doubleValue());
+        }
+
+        @Override
+        public void addPrice(Num price) {
+            store.addPriceAt(this.index, price.doubleValue());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{end time: %1s, close price: %2$f, open price: %3$f, min price: %4$f, max price: %5$f, volume: %6$f}",
+                    getEndTime(), store.getClose(this.index), store.getOpen(this.index), store.getLow(this.index),
+                    store.getHigh(this.index), store.getVolume(this.index));
+        }
+    }
+}
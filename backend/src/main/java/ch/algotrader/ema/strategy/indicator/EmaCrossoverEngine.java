@@ -0,0 +1,67 @@
+package ch.algotrader.ema.strategy.indicator;
+
+import org.ta4j.core.TimeSeries;
+
+/**
+ * Short/long EMA pair and their difference, advanced once per closed bar.
+ */
+public interface EmaCrossoverEngine {
+
+    /**
+     * @param index bar index in the series
+     * @param close close price of the bar that just closed
+     */
+    void onBarClose(int index, double close);
+
+    double getEmaShort();
+
+    double getEmaLong();
+
+    /**
+     * @return emaShort - emaLong as of the last closed bar
+     */
+    double getDifference();
+
+    /**
+     * @return emaShort - emaLong as of the bar before the last closed bar
+     */
+    double getPreviousDifference();
+
+    /**
+     * @return the difference if the current, still open bar closed at {@code close},
+     * without advancing
+     * @throws UnsupportedOperationException if the engine cannot evaluate open bars
+     */
+    default double provisionalDifference(double close) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no provisional difference");
+    }
+
+    /**
+     * Resumes from checkpointed values as of the last closed bar, before any further
+     * {@link #onBarClose}.
+     */
+    void restore(double emaShort, double emaLong, double difference, double previousDifference);
+
+    static EmaCrossoverEngine forName(String name, TimeSeries series, int periodShort, int periodLong) {
+        return forName(name, series, null, periodShort, periodLong);
+    }
+
+    /**
+     * @param graph indicators of the strategy, required by the graph engine
+     */
+    static EmaCrossoverEngine forName(String name, TimeSeries series, IndicatorGraph graph, int periodShort, int periodLong) {
+        switch (name) {
+            case "ta4j":
+                return new Ta4jEmaCrossoverEngine(series, periodShort, periodLong);
+            case "incremental":
+                return new IncrementalEmaCrossoverEngine(periodShort, periodLong);
+            case "graph":
+                if (graph == null) {
+                    throw new IllegalArgumentException("graph indicator engine needs an indicator graph");
+                }
+                return new GraphEmaCrossoverEngine(graph, periodShort, periodLong);
+            default:
+                throw new IllegalArgumentException("unknown indicator engine " + name);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ch.algotrader.ema.strategy.indicator;
+
+/**
+ * {@link EmaCrossoverEngine} reading the EMA nodes of an {@link IndicatorGraph}, so
+ * other indicators on the same EMAs, like MACD, share them. The graph has to be
+ * updated with the bar before {@link #onBarClose}.
+ */
+public class GraphEmaCrossoverEngine implements EmaCrossoverEngine {
+
+    private final IndicatorGraph.Ema emaShort;
+    private final IndicatorGraph.Ema emaLong;
+    private double difference = Double.NaN;
+    private double previousDifference = Double.NaN;
+
+    public GraphEmaCrossoverEngine(IndicatorGraph graph, int periodShort, int periodLong) {
+        this.emaShort = (IndicatorGraph.Ema) graph.ema(graph.close(), periodShort);
+        this.emaLong = (IndicatorGraph.Ema) graph.ema(graph.close(), periodLong);
+    }
+
+    @Override
+    public void onBarClose(int index, double close) {
+        this.previousDifference = this.difference;
+        this.difference = this.emaShort.getValue() - this.emaLong.getValue();
+    }
+
+    @Override
+    public double provisionalDifference(double close) {
+        return this.emaShort.peek(close) - this.emaLong.peek(close);
+    }
+
+    @Override
+    public double getEmaShort() {
+        return this.emaShort.getValue();
+    }
+
+    @Override
+    public double getEmaLong() {
+        return this.emaLong.getValue();
+    }
+
+    @Override
+    public double getDifference() {
+        return this.difference;
+    }
+
+    @Override
+    public double getPreviousDifference() {
+        return this.previousDifference;
+    }
+
+    @Override
+    public void restore(double emaShort, double emaLong, double difference, double previousDifference) {
+        this.emaShort.restore(emaShort);
+        this.emaLong.restore(emaLong);
+        this.difference = difference;
+        this.previousDifference = previousDifference;
+    }
+}
@@ -0,0 +1,39 @@
+package ch.algotrader.ema.strategy.indicator;
+
+/**
+ * Exponential moving average on primitive doubles, same recurrence as ta4j's
+ * EMAIndicator: seeded with the first value, then {@code ema += (value - ema) * 2 / (n + 1)}.
+ */
+public class IncrementalEma {
+
+    private final double multiplier;
+    private double value = Double.NaN;
+
+    public IncrementalEma(int barCount) {
+        this.multiplier = 2.0 / (barCount + 1);
+    }
+
+    public double update(double input) {
+        this.value = Double.isNaN(this.value) ? input : this.value + (input - this.value) * this.multiplier;
+        return this.value;
+    }
+
+    /**
+     * @return what {@link #update} would return for {@code input}, without changing state
+     */
+    public double peek(double input) {
+        return Double.isNaN(this.value) ? input : this.value + (input - this.value) * this.multiplier;
+    }
+
+    public double getValue() {
+        return this.value;
+    }
+
+    public void restore(double value) {
+        this.value = value;
+    }
+
+    public void reset() {
+        this.value = Double.NaN;
+    }
+}
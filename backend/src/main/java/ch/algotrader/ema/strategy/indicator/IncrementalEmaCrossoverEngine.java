@@ -0,0 +1,56 @@
+package ch.algotrader.ema.strategy.indicator;
+
+/**
+ * Constant time, allocation free {@link EmaCrossoverEngine}.
+ */
+public class IncrementalEmaCrossoverEngine implements EmaCrossoverEngine {
+
+    private final IncrementalEma emaShort;
+    private final IncrementalEma emaLong;
+    private double difference = Double.NaN;
+    private double previousDifference = Double.NaN;
+
+    public IncrementalEmaCrossoverEngine(int periodShort, int periodLong) {
+        this.emaShort = new IncrementalEma(periodShort);
+        this.emaLong = new IncrementalEma(periodLong);
+    }
+
+    @Override
+    public void onBarClose(int index, double close) {
+        this.previousDifference = this.difference;
+        this.difference = this.emaShort.update(close) - this.emaLong.update(close);
+    }
+
+    @Override
+    public double provisionalDifference(double close) {
+        return this.emaShort.peek(close) - this.emaLong.peek(close);
+    }
+
+    @Override
+    public double getEmaShort() {
+        return this.emaShort.getValue();
+    }
+
+    @Override
+    public double getEmaLong() {
+        return this.emaLong.getValue();
+    }
+
+    @Override
+    public double getDifference() {
+        return this.difference;
+    }
+
+    @Override
+    public double getPreviousDifference() {
+        return this.previousDifference;
+    }
+
+    @Override
+    public void restore(double emaShort, double emaLong, double difference, double previousDifference) {
+        this.emaShort.restore(emaShort);
+        this.emaLong.restore(emaLong);
+        this.difference = difference;
+        this.previousDifference = previousDifference;
+    }
+}
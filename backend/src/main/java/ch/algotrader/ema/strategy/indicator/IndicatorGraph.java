@@ -0,0 +1,498 @@
+package ch.algotrader.ema.strategy.indicator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import ch.algotrader.ema.strategy.bars.BarStore;
+
+/**
+ * Incremental indicators over the closed bars of one {@link BarStore}, declared as a
+ * graph of nodes. Nodes are keyed by what they compute, so declaring the same
+ * expression twice, e.g. {@code ema(12)} for the crossover and inside
+ * {@code macd(12,26,9)}, returns the one existing node. Nodes are created after their
+ * inputs, so updating them in creation order is a topological order: each node does
+ * constant work once per closed bar, and adding an indicator costs only its new nodes.
+ * <p>
+ * Indicator references, all on close prices except ATR:
+ * <ul>
+ * <li>{@code close}, {@code high}, {@code low}, {@code volume}</li>
+ * <li>{@code ema(n)}, {@code sma(n)}, {@code rsi(n)}, {@code atr(n)} (Wilder smoothing)</li>
+ * <li>{@code macd(fast,slow,signal)} with {@code .signal} and {@code .histogram}</li>
+ * <li>{@code bollinger(n,k)} (middle band) with {@code .upper} and {@code .lower}</li>
+ * <li>a number</li>
+ * </ul>
+ * Values are {@code NaN} until a node has seen enough bars. Not thread safe.
+ */
+public class IndicatorGraph {
+
+    /**
+     * One value per closed bar.
+     */
+    public abstract static class Node {
+
+        private final String key;
+        double value = Double.NaN;
+
+        Node(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public double getValue() {
+            return this.value;
+        }
+
+        abstract void update(BarStore bars, int index);
+    }
+
+    /**
+     * Comparison of two nodes, false while either is {@code NaN}.
+     */
+    public static class Condition {
+
+        private final String expression;
+        private final Node left;
+        private final boolean greater;
+        private final Node right;
+
+        Condition(String expression, Node left, boolean greater, Node right) {
+            this.expression = expression;
+            this.left = left;
+            this.greater = greater;
+            this.right = right;
+        }
+
+        public boolean test() {
+            return this.greater ? this.left.value > this.right.value : this.left.value < this.right.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.expression;
+        }
+    }
+
+    private final BarStore bars;
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private Node[] order = new Node[0];
+
+    public IndicatorGraph(BarStore bars) {
+        this.bars = bars;
+    }
+
+    /**
+     * Advances every node by the bar that just closed.
+     */
+    public void update(int index) {
+        for (Node node : this.order) {
+            node.update(this.bars, index);
+        }
+    }
+
+    /**
+     * @return number of distinct nodes
+     */
+    public int size() {
+        return this.order.length;
+    }
+
+    /**
+     * Resolves a reference like {@code rsi(14)} or {@code bollinger(20,2).upper}, adding
+     * the nodes it needs unless they exist.
+     */
+    public Node node(String reference) {
+
+        final String ref = reference.replace(" ", "").toLowerCase(Locale.ROOT);
+        if (ref.isEmpty()) {
+            throw new IllegalArgumentException("empty indicator reference");
+        }
+        if (Character.isDigit(ref.charAt(0)) || ref.charAt(0) == '-' || ref.charAt(0) == '.') {
+            final double constant = Double.parseDouble(ref);
+            return add("const(" + constant + ")", () -> new Constant("const(" + constant + ")", constant));
+        }
+
+        final int open = ref.indexOf('(');
+        final int close = ref.indexOf(')');
+        final String name = open < 0 ? ref : ref.substring(0, open);
+        final String[] args = open < 0 || close < open ? new String[0] : ref.substring(open + 1, close).split(",");
+        final String output = close >= 0 && close + 1 < ref.length() && ref.charAt(close + 1) == '.' ? ref.substring(close + 2) : "";
+
+        switch (name) {
+            case "close":
+            case "high":
+            case "low":
+            case "volume":
+                return source(name);
+            case "ema":
+                return ema(close(), intArg(args, 0, reference));
+            case "sma":
+                return sma(close(), intArg(args, 0, reference));
+            case "rsi":
+                return rsi(close(), intArg(args, 0, reference));
+            case "atr":
+                return atr(intArg(args, 0, reference));
+            case "macd":
+                return macd(intArg(args, 0, reference), intArg(args, 1, reference), intArg(args, 2, reference), output);
+            case "bollinger":
+                return bollinger(intArg(args, 0, reference), doubleArg(args, 1, reference), output);
+            default:
+                throw new IllegalArgumentException("unknown indicator " + reference);
+        }
+    }
+
+    /**
+     * Parses {@code <reference> < <reference>} or {@code >}, e.g. {@code rsi(14) < 70}.
+     */
+    public Condition condition(String expression) {
+        final int lt = expression.indexOf('<');
+        final int gt = expression.indexOf('>');
+        final int op = lt >= 0 ? lt : gt;
+        if (op < 0 || lt >= 0 && gt >= 0) {
+            throw new IllegalArgumentException("expected one < or > in " + expression);
+        }
+        return new Condition(expression.trim(), node(expression.substring(0, op)), op == gt, node(expression.substring(op + 1)));
+    }
+
+    public Node close() {
+        return source("close");
+    }
+
+    public Node ema(Node input, int period) {
+        return add("ema(" + input.getKey() + "," + period + ")", () -> new Ema("ema(" + input.getKey() + "," + period + ")", input, period));
+    }
+
+    public Node sma(Node input, int period) {
+        return add("sma(" + input.getKey() + "," + period + ")", () -> new Sma("sma(" + input.getKey() + "," + period + ")", input, period, false));
+    }
+
+    public Node stdDev(Node input, int period) {
+        return add("stddev(" + input.getKey() + "," + period + ")", () -> new Sma("stddev(" + input.getKey() + "," + period + ")", input, period, true));
+    }
+
+    public Node rsi(Node input, int period) {
+        return add("rsi(" + input.getKey() + "," + period + ")", () -> new Rsi("rsi(" + input.getKey() + "," + period + ")", input, period));
+    }
+
+    public Node atr(int period) {
+        final Node trueRange = add("tr", () -> new TrueRange("tr", source("high"), source("low"), close()));
+        return add("wilder(tr," + period + ")", () -> new Wilder("wilder(tr," + period + ")", trueRange, period));
+    }
+
+    /**
+     * @return {@code a + factor * b}
+     */
+    public Node linear(Node a, double factor, Node b) {
+        final String key = "linear(" + a.getKey() + "," + factor + "," + b.getKey() + ")";
+        return add(key, () -> new Linear(key, a, factor, b));
+    }
+
+    /**
+     * @param output empty for the MACD line, {@code signal} or {@code histogram}
+     */
+    public Node macd(int fast, int slow, int signal, String output) {
+        final Node line = linear(ema(close(), fast), -1, ema(close(), slow));
+        switch (output) {
+            case "":
+                return line;
+            case "signal":
+                return ema(line, signal);
+            case "histogram":
+                return linear(line, -1, ema(line, signal));
+            default:
+                throw new IllegalArgumentException("unknown macd output " + output);
+        }
+    }
+
+    /**
+     * @param output empty for the middle band, {@code upper} or {@code lower}
+     */
+    public Node bollinger(int period, double width, String output) {
+        final Node middle = sma(close(), period);
+        switch (output) {
+            case "":
+                return middle;
+            case "upper":
+                return linear(middle, width, stdDev(close(), period));
+            case "lower":
+                return linear(middle, -width, stdDev(close(), period));
+            default:
+                throw new IllegalArgumentException("unknown bollinger output " + output);
+        }
+    }
+
+    private Node source(String field) {
+        return add(field, () -> new Source(field));
+    }
+
+    private Node add(String key, Supplier<Node> factory) {
+        final Node existing = this.nodes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final Node node = factory.get();
+        this.nodes.put(key, node);
+        final List<Node> order = new ArrayList<>(this.nodes.values());
+        this.order = order.toArray(new Node[0]);
+        return node;
+    }
+
+    private static int intArg(String[] args, int i, String reference) {
+        return (int) doubleArg(args, i, reference);
+    }
+
+    private static double doubleArg(String[] args, int i, String reference) {
+        if (i >= args.length || args[i].isEmpty()) {
+            throw new IllegalArgumentException("missing argument " + (i + 1) + " in " + reference);
+        }
+        final double value = Double.parseDouble(args[i]);
+        if (value <= 0) {
+            throw new IllegalArgumentException("argument " + (i + 1) + " must be positive in " + reference);
+        }
+        return value;
+    }
+
+    private static final class Constant extends Node {
+
+        Constant(String key, double value) {
+            super(key);
+            this.value = value;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+        }
+    }
+
+    private static final class Source extends Node {
+
+        private final String field;
+
+        Source(String field) {
+            super(field);
+            this.field = field;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            switch (this.field) {
+                case "high":
+                    this.value = bars.getHigh(index);
+                    break;
+                case "low":
+                    this.value = bars.getLow(index);
+                    break;
+                case "volume":
+                    this.value = bars.getVolume(index);
+                    break;
+                default:
+                    this.value = bars.getClose(index);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Same recurrence as {@link IncrementalEma}.
+     */
+    static final class Ema extends Node {
+
+        private final Node input;
+        private final double multiplier;
+
+        Ema(String key, Node input, int period) {
+            super(key);
+            this.input = input;
+            this.multiplier = 2.0 / (period + 1);
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            final double x = this.input.value;
+            if (!Double.isNaN(x)) {
+                this.value = Double.isNaN(this.value) ? x : this.value + (x - this.value) * this.multiplier;
+            }
+        }
+
+        /**
+         * @return the value if the input were {@code x}, without changing state
+         */
+        double peek(double x) {
+            return Double.isNaN(this.value) ? x : this.value + (x - this.value) * this.multiplier;
+        }
+
+        void restore(double value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Rolling mean, or population standard deviation, over the last {@code period} values.
+     */
+    private static final class Sma extends Node {
+
+        private final Node input;
+        private final boolean stdDev;
+        private final double[] window;
+        private int count;
+        private double sum;
+        private double sumOfSquares;
+
+        Sma(String key, Node input, int period, boolean stdDev) {
+            super(key);
+            this.input = input;
+            this.stdDev = stdDev;
+            this.window = new double[period];
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            final double x = this.input.value;
+            if (Double.isNaN(x)) {
+                return;
+            }
+            final int slot = this.count % this.window.length;
+            if (this.count >= this.window.length) {
+                this.sum -= this.window[slot];
+                this.sumOfSquares -= this.window[slot] * this.window[slot];
+            }
+            this.window[slot] = x;
+            this.sum += x;
+            this.sumOfSquares += x * x;
+            this.count++;
+            if (this.count >= this.window.length) {
+                final double mean = this.sum / this.window.length;
+                this.value = this.stdDev
+                        ? Math.sqrt(Math.max(0, this.sumOfSquares / this.window.length - mean * mean))
+                        : mean;
+            }
+        }
+    }
+
+    /**
+     * Wilder's moving average: the mean of the first {@code period} values, then
+     * {@code (previous * (period - 1) + x) / period}.
+     */
+    private static final class Wilder extends Node {
+
+        private final Node input;
+        private final int period;
+        private int count;
+        private double sum;
+
+        Wilder(String key, Node input, int period) {
+            super(key);
+            this.input = input;
+            this.period = period;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            final double x = this.input.value;
+            if (Double.isNaN(x)) {
+                return;
+            }
+            if (this.count < this.period) {
+                this.sum += x;
+                if (++this.count == this.period) {
+                    this.value = this.sum / this.period;
+                }
+            } else {
+                this.value = (this.value * (this.period - 1) + x) / this.period;
+            }
+        }
+    }
+
+    private static final class Rsi extends Node {
+
+        private final Node input;
+        private final int period;
+        private double previous = Double.NaN;
+        private int changes;
+        private double averageGain;
+        private double averageLoss;
+
+        Rsi(String key, Node input, int period) {
+            super(key);
+            this.input = input;
+            this.period = period;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            final double x = this.input.value;
+            if (Double.isNaN(x)) {
+                return;
+            }
+            if (!Double.isNaN(this.previous)) {
+                final double change = x - this.previous;
+                final double gain = Math.max(change, 0);
+                final double loss = Math.max(-change, 0);
+                if (this.changes < this.period) {
+                    this.averageGain += gain / this.period;
+                    this.averageLoss += loss / this.period;
+                } else {
+                    this.averageGain = (this.averageGain * (this.period - 1) + gain) / this.period;
+                    this.averageLoss = (this.averageLoss * (this.period - 1) + loss) / this.period;
+                }
+                if (++this.changes >= this.period) {
+                    this.value = this.averageLoss == 0 ? 100 : 100 - 100 / (1 + this.averageGain / this.averageLoss);
+                }
+            }
+            this.previous = x;
+        }
+    }
+
+    private static final class TrueRange extends Node {
+
+        private final Node high;
+        private final Node low;
+        private final Node close;
+        private double previousClose = Double.NaN;
+
+        TrueRange(String key, Node high, Node low, Node close) {
+            super(key);
+            this.high = high;
+            this.low = low;
+            this.close = close;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            final double h = this.high.value;
+            final double l = this.low.value;
+            if (Double.isNaN(h) || Double.isNaN(l)) {
+                return;
+            }
+            this.value = Double.isNaN(this.previousClose)
+                    ? h - l
+                    : Math.max(h - l, Math.max(Math.abs(h - this.previousClose), Math.abs(l - this.previousClose)));
+            this.previousClose = this.close.value;
+        }
+    }
+
+    private static final class Linear extends Node {
+
+        private final Node a;
+        private final double factor;
+        private final Node b;
+
+        Linear(String key, Node a, double factor, Node b) {
+            super(key);
+            this.a = a;
+            this.factor = factor;
+            this.b = b;
+        }
+
+        @Override
+        void update(BarStore bars, int index) {
+            this.value = this.a.value + this.factor * this.b.value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ch.algotrader.ema.strategy.indicator;
+
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.helpers.DifferenceIndicator;
+
+/**
+ * {@link EmaCrossoverEngine} backed by the ta4j indicator chain over the strategy's series.
+ */
+public class Ta4jEmaCrossoverEngine implements EmaCrossoverEngine {
+
+    private final EMAIndicator emaShort;
+    private final EMAIndicator emaLong;
+    private final DifferenceIndicator emaDifference;
+
+    private double emaShortValue = Double.NaN;
+    private double emaLongValue = Double.NaN;
+    private double difference = Double.NaN;
+    private double previousDifference = Double.NaN;
+
+    public Ta4jEmaCrossoverEngine(TimeSeries series, int periodShort, int periodLong) {
+        ClosePriceIndicator closePriceIndicator = new ClosePriceIndicator(series);
+        this.emaShort = new EMAIndicator(closePriceIndicator, periodShort);
+        this.emaLong = new EMAIndicator(closePriceIndicator, periodLong);
+        this.emaDifference = new DifferenceIndicator(this.emaShort, this.emaLong);
+    }
+
+    @Override
+    public void onBarClose(int index, double close) {
+        this.emaShortValue = this.emaShort.getValue(index).doubleValue();
+        this.emaLongValue = this.emaLong.getValue(index).doubleValue();
+        this.difference = this.emaDifference.getValue(index).doubleValue();
+        this.previousDifference = index > 0 ? this.emaDifference.getValue(index - 1).doubleValue() : Double.NaN;
+    }
+
+    @Override
+    public double getEmaShort() {
+        return this.emaShortValue;
+    }
+
+    @Override
+    public double getEmaLong() {
+        return this.emaLongValue;
+    }
+
+    @Override
+    public double getDifference() {
+        return this.difference;
+    }
+
+    @Override
+    public double getPreviousDifference() {
+        return this.previousDifference;
+    }
+
+    /**
+     * Only the reported values are restored; later bars are computed by ta4j from the
+     * restored series, seeded at its first bar.
+     */
+    @Override
+    public void restore(double emaShort, double emaLong, double difference, double previousDifference) {
+        this.emaShortValue = emaShort;
+        this.emaLongValue = emaLong;
+        this.difference = difference;
+        this.previousDifference = previousDifference;
+    }
+}
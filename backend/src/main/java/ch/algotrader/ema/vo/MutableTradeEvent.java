@@ -0,0 +1,158 @@
+package ch.algotrader.ema.vo;
+
+/**
+ * Reusable, primitive-field trade event. Instances are filled in place by the
+ * frame decoder and are only valid until the next frame is decoded into them.
+ * Use {@link #toTradeEvent()} or {@link #copyFrom} into another instance to keep one.
+ */
+public class MutableTradeEvent {
+
+    private static final int INITIAL_SEQ_CAPACITY = 32;
+
+    private int channelId;
+    private char[] seq = new char[INITIAL_SEQ_CAPACITY];
+    private int seqLength;
+    private final SeqView seqView = new SeqView();
+    private long id;
+    private long timestamp;
+    private double price;
+    private double amount;
+    /** System.nanoTime() stamps, see LatencyMetrics */
+    private long receiveNanos;
+    private long parsedNanos;
+
+    public void clear() {
+        this.channelId = 0;
+        this.seqLength = 0;
+        this.id = 0;
+        this.timestamp = 0;
+        this.price = 0;
+        this.amount = 0;
+        this.receiveNanos = 0;
+        this.parsedNanos = 0;
+    }
+
+    public void copyFrom(MutableTradeEvent other) {
+        this.channelId = other.channelId;
+        setSeq(other.seqView, 0, other.seqLength);
+        this.id = other.id;
+        this.timestamp = other.timestamp;
+        this.price = other.price;
+        this.amount = other.amount;
+        this.receiveNanos = other.receiveNanos;
+        this.parsedNanos = other.parsedNanos;
+    }
+
+    /**
+     * @return an immutable copy, allocates
+     */
+    public TradeEvent toTradeEvent() {
+        return TradeEvent.copyOf(this);
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(int channelId) {
+        this.channelId = channelId;
+    }
+
+    /**
+     * @return a view over the internal seq buffer, valid until the event is reused
+     */
+    public CharSequence getSeq() {
+        return seqView;
+    }
+
+    public void setSeq(CharSequence source, int start, int end) {
+        final int len = end - start;
+        if (len > this.seq.length) {
+            this.seq = new char[Math.max(len, this.seq.length * 2)];
+        }
+        for (int i = 0; i < len; i++) {
+            this.seq[i] = source.charAt(start + i);
+        }
+        this.seqLength = len;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    public void setReceiveNanos(long receiveNanos) {
+        this.receiveNanos = receiveNanos;
+    }
+
+    public long getParsedNanos() {
+        return parsedNanos;
+    }
+
+    public void setParsedNanos(long parsedNanos) {
+        this.parsedNanos = parsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "MutableTradeEvent [channelId=" + channelId + ", seq=" + seqView + ", id=" + id + ", timestamp=" + timestamp
+                + ", price=" + price + ", amount=" + amount + "]";
+    }
+
+    private final class SeqView implements CharSequence {
+
+        @Override
+        public int length() {
+            return seqLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= seqLength) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + seqLength);
+            }
+            return seq[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(seq, 0, seqLength);
+        }
+    }
+}
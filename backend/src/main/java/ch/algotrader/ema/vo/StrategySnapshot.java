@@ -0,0 +1,199 @@
+package ch.algotrader.ema.vo;
+
+import java.util.List;
+
+/**
+ * Immutable view of one strategy as of its last closed bar, see
+ * {@link ch.algotrader.ema.strategy.StrategySnapshotPublisher}.
+ */
+public class StrategySnapshot {
+
+    private final String symbol;
+    private final long publishedMillis;
+    private final List<Bar> bars;
+    private final double emaShort;
+    private final double emaLong;
+    private final double emaDifference;
+    private final String lastSignal;
+    private final long lastSignalTime;
+    private final double position;
+    private final OrderStatus order;
+
+    /**
+     * @param bars recent closed bars, oldest first
+     * @param order last order, or null
+     */
+    public StrategySnapshot(String symbol, long publishedMillis, List<Bar> bars, double emaShort, double emaLong,
+            double emaDifference, String lastSignal, long lastSignalTime, double position, OrderStatus order) {
+        this.symbol = symbol;
+        this.publishedMillis = publishedMillis;
+        this.bars = List.copyOf(bars);
+        this.emaShort = emaShort;
+        this.emaLong = emaLong;
+        this.emaDifference = emaDifference;
+        this.lastSignal = lastSignal;
+        this.lastSignalTime = lastSignalTime;
+        this.position = position;
+        this.order = order;
+    }
+
+    public StrategySnapshot withOrder(OrderStatus order) {
+        return new StrategySnapshot(this.symbol, this.publishedMillis, this.bars, this.emaShort, this.emaLong,
+                this.emaDifference, this.lastSignal, this.lastSignalTime, this.position, order);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getPublishedMillis() {
+        return publishedMillis;
+    }
+
+    /**
+     * @return the last closed bar, or null before the first
+     */
+    public Bar getCurrentBar() {
+        return bars.isEmpty() ? null : bars.get(bars.size() - 1);
+    }
+
+    public List<Bar> getBars() {
+        return bars;
+    }
+
+    public double getEmaShort() {
+        return emaShort;
+    }
+
+    public double getEmaLong() {
+        return emaLong;
+    }
+
+    public double getEmaDifference() {
+        return emaDifference;
+    }
+
+    public String getLastSignal() {
+        return lastSignal;
+    }
+
+    public long getLastSignalTime() {
+        return lastSignalTime;
+    }
+
+    public double getPosition() {
+        return position;
+    }
+
+    public OrderStatus getOrder() {
+        return order;
+    }
+
+    public static class Bar {
+
+        private final long beginTime;
+        private final long endTime;
+        private final double open;
+        private final double high;
+        private final double low;
+        private final double close;
+        private final double volume;
+        private final int trades;
+
+        public Bar(long beginTime, long endTime, double open, double high, double low, double close, double volume, int trades) {
+            this.beginTime = beginTime;
+            this.endTime = endTime;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+            this.trades = trades;
+        }
+
+        public long getBeginTime() {
+            return beginTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public double getOpen() {
+            return open;
+        }
+
+        public double getHigh() {
+            return high;
+        }
+
+        public double getLow() {
+            return low;
+        }
+
+        public double getClose() {
+            return close;
+        }
+
+        public double getVolume() {
+            return volume;
+        }
+
+        public int getTrades() {
+            return trades;
+        }
+    }
+
+    public static class OrderStatus {
+
+        public enum State {
+            PENDING, FILLED, FAILED
+        }
+
+        private final String side;
+        private final State state;
+        private final long updatedMillis;
+        private final long orderId;
+        private final double price;
+        private final double amount;
+        private final String message;
+
+        public OrderStatus(String side, State state, long updatedMillis, long orderId, double price, double amount, String message) {
+            this.side = side;
+            this.state = state;
+            this.updatedMillis = updatedMillis;
+            this.orderId = orderId;
+            this.price = price;
+            this.amount = amount;
+            this.message = message;
+        }
+
+        public String getSide() {
+            return side;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getUpdatedMillis() {
+            return updatedMillis;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package ch.algotrader.ema.vo;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Subscription {
 
     private String event;
     private String channel;
     private String pair;
+    /** book channel only */
+    private String prec;
+    private String freq;
+    private String len;
 
     public String getEvent() {
         return event;
@@ -31,6 +37,30 @@ public class Subscription {
         this.pair = pair;
     }
 
+    public String getPrec() {
+        return prec;
+    }
+
+    public void setPrec(String prec) {
+        this.prec = prec;
+    }
+
+    public String getFreq() {
+        return freq;
+    }
+
+    public void setFreq(String freq) {
+        this.freq = freq;
+    }
+
+    public String getLen() {
+        return len;
+    }
+
+    public void setLen(String len) {
+        this.len = len;
+    }
+
     public static Subscription trades(String pair) {
         final Subscription subscription = new Subscription();
         subscription.event = "subscribe";
@@ -38,4 +68,18 @@ public class Subscription {
         subscription.pair = pair;
         return subscription;
     }
+
+    /**
+     * Raw price levels, every update as it happens.
+     */
+    public static Subscription book(String pair, int levels) {
+        final Subscription subscription = new Subscription();
+        subscription.event = "subscribe";
+        subscription.channel = "book";
+        subscription.pair = pair;
+        subscription.prec = "P0";
+        subscription.freq = "F0";
+        subscription.len = String.valueOf(levels);
+        return subscription;
+    }
 }
@@ -22,9 +22,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 public class TradeEvent {
 
     private String seq;
-    private Long timestamp;
-    private Double price;
-    private Double amount;
+    private long timestamp;
+    private double price;
+    private double amount;
 
     private TradeEvent(){}
 
@@ -49,19 +49,32 @@ public class TradeEvent {
         return tradeEvent;
     }
 
+    /**
+     * Copies a reusable event into an immutable one, for callers that need to keep it.
+     */
+    public static TradeEvent copyOf(MutableTradeEvent event) {
+
+        TradeEvent tradeEvent = new TradeEvent();
+        tradeEvent.seq = event.getSeq().toString();
+        tradeEvent.timestamp = event.getTimestamp();
+        tradeEvent.price = event.getPrice();
+        tradeEvent.amount = event.getAmount();
+        return tradeEvent;
+    }
+
     public String getSeq() {
         return seq;
     }
 
-    public Long getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public Double getPrice() {
+    public double getPrice() {
         return price;
     }
 
-    public Double getAmount() {
+    public double getAmount() {
         return amount;
     }
 
@@ -0,0 +1,83 @@
+package ch.algotrader.ema.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.strategy.StrategyConfig;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class AuditLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsBarsSignalsAndResponses() throws Exception {
+
+        AuditLog auditLog = new AuditLog();
+        ReflectionTestUtils.setField(auditLog, "dir", dir.toString());
+        auditLog.afterPropertiesSet();
+
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(2);
+        config.setEmaPeriodLong(3);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(10);
+        config.setBarType("tick");
+        config.setBarSize(1);
+        config.setLateTrades("current-bar");
+        config.setLogBars(false);
+        StrategyLogic strategy = new StrategyLogic(config, (side, quantity, symbol, tickNanos) -> {
+            OrderResponse response = new OrderResponse();
+            response.setOrderId(7);
+            response.setAvgExecutionPrice(104);
+            response.setExecutedAmount(0.01);
+            return CompletableFuture.completedFuture(response);
+        }, LatencyMetrics.disabled());
+        strategy.addListener(auditLog);
+
+        MutableTradeEvent event = new MutableTradeEvent();
+        double[] prices = {100, 99, 98, 97, 96, 100, 104, 108};
+        for (int i = 0; i < prices.length; i++) {
+            event.setTimestamp(1_600_000_000L + i);
+            event.setPrice(prices[i]);
+            event.setAmount(0.1);
+            strategy.handleTradeEvent(event);
+        }
+        auditLog.destroy();
+
+        // a bar per trade, then signal, order and response of the buy
+        assertThat(auditLog.getWritten()).isEqualTo(prices.length + 3);
+        assertThat(auditLog.getDropped()).isZero();
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        assertThat(AuditLogReader.print(auditLog.getFile(), false, new PrintStream(text, true, StandardCharsets.UTF_8)))
+                .isEqualTo(auditLog.getWritten());
+        assertThat(text.toString(StandardCharsets.UTF_8))
+                .contains("BAR BTCUSD begin ")
+                .contains("SIGNAL BTCUSD buy price 100.0")
+                .contains("ORDER BTCUSD buy quantity 0.01 position 0.01")
+                .contains("RESPONSE BTCUSD buy orderId 7 price 104.0 amount 0.01");
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        AuditLogReader.print(auditLog.getFile(), true, new PrintStream(csv, true, StandardCharsets.UTF_8));
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize((int) auditLog.getWritten() + 1);
+        assertThat(lines[1]).startsWith("BAR,1600000000000,BTCUSD,,1600000000000,1,100.0,100.0,100.0,100.0,0.1,");
+    }
+}
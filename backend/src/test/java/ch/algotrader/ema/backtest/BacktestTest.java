@@ -0,0 +1,79 @@
+package ch.algotrader.ema.backtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.BufferedWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BacktestTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void convertsCsvToTickFile() throws Exception {
+
+        Path csv = dir.resolve("trades.csv");
+        Files.write(csv, List.of(
+                "timestamp,price,amount",
+                "# comment",
+                "1527613000,7400.5,0.0025",
+                "",
+                "1527613001000,7401.25,-1.5"));
+
+        TickFile ticks = TickFile.open(csv);
+
+        assertThat(Files.exists(dir.resolve("trades.ticks"))).isTrue();
+        assertThat(ticks.size()).isEqualTo(2);
+        assertThat(ticks.getTimestamp(0)).isEqualTo(1527613000L);
+        assertThat(ticks.getPrice(0)).isEqualTo(7400.5);
+        assertThat(ticks.getAmount(0)).isEqualTo(0.0025);
+        assertThat(ticks.getTimestamp(1)).isEqualTo(1527613001L);
+        assertThat(ticks.getPrice(1)).isEqualTo(7401.25);
+        assertThat(ticks.getAmount(1)).isEqualTo(-1.5);
+    }
+
+    @Test
+    void sweepsParameterGridWithFees() throws Exception {
+
+        // one trade per second for six hours of a slow sine wave, so crossovers occur
+        Path csv = dir.resolve("sine.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            for (int i = 0; i < 6 * 3600; i++) {
+                double price = 7000 + 200 * Math.sin(i / 1800.0);
+                writer.write(String.format(Locale.ROOT, "%d,%.2f,%.4f%n", 1527613000L + i, price, i % 2 == 0 ? 0.01 : -0.01));
+            }
+        }
+        TickFile ticks = TickFile.open(csv);
+
+        ParameterSweep withFees = new ParameterSweep(new Backtester(ticks, 0.002, 1000), "BTCUSD", new BigDecimal("0.01"), "incremental", 1000);
+        List<BacktestResult> results = withFees.run(new int[] {3, 5, 20}, new int[] {5, 10}, new long[] {60_000, 300_000}, 4);
+
+        // (3,5) (3,10) (5,10) per bar length, 5/5 and 20/x are skipped
+        assertThat(results).hasSize(6);
+        for (int i = 1; i < results.size(); i++) {
+            assertThat(results.get(i).getNetPnl()).isLessThanOrEqualTo(results.get(i - 1).getNetPnl());
+        }
+        BacktestResult result = results.stream()
+                .filter(r -> r.getEmaPeriodShort() == 3 && r.getEmaPeriodLong() == 10 && r.getBarMillis() == 60_000)
+                .findFirst().orElseThrow();
+        // six hours of one minute bars, plus partial bars at either end
+        assertThat(result.getBars()).isBetween(360, 362);
+        assertThat(result.getFills()).isGreaterThan(0);
+        assertThat(result.getFees()).isGreaterThan(0);
+
+        // the same run without fees differs by exactly the fees
+        ParameterSweep noFees = new ParameterSweep(new Backtester(ticks, 0, 1000), "BTCUSD", new BigDecimal("0.01"), "incremental", 1000);
+        BacktestResult gross = noFees.run(new int[] {3}, new int[] {10}, new long[] {60_000}, 1).get(0);
+        assertThat(gross.getFills()).isEqualTo(result.getFills());
+        assertThat(gross.getNetPnl() - result.getFees()).isCloseTo(result.getNetPnl(), within(1e-9));
+    }
+}
@@ -0,0 +1,129 @@
+package ch.algotrader.ema.fanout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+class TradeRingTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<String> channels = new ArrayList<>();
+    private final List<Double> prices = new ArrayList<>();
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    private final TradeRingReader.Handler handler = new TradeRingReader.Handler() {
+
+        @Override
+        public void onChannel(int channelId, String symbol) {
+            channels.add(channelId + " " + symbol);
+        }
+
+        @Override
+        public void onTrade(MutableTradeEvent event) {
+            prices.add(event.getPrice());
+        }
+    };
+
+    @Test
+    void readersStartAtTheNewestTradeAndReadIndependently() throws Exception {
+
+        Path file = dir.resolve("trades.ring");
+        TradeRingWriter writer = new TradeRingWriter(file, 16);
+        publish(writer, "BTCUSD", 5, 100);
+
+        TradeRingReader first = new TradeRingReader(file);
+        TradeRingReader second = new TradeRingReader(file);
+        assertThat(first.poll(event, handler, 10)).isZero();
+
+        publish(writer, "BTCUSD", 5, 101);
+        publish(writer, "ETHUSD", 6, 102);
+        assertThat(first.poll(event, handler, 10)).isEqualTo(2);
+        assertThat(channels).containsExactly("5 BTCUSD", "6 ETHUSD");
+        assertThat(prices).containsExactly(101.0, 102.0);
+        assertThat(event.getChannelId()).isEqualTo(6);
+        assertThat(event.getTimestamp()).isEqualTo(1_600_000_102L);
+        assertThat(event.getAmount()).isEqualTo(0.5);
+
+        prices.clear();
+        assertThat(second.poll(event, handler, 1)).isEqualTo(1);
+        assertThat(second.getLag()).isEqualTo(1);
+        assertThat(prices).containsExactly(101.0);
+
+        // a restarted publisher continues the sequence
+        writer.close();
+        TradeRingWriter restarted = new TradeRingWriter(file, 16);
+        assertThat(restarted.getPublished()).isEqualTo(3);
+        publish(restarted, "LTCUSD", 5, 103);
+        channels.clear();
+        prices.clear();
+        assertThat(first.poll(event, handler, 10)).isEqualTo(1);
+        assertThat(channels).containsExactly("5 LTCUSD");
+        assertThat(prices).containsExactly(103.0);
+    }
+
+    @Test
+    void lappedReaderSkipsAhead() throws Exception {
+
+        Path file = dir.resolve("trades.ring");
+        TradeRingWriter writer = new TradeRingWriter(file, 8);
+        TradeRingReader reader = new TradeRingReader(file);
+        for (int i = 0; i < 20; i++) {
+            publish(writer, "BTCUSD", 5, i);
+        }
+
+        assertThat(reader.poll(event, handler, 100)).isEqualTo(4);
+        assertThat(reader.getLapped()).isEqualTo(1);
+        assertThat(reader.getSkipped()).isEqualTo(16);
+        assertThat(prices).containsExactly(16.0, 17.0, 18.0, 19.0);
+        assertThat(reader.getCursor()).isEqualTo(writer.getPublished());
+    }
+
+    @Test
+    void restartedPublisherSkipsRecordsADeadPublisherClaimed() throws Exception {
+
+        Path file = dir.resolve("trades.ring");
+        TradeRingWriter writer = new TradeRingWriter(file, 16);
+        TradeRingReader reader = new TradeRingReader(file);
+        publish(writer, "BTCUSD", 5, 100);
+
+        // died between claiming sequence 1 and publishing it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            long sequence = (long) TradeRing.LONG.getAndAdd(buffer, TradeRing.CLAIMED_OFFSET, 1L);
+            TradeRing.LONG.setOpaque(buffer, TradeRing.offset(sequence, 15) + TradeRing.SEQUENCE, 0L);
+        }
+        assertThat(reader.poll(event, handler, 10)).isEqualTo(1);
+        assertThat(reader.poll(event, handler, 10)).isZero();
+
+        TradeRingWriter restarted = new TradeRingWriter(file, 16);
+        publish(restarted, "BTCUSD", 5, 101);
+        assertThat(reader.poll(event, handler, 10)).isEqualTo(1);
+        assertThat(prices).containsExactly(100.0, 101.0);
+        assertThat(reader.getCursor()).isEqualTo(3);
+        assertThat(reader.getLapped()).isZero();
+    }
+
+    private static void publish(TradeRingWriter writer, String symbol, int channelId, double price) {
+        MutableTradeEvent trade = new MutableTradeEvent();
+        trade.setChannelId(channelId);
+        trade.setId((long) price);
+        trade.setTimestamp(1_600_000_000L + (long) price);
+        trade.setPrice(price);
+        trade.setAmount(0.5);
+        writer.publish(symbol, trade);
+    }
+}
@@ -0,0 +1,101 @@
+package ch.algotrader.ema.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FrameJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysFramesInOrderAcrossSegments() throws Exception {
+
+        List<String> frames = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            frames.add("[5,\"tu\",\"" + i + "-BTCUSD\"," + (243474913 + i) + ",1527613000,7400.5,0.0025]");
+        }
+        frames.add("{\"event\":\"info\",\"msg\":\"größe € 😀\"}");
+
+        FrameJournal journal = new FrameJournal(dir, 4096, 0);
+        journal.start();
+        long nanos = 1_000;
+        for (String frame : frames) {
+            assertThat(journal.append(frame, nanos++, 1_527_613_000_000L)).isTrue();
+            // give the roller time to map the next segment
+            if (nanos % 20 == 0) {
+                Thread.sleep(5);
+            }
+        }
+        journal.close();
+
+        FrameJournalReader reader = new FrameJournalReader(dir);
+        assertThat(reader.getSegments().size()).isGreaterThan(2);
+
+        List<String> replayed = new ArrayList<>();
+        List<Long> stamps = new ArrayList<>();
+        long count = reader.replay(FrameJournalReader.Speed.MAX, (frame, receiveNanos, receiveMillis) -> {
+            replayed.add(frame);
+            stamps.add(receiveNanos);
+        });
+
+        assertThat(count).isEqualTo(frames.size());
+        assertThat(replayed).isEqualTo(frames);
+        assertThat(stamps.get(0)).isEqualTo(1_000L);
+        assertThat(journal.getDropped()).isZero();
+    }
+
+    @Test
+    void keepsEveryFrameFromConcurrentWriters() throws Exception {
+
+        FrameJournal journal = new FrameJournal(dir, 1 << 20, 0);
+        journal.start();
+
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            final int writer = w;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    journal.append(writer + ":" + i, System.nanoTime(), System.currentTimeMillis());
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        journal.close();
+
+        Set<String> replayed = new HashSet<>();
+        new FrameJournalReader(dir).replay(FrameJournalReader.Speed.MAX, (frame, receiveNanos, receiveMillis) -> replayed.add(frame));
+
+        assertThat(replayed.size() + journal.getDropped()).isEqualTo(20_000);
+        assertThat(journal.getAppended()).isEqualTo(replayed.size());
+    }
+
+    @Test
+    void rollsSegmentsByAge() throws Exception {
+
+        FrameJournal journal = new FrameJournal(dir, 1 << 16, 50);
+        journal.start();
+        journal.append("[5,\"hb\"]", System.nanoTime(), System.currentTimeMillis());
+        Thread.sleep(400);
+        journal.append("[5,\"hb\"]", System.nanoTime(), System.currentTimeMillis());
+        journal.close();
+
+        List<String> replayed = new ArrayList<>();
+        FrameJournalReader reader = new FrameJournalReader(dir);
+        reader.replay(FrameJournalReader.Speed.MAX, (frame, receiveNanos, receiveMillis) -> replayed.add(frame));
+
+        assertThat(reader.getSegments().size()).isGreaterThan(2);
+        assertThat(replayed).hasSize(2);
+    }
+}
@@ -0,0 +1,185 @@
+package ch.algotrader.ema.marketdata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.TradeEvent;
+
+class BitfinexFrameDecoderTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BitfinexFrameDecoder decoder = new BitfinexFrameDecoder();
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    @Test
+    void classifiesCorpus() throws IOException {
+
+        for (String[] entry : loadCorpus()) {
+            FrameType expected = FrameType.valueOf(entry[0]);
+            assertThat(decoder.decode(entry[1], event)).as(entry[1]).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void tradeUpdatesMatchTreeDecoding() throws IOException {
+
+        for (String[] entry : loadCorpus()) {
+            if (FrameType.valueOf(entry[0]) != FrameType.TRADE_UPDATE) {
+                continue;
+            }
+            JsonNode json = objectMapper.readTree(entry[1]);
+            TradeEvent expected = TradeEvent.fromJson(json);
+
+            decoder.decode(entry[1], event);
+
+            assertThat(event.getChannelId()).as(entry[1]).isEqualTo(json.get(0).asInt());
+            assertThat(event.getSeq().toString()).as(entry[1]).isEqualTo(expected.getSeq());
+            assertThat(event.getId()).as(entry[1]).isEqualTo(json.get(3).asLong());
+            assertThat(event.getTimestamp()).as(entry[1]).isEqualTo(expected.getTimestamp());
+            assertThat(event.getPrice()).as(entry[1]).isEqualTo(expected.getPrice());
+            assertThat(event.getAmount()).as(entry[1]).isEqualTo(expected.getAmount());
+        }
+    }
+
+    @Test
+    void tradeExecutedMatchesTreeDecoding() throws IOException {
+
+        for (String[] entry : loadCorpus()) {
+            if (FrameType.valueOf(entry[0]) != FrameType.TRADE_EXECUTED) {
+                continue;
+            }
+            JsonNode json = objectMapper.readTree(entry[1]);
+
+            decoder.decode(entry[1], event);
+
+            assertThat(event.getChannelId()).isEqualTo(json.get(0).asInt());
+            assertThat(event.getSeq().toString()).isEqualTo(json.get(2).asText());
+            assertThat(event.getTimestamp()).isEqualTo(json.get(3).asLong());
+            assertThat(event.getPrice()).isEqualTo(json.get(4).asDouble());
+            assertThat(event.getAmount()).isEqualTo(json.get(5).asDouble());
+        }
+    }
+
+    @Test
+    void reportsChannelId() {
+
+        decoder.decode("[17,\"hb\"]", event);
+        assertThat(decoder.getChannelId()).isEqualTo(17);
+    }
+
+    @Test
+    void decodesBookFrames() {
+
+        assertThat(decoder.decode("[6,7488.5,2,-0.75]", event)).isEqualTo(FrameType.BOOK_UPDATE);
+        assertThat(decoder.getChannelId()).isEqualTo(6);
+        assertThat(decoder.getBookPrice()).isEqualTo(7488.5);
+        assertThat(decoder.getBookCount()).isEqualTo(2);
+        assertThat(decoder.getBookAmount()).isEqualTo(-0.75);
+
+        OrderBook book = new OrderBook("BTCUSD", 25);
+        book.apply(1, 1, 1);
+        String snapshot = "[6,[[7488.4,1,0.5],[7488.3,3,1.25],[7488.6,2,-0.2]]]";
+        assertThat(decoder.decode(snapshot, event)).isEqualTo(FrameType.SNAPSHOT);
+        assertThat(decoder.decodeBookSnapshot(snapshot, book)).isEqualTo(3);
+        assertThat(book.getBestBid()).isEqualTo(7488.4);
+        assertThat(book.getBidDepth(25)).isEqualTo(1.75);
+        assertThat(book.getBestAsk()).isEqualTo(7488.6);
+        assertThat(decoder.decodeBookSnapshot("[6,[]]", book)).isZero();
+        assertThat(book.getBidLevels()).isZero();
+    }
+
+    @Test
+    void rejectsTruncatedTrade() {
+
+        assertThatThrownBy(() -> decoder.decode("[5,\"tu\",\"7303-BTCUSD\",243474913,15276", event))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Compares the streaming decoder with the previous readTree/fromJson path.
+     * Run with {@code -Dperf=true}; numbers are printed, not asserted.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "perf", matches = "true")
+    void throughputComparison() throws IOException {
+
+        List<String> frames = new ArrayList<>();
+        for (String[] entry : loadCorpus()) {
+            if (entry[1].startsWith("[")) {
+                frames.add(entry[1]);
+            }
+        }
+
+        final int rounds = 200_000;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runTree(frames, rounds);
+            runDecoder(frames, rounds);
+        }
+
+        long t0 = System.nanoTime();
+        double treeSink = runTree(frames, rounds);
+        long t1 = System.nanoTime();
+        double decoderSink = runDecoder(frames, rounds);
+        long t2 = System.nanoTime();
+
+        long count = (long) rounds * frames.size();
+        System.out.printf("readTree/fromJson: %.1f ns/frame, decoder: %.1f ns/frame (%s)%n",
+                (t1 - t0) / (double) count, (t2 - t1) / (double) count, treeSink == decoderSink);
+    }
+
+    private static double runTree(List<String> frames, int rounds) throws IOException {
+        double sink = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String frame : frames) {
+                JsonNode json = objectMapper.readTree(frame);
+                if (json.isArray() && "tu".equals(json.get(1).asText())) {
+                    sink += TradeEvent.fromJson(json).getPrice();
+                }
+            }
+        }
+        return sink;
+    }
+
+    private double runDecoder(List<String> frames, int rounds) {
+        double sink = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String frame : frames) {
+                if (decoder.decode(frame, event) == FrameType.TRADE_UPDATE) {
+                    sink += event.getPrice();
+                }
+            }
+        }
+        return sink;
+    }
+
+    static List<String[]> loadCorpus() throws IOException {
+
+        List<String[]> corpus = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                BitfinexFrameDecoderTest.class.getResourceAsStream("/bitfinex/trade-frames.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                corpus.add(line.split("\t", 2));
+            }
+        }
+        return corpus;
+    }
+}
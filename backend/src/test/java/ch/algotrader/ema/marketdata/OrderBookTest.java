@@ -0,0 +1,72 @@
+package ch.algotrader.ema.marketdata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class OrderBookTest {
+
+    private final OrderBook book = new OrderBook("BTCUSD", 3);
+
+    @Test
+    void keepsLevelsSortedBySide() {
+
+        assertThat(book.getBestBid()).isNaN();
+        assertThat(book.getSpread()).isNaN();
+
+        book.apply(7499, 1, 0.5);
+        book.apply(7500, 2, 1.0);
+        book.apply(7498, 1, 2.0);
+        book.apply(7502, 1, -0.3);
+        book.apply(7501, 3, -0.7);
+
+        assertThat(book.getBestBid()).isEqualTo(7500);
+        assertThat(book.getBestBidAmount()).isEqualTo(1.0);
+        assertThat(book.getBestAsk()).isEqualTo(7501);
+        assertThat(book.getBestAskAmount()).isEqualTo(0.7);
+        assertThat(book.getSpread()).isEqualTo(1);
+        assertThat(book.getMid()).isEqualTo(7500.5);
+        assertThat(book.getBidDepth(2)).isEqualTo(1.5);
+        assertThat(book.getAskDepth(10)).isEqualTo(1.0);
+        assertThat(book.getImbalance(1)).isCloseTo(0.3 / 1.7, within(1e-12));
+    }
+
+    @Test
+    void updatesAndRemovesLevels() {
+
+        book.apply(7500, 2, 1.0);
+        book.apply(7499, 1, 0.5);
+        book.apply(7500, 1, 0.4);
+        assertThat(book.getBestBidAmount()).isEqualTo(0.4);
+
+        // Bitfinex removes a level with count 0 and amount 1 (bid) or -1 (ask)
+        book.apply(7500, 0, 1);
+        assertThat(book.getBestBid()).isEqualTo(7499);
+        assertThat(book.getBidLevels()).isEqualTo(1);
+
+        book.apply(7600, 0, -1);
+        assertThat(book.getAskLevels()).isZero();
+        assertThat(book.getUpdates()).isEqualTo(5);
+    }
+
+    @Test
+    void dropsWorstLevelWhenFull() {
+
+        book.apply(100, 1, 1);
+        book.apply(101, 1, 2);
+        book.apply(102, 1, 3);
+        book.apply(99, 1, 10);
+        assertThat(book.getBidDepth(3)).isEqualTo(6);
+
+        book.apply(103, 1, 4);
+        assertThat(book.getBidLevels()).isEqualTo(3);
+        assertThat(book.getBestBid()).isEqualTo(103);
+        assertThat(book.getBidDepth(3)).isEqualTo(9);
+
+        book.apply(101.5, 1, 5);
+        assertThat(book.getBidDepth(3)).isEqualTo(12);
+        book.apply(103, 0, 1);
+        assertThat(book.getBidDepth(3)).isEqualTo(8);
+    }
+}
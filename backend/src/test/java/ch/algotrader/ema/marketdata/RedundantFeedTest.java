@@ -0,0 +1,125 @@
+package ch.algotrader.ema.marketdata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.Endpoint;
+import javax.websocket.MessageHandler;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.journal.FrameJournal;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+class RedundantFeedTest {
+
+    private final StrategyPipeline strategyPipeline = mock(StrategyPipeline.class);
+    private final WebSocketContainer container = mock(WebSocketContainer.class);
+
+    /** endpoint and session of every connect, in order */
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final List<String> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+
+    private RedundantFeed feed;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        when(container.connectToServer(any(Endpoint.class), any(ClientEndpointConfig.class), any(URI.class))).thenAnswer(invocation -> {
+            Endpoint endpoint = invocation.getArgument(0);
+            Session session = mock(Session.class);
+            RemoteEndpoint.Basic remote = mock(RemoteEndpoint.Basic.class);
+            when(session.isOpen()).thenReturn(true);
+            when(session.getBasicRemote()).thenReturn(remote);
+            doAnswer(sent -> subscriptions.add(sent.getArgument(0))).when(remote).sendText(anyString());
+            endpoint.onOpen(session, null);
+            endpoints.add(endpoint);
+            sessions.add(session);
+            return session;
+        });
+        doAnswer(invocation -> {
+            MutableTradeEvent event = invocation.getArgument(0);
+            published.add(event.getChannelId() + " " + event.getId());
+            return null;
+        }).when(strategyPipeline).publishTrade(any(MutableTradeEvent.class));
+
+        feed = new RedundantFeed(URI.create("ws://localhost/ws"), 2, 60_000, strategyPipeline, LatencyMetrics.disabled(),
+                new FrameJournal[2], false, 16, container);
+        feed.start();
+        feed.subscribe("BTCUSD");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        feed.close();
+    }
+
+    @Test
+    void publishesFirstCopyFromEitherLegOnOneChannel() {
+
+        assertThat(endpoints).hasSize(2);
+        assertThat(subscriptions).hasSize(2).allMatch(subscription -> subscription.contains("BTCUSD"));
+        verify(strategyPipeline).registerChannel(1, "BTCUSD");
+
+        // each leg gets its own channel id for the same pair
+        send(0, "{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":5,\"pair\":\"BTCUSD\"}");
+        send(1, "{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":9,\"pair\":\"BTCUSD\"}");
+
+        send(0, "[5,\"tu\",\"1000-BTCUSD\",100,1527669915,7488.7,0.01]");
+        send(1, "[9,\"tu\",\"1000-BTCUSD\",100,1527669915,7488.7,0.01]");
+        send(1, "[9,\"tu\",\"1001-BTCUSD\",101,1527669916,7488.8,0.02]");
+        send(0, "[5,\"tu\",\"1001-BTCUSD\",101,1527669916,7488.8,0.02]");
+        // not subscribed on this leg
+        send(0, "[9,\"tu\",\"1002-BTCUSD\",102,1527669917,7488.9,0.03]");
+
+        assertThat(published).containsExactly("1 100", "1 101");
+        assertThat(feed.getFramesReceived()).isEqualTo(7);
+    }
+
+    @Test
+    void reconnectsAndResubscribesAClosedLeg() throws Exception {
+
+        send(0, "{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":5,\"pair\":\"BTCUSD\"}");
+        endpoints.get(0).onClose(sessions.get(0), new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "restart"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (endpoints.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(endpoints).hasSize(3);
+        assertThat(endpoints.get(2)).isSameAs(endpoints.get(0));
+        assertThat(subscriptions).hasSize(3);
+
+        // the old channel id is gone until the new subscription is confirmed
+        send(2, "[5,\"tu\",\"1000-BTCUSD\",100,1527669915,7488.7,0.01]");
+        send(2, "{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":11,\"pair\":\"BTCUSD\"}");
+        send(2, "[11,\"tu\",\"1001-BTCUSD\",101,1527669916,7488.8,0.02]");
+
+        assertThat(published).containsExactly("1 101");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(int connection, String frame) {
+        ((MessageHandler.Whole<String>) endpoints.get(connection)).onMessage(frame);
+    }
+}
@@ -0,0 +1,75 @@
+package ch.algotrader.ema.marketdata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SequenceArbiterTest {
+
+    private final SequenceArbiter arbiter = new SequenceArbiter();
+
+    @Test
+    void acceptsFirstCopyFromEitherLeg() {
+
+        // leg 0 delivers 100 and 102, leg 1 delivers 100, 101 and 102
+        assertThat(arbiter.accept(100, "1000-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(100, "1000-BTCUSD")).isFalse();
+        assertThat(arbiter.accept(102, "1002-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(101, "1001-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(102, "1002-BTCUSD")).isFalse();
+
+        assertThat(arbiter.getAccepted()).isEqualTo(3);
+        assertThat(arbiter.getDuplicates()).isEqualTo(2);
+        assertThat(arbiter.getGaps()).isEqualTo(1);
+        assertThat(arbiter.getRecovered()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsTradesOlderThanWindow() {
+
+        arbiter.accept(10, "1-BTCUSD");
+        arbiter.accept(10 + SequenceArbiter.WINDOW, "2-BTCUSD");
+
+        assertThat(arbiter.accept(10, "1-BTCUSD")).isFalse();
+        assertThat(arbiter.accept(11, "1-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(11, "1-BTCUSD")).isFalse();
+    }
+
+    @Test
+    void forgetsIdsSkippedByAdvance() {
+
+        arbiter.accept(5, "1-BTCUSD");
+        // the bit of 5 + WINDOW aliases 5; advancing past it must not leave it set
+        arbiter.accept(5 + SequenceArbiter.WINDOW - 1, "2-BTCUSD");
+        assertThat(arbiter.accept(5 + SequenceArbiter.WINDOW + 1, "4-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(5 + SequenceArbiter.WINDOW, "3-BTCUSD")).isTrue();
+        assertThat(arbiter.getGaps()).isEqualTo(1);
+        assertThat(arbiter.getRecovered()).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsIdsSkippedByALongJump() {
+
+        arbiter.accept(0, "1-BTCUSD");
+        arbiter.accept(100, "2-BTCUSD");
+        arbiter.accept(SequenceArbiter.WINDOW - 10, "3-BTCUSD");
+        // wraps around the window and spans several words, aliasing 0 and 100 on the way
+        arbiter.accept(SequenceArbiter.WINDOW + 200, "4-BTCUSD");
+
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW - 10, "3-BTCUSD")).isFalse();
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW - 9, "3-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW, "3-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW + 100, "3-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW + 199, "3-BTCUSD")).isTrue();
+        assertThat(arbiter.accept(SequenceArbiter.WINDOW + 200, "4-BTCUSD")).isFalse();
+    }
+
+    @Test
+    void parsesSequencePrefix() {
+
+        assertThat(SequenceArbiter.parseSequence("5837-BTCUSD")).isEqualTo(5837);
+        assertThat(SequenceArbiter.parseSequence("42")).isEqualTo(42);
+        assertThat(SequenceArbiter.parseSequence("ab-BTCUSD")).isEqualTo(-1);
+        assertThat(SequenceArbiter.parseSequence("")).isEqualTo(-1);
+    }
+}
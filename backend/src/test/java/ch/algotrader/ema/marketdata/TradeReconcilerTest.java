@@ -0,0 +1,66 @@
+package ch.algotrader.ema.marketdata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+class TradeReconcilerTest {
+
+    private final BitfinexFrameDecoder decoder = new BitfinexFrameDecoder();
+    private final MutableTradeEvent event = new MutableTradeEvent();
+    private final TradeReconciler reconciler = new TradeReconciler(4);
+
+    @Test
+    void publishesExecutedAndDropsItsUpdate() {
+
+        assertThat(executed("[5,\"te\",\"7303-BTCUSD\",1527669915,7488.7,0.01]")).isTrue();
+        assertThat(executed("[5,\"te\",\"7303-BTCUSD\",1527669915,7488.7,0.01]")).isFalse();
+        assertThat(executed("[5,\"te\",\"7304-BTCUSD\",1527669915,7488.8,-0.5]")).isTrue();
+
+        assertThat(updated("[5,\"tu\",\"7303-BTCUSD\",243474913,1527669915,7488.7,0.01]")).isFalse();
+        assertThat(updated("[5,\"tu\",\"7303-BTCUSD\",243474913,1527669915,7488.7,0.01]")).isFalse();
+        assertThat(updated("[5,\"tu\",\"7304-BTCUSD\",243474914,1527669915,7488.9,-0.5]")).isFalse();
+
+        assertThat(reconciler.getExecuted()).isEqualTo(2);
+        assertThat(reconciler.getReconciled()).isEqualTo(2);
+        assertThat(reconciler.getMismatched()).isEqualTo(1);
+        assertThat(reconciler.getUnmatched()).isZero();
+    }
+
+    @Test
+    void publishesUpdatesWithoutExecuted() {
+
+        // another channel, and a "tu" ahead of every "te" of its channel
+        assertThat(executed("[5,\"te\",\"100-BTCUSD\",1527669915,7488.7,0.01]")).isTrue();
+        assertThat(updated("[6,\"tu\",\"100-ETHUSD\",243474913,1527669915,571.2,1]")).isTrue();
+        assertThat(updated("[5,\"tu\",\"101-BTCUSD\",243474914,1527669915,7488.7,0.01]")).isTrue();
+
+        assertThat(reconciler.getUnmatched()).isEqualTo(2);
+        assertThat(reconciler.getEvicted()).isZero();
+    }
+
+    @Test
+    void countsTradeOnceAfterItsExecutedWasEvicted() {
+
+        // 104 takes the slot of 100 before the "tu" of 100 arrives
+        assertThat(executed("[5,\"te\",\"100-BTCUSD\",1527669915,7488.7,0.01]")).isTrue();
+        assertThat(executed("[5,\"te\",\"104-BTCUSD\",1527669915,7488.7,0.01]")).isTrue();
+        assertThat(updated("[5,\"tu\",\"100-BTCUSD\",243474912,1527669915,7488.7,0.01]")).isFalse();
+
+        assertThat(reconciler.getOverwritten()).isEqualTo(1);
+        assertThat(reconciler.getEvicted()).isEqualTo(1);
+        assertThat(reconciler.getUnmatched()).isZero();
+    }
+
+    private boolean executed(String frame) {
+        assertThat(decoder.decode(frame, event)).isEqualTo(FrameType.TRADE_EXECUTED);
+        return reconciler.onExecuted(event);
+    }
+
+    private boolean updated(String frame) {
+        assertThat(decoder.decode(frame, event)).isEqualTo(FrameType.TRADE_UPDATE);
+        return reconciler.onUpdate(event);
+    }
+}
@@ -0,0 +1,70 @@
+package ch.algotrader.ema.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsAreContiguousAndWithinPrecision() {
+
+        int previous = -1;
+        for (long value = 0; value < 1L << 18; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(index).isBetween(previous, previous + 1);
+            previous = index;
+            assertThat(LatencyHistogram.highestValueAt(index)).isGreaterThanOrEqualTo(value);
+        }
+        for (long value = 128; value < 1L << 40; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(value));
+            assertThat((double) highest - value).isLessThanOrEqualTo(value / 64.0);
+        }
+    }
+
+    @Test
+    void reportsPercentilesOfRecordedValues() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextGaussian() * 1.5 + 10));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(values.length);
+        assertThat(snapshot.getMax()).isEqualTo(values[values.length - 1]);
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertThat((double) snapshot.getValueAtPercentile(percentile)).isCloseTo(exact, within(exact / 50.0 + 1));
+        }
+    }
+
+    @Test
+    void snapshotsDiffToInterval() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(2_000);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot interval = histogram.snapshot().since(first);
+        assertThat(interval.getCount()).isEqualTo(11);
+        assertThat(interval.getValueAtPercentile(5)).isZero();
+        assertThat((double) interval.getValueAtPercentile(50)).isCloseTo(2_000, within(32.0));
+        assertThat(interval.getMax()).isLessThan(2_100);
+        assertThat(interval.getMean()).isCloseTo(20_000.0 / 11, within(1.0));
+    }
+}
@@ -0,0 +1,101 @@
+package ch.algotrader.ema.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.strategy.StrategyConfig;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class PersistenceServiceTest {
+
+    private EmbeddedDatabase database;
+    private PersistenceService persistenceService;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        persistenceService = new PersistenceService(database);
+        ReflectionTestUtils.setField(persistenceService, "enabled", true);
+        ReflectionTestUtils.setField(persistenceService, "queueSize", 1024);
+        ReflectionTestUtils.setField(persistenceService, "batchSize", 16);
+        ReflectionTestUtils.setField(persistenceService, "flushIntervalMillis", 50L);
+        persistenceService.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        persistenceService.destroy();
+        database.shutdown();
+    }
+
+    @Test
+    void writesBarsSignalsAndFillsOfStrategy() throws InterruptedException {
+
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(2);
+        config.setEmaPeriodLong(3);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(10);
+        config.setBarType("tick");
+        config.setBarSize(1);
+        config.setLateTrades("current-bar");
+        StrategyLogic strategy = new StrategyLogic(config, (side, quantity, symbol, tickNanos) -> {
+            OrderResponse response = new OrderResponse();
+            response.setOrderId(7);
+            response.setAvgExecutionPrice(100);
+            response.setExecutedAmount(quantity.doubleValue());
+            return CompletableFuture.completedFuture(response);
+        }, LatencyMetrics.disabled());
+        strategy.addListener(persistenceService);
+
+        MutableTradeEvent event = new MutableTradeEvent();
+        double[] prices = {100, 99, 98, 97, 96, 100, 104, 108, 112};
+        for (int i = 0; i < prices.length; i++) {
+            event.setTimestamp(1_600_000_000L + i);
+            event.setPrice(prices[i]);
+            event.setAmount(0.1);
+            strategy.handleTradeEvent(event);
+        }
+        persistenceService.destroy();
+
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        assertThat(jdbc.queryForObject("select count(*) from strategy_bar", Long.class)).isGreaterThanOrEqualTo(prices.length - 1);
+        assertThat(jdbc.queryForObject("select count(*) from strategy_signal where side = 'buy'", Long.class)).isEqualTo(1);
+        assertThat(jdbc.queryForObject("select count(*) from order_fill where order_id = 7", Long.class)).isEqualTo(1);
+        assertThat(persistenceService.getDropped()).isZero();
+    }
+
+    @Test
+    void flushesPartialBatchAfterInterval() throws InterruptedException {
+
+        OrderResponse response = new OrderResponse();
+        response.setOrderId(1);
+        persistenceService.onOrderResponse("BTCUSD", "sell", response);
+
+        awaitWritten(1);
+        assertThat(new JdbcTemplate(database).queryForObject("select count(*) from order_fill", Long.class)).isEqualTo(1);
+        assertThat(persistenceService.getLagMillis()).isGreaterThanOrEqualTo(40);
+    }
+
+    private void awaitWritten(long count) throws InterruptedException {
+        for (int i = 0; i < 200 && persistenceService.getWritten() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ch.algotrader.ema.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.strategy.StrategyConfig;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+class StrategyShardTest {
+
+    private static final OrderSender NO_FILLS = (side, quantity, symbol, tickNanos) -> new CompletableFuture<>();
+
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    @Test
+    void foldsTradesIntoTheOpenBarWhileTheRingIsFull() {
+
+        StrategyLogic strategy = strategy();
+        StrategyShard shard = new StrategyShard(0, Collections.singletonList(strategy), 2, new BusySpinWaitStrategy(), true);
+
+        // the consumer is not running, so the third trade on finds the ring full
+        publish(shard, 100_000, 100, 1);
+        publish(shard, 100_001, 101, 1);
+        publish(shard, 100_002, 105, -2);
+        publish(shard, 100_003, 95, 0.5);
+        publish(shard, 100_004, 99, 1);
+        assertThat(shard.getRingBuffer().getPublished()).isEqualTo(2);
+        assertThat(shard.getConflatedTotal()).isEqualTo(3);
+
+        assertThat(shard.getRingBuffer().drain(shard)).isEqualTo(2);
+        // the timer hands the aggregate to the strategy, too early to close the bar
+        shard.publishTimer(100_005);
+        assertThat(shard.getRingBuffer().drain(shard)).isEqualTo(1);
+
+        BarStore bars = strategy.getBars();
+        int bar = bars.getEndIndex();
+        assertThat(bars.getOpen(bar)).isEqualTo(100);
+        assertThat(bars.getHigh(bar)).isEqualTo(105);
+        assertThat(bars.getLow(bar)).isEqualTo(95);
+        assertThat(bars.getClose(bar)).isEqualTo(99);
+        assertThat(bars.getVolume(bar)).isEqualTo(5.5);
+        assertThat(bars.getTrades(bar)).isEqualTo(5);
+
+        // trades after the aggregate queue normally again
+        publish(shard, 100_006, 98, 1);
+        assertThat(shard.getRingBuffer().drain(shard)).isEqualTo(1);
+        assertThat(bars.getTrades(bar)).isEqualTo(6);
+        assertThat(shard.getConflatedTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void everyWaitStrategyWakesTheConsumer() throws InterruptedException {
+
+        for (String name : new String[] {"blocking", "yielding", "busy-spin"}) {
+            StrategyLogic strategy = strategy();
+            StrategyShard shard = new StrategyShard(0, Collections.singletonList(strategy), 64, WaitStrategy.forName(name), false);
+            shard.start();
+            try {
+                for (int i = 0; i < 1_000; i++) {
+                    publish(shard, 100_000, 100 + i % 7, 1);
+                }
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (shard.getRingBuffer().getDepth() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+            } finally {
+                shard.stop();
+            }
+            BarStore bars = strategy.getBars();
+            assertThat(bars.getTrades(bars.getEndIndex())).as(name).isEqualTo(1_000);
+        }
+    }
+
+    private void publish(StrategyShard shard, long timestamp, double price, double amount) {
+        event.setTimestamp(timestamp);
+        event.setPrice(price);
+        event.setAmount(amount);
+        shard.publishTrade(0, event);
+    }
+
+    private static StrategyLogic strategy() {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(5);
+        config.setEmaPeriodLong(10);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(100);
+        config.setBarType("time");
+        config.setBarSize(10_000);
+        config.setBarAllowedLateness(1_000);
+        config.setLateTrades("current-bar");
+        return new StrategyLogic(config, NO_FILLS, LatencyMetrics.disabled());
+    }
+}
@@ -0,0 +1,65 @@
+package ch.algotrader.ema.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TradeRingBufferTest {
+
+    @Test
+    void rejectsClaimWhenFull() {
+
+        TradeRingBuffer ringBuffer = new TradeRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            ringBuffer.publish(ringBuffer.tryClaim(), TradeRingBuffer.TRADE);
+        }
+
+        assertThat(ringBuffer.tryClaim()).isEqualTo(-1);
+        assertThat(ringBuffer.getDepth()).isEqualTo(4);
+
+        assertThat(ringBuffer.drain((kind, target, event) -> { })).isEqualTo(4);
+        assertThat(ringBuffer.getDepth()).isZero();
+        assertThat(ringBuffer.tryClaim()).isEqualTo(4);
+    }
+
+    @Test
+    void deliversEveryEventFromConcurrentProducersInProducerOrder() throws InterruptedException {
+
+        final int producers = 3;
+        final int perProducer = 200_000;
+        TradeRingBuffer ringBuffer = new TradeRingBuffer(1024);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int channel = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ringBuffer.claim();
+                    ringBuffer.get(sequence).setChannelId(channel);
+                    ringBuffer.get(sequence).setId(i);
+                    ringBuffer.publish(sequence, TradeRingBuffer.TRADE);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long[] lastId = {-1, -1, -1};
+        long received = 0;
+        while (received < (long) producers * perProducer) {
+            received += ringBuffer.drain((kind, target, event) -> {
+                assertThat(event.getId()).isEqualTo(lastId[event.getChannelId()] + 1);
+                lastId[event.getChannelId()] = event.getId();
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(lastId).containsOnly(perProducer - 1);
+        assertThat(ringBuffer.hasAvailable()).isFalse();
+    }
+}
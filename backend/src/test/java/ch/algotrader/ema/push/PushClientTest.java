@@ -0,0 +1,58 @@
+package ch.algotrader.ema.push;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class PushClientTest {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final PushClient client = new PushClient(session, sent, conflated);
+
+    @Test
+    void keepsLatestMessagePerTopicUntilDrained() throws IOException {
+
+        when(session.isOpen()).thenReturn(true);
+        TextMessage first = new TextMessage("{\"topic\":\"tick.BTCUSD\",\"data\":1}");
+        TextMessage second = new TextMessage("{\"topic\":\"tick.BTCUSD\",\"data\":2}");
+        TextMessage bar = new TextMessage("{\"topic\":\"bar.BTCUSD\",\"data\":3}");
+
+        assertThat(client.offer("tick.BTCUSD", first)).isTrue();
+        assertThat(client.offer("tick.BTCUSD", second)).isFalse();
+        assertThat(client.offer("bar.BTCUSD", bar)).isFalse();
+        client.drain();
+
+        verify(session, never()).sendMessage(first);
+        verify(session).sendMessage(second);
+        verify(session).sendMessage(bar);
+        assertThat(sent.get()).isEqualTo(2);
+        assertThat(conflated.get()).isEqualTo(1);
+        assertThat(client.offer("tick.BTCUSD", first)).isTrue();
+    }
+
+    @Test
+    void matchesSubscriptionPatterns() {
+
+        assertThat(client.isSubscribed("bar.BTCUSD")).isFalse();
+        client.subscribe("tick.*");
+        client.subscribe("bar.ETHUSD");
+        assertThat(client.isSubscribed("tick.BTCUSD")).isTrue();
+        assertThat(client.isSubscribed("bar.ETHUSD")).isTrue();
+        assertThat(client.isSubscribed("bar.BTCUSD")).isFalse();
+        client.subscribe("*");
+        assertThat(client.isSubscribed("signal.BTCUSD")).isTrue();
+        client.unsubscribe("*");
+        assertThat(client.isSubscribed("signal.BTCUSD")).isFalse();
+    }
+}
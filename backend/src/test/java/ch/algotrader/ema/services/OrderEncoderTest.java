@@ -0,0 +1,150 @@
+package ch.algotrader.ema.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.algotrader.ema.vo.NewOrderRequest;
+
+class OrderEncoderTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SECRET = "secret";
+
+    private final OrderEncoder encoder = new OrderEncoder(SECRET);
+
+    @Test
+    void matchesJacksonPayloadAndSignature() throws Exception {
+
+        String[] decimals = {"0.002", "1", "0.5", "12.3456749", "0.000015", "0.000025", "9.999995",
+                "0.123456789012", "1.0E-4", "-0.000001", "007.1", String.valueOf(Math.random())};
+        long nonce = 1_600_000_000_000_000L;
+        for (String amount : decimals) {
+            for (String price : decimals) {
+                NewOrderRequest order = order(amount, price);
+                encoder.encode("/v1/order/new", ++nonce, order);
+
+                String expected = legacyPayload("/v1/order/new", nonce, order);
+                String actual = new String(encoder.copyPayload(), StandardCharsets.UTF_8);
+                assertThat(objectMapper.readTree(actual)).as(actual).isEqualTo(objectMapper.readTree(expected));
+
+                String base64 = Base64.getEncoder().encodeToString(actual.getBytes(StandardCharsets.UTF_8));
+                assertThat(encoder.getPayloadBase64()).isEqualTo(base64);
+                assertThat(encoder.getSignature()).isEqualTo(legacySignature(base64));
+            }
+        }
+    }
+
+    @Test
+    void matchesJacksonForRandomPrices() throws Exception {
+
+        for (int i = 0; i < 2_000; i++) {
+            NewOrderRequest order = order("0.002", String.valueOf(Math.random() * Math.pow(10, i % 7)));
+            encoder.encode("/v1/order/new", i, order);
+
+            String actual = new String(encoder.copyPayload(), StandardCharsets.UTF_8);
+            assertThat(objectMapper.readTree(actual)).as(actual)
+                    .isEqualTo(objectMapper.readTree(legacyPayload("/v1/order/new", i, order)));
+        }
+    }
+
+    @Test
+    void roundsDecimalStringsExactly() {
+
+        // more digits than a double holds: rounded as written, not via Double.parseDouble
+        encoder.encode("/v1/order/new", 1, order("250000.00000500001", "0.000005"));
+
+        assertThat(new String(encoder.copyPayload(), StandardCharsets.UTF_8))
+                .contains("\"amount\":\"250000.00001\"")
+                .contains("\"price\":\"0.00000\"");
+    }
+
+    @Test
+    void growsBufferForLongPayloads() throws Exception {
+
+        NewOrderRequest order = order("1", "1");
+        order.setSymbol("X".repeat(2000));
+        encoder.encode("/v1/order/new", 1, order);
+
+        assertThat(encoder.getPayloadLength()).isGreaterThan(2000);
+        assertThat(encoder.getPayloadBase64())
+                .isEqualTo(Base64.getEncoder().encodeToString(encoder.copyPayload()));
+    }
+
+    /**
+     * Compares the encoder with the previous ObjectMapper/Mac.getInstance path.
+     * Run with {@code -Dperf=true}; numbers are printed, not asserted.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "perf", matches = "true")
+    void throughputComparison() throws Exception {
+
+        NewOrderRequest order = order("0.002", String.valueOf(Math.random()));
+        final int rounds = 200_000;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runLegacy(order, rounds);
+            runEncoder(order, rounds);
+        }
+
+        long t0 = System.nanoTime();
+        int legacySink = runLegacy(order, rounds);
+        long t1 = System.nanoTime();
+        int encoderSink = runEncoder(order, rounds);
+        long t2 = System.nanoTime();
+
+        System.out.printf("ObjectMapper/Mac.getInstance: %.1f ns/order, encoder: %.1f ns/order (%d/%d)%n",
+                (t1 - t0) / (double) rounds, (t2 - t1) / (double) rounds, legacySink, encoderSink);
+    }
+
+    private static int runLegacy(NewOrderRequest order, int rounds) throws Exception {
+        int sink = 0;
+        for (int r = 0; r < rounds; r++) {
+            String payload = legacyPayload("/v1/order/new", r, order);
+            String base64 = Base64.getEncoder().encodeToString(payload.getBytes());
+            sink += legacySignature(base64).length() + base64.length();
+        }
+        return sink;
+    }
+
+    private int runEncoder(NewOrderRequest order, int rounds) {
+        int sink = 0;
+        for (int r = 0; r < rounds; r++) {
+            encoder.encode("/v1/order/new", r, order);
+            sink += encoder.getSignature().length() + encoder.getPayloadBase64().length();
+        }
+        return sink;
+    }
+
+    private static NewOrderRequest order(String amount, String price) {
+        NewOrderRequest order = new NewOrderRequest();
+        order.setSymbol("BTCUSD");
+        order.setAmount(amount);
+        order.setPrice(price);
+        order.setSide("buy");
+        order.setType("exchange market");
+        order.setExchange("bitfinex");
+        return order;
+    }
+
+    private static String legacyPayload(String request, long nonce, NewOrderRequest order) throws Exception {
+        order.setRequest(request);
+        order.setNonce(String.valueOf(nonce));
+        return new ObjectMapper().writeValueAsString(order);
+    }
+
+    private static String legacySignature(String base64) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA384");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA384"));
+        return new String(Hex.encodeHex(mac.doFinal(base64.getBytes(StandardCharsets.UTF_8))));
+    }
+}
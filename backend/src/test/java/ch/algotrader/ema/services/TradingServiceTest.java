@@ -0,0 +1,174 @@
+package ch.algotrader.ema.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class TradingServiceTest {
+
+    private static final String SECRET = "secret";
+
+    private HttpServer server;
+    // handles requests concurrently, like the exchange
+    private final ExecutorService serverThreads = Executors.newFixedThreadPool(4);
+    private OrderGateway orderGateway;
+    private TradingService tradingService;
+    private final LatencyMetrics latencyMetrics = new LatencyMetrics();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicLong lastNonce = new AtomicLong();
+    private volatile String lastPayload;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/order/new", this::handleOrder);
+        server.createContext("/v1/slow/order/new", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handleOrder(exchange);
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+
+        orderGateway = new OrderGateway();
+        ReflectionTestUtils.setField(orderGateway, "queueSize", 4);
+        ReflectionTestUtils.setField(orderGateway, "timeoutMillis", 2000L);
+        ReflectionTestUtils.setField(orderGateway, "connectTimeoutMillis", 500L);
+        orderGateway.afterPropertiesSet();
+
+        tradingService = new TradingService(orderGateway, latencyMetrics);
+        ReflectionTestUtils.setField(tradingService, "apiKey", "key");
+        ReflectionTestUtils.setField(tradingService, "apiSecret", SECRET);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        orderGateway.destroy();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void sendsSignedOrderAndParsesAck() throws Exception {
+
+        useBaseUrl("/v1/");
+
+        OrderResponse response = tradingService.sendOrder("buy", new BigDecimal("0.002"), "BTCUSD").get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getId()).isEqualTo(42L);
+        assertThat(lastPayload).contains("\"request\":\"/v1/order/new\"").contains("\"side\":\"buy\"");
+    }
+
+    @Test
+    void sendsConcurrentOrdersWithIncreasingNonces() throws Exception {
+
+        useBaseUrl("/v1/");
+
+        List<CompletableFuture<OrderResponse>> orders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            orders.add(tradingService.sendOrder(i % 2 == 0 ? "buy" : "sell", new BigDecimal("0.002"), "BTCUSD"));
+        }
+        for (CompletableFuture<OrderResponse> order : orders) {
+            assertThat(order.get(5, TimeUnit.SECONDS).getId()).isEqualTo(42L);
+        }
+    }
+
+    @Test
+    void leavesRejectedOrdersOutOfResponseLatency() {
+
+        useBaseUrl("/v1/");
+        ReflectionTestUtils.setField(tradingService, "apiSecret", "wrong");
+
+        assertThatThrownBy(() -> tradingService.sendOrder("buy", BigDecimal.ONE, "BTCUSD").get(5, TimeUnit.SECONDS))
+                .hasMessageContaining("rejected with status 400");
+        assertThat(latencyMetrics.snapshot(LatencyMetrics.Stage.SIGN).getCount()).isEqualTo(1);
+        assertThat(latencyMetrics.snapshot(LatencyMetrics.Stage.RESPONSE).getCount()).isZero();
+        assertThat(latencyMetrics.snapshot(LatencyMetrics.Stage.TICK_TO_TRADE).getCount()).isZero();
+    }
+
+    @Test
+    void failsOrderAfterDeadline() {
+
+        useBaseUrl("/v1/slow/");
+
+        assertThatThrownBy(() -> tradingService.sendOrder("sell", BigDecimal.ONE, "BTCUSD").get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+    }
+
+    private void useBaseUrl(String path) {
+        ReflectionTestUtils.setField(tradingService, "baseUrl",
+                "http://localhost:" + server.getAddress().getPort() + path);
+        tradingService.afterPropertiesSet();
+    }
+
+    private void handleOrder(HttpExchange exchange) throws IOException {
+
+        String payload = exchange.getRequestHeaders().getFirst("X-BFX-PAYLOAD");
+        String signature = exchange.getRequestHeaders().getFirst("X-BFX-SIGNATURE");
+        lastPayload = new String(Base64.getDecoder().decode(payload), StandardCharsets.UTF_8);
+
+        byte[] body;
+        int status;
+        long nonce = Long.parseLong(new ObjectMapper().readTree(lastPayload).path("nonce").asText("0"));
+        if (nonce <= lastNonce.getAndAccumulate(nonce, Math::max)) {
+            status = 400;
+            body = "{\"message\":\"Nonce is too small.\"}".getBytes(StandardCharsets.UTF_8);
+        } else if (sign(payload).equals(signature)) {
+            status = 200;
+            body = "{\"id\":42,\"symbol\":\"btcusd\",\"side\":\"buy\",\"order_id\":42,\"is_live\":true}".getBytes(StandardCharsets.UTF_8);
+        } else {
+            status = 400;
+            body = "{\"message\":\"Invalid X-BFX-SIGNATURE\"}".getBytes(StandardCharsets.UTF_8);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA384");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA384"));
+            return new String(Hex.encodeHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8))));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ch.algotrader.ema.strategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class CheckpointServiceTest {
+
+    private static final OrderSender NO_FILLS = (side, quantity, symbol, tickNanos) -> new CompletableFuture<OrderResponse>();
+
+    @TempDir
+    Path dir;
+
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    @Test
+    void restoresWhatALiveRunWrote() throws Exception {
+
+        CheckpointService live = service("");
+        StrategyLogic original = strategy();
+        live.onCreated(original);
+        for (int i = 0; i < 20; i++) {
+            trade(original, 1_600_000_000L + i, 7000 + i);
+        }
+        live.onBarClosed(original, original.getLastClosedBar());
+        live.destroy();
+        assertThat(dir.resolve("BTCUSD.ckpt")).exists();
+
+        StrategyLogic restored = strategy();
+        service("").onCreated(restored);
+        assertThat(restored.getLastClosedBar()).isEqualTo(original.getLastClosedBar());
+    }
+
+    @Test
+    void replayNeitherRestoresNorWritesCheckpoints() throws Exception {
+
+        CheckpointService live = service("");
+        StrategyLogic original = strategy();
+        for (int i = 0; i < 20; i++) {
+            trade(original, 1_600_000_000L + i, 7000 + i);
+        }
+        live.onBarClosed(original, original.getLastClosedBar());
+        live.destroy();
+        byte[] written = Files.readAllBytes(dir.resolve("BTCUSD.ckpt"));
+
+        CheckpointService replay = service("journal");
+        StrategyLogic replayed = strategy();
+        replay.onCreated(replayed);
+        assertThat(replayed.getLastClosedBar()).isEqualTo(-1);
+
+        for (int i = 0; i < 50; i++) {
+            trade(replayed, 1_500_000_000L + i, 100 + i);
+        }
+        replay.onBarClosed(replayed, replayed.getLastClosedBar());
+        replay.destroy();
+        assertThat(Files.readAllBytes(dir.resolve("BTCUSD.ckpt"))).isEqualTo(written);
+    }
+
+    private CheckpointService service(String replayDir) {
+        CheckpointService service = new CheckpointService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "dir", dir.toString());
+        ReflectionTestUtils.setField(service, "intervalMillis", 0L);
+        ReflectionTestUtils.setField(service, "replayDir", replayDir);
+        service.afterPropertiesSet();
+        return service;
+    }
+
+    private void trade(StrategyLogic strategy, long timestamp, double price) {
+        event.setTimestamp(timestamp);
+        event.setPrice(price);
+        event.setAmount(0.1);
+        strategy.handleTradeEvent(event);
+    }
+
+    private static StrategyLogic strategy() {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(5);
+        config.setEmaPeriodLong(10);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(100);
+        config.setBarType("tick");
+        config.setBarSize(5);
+        config.setLateTrades("current-bar");
+        return new StrategyLogic(config, NO_FILLS, LatencyMetrics.disabled());
+    }
+}
@@ -0,0 +1,133 @@
+package ch.algotrader.ema.strategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.services.OrderSender;
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class StrategyCheckpointTest {
+
+    private static final OrderSender NO_FILLS = (side, quantity, symbol, tickNanos) -> new CompletableFuture<OrderResponse>();
+
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    @Test
+    void restoredStrategyContinuesLikeOriginal() {
+
+        StrategyLogic original = new StrategyLogic(config("BTCUSD", 50), NO_FILLS, LatencyMetrics.disabled());
+        Random random = new Random(7);
+        double price = 7000;
+        long timestamp = 1_600_000_000L;
+        for (int i = 0; i < 3_000; i++) {
+            price += random.nextGaussian() * 5;
+            trade(original, timestamp++, price);
+        }
+        ByteBuffer bytes = StrategyCheckpoint.write(original, 42);
+
+        StrategyCheckpoint checkpoint = StrategyCheckpoint.read(bytes);
+        assertThat(checkpoint.getCreatedMillis()).isEqualTo(42);
+        assertThat(checkpoint.getBarCount()).isEqualTo(50);
+        assertThat(checkpoint.matches(original.getConfig())).isTrue();
+
+        // retention of the restored strategy is smaller than the checkpoint
+        StrategyLogic restored = new StrategyLogic(config("BTCUSD", 40), NO_FILLS, LatencyMetrics.disabled());
+        checkpoint.restore(restored);
+
+        BarStore bars = restored.getBars();
+        assertThat(bars.getBarCount()).isEqualTo(40);
+        assertThat(restored.getLastClosedBar()).isEqualTo(39);
+        assertThat(bars.getClose(39)).isEqualTo(original.getBars().getClose(original.getLastClosedBar()));
+        assertThat(restored.getEmaDifference()).isEqualTo(original.getEmaDifference());
+        assertThat(restored.getLastSignal()).isEqualTo(original.getLastSignal()).isNotNull();
+        assertThat(restored.getPosition()).isEqualTo(original.getPosition());
+
+        for (int i = 0; i < 500; i++) {
+            price += random.nextGaussian() * 5;
+            trade(original, timestamp, price);
+            trade(restored, timestamp++, price);
+            assertThat(restored.getEmaDifference()).isEqualTo(original.getEmaDifference());
+            assertThat(restored.getLastSignal()).isEqualTo(original.getLastSignal());
+        }
+    }
+
+    @Test
+    void restoredTimeBarsContinueAfterTheLastBar() {
+
+        StrategyConfig config = config("BTCUSD", 50);
+        config.setBarType("time");
+        config.setBarSize(10_000);
+        StrategyLogic original = new StrategyLogic(config, NO_FILLS, LatencyMetrics.disabled());
+        for (int i = 0; i <= 100; i++) {
+            trade(original, 1_600_000_000L + i, 7000 + i % 7);
+        }
+        StrategyLogic restored = new StrategyLogic(config, NO_FILLS, LatencyMetrics.disabled());
+        StrategyCheckpoint.read(StrategyCheckpoint.write(original, 0)).restore(restored);
+
+        BarStore bars = restored.getBars();
+        int last = restored.getLastClosedBar();
+        long lastEnd = bars.getEndTime(last);
+        assertThat(lastEnd).isEqualTo(1_600_000_100_000L);
+
+        // restarted within the last restored bar: its trades are late, not a second bar
+        trade(restored, 1_600_000_099L, 7010);
+        trade(restored, 1_600_000_110L, 7020);
+
+        assertThat(restored.getLastClosedBar()).isEqualTo(last + 1);
+        assertThat(bars.getBeginTime(last + 1)).isEqualTo(lastEnd);
+        assertThat(bars.getTrades(last + 1)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsOtherSettingsAndCorruption() {
+
+        StrategyLogic strategy = new StrategyLogic(config("BTCUSD", 50), NO_FILLS, LatencyMetrics.disabled());
+        assertThat(StrategyCheckpoint.write(strategy, 0)).isNull();
+        for (int i = 0; i < 100; i++) {
+            trade(strategy, 1_600_000_000L + i, 7000 + i % 7);
+        }
+        ByteBuffer bytes = StrategyCheckpoint.write(strategy, 0);
+
+        StrategyConfig otherPeriods = config("BTCUSD", 50);
+        otherPeriods.setEmaPeriodLong(12);
+        assertThat(StrategyCheckpoint.read(bytes).matches(otherPeriods)).isFalse();
+        assertThat(StrategyCheckpoint.read(bytes).matches(config("ETHUSD", 50))).isFalse();
+
+        bytes.put(bytes.limit() - 10, (byte) (bytes.get(bytes.limit() - 10) ^ 1));
+        assertThatThrownBy(() -> StrategyCheckpoint.read(bytes)).hasMessageContaining("checksum");
+
+        bytes.putInt(Integer.BYTES, StrategyCheckpoint.VERSION + 1);
+        assertThatThrownBy(() -> StrategyCheckpoint.read(bytes)).hasMessageContaining("version");
+    }
+
+    private void trade(StrategyLogic strategy, long timestamp, double price) {
+        event.setTimestamp(timestamp);
+        event.setPrice(price);
+        event.setAmount(0.1);
+        strategy.handleTradeEvent(event);
+    }
+
+    private static StrategyConfig config(String symbol, int retention) {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol(symbol);
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(5);
+        config.setEmaPeriodLong(10);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(retention);
+        config.setBarType("tick");
+        config.setBarSize(5);
+        config.setLateTrades("current-bar");
+        return config;
+    }
+}
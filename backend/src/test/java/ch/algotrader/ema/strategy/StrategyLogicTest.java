@@ -0,0 +1,84 @@
+package ch.algotrader.ema.strategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+
+class StrategyLogicTest {
+
+    private static final long START = 1_600_000_000L;
+
+    private final List<String> orders = new ArrayList<>();
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    @Test
+    void tickModeSignalsWithinTheBarOncePerBar() {
+
+        StrategyLogic strategy = new StrategyLogic(config("tick", "incremental"), (side, quantity, symbol, tickNanos) -> {
+            orders.add(side);
+            return CompletableFuture.completedFuture(new OrderResponse());
+        }, LatencyMetrics.disabled());
+
+        // ten second bars, one trade per second, falling prices: no crossing to signal on
+        for (int t = 0; t < 50; t++) {
+            trade(strategy, t, 100 - t * 0.1);
+        }
+        assertThat(orders).isEmpty();
+
+        // jumps up early in bar 5: buys before the bar closes
+        trade(strategy, 50, 110);
+        assertThat(orders).containsExactly("buy");
+        assertThat(strategy.getLastClosedBar()).isEqualTo(4);
+        assertThat(strategy.getLastSignal()).isEqualTo("buy");
+
+        // falls back within the same bar: no second signal in bar 5
+        trade(strategy, 51, 90);
+        trade(strategy, 59, 90);
+        assertThat(orders).containsExactly("buy");
+
+        // still below in bar 6
+        trade(strategy, 60, 90);
+        assertThat(orders).containsExactly("buy", "sell");
+        assertThat(strategy.getPosition()).isZero();
+    }
+
+    @Test
+    void tickModeNeedsProvisionalEngine() {
+
+        assertThatThrownBy(() -> new StrategyLogic(config("tick", "ta4j"), (side, quantity, symbol, tickNanos) -> null,
+                LatencyMetrics.disabled())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void trade(StrategyLogic strategy, int second, double price) {
+        event.setTimestamp(START + second);
+        event.setPrice(price);
+        event.setAmount(0.1);
+        strategy.handleTradeEvent(event);
+    }
+
+    private static StrategyConfig config(String signalMode, String indicatorEngine) {
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(2);
+        config.setEmaPeriodLong(3);
+        config.setIndicatorEngine(indicatorEngine);
+        config.setBarRetention(100);
+        config.setBarType("time");
+        config.setBarSize(10_000);
+        config.setLateTrades("current-bar");
+        config.setSignalMode(signalMode);
+        config.setHysteresisBps(1);
+        return config;
+    }
+}
@@ -0,0 +1,64 @@
+package ch.algotrader.ema.strategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+import ch.algotrader.ema.vo.OrderResponse;
+import ch.algotrader.ema.vo.StrategySnapshot;
+
+class StrategySnapshotPublisherTest {
+
+    @Test
+    void publishesBarsSignalAndOrderStatus() {
+
+        StrategyConfig config = new StrategyConfig();
+        config.setSymbol("BTCUSD");
+        config.setQuantity(new BigDecimal("0.01"));
+        config.setEmaPeriodShort(2);
+        config.setEmaPeriodLong(3);
+        config.setIndicatorEngine("incremental");
+        config.setBarRetention(10);
+        config.setBarType("tick");
+        config.setBarSize(1);
+        config.setLateTrades("current-bar");
+        // filled before the strategy thread gets to report the signal
+        StrategyLogic strategy = new StrategyLogic(config, (side, quantity, symbol, tickNanos) -> {
+            OrderResponse response = new OrderResponse();
+            response.setOrderId(7);
+            response.setAvgExecutionPrice(104);
+            return CompletableFuture.completedFuture(response);
+        }, LatencyMetrics.disabled());
+
+        StrategySnapshotPublisher publisher = new StrategySnapshotPublisher();
+        strategy.addListener(publisher);
+        publisher.onCreated(strategy);
+        StrategySnapshot initial = publisher.getSnapshot("BTCUSD");
+        assertThat(initial.getBars()).isEmpty();
+        assertThat(initial.getCurrentBar()).isNull();
+
+        MutableTradeEvent event = new MutableTradeEvent();
+        double[] prices = {100, 99, 98, 97, 96, 100, 104, 108, 112, 116, 120, 124, 128};
+        for (int i = 0; i < prices.length; i++) {
+            event.setTimestamp(1_600_000_000L + i);
+            event.setPrice(prices[i]);
+            event.setAmount(0.1);
+            strategy.handleTradeEvent(event);
+        }
+
+        StrategySnapshot snapshot = publisher.getSnapshot("BTCUSD");
+        assertThat(initial.getBars()).isEmpty();
+        assertThat(snapshot.getBars()).hasSize(prices.length - 3);
+        assertThat(snapshot.getCurrentBar().getClose()).isEqualTo(128);
+        assertThat(snapshot.getEmaDifference()).isEqualTo(strategy.getEmaDifference());
+        assertThat(snapshot.getLastSignal()).isEqualTo("buy");
+        assertThat(snapshot.getOrder().getState()).isEqualTo(StrategySnapshot.OrderStatus.State.FILLED);
+        assertThat(snapshot.getOrder().getOrderId()).isEqualTo(7);
+        assertThat(publisher.getSnapshot("ETHUSD")).isNull();
+    }
+}
@@ -0,0 +1,112 @@
+package ch.algotrader.ema.strategy.bars;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BarBuilderTest {
+
+    private final BarStore store = new BarStore(100, false);
+    private final List<Integer> closed = new ArrayList<>();
+
+    @Test
+    void assignsTradesByExchangeTimestamp() {
+
+        BarBuilder builder = new BarBuilder(store, BarBuilder.Type.TIME, 10_000, 1_000, BarBuilder.LatePolicy.DROP, closed::add);
+
+        builder.onTrade(100_500, 1, 10);
+        builder.onTrade(109_000, 1, 11);
+        // next bar, held back until the watermark passes 110_000
+        builder.onTrade(110_000, 1, 20);
+        assertThat(closed).isEmpty();
+        // out of order, still inside the first bar
+        builder.onTrade(109_500, 1, 12);
+        builder.onTrade(111_000, 1, 21);
+
+        assertThat(closed).containsExactly(0);
+        assertThat(store.getBeginTime(0)).isEqualTo(100_000);
+        assertThat(store.getClose(0)).isEqualTo(12);
+        assertThat(store.getTrades(0)).isEqualTo(3);
+        assertThat(store.getClose(1)).isEqualTo(21);
+        assertThat(store.getTrades(1)).isEqualTo(2);
+
+        // too late for bar 0 which is closed already
+        builder.onTrade(105_000, 1, 99);
+        assertThat(builder.getLateTrades()).isEqualTo(1);
+        assertThat(store.getHigh(1)).isEqualTo(21);
+    }
+
+    @Test
+    void closesBarsWhenTooManyTradesAreHeldBack() {
+
+        // the allowed lateness spans two bars, so trades can get far ahead of the open bar
+        BarBuilder builder = new BarBuilder(store, BarBuilder.Type.TIME, 500, 1_000, BarBuilder.LatePolicy.DROP, closed::add);
+
+        builder.onTrade(0, 1, 10);
+        for (int i = 0; i < 1_100; i++) {
+            builder.onTrade(1_000 + i % 100, 1, 20);
+        }
+        assertThat(closed).containsExactly(0, 1);
+        assertThat(store.getTrades(1)).isZero();
+
+        builder.onTime(2_500);
+        assertThat(closed).containsExactly(0, 1, 2);
+        assertThat(store.getBeginTime(2)).isEqualTo(1_000);
+        assertThat(store.getTrades(2)).isEqualTo(1_100);
+        assertThat(builder.getLateTrades()).isZero();
+    }
+
+    @Test
+    void closesEmptyTimeBarsByWallClock() {
+
+        BarBuilder builder = new BarBuilder(store, BarBuilder.Type.TIME, 10_000, 1_000, BarBuilder.LatePolicy.DROP, closed::add);
+
+        builder.onTrade(100_000, 1, 10);
+        builder.onTime(131_000);
+
+        assertThat(closed).containsExactly(0, 1, 2);
+        assertThat(store.getClose(2)).isEqualTo(10);
+        assertThat(store.getTrades(2)).isZero();
+    }
+
+    @Test
+    void cutsTickVolumeAndDollarBars() {
+
+        BarBuilder ticks = new BarBuilder(store, BarBuilder.Type.TICK, 3, 0, BarBuilder.LatePolicy.DROP, closed::add);
+        for (int i = 0; i < 7; i++) {
+            ticks.onTrade(i, 1, 100 + i);
+        }
+        assertThat(closed).containsExactly(0, 1);
+        assertThat(store.getClose(1)).isEqualTo(105);
+
+        BarStore volumeStore = new BarStore(10, false);
+        List<Integer> volumeBars = new ArrayList<>();
+        BarBuilder volumes = new BarBuilder(volumeStore, BarBuilder.Type.VOLUME, 5, 0, BarBuilder.LatePolicy.DROP, volumeBars::add);
+        volumes.onTrade(0, 2, 100);
+        volumes.onTrade(1, 2, 101);
+        assertThat(volumeBars).isEmpty();
+        volumes.onTrade(2, 1.5, 102);
+        assertThat(volumeBars).containsExactly(0);
+        assertThat(volumeStore.getVolume(0)).isEqualTo(5.5);
+        assertThat(volumeStore.getClose(0)).isEqualTo(102);
+        volumes.onTrade(3, 4, 103);
+        assertThat(volumeBars).containsExactly(0);
+        volumes.onTrade(4, 1, 104);
+        assertThat(volumeBars).containsExactly(0, 1);
+        assertThat(volumeStore.getVolume(1)).isEqualTo(5);
+        assertThat(volumeStore.getClose(1)).isEqualTo(104);
+
+        BarStore dollarStore = new BarStore(10, false);
+        List<Integer> dollarBars = new ArrayList<>();
+        BarBuilder dollars = new BarBuilder(dollarStore, BarBuilder.Type.DOLLAR, 1_000, 0, BarBuilder.LatePolicy.DROP, dollarBars::add);
+        dollars.onTrade(0, 4, 100);
+        dollars.onTrade(1, 4, 100);
+        assertThat(dollarBars).isEmpty();
+        dollars.onTrade(2, 2, 100);
+        assertThat(dollarBars).containsExactly(0);
+        assertThat(dollarStore.getVolume(0)).isEqualTo(10);
+    }
+}
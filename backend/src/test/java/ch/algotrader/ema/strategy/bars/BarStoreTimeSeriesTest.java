@@ -0,0 +1,68 @@
+package ch.algotrader.ema.strategy.bars;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.num.DoubleNum;
+
+class BarStoreTimeSeriesTest {
+
+    @Test
+    void ta4jIndicatorsSeeTheSameBars() {
+
+        BarStoreTimeSeries stored = new BarStoreTimeSeries("BTCUSD", new BarStore(64, true));
+        TimeSeries base = new BaseTimeSeries("BTCUSD", DoubleNum::valueOf);
+        EMAIndicator storedEma = new EMAIndicator(new ClosePriceIndicator(stored), 10);
+        EMAIndicator baseEma = new EMAIndicator(new ClosePriceIndicator(base), 10);
+
+        ZonedDateTime time = ZonedDateTime.parse("2018-05-30T08:00:00Z");
+        for (int i = 0; i < 50; i++) {
+            stored.addBar(Duration.ofSeconds(10), time.plusSeconds(10L * i));
+            base.addBar(new BaseBar(Duration.ofSeconds(10), time.plusSeconds(10L * i), base.function()));
+            stored.addTrade(1.5, 100.0 + i % 7);
+            base.addTrade(1.5, 100.0 + i % 7);
+
+            assertThat(stored.getBar(i).getClosePrice()).isEqualTo(base.getBar(i).getClosePrice());
+            assertThat(stored.getBar(i).getEndTime().toInstant()).isEqualTo(base.getBar(i).getEndTime().toInstant());
+            assertThat(storedEma.getValue(i).doubleValue()).isCloseTo(baseEma.getValue(i).doubleValue(), within(1e-9));
+        }
+    }
+
+    @Test
+    void retainsOnlyTheConfiguredWindow() {
+
+        BarStore store = new BarStore(8, false);
+        BarStoreTimeSeries series = new BarStoreTimeSeries("BTCUSD", store);
+        for (int i = 0; i < 20; i++) {
+            store.addBar(i * 10_000L, (i + 1) * 10_000L);
+            store.addTrade(1, i);
+        }
+
+        assertThat(series.getEndIndex()).isEqualTo(19);
+        assertThat(series.getBeginIndex()).isEqualTo(12);
+        assertThat(series.getBarCount()).isEqualTo(8);
+        assertThat(series.getRemovedBarsCount()).isEqualTo(12);
+        assertThat(store.getClose(12)).isEqualTo(12);
+        assertThatThrownBy(() -> store.getClose(11)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void barWithoutTradesHasNoPrice() {
+
+        BarStoreTimeSeries series = new BarStoreTimeSeries("BTCUSD", new BarStore(8, false));
+        series.addBar(Duration.ofSeconds(10), ZonedDateTime.now());
+
+        assertThat(series.getBar(0).getClosePrice()).isNull();
+        assertThat(series.getBar(0).getTrades()).isZero();
+    }
+}
@@ -0,0 +1,65 @@
+package ch.algotrader.ema.strategy.indicator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+class IncrementalEmaCrossoverEngineTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Replays the same random walk bars through the ta4j chain and the incremental engine.
+     */
+    @Test
+    void matchesTa4j() {
+
+        TimeSeries series = new BaseTimeSeries();
+        Ta4jEmaCrossoverEngine ta4j = new Ta4jEmaCrossoverEngine(series, 5, 10);
+        IncrementalEmaCrossoverEngine incremental = new IncrementalEmaCrossoverEngine(5, 10);
+
+        Random random = new Random(42);
+        ZonedDateTime time = ZonedDateTime.parse("2018-05-30T08:00:00Z");
+        double price = 7500;
+        for (int i = 0; i < 2_000; i++) {
+            series.addBar(new BaseBar(Duration.ofSeconds(10), time.plusSeconds(10L * i), series.function()));
+            for (int t = 0; t < 5; t++) {
+                price += random.nextGaussian() * 2;
+                series.addTrade(random.nextDouble(), price);
+            }
+
+            double close = series.getBar(i).getClosePrice().doubleValue();
+            ta4j.onBarClose(i, close);
+            incremental.onBarClose(i, close);
+
+            assertThat(incremental.getEmaShort()).isCloseTo(ta4j.getEmaShort(), within(TOLERANCE * price));
+            assertThat(incremental.getEmaLong()).isCloseTo(ta4j.getEmaLong(), within(TOLERANCE * price));
+            assertThat(incremental.getDifference()).isCloseTo(ta4j.getDifference(), within(TOLERANCE * price));
+            if (i > 0) {
+                assertThat(incremental.getPreviousDifference()).isCloseTo(ta4j.getPreviousDifference(), within(TOLERANCE * price));
+            }
+        }
+    }
+
+    @Test
+    void provisionalDifferenceDoesNotAdvance() {
+
+        IncrementalEmaCrossoverEngine engine = new IncrementalEmaCrossoverEngine(5, 10);
+        engine.onBarClose(0, 100);
+        engine.onBarClose(1, 101);
+
+        double provisional = engine.provisionalDifference(105);
+        assertThat(engine.getDifference()).isNotEqualTo(provisional);
+
+        engine.onBarClose(2, 105);
+        assertThat(engine.getDifference()).isEqualTo(provisional);
+    }
+}
@@ -0,0 +1,108 @@
+package ch.algotrader.ema.strategy.indicator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.algotrader.ema.strategy.bars.BarStore;
+
+class IndicatorGraphTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private final BarStore bars = new BarStore(5_000, false);
+    private final IndicatorGraph graph = new IndicatorGraph(this.bars);
+
+    @Test
+    void sharesNodes() {
+
+        IndicatorGraph.Node ema12 = graph.node("ema(12)");
+        graph.node("macd(12,26,9).histogram");
+        graph.node("bollinger(20,2).upper");
+        int size = graph.size();
+
+        assertThat(graph.node("EMA(12)")).isSameAs(ema12);
+        assertThat(graph.node("macd(12, 26, 9).signal")).isSameAs(graph.ema(graph.node("macd(12,26,9)"), 9));
+        graph.node("bollinger(20,2).lower");
+        graph.node("sma(20)");
+        // the lower band only adds its own linear node
+        assertThat(graph.size()).isEqualTo(size + 1);
+    }
+
+    /**
+     * Replays random walk bars and compares with brute force and {@link IncrementalEma}.
+     */
+    @Test
+    void matchesDirectComputation() {
+
+        IndicatorGraph.Node macd = graph.node("macd(12,26,9)");
+        IndicatorGraph.Node upper = graph.node("bollinger(20,2).upper");
+        IndicatorGraph.Node rsi = graph.node("rsi(14)");
+        IncrementalEma fast = new IncrementalEma(12);
+        IncrementalEma slow = new IncrementalEma(26);
+
+        Random random = new Random(42);
+        double price = 7500;
+        double[] closes = new double[2_000];
+        for (int i = 0; i < closes.length; i++) {
+            price += random.nextGaussian() * 2;
+            closes[i] = price;
+            bars.addBar(10_000L * i, 10_000L * (i + 1), price, price + 1, price - 1, price, 1, price, 1);
+            graph.update(i);
+
+            assertThat(macd.getValue()).isCloseTo(fast.update(price) - slow.update(price), within(TOLERANCE * price));
+            if (i < 19) {
+                assertThat(upper.getValue()).isNaN();
+            } else {
+                double mean = 0;
+                for (int j = i - 19; j <= i; j++) {
+                    mean += closes[j] / 20;
+                }
+                double variance = 0;
+                for (int j = i - 19; j <= i; j++) {
+                    variance += (closes[j] - mean) * (closes[j] - mean) / 20;
+                }
+                assertThat(upper.getValue()).isCloseTo(mean + 2 * Math.sqrt(variance), within(1e-6));
+            }
+            if (i < 14) {
+                assertThat(rsi.getValue()).isNaN();
+            } else {
+                assertThat(rsi.getValue()).isBetween(0.0, 100.0);
+            }
+        }
+    }
+
+    @Test
+    void atrOfConstantRange() {
+
+        IndicatorGraph.Node atr = graph.node("atr(3)");
+        for (int i = 0; i < 5; i++) {
+            bars.addBar(i, i + 1, 100, 102, 98, 100, 1, 100, 1);
+            graph.update(i);
+        }
+        assertThat(atr.getValue()).isEqualTo(4.0);
+    }
+
+    @Test
+    void parsesConditions() {
+
+        IndicatorGraph.Condition below = graph.condition("close < 100");
+        IndicatorGraph.Condition above = graph.condition("close > sma(2)");
+        assertThat(below.test()).isFalse();
+        assertThat(above.test()).isFalse();
+
+        bars.addBar(0, 1, 90, 90, 90, 90, 1, 90, 1);
+        graph.update(0);
+        bars.addBar(1, 2, 95, 95, 95, 95, 1, 95, 1);
+        graph.update(1);
+
+        assertThat(below.test()).isTrue();
+        assertThat(above.test()).isTrue();
+        assertThatThrownBy(() -> graph.condition("rsi(14) = 50")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> graph.node("vwap(10)")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,61 @@
+package ch.algotrader.ema.vo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class MutableTradeEventTest {
+
+    @Test
+    void copyIsIndependentOfTheReusedEvent() {
+
+        MutableTradeEvent event = event("7303-BTCUSD");
+        MutableTradeEvent copy = new MutableTradeEvent();
+        copy.copyFrom(event);
+        TradeEvent kept = event.toTradeEvent();
+
+        // the decoder fills the same instance with the next frame
+        event.clear();
+        event.setSeq("[1,\"tu\",\"7304-ETHUSD\"]", 9, 20);
+        event.setPrice(1);
+
+        assertThat(copy.getChannelId()).isEqualTo(5);
+        assertThat(copy.getSeq().toString()).isEqualTo("7303-BTCUSD");
+        assertThat(copy.getId()).isEqualTo(243474913);
+        assertThat(copy.getTimestamp()).isEqualTo(1527669915);
+        assertThat(copy.getPrice()).isEqualTo(7488.7);
+        assertThat(copy.getAmount()).isEqualTo(-0.01);
+        assertThat(copy.getReceiveNanos()).isEqualTo(11);
+        assertThat(copy.getParsedNanos()).isEqualTo(12);
+
+        assertThat(kept.getSeq()).isEqualTo("7303-BTCUSD");
+        assertThat(kept.getTimestamp()).isEqualTo(1527669915);
+        assertThat(kept.getPrice()).isEqualTo(7488.7);
+        assertThat(kept.getAmount()).isEqualTo(-0.01);
+        assertThat(event.getSeq().toString()).isEqualTo("7304-ETHUSD");
+    }
+
+    @Test
+    void copiesSequencesLongerThanTheInitialBuffer() {
+
+        String seq = "123456789012345678901234567890-BTCUSD";
+        MutableTradeEvent copy = new MutableTradeEvent();
+        copy.copyFrom(event(seq));
+
+        assertThat(copy.getSeq().toString()).isEqualTo(seq);
+        assertThat(TradeEvent.copyOf(copy).getSeq()).isEqualTo(seq);
+    }
+
+    private static MutableTradeEvent event(String seq) {
+        MutableTradeEvent event = new MutableTradeEvent();
+        event.setChannelId(5);
+        event.setSeq(seq, 0, seq.length());
+        event.setId(243474913);
+        event.setTimestamp(1527669915);
+        event.setPrice(7488.7);
+        event.setAmount(-0.01);
+        event.setReceiveNanos(11);
+        event.setParsedNanos(12);
+        return event;
+    }
+}
@@ -0,0 +1,59 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import ch.algotrader.ema.marketdata.OrderBooks;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.services.OrderGateway;
+import ch.algotrader.ema.services.TradingService;
+import ch.algotrader.ema.strategy.StrategyFactory;
+
+/**
+ * The order and strategy beans wired by Spring as in the application, without the web
+ * server, the scheduler or the market data websocket, sending orders to a {@link StubExchange}.
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private final StubExchange exchange;
+    private final AnnotationConfigApplicationContext context;
+
+    public BenchmarkContext(Map<String, Object> overrides) throws IOException {
+
+        this.exchange = new StubExchange();
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("rest-uri", this.exchange.getRestUri());
+        properties.put("api-key", "benchmark");
+        properties.put("api-secret", "benchmark");
+        properties.put("symbols", "BTCUSD");
+        properties.put("quantity", "0.002");
+        properties.put("emaPeriodShort", "5");
+        properties.put("emaPeriodLong", "10");
+        properties.put("indicator-engine", "incremental");
+        properties.put("bars.type", "tick");
+        properties.put("bars.size", "100");
+        properties.putAll(overrides);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        this.context.register(LatencyMetrics.class, OrderGateway.class, TradingService.class, OrderBooks.class, StrategyFactory.class,
+                StrategyPipeline.class);
+        this.context.refresh();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return this.context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        this.context.close();
+        this.exchange.close();
+    }
+}
@@ -0,0 +1,49 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler and writes JSON results to
+ * {@code results/jmh-<timestamp>.json}, so runs can be compared, e.g. with a JMH
+ * visualizer. Accepts the usual JMH command line; {@code -rf}, {@code -rff} and
+ * {@code -prof} override the defaults.
+ * <pre>
+ * mvn -pl backend,benchmarks package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar [regexp] [jmh options]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            final File results = new File("results");
+            results.mkdirs();
+            final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            options.result(new File(results, "jmh-" + timestamp + ".json").getPath());
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.algotrader.ema.strategy.bars.BarStore;
+import ch.algotrader.ema.strategy.bars.BarStoreTimeSeries;
+import ch.algotrader.ema.strategy.indicator.EmaCrossoverEngine;
+
+/**
+ * Cost of closing a bar and evaluating the EMA pair with a series of {@code bars} bars
+ * already in memory, for both indicator engines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EmaBenchmark {
+
+    private static final long BAR_MILLIS = 10_000;
+
+    @Param({"ta4j", "incremental"})
+    public String engine;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int bars;
+
+    private BarStore store;
+    private EmaCrossoverEngine emaEngine;
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.store = new BarStore(this.bars, false);
+        this.emaEngine = EmaCrossoverEngine.forName(this.engine, new BarStoreTimeSeries("benchmark", this.store), 5, 10);
+        for (int i = 0; i < this.bars; i++) {
+            closeBar();
+        }
+    }
+
+    @Benchmark
+    public double closeBar() {
+
+        final double close = 7_400 + 50 * Math.sin(this.time / (BAR_MILLIS * 64.0));
+        this.store.addBar(this.time, this.time + BAR_MILLIS, close, close, close, close, 1, close, 1);
+        this.time += BAR_MILLIS;
+
+        this.emaEngine.onBarClose(this.store.getEndIndex(), close);
+        return this.emaEngine.getDifference() - this.emaEngine.getPreviousDifference();
+    }
+}
@@ -0,0 +1,103 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.algotrader.ema.marketdata.BitfinexFrameDecoder;
+import ch.algotrader.ema.marketdata.FrameType;
+import ch.algotrader.ema.marketdata.OrderBooks;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.services.MarketDataService;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Frame handling on the websocket thread: decoding alone, and the whole
+ * {@link MarketDataService#onMessage} including the hand-off to the strategy pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MarketDataBenchmark {
+
+    static final int CHANNEL = 5;
+
+    private String[] frames;
+    private int cursor;
+
+    private final BitfinexFrameDecoder decoder = new BitfinexFrameDecoder();
+    private final MutableTradeEvent event = new MutableTradeEvent();
+
+    private BenchmarkContext context;
+    private MarketDataService marketDataService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        this.frames = frames(4096);
+        // large tick bars: measure the feed thread, not order traffic from crossovers
+        this.context = new BenchmarkContext(Map.of("bars.size", "1000000"));
+        final StrategyPipeline pipeline = this.context.getBean(StrategyPipeline.class);
+        pipeline.registerChannel(CHANNEL, "BTCUSD");
+        this.marketDataService = new MarketDataService(pipeline, this.context.getBean(LatencyMetrics.class),
+                this.context.getBean(OrderBooks.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public FrameType decode() {
+        return this.decoder.decode(nextFrame(), this.event);
+    }
+
+    @Benchmark
+    public void onMessage() {
+        this.marketDataService.onMessage(null, nextFrame());
+    }
+
+    private String nextFrame() {
+        return this.frames[this.cursor++ & (this.frames.length - 1)];
+    }
+
+    /**
+     * A te/tu pair per trade with a heartbeat now and then, prices slowly rising.
+     */
+    static String[] frames(int count) {
+
+        final String[] frames = new String[count];
+        long id = 243_474_913L;
+        long timestamp = 1_527_613_000L;
+        for (int i = 0; i < count; i++) {
+            final String seq = Integer.toHexString(0x7303 + i / 2).toUpperCase() + "-BTCUSD";
+            final String price = String.valueOf(7_400 + (i / 2) * 0.1);
+            final String amount = i % 4 < 2 ? "0.0025" : "-0.01";
+            if (i % 32 == 31) {
+                frames[i] = "[" + CHANNEL + ",\"hb\"]";
+            } else if (i % 2 == 0) {
+                frames[i] = "[" + CHANNEL + ",\"te\",\"" + seq + "\"," + timestamp + "," + price + "," + amount + "]";
+            } else {
+                frames[i] = "[" + CHANNEL + ",\"tu\",\"" + seq + "\"," + id++ + "," + timestamp++ + "," + price + "," + amount + "]";
+            }
+        }
+        return frames;
+    }
+}
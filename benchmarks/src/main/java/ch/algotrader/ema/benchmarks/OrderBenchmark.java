@@ -0,0 +1,75 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.algotrader.ema.services.OrderEncoder;
+import ch.algotrader.ema.services.TradingService;
+import ch.algotrader.ema.vo.NewOrderRequest;
+import ch.algotrader.ema.vo.OrderResponse;
+
+/**
+ * Order payload build and signing, and a whole {@link TradingService#sendOrder} round
+ * trip through the gateway to a local {@link StubExchange}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderBenchmark {
+
+    private static final BigDecimal QUANTITY = new BigDecimal("0.002");
+
+    private final OrderEncoder encoder = new OrderEncoder("benchmark");
+    private final NewOrderRequest order = new NewOrderRequest();
+    private long nonce = System.currentTimeMillis() * 1000;
+
+    private BenchmarkContext context;
+    private TradingService tradingService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        this.order.setSymbol("BTCUSD");
+        this.order.setAmount(String.valueOf(QUANTITY));
+        this.order.setPrice(String.valueOf(Math.random()));
+        this.order.setSide("buy");
+        this.order.setType("exchange market");
+        this.order.setExchange("bitfinex");
+
+        this.context = new BenchmarkContext(Map.of());
+        this.tradingService = this.context.getBean(TradingService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public String encodeAndSign() {
+        this.encoder.encode("/v1/order/new", this.nonce++, this.order);
+        return this.encoder.getSignature();
+    }
+
+    @Benchmark
+    public OrderResponse sendOrder() {
+        return this.tradingService.sendOrder("buy", QUANTITY, "BTCUSD").join();
+    }
+}
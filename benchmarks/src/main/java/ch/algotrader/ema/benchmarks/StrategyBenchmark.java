@@ -0,0 +1,137 @@
+package ch.algotrader.ema.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.strategy.StrategyFactory;
+import ch.algotrader.ema.strategy.StrategyLogic;
+import ch.algotrader.ema.vo.MutableTradeEvent;
+
+/**
+ * Trade handling in the strategy: {@link StrategyLogic#handleTradeEvent} on its own, and
+ * several feed threads publishing through the {@link StrategyPipeline} while a timer
+ * thread fires {@link StrategyPipeline#onTime} back to back, a worst case for the real
+ * once-a-second timer. Conflation is off in the contended case, so a full ring pushes
+ * back on the publishers and their rate is the strategy's rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StrategyBenchmark {
+
+    private static final int ON_TIME_EVERY = 1024;
+    // exchange time runs ahead of the wall clock, so onTime never closes bars early
+    private static final long START_SECONDS = System.currentTimeMillis() / 1000;
+
+    @State(Scope.Thread)
+    public static class Single {
+
+        @Param({"time", "tick"})
+        public String barType;
+
+        private BenchmarkContext context;
+        private StrategyLogic strategy;
+        private final MutableTradeEvent event = new MutableTradeEvent();
+        private long count;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            final String barSize = "time".equals(this.barType) ? "10000" : "100";
+            this.context = new BenchmarkContext(Map.of("bars.type", this.barType, "bars.size", barSize));
+            this.strategy = this.context.getBean(StrategyFactory.class).create("BTCUSD");
+            this.event.setSeq("7303-BTCUSD", 0, 11);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.context.close();
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Contended {
+
+        private BenchmarkContext context;
+        private StrategyPipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.context = new BenchmarkContext(Map.of("pipeline.conflation", "false", "pipeline.ring-size", "1024"));
+            this.pipeline = this.context.getBean(StrategyPipeline.class);
+            this.pipeline.registerChannel(MarketDataBenchmark.CHANNEL, "BTCUSD");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Publisher {
+
+        private final MutableTradeEvent event = new MutableTradeEvent();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.event.setChannelId(MarketDataBenchmark.CHANNEL);
+            this.event.setSeq("7303-BTCUSD", 0, 11);
+        }
+    }
+
+    @Benchmark
+    public void handleTradeEvent(Single state) {
+
+        final long n = state.count++;
+        fill(state.event, n);
+        state.strategy.handleTradeEvent(state.event);
+        if (n % ON_TIME_EVERY == 0) {
+            state.strategy.onTime();
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void publishTrade(Contended shared, Publisher publisher) {
+
+        fill(publisher.event, System.nanoTime());
+        shared.pipeline.publishTrade(publisher.event);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void onTime(Contended shared) {
+        shared.pipeline.onTime();
+    }
+
+    /**
+     * Prices rise monotonically so crossovers, and with them orders, stay rare.
+     */
+    private static void fill(MutableTradeEvent event, long n) {
+        event.setId(n);
+        event.setTimestamp(START_SECONDS + n / 16);
+        event.setPrice(7_400 + n * 1e-9);
+        event.setAmount((n & 1) == 0 ? 0.0025 : -0.01);
+    }
+}
@@ -0,0 +1,156 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Bitfinex v1 API, for throughput tests without network access.
+ * Serves the trades websocket (info, subscribe acknowledgement, "te"/"tu" and "hb"
+ * frames at the rate of a {@link FeedProfile}) and the signed {@code order/new} REST
+ * endpoint. Point {@code ws-uri} and {@code rest-uri} at {@link #getWsUri()} and
+ * {@link #getRestUri()}.
+ */
+public class FakeVenue implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeVenue.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static {
+        // without it, Nagle and delayed acks add ~40 ms to every order round trip
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final TradeFeed feed;
+    private final OrderEndpoint orderEndpoint;
+    private final ServerSocket serverSocket;
+    private final HttpServer httpServer;
+    private final ExecutorService httpExecutor = Executors.newFixedThreadPool(4);
+    private final Set<WebSocketConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    public FakeVenue(String apiKey, String apiSecret, FeedProfile profile) throws IOException {
+
+        this.feed = new TradeFeed(profile);
+        this.orderEndpoint = new OrderEndpoint(apiKey, apiSecret, this.feed);
+
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.httpServer.createContext(OrderEndpoint.PATH, this.orderEndpoint::handle);
+        this.httpServer.setExecutor(this.httpExecutor);
+        this.httpServer.start();
+
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(this::accept, "venue-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        this.feed.start();
+    }
+
+    public String getWsUri() {
+        return "ws://localhost:" + this.serverSocket.getLocalPort() + "/ws/";
+    }
+
+    public String getRestUri() {
+        return "http://localhost:" + this.httpServer.getAddress().getPort() + "/v1/";
+    }
+
+    /**
+     * @return trade and heartbeat frames written to clients
+     */
+    public long getFramesSent() {
+        return this.feed.getFramesSent();
+    }
+
+    /**
+     * @return frames the profile called for but that could not be sent because
+     * clients did not read fast enough
+     */
+    public long getFramesSkipped() {
+        return this.feed.getFramesSkipped();
+    }
+
+    public long getOrdersAccepted() {
+        return this.orderEndpoint.getAccepted();
+    }
+
+    public long getOrdersRejected() {
+        return this.orderEndpoint.getRejected();
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        this.feed.stop();
+        this.serverSocket.close();
+        for (WebSocketConnection connection : this.connections) {
+            connection.close();
+        }
+        this.httpServer.stop(0);
+        this.httpExecutor.shutdown();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                final Thread reader = new Thread(() -> serve(socket), "venue-ws-" + this.connectionCount.incrementAndGet());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                logger.warn("accept failed", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (WebSocketConnection connection = new WebSocketConnection(socket)) {
+            this.connections.add(connection);
+            connection.handshake();
+            connection.sendText("{\"event\":\"info\",\"version\":1.1}");
+            connection.read(this::onText);
+        } catch (IOException e) {
+            logger.debug("websocket connection ended", e);
+        } finally {
+            this.connections.removeIf(connection -> !connection.isOpen());
+        }
+    }
+
+    /*
+     {"event":"subscribe","channel":"trades","pair":"BTCUSD"}
+     */
+    private void onText(WebSocketConnection connection, String text) throws IOException {
+
+        final JsonNode json = objectMapper.readTree(text);
+        final String event = json.path("event").asText();
+        if ("subscribe".equals(event) && "trades".equals(json.path("channel").asText())) {
+            final String pair = json.path("pair").asText();
+            synchronized (connection) {
+                final int channelId = this.feed.subscribe(connection, pair);
+                connection.sendText("{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":" + channelId
+                        + ",\"pair\":\"" + pair + "\"}");
+            }
+        } else if ("ping".equals(event)) {
+            connection.sendText("{\"event\":\"pong\"}");
+        } else {
+            connection.sendText("{\"event\":\"error\",\"msg\":\"Unknown event\",\"code\":10000}");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+/**
+ * Message rate of the {@link FakeVenue} trade feed: a steady rate with optional
+ * periodic bursts. Rates are websocket frames per second over all channels; every
+ * trade is sent as a "te" and a "tu" frame.
+ */
+public class FeedProfile {
+
+    private double rate = 10_000;
+    private double burstRate;
+    private long burstMillis;
+    private long burstIntervalMillis;
+    private long heartbeatMillis = 5_000;
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public double getBurstRate() {
+        return burstRate;
+    }
+
+    public void setBurstRate(double burstRate) {
+        this.burstRate = burstRate;
+    }
+
+    public long getBurstMillis() {
+        return burstMillis;
+    }
+
+    public void setBurstMillis(long burstMillis) {
+        this.burstMillis = burstMillis;
+    }
+
+    /**
+     * @return time from the start of one burst to the next, 0 for no bursts
+     */
+    public long getBurstIntervalMillis() {
+        return burstIntervalMillis;
+    }
+
+    public void setBurstIntervalMillis(long burstIntervalMillis) {
+        this.burstIntervalMillis = burstIntervalMillis;
+    }
+
+    public long getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    public void setHeartbeatMillis(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * @param elapsedMillis time since the feed started
+     * @return frames per second at that time
+     */
+    public double rateAt(long elapsedMillis) {
+        if (this.burstIntervalMillis > 0 && elapsedMillis % this.burstIntervalMillis < this.burstMillis) {
+            return this.burstRate;
+        }
+        return this.rate;
+    }
+}
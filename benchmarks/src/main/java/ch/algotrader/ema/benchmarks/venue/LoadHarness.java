@@ -0,0 +1,196 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import ch.algotrader.ema.marketdata.OrderBooks;
+import ch.algotrader.ema.metrics.LatencyHistogram;
+import ch.algotrader.ema.metrics.LatencyMetrics;
+import ch.algotrader.ema.pipeline.StrategyPipeline;
+import ch.algotrader.ema.services.MarketDataService;
+import ch.algotrader.ema.services.OrderGateway;
+import ch.algotrader.ema.services.TradingService;
+import ch.algotrader.ema.strategy.StrategyFactory;
+
+/**
+ * Runs the application's feed, strategy and order beans against a {@link FakeVenue} and
+ * reports the sustained ingest rate and order round trip latency, for example
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar ch.algotrader.ema.benchmarks.venue.LoadHarness \
+ *     rate=200000 burst-rate=600000 burst-ms=500 burst-interval-ms=5000 duration-s=30 orders-per-s=20
+ * </pre>
+ * Any other {@code key=value} argument is passed to the application as a property,
+ * e.g. {@code symbols=BTCUSD,ETHUSD} or {@code pipeline.wait-strategy=busy-spin}.
+ * <p>
+ * Orders the venue rejects (bad signature, nonce out of order) are bugs, not load:
+ * the harness then exits with status 1.
+ */
+public final class LoadHarness {
+
+    private static final String API_KEY = "harness";
+    private static final String API_SECRET = "harness-secret";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        final FeedProfile profile = new FeedProfile();
+        profile.setRate(Double.parseDouble(take(options, "rate", "100000")));
+        profile.setBurstRate(Double.parseDouble(take(options, "burst-rate", "0")));
+        profile.setBurstMillis(Long.parseLong(take(options, "burst-ms", "0")));
+        profile.setBurstIntervalMillis(Long.parseLong(take(options, "burst-interval-ms", "0")));
+        final int durationSeconds = Integer.parseInt(take(options, "duration-s", "30"));
+        final double ordersPerSecond = Double.parseDouble(take(options, "orders-per-s", "10"));
+
+        final long rejected;
+        try (FakeVenue venue = new FakeVenue(API_KEY, API_SECRET, profile)) {
+
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("ws-uri", venue.getWsUri());
+            properties.put("rest-uri", venue.getRestUri());
+            properties.put("api-key", API_KEY);
+            properties.put("api-secret", API_SECRET);
+            properties.put("symbols", "BTCUSD");
+            properties.put("quantity", "0.002");
+            properties.put("emaPeriodShort", "5");
+            properties.put("emaPeriodLong", "10");
+            properties.put("indicator-engine", "incremental");
+            properties.putAll(options);
+
+            final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("harness", properties));
+            context.register(LatencyMetrics.class, OrderGateway.class, TradingService.class, OrderBooks.class, StrategyFactory.class,
+                    StrategyPipeline.class, MarketDataService.class);
+            context.refresh();
+
+            final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+            try {
+                run(context, venue, scheduler, durationSeconds, ordersPerSecond);
+            } finally {
+                scheduler.shutdownNow();
+                context.close();
+            }
+            rejected = venue.getOrdersRejected();
+        }
+        if (rejected > 0) {
+            System.err.println("FAILED: the venue rejected " + rejected + " orders");
+            System.exit(1);
+        }
+    }
+
+    private static void run(AnnotationConfigApplicationContext context, FakeVenue venue, ScheduledExecutorService scheduler,
+            int durationSeconds, double ordersPerSecond) throws InterruptedException {
+
+        final MarketDataService marketDataService = context.getBean(MarketDataService.class);
+        final StrategyPipeline strategyPipeline = context.getBean(StrategyPipeline.class);
+        final TradingService tradingService = context.getBean(TradingService.class);
+
+        for (String symbol : strategyPipeline.getSymbols()) {
+            marketDataService.subscribeTrades(symbol);
+        }
+        scheduler.scheduleAtFixedRate(strategyPipeline::onTime, 1, 1, TimeUnit.SECONDS);
+
+        // order round trips, sent alongside the strategy's own orders
+        final long[] latencies = new long[(int) Math.ceil(durationSeconds * ordersPerSecond) + 1];
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final String symbol = strategyPipeline.getSymbols().get(0);
+        if (ordersPerSecond > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                final int i = sent.getAndIncrement();
+                if (i >= latencies.length) {
+                    return;
+                }
+                final long start = System.nanoTime();
+                tradingService.sendOrder(i % 2 == 0 ? "buy" : "sell", new BigDecimal("0.002"), symbol)
+                        .whenComplete((response, e) -> {
+                            if (e != null) {
+                                failed.incrementAndGet();
+                            } else {
+                                latencies[completed.getAndIncrement()] = System.nanoTime() - start;
+                            }
+                        });
+            }, 0, (long) (1e9 / ordersPerSecond), TimeUnit.NANOSECONDS);
+        }
+
+        System.out.println("second,sent/s,received/s,skipped/s,ringDepth,ordersAccepted,ordersRejected");
+        long lastSent = 0;
+        long lastReceived = 0;
+        long lastSkipped = 0;
+        long firstReceived = -1;
+        long firstNanos = 0;
+        for (int second = 1; second <= durationSeconds; second++) {
+            Thread.sleep(1000);
+            final long framesSent = venue.getFramesSent();
+            final long framesReceived = marketDataService.getFramesReceived();
+            final long framesSkipped = venue.getFramesSkipped();
+            if (firstReceived < 0) {
+                // the first second includes connecting and subscribing
+                firstReceived = framesReceived;
+                firstNanos = System.nanoTime();
+            }
+            System.out.println(second + "," + (framesSent - lastSent) + "," + (framesReceived - lastReceived) + ","
+                    + (framesSkipped - lastSkipped) + "," + strategyPipeline.getDepth() + ","
+                    + venue.getOrdersAccepted() + "," + venue.getOrdersRejected());
+            lastSent = framesSent;
+            lastReceived = framesReceived;
+            lastSkipped = framesSkipped;
+        }
+        final double seconds = (System.nanoTime() - firstNanos) / 1e9;
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "sustained ingest %.0f frames/s over %.0f s, %d skipped by the venue",
+                (marketDataService.getFramesReceived() - firstReceived) / seconds, seconds, venue.getFramesSkipped()));
+
+        final long[] done = Arrays.copyOf(latencies, Math.min(completed.get(), latencies.length));
+        Arrays.sort(done);
+        if (done.length > 0) {
+            System.out.println(String.format(Locale.ROOT,
+                    "order round trip over %d orders (%d failed): p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    done.length, failed.get(), percentile(done, 0.5), percentile(done, 0.9), percentile(done, 0.99),
+                    done[done.length - 1] / 1e6));
+        }
+
+        final LatencyMetrics latencyMetrics = context.getBean(LatencyMetrics.class);
+        for (LatencyMetrics.Stage stage : LatencyMetrics.Stage.values()) {
+            final LatencyHistogram.Snapshot snapshot = latencyMetrics.snapshot(stage);
+            System.out.println(String.format(Locale.ROOT, "%-14s n=%-9d p50 %9.1f  p99 %9.1f  p99.9 %9.1f  max %9.1f %s",
+                    stage.getLabel(), snapshot.getCount(),
+                    stage.toUnit(snapshot.getValueAtPercentile(50)),
+                    stage.toUnit(snapshot.getValueAtPercentile(99)),
+                    stage.toUnit(snapshot.getValueAtPercentile(99.9)),
+                    stage.toUnit(snapshot.getMax()),
+                    stage.getUnit()));
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private static String take(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.remove(key);
+        return value != null ? value : defaultValue;
+    }
+}
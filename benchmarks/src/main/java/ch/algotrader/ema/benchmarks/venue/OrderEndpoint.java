@@ -0,0 +1,131 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * {@code POST /v1/order/new} as Bitfinex v1 checks it: API key, HmacSHA384 signature
+ * of the base64 payload, request path and increasing nonce. Accepted market orders
+ * are filled in full at the feed's last price.
+ */
+class OrderEndpoint {
+
+    static final String PATH = "/v1/order/new";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String apiKey;
+    private final ThreadLocal<Mac> macs;
+    private final TradeFeed feed;
+
+    private final AtomicLong lastNonce = new AtomicLong();
+    private final AtomicLong orderId = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    OrderEndpoint(String apiKey, String apiSecret, TradeFeed feed) {
+        this.apiKey = apiKey;
+        this.feed = feed;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac mac = Mac.getInstance("HmacSHA384");
+                mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA384"));
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    long getAccepted() {
+        return this.accepted.get();
+    }
+
+    long getRejected() {
+        return this.rejected.get();
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        final String error = check(exchange);
+        if (error != null) {
+            this.rejected.incrementAndGet();
+            respond(exchange, 400, "{\"message\":\"" + error + "\"}");
+            return;
+        }
+        this.accepted.incrementAndGet();
+        respond(exchange, 200, fill(exchange.getRequestHeaders().getFirst("X-BFX-PAYLOAD")));
+    }
+
+    private String check(HttpExchange exchange) throws IOException {
+
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return "Method not allowed.";
+        }
+        if (!this.apiKey.equals(exchange.getRequestHeaders().getFirst("X-BFX-APIKEY"))) {
+            return "Could not find a key matching the given X-BFX-APIKEY.";
+        }
+        final String payload = exchange.getRequestHeaders().getFirst("X-BFX-PAYLOAD");
+        final String signature = exchange.getRequestHeaders().getFirst("X-BFX-SIGNATURE");
+        if (payload == null || signature == null) {
+            return "Missing X-BFX-PAYLOAD or X-BFX-SIGNATURE.";
+        }
+        final String expected = Hex.encodeHexString(this.macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        if (!expected.equalsIgnoreCase(signature)) {
+            return "Invalid X-BFX-SIGNATURE.";
+        }
+
+        final JsonNode json = objectMapper.readTree(Base64.getDecoder().decode(payload));
+        if (!PATH.equals(json.path("request").asText())) {
+            return "Request path does not match the payload.";
+        }
+        final long nonce = Long.parseLong(json.path("nonce").asText("0"));
+        final long last = this.lastNonce.getAndAccumulate(nonce, Math::max);
+        if (nonce <= last) {
+            return "Nonce is too small.";
+        }
+        return null;
+    }
+
+    private String fill(String payload) throws IOException {
+
+        final JsonNode order = objectMapper.readTree(Base64.getDecoder().decode(payload));
+        final String symbol = order.path("symbol").asText().toLowerCase(Locale.ROOT);
+        final String amount = order.path("amount").asText();
+        final long id = this.orderId.incrementAndGet();
+        return "{\"id\":" + id + ",\"symbol\":\"" + symbol + "\",\"exchange\":\"bitfinex\","
+                + "\"price\":\"" + order.path("price").asText() + "\","
+                + "\"avg_execution_price\":\"" + this.feed.getLastPrice(symbol) + "\","
+                + "\"side\":\"" + order.path("side").asText() + "\",\"type\":\"" + order.path("type").asText() + "\","
+                + "\"timestamp\":\"" + System.currentTimeMillis() / 1000.0 + "\","
+                + "\"is_live\":false,\"is_cancelled\":false,\"is_hidden\":false,\"was_forced\":false,"
+                + "\"original_amount\":\"" + amount + "\",\"remaining_amount\":\"0.0\","
+                + "\"executed_amount\":\"" + amount + "\",\"order_id\":" + id + "}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces random-walk trades onto every subscribed channel, following a {@link FeedProfile}.
+ * Frames are built into one reused buffer on the feed thread. When a client reads
+ * slower than the profile, the socket blocks the feed and the frames it could not
+ * send in time are counted as skipped rather than queued.
+ */
+class TradeFeed implements Runnable {
+
+    private static final int MAX_BATCH = 4096;
+    /** catch up at most this far behind schedule */
+    private static final double MAX_LAG_SECONDS = 0.01;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long INITIAL_PRICE_CENTS = 740_000;
+
+    private final FeedProfile profile;
+    private final AtomicInteger nextChannelId = new AtomicInteger(1);
+
+    private final StringBuilder frame = new StringBuilder(128);
+    private byte[] bytes = new byte[128];
+
+    private volatile Channel[] channels = new Channel[0];
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long framesSent;
+    private volatile long framesSkipped;
+
+    TradeFeed(FeedProfile profile) {
+        this.profile = profile;
+    }
+
+    void start() {
+        this.running = true;
+        this.thread = new Thread(this, "venue-feed");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        this.running = false;
+        this.thread.join();
+    }
+
+    /**
+     * @return the channel id to acknowledge; frames start after this returns
+     */
+    synchronized int subscribe(WebSocketConnection connection, String pair) {
+        final Channel channel = new Channel(connection, this.nextChannelId.getAndIncrement(), pair);
+        final Channel[] channels = Arrays.copyOf(this.channels, this.channels.length + 1);
+        channels[channels.length - 1] = channel;
+        this.channels = channels;
+        return channel.id;
+    }
+
+    long getFramesSent() {
+        return this.framesSent;
+    }
+
+    long getFramesSkipped() {
+        return this.framesSkipped;
+    }
+
+    /**
+     * @return last traded price of {@code pair}, or NaN before the first trade
+     */
+    double getLastPrice(String pair) {
+        for (Channel channel : this.channels) {
+            if (channel.pair.equalsIgnoreCase(pair)) {
+                return channel.priceCents / 100.0;
+            }
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public void run() {
+
+        final long start = System.nanoTime();
+        final long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(this.profile.getHeartbeatMillis());
+        long last = start;
+        long nextHeartbeat = start + heartbeatNanos;
+        double credit = 0;
+
+        while (this.running) {
+
+            final long now = System.nanoTime();
+            final double rate = this.profile.rateAt(TimeUnit.NANOSECONDS.toMillis(now - start));
+            credit += rate * (now - last) * 1e-9;
+            last = now;
+
+            final double maxCredit = Math.max(MAX_BATCH, rate * MAX_LAG_SECONDS);
+            if (credit > maxCredit) {
+                this.framesSkipped += (long) (credit - maxCredit);
+                credit = maxCredit;
+            }
+            if (now >= nextHeartbeat) {
+                heartbeat();
+                nextHeartbeat += heartbeatNanos;
+            }
+
+            final int frames = (int) Math.min(credit, MAX_BATCH) & ~1;
+            if (this.channels.length == 0) {
+                credit = 0;
+            }
+            if (frames == 0 || this.channels.length == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            sendTrades(frames / 2);
+            credit -= frames;
+        }
+    }
+
+    private void sendTrades(int trades) {
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long timestamp = System.currentTimeMillis() / 1000;
+        final Channel[] channels = this.channels;
+
+        for (int i = 0; i < trades; i++) {
+            final Channel channel = channels[i % channels.length];
+            if (!channel.connection.isOpen()) {
+                continue;
+            }
+            channel.tradeId++;
+            channel.priceCents = Math.max(1, channel.priceCents + random.nextInt(-50, 51));
+            final long amount = random.nextInt(1, 50_000) * (random.nextBoolean() ? 1 : -1);
+
+            synchronized (channel.connection) {
+                try {
+                    buildTrade(channel, "te", timestamp, amount);
+                    channel.connection.writeText(this.bytes, this.frame.length());
+                    buildTrade(channel, "tu", timestamp, amount);
+                    channel.connection.writeText(this.bytes, this.frame.length());
+                } catch (IOException e) {
+                    unsubscribe(channel);
+                }
+            }
+        }
+        flush();
+        this.framesSent += 2L * trades;
+    }
+
+    /*
+     [CHANNEL_ID, "te", SEQ, TIMESTAMP, PRICE, AMOUNT]
+     [CHANNEL_ID, "tu", SEQ, ID, TIMESTAMP, PRICE, AMOUNT]
+     */
+    private void buildTrade(Channel channel, String type, long timestamp, long amount) {
+
+        final StringBuilder frame = this.frame;
+        frame.setLength(0);
+        frame.append('[').append(channel.id).append(",\"").append(type).append("\",\"")
+                .append(channel.tradeId).append('-').append(channel.pair).append("\",");
+        if (type.equals("tu")) {
+            frame.append(channel.tradeId).append(',');
+        }
+        frame.append(timestamp).append(',');
+        appendFixed(frame, channel.priceCents, 2);
+        frame.append(',');
+        appendFixed(frame, amount, 4);
+        frame.append(']');
+        toAscii(frame);
+    }
+
+    private void heartbeat() {
+        for (Channel channel : this.channels) {
+            synchronized (channel.connection) {
+                try {
+                    this.frame.setLength(0);
+                    this.frame.append('[').append(channel.id).append(",\"hb\"]");
+                    toAscii(this.frame);
+                    channel.connection.writeText(this.bytes, this.frame.length());
+                } catch (IOException e) {
+                    unsubscribe(channel);
+                }
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        for (Channel channel : this.channels) {
+            synchronized (channel.connection) {
+                try {
+                    channel.connection.flush();
+                } catch (IOException e) {
+                    unsubscribe(channel);
+                }
+            }
+        }
+    }
+
+    private synchronized void unsubscribe(Channel channel) {
+        channel.connection.close();
+        this.channels = Arrays.stream(this.channels).filter(c -> c != channel).toArray(Channel[]::new);
+    }
+
+    private void toAscii(CharSequence text) {
+        final int length = text.length();
+        if (this.bytes.length < length) {
+            this.bytes = new byte[Math.max(length, 2 * this.bytes.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            this.bytes[i] = (byte) text.charAt(i);
+        }
+    }
+
+    private static void appendFixed(StringBuilder to, long value, int decimals) {
+        if (value < 0) {
+            to.append('-');
+            value = -value;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        to.append(value / scale).append('.');
+        final long fraction = value % scale;
+        for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) {
+            to.append('0');
+        }
+        to.append(fraction);
+    }
+
+    private static final class Channel {
+
+        private final WebSocketConnection connection;
+        private final int id;
+        private final String pair;
+        private long tradeId;
+        private volatile long priceCents = INITIAL_PRICE_CENTS;
+
+        private Channel(WebSocketConnection connection, int id, String pair) {
+            this.connection = connection;
+            this.id = id;
+            this.pair = pair;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Server side of one RFC 6455 connection: text frames, ping/pong and close, no
+ * extensions. Writes are buffered until {@link #flush}, so the feed can put many
+ * frames into one TCP segment.
+ */
+class WebSocketConnection implements AutoCloseable {
+
+    interface Handler {
+
+        void onText(WebSocketConnection connection, String text) throws IOException;
+    }
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final byte[] header = new byte[10];
+
+    private volatile boolean open = true;
+
+    WebSocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+    }
+
+    /**
+     * Reads the upgrade request and answers it.
+     */
+    void handshake() throws IOException {
+
+        String key = null;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            final int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n");
+            throw new IOException("not a websocket upgrade");
+        }
+        write("HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n");
+    }
+
+    /**
+     * Dispatches client text messages until the connection closes.
+     */
+    void read(Handler handler) throws IOException {
+
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        try {
+            while (this.open) {
+                final int b0 = this.in.readUnsignedByte();
+                final int b1 = this.in.readUnsignedByte();
+                final boolean fin = (b0 & 0x80) != 0;
+                final int opcode = b0 & 0x0f;
+                long length = b1 & 0x7f;
+                if (length == 126) {
+                    length = this.in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = this.in.readLong();
+                }
+                final byte[] mask = new byte[4];
+                if ((b1 & 0x80) != 0) {
+                    this.in.readFully(mask);
+                }
+                final byte[] payload = new byte[(int) length];
+                this.in.readFully(payload);
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+
+                if (opcode == OP_TEXT || opcode == OP_CONTINUATION) {
+                    message.write(payload);
+                    if (fin) {
+                        handler.onText(this, message.toString(StandardCharsets.UTF_8));
+                        message.reset();
+                    }
+                } else if (opcode == OP_PING) {
+                    synchronized (this) {
+                        writeFrame(OP_PONG, payload, payload.length);
+                        flush();
+                    }
+                } else if (opcode == OP_CLOSE) {
+                    synchronized (this) {
+                        writeFrame(OP_CLOSE, payload, Math.min(payload.length, 2));
+                        flush();
+                    }
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // client went away
+        } finally {
+            close();
+        }
+    }
+
+    boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Buffers one text frame; callers hold the connection's monitor.
+     */
+    void writeText(byte[] payload, int length) throws IOException {
+        writeFrame(OP_TEXT, payload, length);
+    }
+
+    void flush() throws IOException {
+        this.out.flush();
+    }
+
+    synchronized void sendText(String text) throws IOException {
+        final byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        writeText(payload, payload.length);
+        flush();
+    }
+
+    @Override
+    public void close() {
+        this.open = false;
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    private void writeFrame(int opcode, byte[] payload, int length) throws IOException {
+        final byte[] header = this.header;
+        header[0] = (byte) (0x80 | opcode);
+        int headerLength;
+        if (length < 126) {
+            header[1] = (byte) length;
+            headerLength = 2;
+        } else if (length < 65536) {
+            header[1] = 126;
+            header[2] = (byte) (length >>> 8);
+            header[3] = (byte) length;
+            headerLength = 4;
+        } else {
+            header[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                header[2 + i] = (byte) ((long) length >>> (56 - 8 * i));
+            }
+            headerLength = 10;
+        }
+        this.out.write(header, 0, headerLength);
+        this.out.write(payload, 0, length);
+    }
+
+    private String readLine() throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = this.in.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private void write(String response) throws IOException {
+        this.out.write(response.getBytes(StandardCharsets.US_ASCII));
+        this.out.flush();
+    }
+
+    private static String accept(String key) {
+        try {
+            final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
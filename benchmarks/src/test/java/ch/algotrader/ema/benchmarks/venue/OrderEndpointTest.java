@@ -0,0 +1,77 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OrderEndpointTest {
+
+    private static final String API_KEY = "key";
+    private static final String API_SECRET = "secret";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FakeVenue venue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FeedProfile profile = new FeedProfile();
+        profile.setRate(10);
+        venue = new FakeVenue(API_KEY, API_SECRET, profile);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        venue.close();
+    }
+
+    @Test
+    void fillsSignedOrdersAndRejectsBadSignaturesAndNonces() throws Exception {
+
+        HttpResponse<String> filled = post(API_KEY, API_SECRET, 1, OrderEndpoint.PATH);
+        assertThat(filled.statusCode()).isEqualTo(200);
+        assertThat(filled.body()).contains("\"symbol\":\"btcusd\"", "\"executed_amount\":\"0.01\"");
+
+        HttpResponse<String> badSignature = post(API_KEY, "other secret", 2, OrderEndpoint.PATH);
+        assertThat(badSignature.statusCode()).isEqualTo(400);
+        assertThat(badSignature.body()).contains("Invalid X-BFX-SIGNATURE.");
+
+        assertThat(post("other key", API_SECRET, 3, OrderEndpoint.PATH).statusCode()).isEqualTo(400);
+        assertThat(post(API_KEY, API_SECRET, 4, "/v1/order/cancel").body()).contains("Request path does not match");
+        assertThat(post(API_KEY, API_SECRET, 1, OrderEndpoint.PATH).body()).contains("Nonce is too small.");
+        assertThat(post(API_KEY, API_SECRET, 5, OrderEndpoint.PATH).statusCode()).isEqualTo(200);
+
+        assertThat(venue.getOrdersAccepted()).isEqualTo(2);
+        assertThat(venue.getOrdersRejected()).isEqualTo(4);
+    }
+
+    private HttpResponse<String> post(String apiKey, String apiSecret, long nonce, String path) throws Exception {
+
+        String json = "{\"request\":\"" + path + "\",\"nonce\":\"" + nonce + "\",\"symbol\":\"BTCUSD\","
+                + "\"amount\":\"0.01\",\"price\":\"1\",\"exchange\":\"bitfinex\",\"side\":\"buy\",\"type\":\"exchange market\"}";
+        String payload = Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA384");
+        mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA384"));
+        String signature = Hex.encodeHexString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(venue.getRestUri() + "order/new"))
+                .header("X-BFX-APIKEY", apiKey)
+                .header("X-BFX-PAYLOAD", payload)
+                .header("X-BFX-SIGNATURE", signature)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,184 @@
+package ch.algotrader.ema.benchmarks.venue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WebSocketConnectionTest {
+
+    private static final byte[] MASK = {0x37, (byte) 0xfa, 0x21, 0x3d};
+
+    private ServerSocket serverSocket;
+    private Thread server;
+    private Socket client;
+    private DataInputStream in;
+    private OutputStream out;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        // echoes every text message
+        server = new Thread(() -> {
+            try (WebSocketConnection connection = new WebSocketConnection(serverSocket.accept())) {
+                connection.handshake();
+                connection.read(WebSocketConnection::sendText);
+            } catch (IOException e) {
+                // test client went away
+            }
+        });
+        server.start();
+
+        client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        in = new DataInputStream(client.getInputStream());
+        out = client.getOutputStream();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        serverSocket.close();
+        server.join(5_000);
+    }
+
+    @Test
+    void answersTheUpgradeWithTheAcceptKey() throws IOException {
+
+        // the example of RFC 6455 section 1.3
+        String response = handshake("dGhlIHNhbXBsZSBub25jZQ==");
+        assertThat(response).startsWith("HTTP/1.1 101 Switching Protocols\r\n");
+        assertThat(response).contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n");
+    }
+
+    @Test
+    void echoesTextFramesOfEveryLengthEncoding() throws IOException {
+
+        handshake("dGhlIHNhbXBsZSBub25jZQ==");
+        // 7 bit, 16 bit and 64 bit payload lengths, and the boundaries between them
+        for (int length : new int[] {0, 5, 125, 126, 200, 65_535, 65_536, 70_000}) {
+            String text = text(length);
+            writeFrame(true, 0x1, text.getBytes(StandardCharsets.UTF_8));
+            Frame frame = readFrame();
+            assertThat(frame.fin).isTrue();
+            assertThat(frame.opcode).isEqualTo(0x1);
+            assertThat(new String(frame.payload, StandardCharsets.UTF_8)).as("length %d", length).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void joinsFragmentsAndAnswersPingAndClose() throws IOException {
+
+        handshake("dGhlIHNhbXBsZSBub25jZQ==");
+        writeFrame(false, 0x1, "{\"event\":".getBytes(StandardCharsets.UTF_8));
+        // control frames may arrive between fragments
+        writeFrame(true, 0x9, new byte[] {1, 2, 3});
+        writeFrame(true, 0x0, "\"ping\"}".getBytes(StandardCharsets.UTF_8));
+
+        Frame pong = readFrame();
+        assertThat(pong.opcode).isEqualTo(0xA);
+        assertThat(pong.payload).containsExactly(1, 2, 3);
+        Frame text = readFrame();
+        assertThat(new String(text.payload, StandardCharsets.UTF_8)).isEqualTo("{\"event\":\"ping\"}");
+
+        // 1000, normal closure, with a reason the server does not echo
+        writeFrame(true, 0x8, new byte[] {0x03, (byte) 0xe8, 'b', 'y', 'e'});
+        Frame close = readFrame();
+        assertThat(close.opcode).isEqualTo(0x8);
+        assertThat(close.payload).containsExactly(0x03, (byte) 0xe8);
+        assertThat(in.read()).isEqualTo(-1);
+    }
+
+    private String handshake(String key) throws IOException {
+
+        out.write(("GET /ws/ HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        while (!response.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            response.write(in.readUnsignedByte());
+        }
+        return response.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes a client frame, which is always masked.
+     */
+    private void writeFrame(boolean fin, int opcode, byte[] payload) throws IOException {
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write((fin ? 0x80 : 0) | opcode);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else if (payload.length < 65_536) {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >>> 8);
+            frame.write(payload.length);
+        } else {
+            frame.write(0x80 | 127);
+            for (int i = 0; i < 8; i++) {
+                frame.write((int) ((long) payload.length >>> (56 - 8 * i)));
+            }
+        }
+        frame.write(MASK);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ MASK[i & 3]);
+        }
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    /**
+     * Reads a server frame, which must not be masked.
+     */
+    private Frame readFrame() throws IOException {
+
+        int b0 = in.readUnsignedByte();
+        int b1 = in.readUnsignedByte();
+        assertThat(b1 & 0x80).as("server frames are not masked").isZero();
+        long length = b1 & 0x7f;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        Frame frame = new Frame();
+        frame.fin = (b0 & 0x80) != 0;
+        frame.opcode = b0 & 0x0f;
+        frame.payload = new byte[(int) length];
+        in.readFully(frame.payload);
+        return frame;
+    }
+
+    private static String text(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        for (int i = 0; i < length; i += 10) {
+            chars[i] = (char) ('0' + i / 10 % 10);
+        }
+        return new String(chars);
+    }
+
+    private static final class Frame {
+
+        private boolean fin;
+        private int opcode;
+        private byte[] payload;
+    }
+}